@@ -1,13 +1,36 @@
 package controllers;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import io.javalin.Javalin;
+import io.javalin.http.Context;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import models.GameBoardInternalError;
+import models.PositionTable;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import util.AsyncDbService;
 import util.DbServiceException;
+import util.GameArchiver;
+import util.GameHistoryWriter;
+import util.GameReaper;
+import util.PersistenceConfig;
+import util.ShardedDbService;
+import util.TicTacToeDbService;
+import util.TicTacToeInMemoryDbService;
+import util.TicTacToeJournalDbService;
 import util.TicTacToeSqliteDbService;
+import util.WriteBehindDbService;
 
 public class PlayGame {
 
@@ -17,34 +40,146 @@ public class PlayGame {
   
   private static TicTacToeController tttcontroller;
   
+  // only set when games are stored in SQLite (the default)
   private static TicTacToeSqliteDbService dbService;
+  
+  // only set when games are stored in a journal file (-Dtictactoe.storage=journal)
+  private static TicTacToeJournalDbService journalService;
+  
+  // only set when games are spread across several SQLite files (-Dtictactoe.sqlite.shards)
+  private static ShardedDbService shardedService;
+  
+  // only set when moves are persisted by a background writer (-Dtictactoe.writeBehind=true)
+  private static WriteBehindDbService writeBehindService;
+  
+  // only set when requests hand database work to I/O threads (-Dtictactoe.async=true)
+  private static AsyncDbService asyncService;
+  
+  // only set when finished games are archived (-Dtictactoe.archive.intervalSeconds=N)
+  private static GameArchiver archiver;
+  
+  // only set when idle games are expired (-Dtictactoe.reaper.ttlSeconds=N)
+  private static GameReaper reaper;
+
+  // reads games for /export straight from where they are stored
+  private static Supplier<TicTacToeDbService> exportServices;
 
   private static Logger logger = LoggerFactory.getLogger(PlayGame.class);
 
+  private static Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+
   /**
    * Main method of the application.
    * 
    * @param args Command line arguments
-   * @throws DbServiceException  when there is an issue establishing the database
+   * @throws DbServiceException  when there is an issue establishing the database or
+   *                             restoring the most recent game from it
    */
   public static void main(final String[] args) throws DbServiceException {
 
     logger.info("Starting application...");
 
-    dbService = new TicTacToeSqliteDbService();
+    TicTacToeDbService gameDbService;
+    
+    if (PersistenceConfig.getStorage() == PersistenceConfig.Storage.MEMORY) {
+      logger.info("Keeping games in memory only; they will not survive a restart.");
+      dbService = null;
+      gameDbService = new TicTacToeInMemoryDbService();
+      
+    } else if (PersistenceConfig.getStorage() == PersistenceConfig.Storage.JOURNAL) {
+      logger.info("Storing games in the journal " + PersistenceConfig.getJournalFile() + ".");
+      dbService = null;
+      journalService = new TicTacToeJournalDbService();
+      gameDbService = journalService;
+      
+    } else if (PersistenceConfig.getSqliteShards() > 1) {
+      logger.info("Spreading games across " + PersistenceConfig.getSqliteShards()
+          + " SQLite database files.");
+      dbService = null;
+      shardedService = new ShardedDbService();
+      shardedService.createDatabasesTables();
+      gameDbService = shardedService;
+      
+    } else {
+      dbService = new TicTacToeSqliteDbService();
+      
+      logger.info("Creating database tables, if necessary...");
+      dbService.createDatabasesTables();
+      gameDbService = new TicTacToeSqliteDbService();
+    }
+    
+    // a SQLite service holds a single connection, so each export needs its own;
+    // exports do not go through the write-behind writer, which would have to stop
+    // writing while they run
+    TicTacToeDbService storage = gameDbService;
+    exportServices = storage instanceof TicTacToeSqliteDbService
+        ? TicTacToeSqliteDbService::new : () -> storage;
     
-    logger.info("Creating database tables, if necessary...");
-    dbService.createDatabasesTables();
+    if (dbService != null && PersistenceConfig.getArchiveIntervalSeconds() > 0) {
+      archiver = new GameArchiver(new TicTacToeSqliteDbService(),
+          TimeUnit.SECONDS.toMillis(PersistenceConfig.getArchiveIntervalSeconds()));
+      archiver.start();
+      logger.info("Archiving finished games every " 
+          + PersistenceConfig.getArchiveIntervalSeconds() + " seconds.");
+    }
+    
+    // shards already have a writer thread each, which uses the write-behind settings
+    if (PersistenceConfig.isWriteBehind() && shardedService == null) {
+      writeBehindService = new WriteBehindDbService(gameDbService);
+      logger.info("Persisting game changes in the background (ack after "
+          + writeBehindService.getAckMode() + ").");
+      gameDbService = writeBehindService;
+    }
     
-    tttcontroller = new TicTacToeController();
+    if (PersistenceConfig.isAsync()) {
+      // a SQLite service holds a single connection, so each I/O thread needs its own
+      asyncService = gameDbService instanceof TicTacToeSqliteDbService
+          ? new AsyncDbService(TicTacToeSqliteDbService::new, PersistenceConfig.getAsyncThreads(),
+              PersistenceConfig.getAsyncMaxPending())
+          : new AsyncDbService(gameDbService);
+      logger.info("Handing database work to " + asyncService.getThreads() + " I/O threads.");
+      tttcontroller = new TicTacToeController(gameDbService, asyncService);
+    } else {
+      tttcontroller = new TicTacToeController(gameDbService);
+    }
+    
+    logger.info("Restoring the most recent game board from the database...");
+    try {
+      tttcontroller.loadGameBoard();
+    } catch (GameBoardInternalError e) {
+      throw new DbServiceException("Could not restore the most recent game board.");
+    }
+
+    if (PersistenceConfig.getReaperTtlSeconds() > 0) {
+      // the in-memory service can be shared across threads; a SQLite service cannot
+      TicTacToeDbService reaperService = dbService != null ? new TicTacToeSqliteDbService()
+          : storage instanceof TicTacToeInMemoryDbService ? storage : null;
+      if (reaperService == null) {
+        logger.warn("Idle games can only be expired when they are stored in a single "
+            + "SQLite database or in memory.");
+      } else {
+        reaper = new GameReaper(reaperService,
+            TimeUnit.SECONDS.toMillis(PersistenceConfig.getReaperTtlSeconds()),
+            TimeUnit.SECONDS.toMillis(PersistenceConfig.getReaperIntervalSeconds()),
+            PlayGame::releaseExpiredGames);
+        reaper.start();
+        logger.info("Expiring games idle for more than " 
+            + PersistenceConfig.getReaperTtlSeconds() + " seconds.");
+      }
+    }
+
+    // solved once here rather than by the first request for a computer move or hint
+    logger.info("Solved " + PositionTable.standard().size() + " positions of the 3x3 board.");
 
     app = Javalin.create(config -> {
       config.addStaticFiles("/public");
       config.enableDevLogging();
     }).start(PORT_NUMBER);
     
+    // the controller keeps the game board in memory; this only goes back to the
+    // database if a previous write failed and the board needs to be reloaded
     app.before(ctx -> {
-      tttcontroller.loadGameBoard();
+      tttcontroller.ensureGameBoardLoaded();
     });
 
     app.get("/", ctx -> {
@@ -66,19 +201,32 @@ public class PlayGame {
     app.get("/joingame", ctx -> {
       logger.info("Received request to add a second player.");
       tttcontroller.addSecondPlayer(ctx);
-      sendGameBoardToAllPlayers(tttcontroller.getGameBoardAsJson());
+      whenSaved(ctx, () -> sendGameBoardToAllPlayers(tttcontroller.getGameBoardAsJson()));
     });
 
     app.post("/move/:playerId", ctx -> {
       logger.info("Received request to log a move for a player.");
       tttcontroller.processPlayerMove(ctx);
-      sendGameBoardToAllPlayers(tttcontroller.getGameBoardAsJson());
+      whenSaved(ctx, () -> sendGameBoardToAllPlayers(tttcontroller.getGameBoardAsJson()));
+    });
+    
+    app.get("/hint", ctx -> {
+      tttcontroller.serveHint(ctx);
     });
     
     app.get("/gameboardstatus", ctx -> {
       ctx.result(tttcontroller.getGameBoardAsJson());
     });
     
+    app.get("/metrics", ctx -> {
+      ctx.result(dbService == null ? "{}" : gson.toJson(dbService.getPoolMetrics()));
+    });
+    
+    app.get("/export", ctx -> {
+      logger.info("Received request to export games.");
+      exportGames(ctx);
+    });
+    
     app.get("/test", ctx -> {
       ctx.status(200);
     });
@@ -87,6 +235,51 @@ public class PlayGame {
     app.ws("/gameboard", new UiWebSocket());
   }
 
+  /**
+   * Runs an action once a request's change to the game board has been saved:
+   * straight away if it was saved on the request thread, or else once its
+   * response is ready. The action then runs on a common pool thread rather than
+   * an I/O thread, which must never wait for the controller.
+   * 
+   * @param ctx    Context object of the request
+   * @param action action to run
+   */
+  private static void whenSaved(Context ctx, Runnable action) {
+    CompletableFuture<?> response = ctx.resultFuture();
+    if (response == null) {
+      action.run();
+    } else {
+      response.thenRunAsync(action);
+    }
+  }
+
+  /**
+   * Streams the history of the games with IDs from the 'from' to the 'to' query
+   * parameter (both optional) as newline-delimited JSON, one game per line,
+   * writing each game to the response as it is read.
+   * 
+   * @param ctx Context object of the request
+   * @throws DbServiceException if the games could not be read
+   * @throws IOException        if the response could not be written
+   */
+  private static void exportGames(Context ctx) throws DbServiceException, IOException {
+    int from = ctx.queryParam("from", Integer.class, "1").get();
+    int to = ctx.queryParam("to", Integer.class, String.valueOf(Integer.MAX_VALUE)).get();
+    
+    ctx.contentType("application/x-ndjson");
+    GameHistoryWriter out = new GameHistoryWriter(new BufferedWriter(
+        new OutputStreamWriter(ctx.res.getOutputStream(), StandardCharsets.UTF_8)));
+    TicTacToeDbService exportService = exportServices.get();
+    exportService.connect();
+    try {
+      int written = exportService.exportGames(from, to, out);
+      logger.info("Exported " + written + " games.");
+    } finally {
+      exportService.close();
+      out.flush();
+    }
+  }
+
   /**
    * Send message to all players.
    * 
@@ -104,7 +297,74 @@ public class PlayGame {
     }
   }
 
+  /**
+   * Lets go of what the server holds for games the reaper expired: if the game
+   * on the board is one of them, the board is cleared and the players' web
+   * sockets are closed, since there is no game left for them to follow.
+   * 
+   * @param gameIds IDs of the games that were expired
+   */
+  private static void releaseExpiredGames(List<Integer> gameIds) {
+    TicTacToeController controller = tttcontroller;
+    if (controller == null || !controller.expireGameBoard(gameIds)) {
+      return;
+    }
+    for (Session sessionPlayer : UiWebSocket.getSessions()) {
+      sessionPlayer.close(StatusCode.NORMAL, "Game expired after being idle.");
+    }
+  }
+
+  /**
+   * Stops the server, first writing out any changes still queued for the
+   * database and closing the game journal, if one is used.
+   */
   public static void stop() {
     app.stop();
+    
+    if (reaper != null) {
+      reaper.shutdown();
+      reaper = null;
+    }
+    
+    if (archiver != null) {
+      archiver.shutdown();
+      archiver = null;
+    }
+    
+    if (asyncService != null) {
+      try {
+        asyncService.shutdown();
+      } catch (DbServiceException e) {
+        logger.error("Encountered exception finishing pending database work: ", e);
+      }
+      asyncService = null;
+    }
+    
+    if (writeBehindService != null) {
+      try {
+        writeBehindService.shutdown();
+      } catch (DbServiceException e) {
+        logger.error("Encountered exception flushing queued database writes: ", e);
+      }
+      writeBehindService = null;
+    }
+    
+    if (shardedService != null) {
+      try {
+        shardedService.shutdown();
+      } catch (DbServiceException e) {
+        logger.error("Encountered exception flushing writes to the database shards: ", e);
+      }
+      shardedService = null;
+    }
+    
+    if (journalService != null) {
+      try {
+        journalService.shutdown();
+      } catch (DbServiceException e) {
+        logger.error("Encountered exception closing the game journal: ", e);
+      }
+      journalService = null;
+    }
   }
 }
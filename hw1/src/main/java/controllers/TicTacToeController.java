@@ -4,19 +4,35 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import models.GameBoard;
 import models.GameBoardInternalError;
+import models.InvalidGameBoardConfigurationException;
 import models.Message;
+import models.MessageStatus;
+import models.MnkGameBoard;
 import models.Move;
+import models.NegamaxEngine;
 import models.Player;
+import models.PositionTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import util.AsyncTicTacToeDbService;
 import util.TicTacToeDbService;
 
 public class TicTacToeController {
 
+  // the live game board is the source of truth; the database is written through
+  // on every change and only read back when this board is missing or stale
   private GameBoard gameBoard;
   
+  // false until the board has been loaded from the database, or after a failed
+  // write leaves the in-memory board out of step with the database; volatile
+  // since asynchronous writes report their failure from an I/O thread
+  private volatile boolean gameBoardLoaded;
+  
   private static Logger logger = LoggerFactory.getLogger(TicTacToeController.class);
   
   // Utilize Gson for object->json mapping instead of Jackson, the Javalin default
@@ -27,6 +43,7 @@ public class TicTacToeController {
    */
   public TicTacToeController() {
     this.gameBoard = new GameBoard();
+    this.gameBoardLoaded = false;
   }
   
   /**
@@ -37,22 +54,49 @@ public class TicTacToeController {
    */
   public TicTacToeController(GameBoard gameBoard) {
     this.gameBoard = gameBoard;
+    this.gameBoardLoaded = true;
   }
   
+  /**
+   * Secondary Constructor to start from an empty game board backed by a specific
+   * database service.
+   * 
+   * @param dbService instance of TicTacToeDbService to use
+   */
   public TicTacToeController(TicTacToeDbService dbService) {
     this.gameBoard = new GameBoard(dbService);
+    this.gameBoardLoaded = true;
   }
   
   /**
-   * Sets the game board to the most recent game board in the database.
+   * Secondary Constructor to start from an empty game board whose changes are
+   * handed to an asynchronous database service, so that requests are answered
+   * once their changes are saved without holding the request thread meanwhile.
+   * 
+   * @param dbService      instance of TicTacToeDbService to create the empty
+   *                       game board with
+   * @param asyncDbService instance of AsyncTicTacToeDbService to save changes
+   *                       with
+   */
+  public TicTacToeController(TicTacToeDbService dbService,
+      AsyncTicTacToeDbService asyncDbService) {
+    this(dbService);
+    this.gameBoard.setAsyncDbService(asyncDbService);
+  }
+  
+  /**
+   * Sets the game board to the most recent game board in the database. This
+   * should be done once at startup; afterwards the in-memory game board is kept
+   * up to date by the controller itself.
    * 
    * @throws GameBoardInternalError if there was an issue getting the last game
    *                                from the database
    */
-  public void loadGameBoard() throws GameBoardInternalError {
+  public synchronized void loadGameBoard() throws GameBoardInternalError {
     try {
       GameBoard lastState = gameBoard.getMostRecentDbState();
       setGameBoard(lastState);
+      gameBoardLoaded = true;
       logger.info(getGameBoardAsJson());
       
     } catch (GameBoardInternalError e) {
@@ -60,20 +104,71 @@ public class TicTacToeController {
       throw e;
     }
   }
+  
+  /**
+   * Loads the game board from the database only if the in-memory game board is
+   * missing (i.e., not loaded yet) or may be stale (i.e., a database write
+   * failed). Otherwise this is a no-op, so it is cheap to call on every request.
+   * 
+   * @throws GameBoardInternalError if there was an issue getting the last game
+   *                                from the database
+   */
+  public synchronized void ensureGameBoardLoaded() throws GameBoardInternalError {
+    if (!gameBoardLoaded) {
+      loadGameBoard();
+    }
+  }
+  
+  /**
+   * Returns whether the in-memory game board is currently considered in step
+   * with the database.
+   * 
+   * @return true if no reload from the database is needed
+   */
+  public synchronized boolean isGameBoardLoaded() {
+    return gameBoardLoaded;
+  }
 
   /**
    * Redirects user to a new game board and resets the game board to a new,
-   * cleared board without any players or moves. This includes
-   * deleting the existing game from the database.
+   * cleared board without any players or moves. The new game is saved under
+   * the id following the most recent game, and the previous game is kept in
+   * the database. The optional query
+   * parameters 'rows', 'columns' and 'k' choose a larger board and how many
+   * pieces in a row win on it; without them, the new game is standard
+   * tic-tac-toe.
    * 
    * @param ctx Context object for incoming request
    * @return Context object updated
+   * @throws BadRequestResponse if the board size asked for is not a number or
+   *                            not a board that can be played
    */
-  public Context serveNewGame(Context ctx) {
+  public synchronized Context serveNewGame(Context ctx) {
+    String rows = ctx.queryParam("rows");
+    String columns = ctx.queryParam("columns");
+    String winLength = ctx.queryParam("k");
+    if (rows != null || columns != null || winLength != null
+        || gameBoard instanceof MnkGameBoard) {
+      try {
+        gameBoard = gameBoard.withSize(parseSize(rows), parseSize(columns),
+            parseSize(winLength));
+      } catch (InvalidGameBoardConfigurationException e) {
+        throw new BadRequestResponse(e.getMessage());
+      }
+    }
+    if (gameBoard.isAsync()) {
+      return respondWhenSaved(ctx, gameBoard.resetGameboardAsync(), () -> {
+        ctx.redirect("/tictactoe.html");
+        return "";
+      }, "An issue was encountered clearing the database for the new game. "
+          + "Please try again.");
+    }
+    
     try {
       gameBoard.resetGameboard();
       
     } catch (GameBoardInternalError e) {
+      gameBoardLoaded = false;
       ctx.result("An issue was encountered clearing the database for the new game. "
           + "Please try again.");
       ctx.status(500);              // this would be an unhandled internal error
@@ -88,14 +183,16 @@ public class TicTacToeController {
   /**
    * Creates player one with their selected type (i.e., 'X' or 'O'). First player
    * to join game will always be player 1; however the game does not officially
-   * start until player 2 joins.
+   * start until player 2 joins. If the optional form parameter 'opponent' is
+   * 'ai', the server joins straight away as player 2 and answers each of
+   * player 1's moves with its own.
    * 
    * @param ctx Context object for incoming request
    * @return Updated Context object
    * @throws BadRequestResponse if there is already a Player 1 or if an invalid
-   *                            player type was provided
+   *                            player type or opponent was provided
    */
-  public Context startGame(Context ctx) {
+  public synchronized Context startGame(Context ctx) {
       
     // if there is already a player 1, we don't want to kick them out!
     if (gameBoard.getP1() != null) {
@@ -107,12 +204,29 @@ public class TicTacToeController {
     
     // Parse player 1 information then add player one to the game
     Player player1 = parsePlayerOneFromRequest(ctx);
+    boolean computerOpponent = parseComputerOpponentFromRequest(ctx);
+    gameBoard.setComputerOpponent(computerOpponent);
+    
+    if (gameBoard.isAsync()) {
+      CompletableFuture<Void> saved = gameBoard.saveP1Async(player1);
+      if (computerOpponent) {
+        saved = saved.thenCombine(gameBoard.autoSetP2Async(), (p1, p2) -> null);
+      }
+      String result = getGameBoardAsJson();
+      logger.info("Added first player to the game: " + player1);
+      return respondWhenSaved(ctx, saved, () -> result, "Could not create Player 1; it's "
+          + "possible that you never started a game. Please go to /newgame first and try again.");
+    }
     
     try {
       gameBoard.saveP1(player1);
+      if (computerOpponent) {
+        gameBoard.autoSetP2();
+      }
       ctx.result(getGameBoardAsJson());
       
     } catch (GameBoardInternalError e) {
+      gameBoardLoaded = false;
       ctx.result("Could not create Player 1; it's possible that you never started a game. "
           + "Please go to /newgame first and try again.");
       ctx.status(500);
@@ -133,7 +247,7 @@ public class TicTacToeController {
    * @return Updated Context object
    * @throws BadRequestResponse if Player 2 already exists for this game
    */
-  public Context addSecondPlayer(Context ctx) {
+  public synchronized Context addSecondPlayer(Context ctx) {
     
     logger.info(getGameBoardAsJson());
     
@@ -154,11 +268,19 @@ public class TicTacToeController {
       return ctx;
     }
     
+    if (gameBoard.isAsync()) {
+      return respondWhenSaved(ctx, gameBoard.autoSetP2Async(), () -> {
+        ctx.redirect("/tictactoe.html?p=2");
+        return "";
+      }, "Could not add Player 2 due to a game board error; please try again!");
+    }
+    
     try {
       // update player in memory + db
       gameBoard.autoSetP2();
       
     } catch (GameBoardInternalError e) {
+      gameBoardLoaded = false;
       ctx.result("Could not add Player 2 due to a game board error; please try again!");
       ctx.status(500); // this would be an un-handled internal error
       return ctx;
@@ -172,12 +294,14 @@ public class TicTacToeController {
   /**
    * Handles the move submitted by a user, parsing move from Context object and
    * sending move to the game board. Outcome of the move is returned in Context
-   * result as JSON message.
+   * result as JSON message. When the server plays player 2, its reply is played
+   * and saved before the request is answered, and shows in the game board
+   * broadcast afterwards.
    * 
    * @param ctx Context object from incoming request
    * @return Updated Context object
    */
-  public Context processPlayerMove(Context ctx) {
+  public synchronized Context processPlayerMove(Context ctx) {
     
     Move move = parseMoveFromRequest(ctx);
     logger.info("Handling move submitted: " + move);
@@ -185,15 +309,30 @@ public class TicTacToeController {
     try {
       Message message = gameBoard.processPlayerMove(move);
       logger.info("Outcome of processed move: " + message);
+      
+      if (gameBoard.isAsync()) {
+        String result = gson.toJson(message);
+        CompletableFuture<Void> saved = gameBoard.commitMoveAsync();
+        if (playComputerMove()) {
+          saved = saved.thenCombine(gameBoard.commitMoveAsync(), (move1, move2) -> null);
+        }
+        return respondWhenSaved(ctx, saved, () -> result,
+            "Move on game board could not be processed due to a database issue; "
+            + "please try again!");
+      }
       ctx.result(gson.toJson(message));
       
       ctx.status(200); 
       
       // only commit the move after all else is OK and we're ready to respond to user
       gameBoard.commitMove();
+      if (playComputerMove()) {
+        gameBoard.commitMove();
+      }
       return ctx;
       
     } catch (GameBoardInternalError e) {
+      gameBoardLoaded = false;
       ctx.result("Move on game board could not be processed due to a database issue; " 
           + "please try again!");
       ctx.status(500); // this would be an un-handled internal error
@@ -201,6 +340,121 @@ public class TicTacToeController {
     }
   }
   
+  /**
+   * Suggests a move for the player whose turn it is, as the computer player
+   * would choose it. On the standard board, the hint also tells how the game
+   * ends from here if both players play perfectly. The hint is returned in
+   * Context result as JSON message.
+   * 
+   * @param ctx Context object from incoming request
+   * @return Updated Context object
+   */
+  public synchronized Context serveHint(Context ctx) {
+    Message message;
+    if (!gameBoard.isGameStarted()) {
+      message = new Message(false, MessageStatus.MISSING_PLAYER,
+          "Game cannot start until there are two players on the game board!");
+      
+    } else if (gameBoard.getWinner() != 0 || gameBoard.isDraw()) {
+      message = new Message(false, MessageStatus.GAME_ALREADY_OVER, "Game is already over!");
+      
+    } else {
+      Move move = NegamaxEngine.forBoard(gameBoard).chooseMove(gameBoard);
+      int player = move.getPlayerId();
+      String hint = "Player " + player + " could play (" + move.getMoveX() + ", "
+          + move.getMoveY() + ").";
+      
+      PositionTable.Position position = PositionTable.standard().lookup(gameBoard);
+      if (position != null && position.getOutcome() == PositionTable.WIN) {
+        hint += " With perfect play, player " + player + " wins.";
+      } else if (position != null && position.getOutcome() == PositionTable.LOSS) {
+        hint += " With perfect play, player " + (3 - player) + " wins.";
+      } else if (position != null) {
+        hint += " With perfect play, nobody wins.";
+      }
+      message = new Message(true, MessageStatus.SUCCESS, hint);
+    }
+    
+    ctx.result(gson.toJson(message));
+    ctx.status(200);
+    return ctx;
+  }
+  
+  /**
+   * Plays player 2's move if the server plays player 2 and it is their turn,
+   * choosing it with the NegamaxEngine for the board's size. Like a move
+   * submitted by a user, the move is saved but not committed.
+   * 
+   * @return true if a move was played
+   * @throws GameBoardInternalError if there is an issue saving the move to the
+   *                                database
+   */
+  private boolean playComputerMove() throws GameBoardInternalError {
+    if (!gameBoard.hasComputerOpponent() || gameBoard.getTurn() != 2) {
+      return false;
+    }
+    Move move = NegamaxEngine.forBoard(gameBoard).chooseMove(gameBoard);
+    if (move == null) {
+      return false;
+    }
+    Message message = gameBoard.processPlayerMove(move);
+    logger.info("Outcome of computer player's move " + move + ": " + message);
+    return true;
+  }
+  
+  /**
+   * Answers a request once the game board change it made has been saved by the
+   * asynchronous database service, leaving the request thread free in the
+   * meantime. If saving failed, the game board is marked for reloading and the
+   * request is answered with a 500 error.
+   * 
+   * @param ctx     Context object from incoming request
+   * @param saved   future completed once the change is saved
+   * @param success sets the response once the change is saved and returns its
+   *                body
+   * @param failure response body if the change could not be saved
+   * @return Context object with its result set to complete with the response
+   */
+  private Context respondWhenSaved(Context ctx, CompletableFuture<Void> saved,
+      Supplier<String> success, String failure) {
+    ctx.status(200);
+    ctx.result(saved.handle((done, e) -> {
+      if (e == null) {
+        return success.get();
+      }
+      markGameBoardStale();
+      ctx.status(500);        // this would be an un-handled internal error
+      return failure;
+    }));
+    return ctx;
+  }
+  
+  /**
+   * Clears the in-memory game board if its game is one of the games that were
+   * just expired from the database, so that it no longer shows a game that is
+   * gone.
+   * 
+   * @param gameIds IDs of the games that were expired
+   * @return true if the game board was cleared
+   */
+  public synchronized boolean expireGameBoard(Collection<Integer> gameIds) {
+    if (!gameIds.contains(gameBoard.getGameId())) {
+      return false;
+    }
+    gameBoard.expire();
+    logger.info("Game " + gameBoard.getGameId() + " expired after being idle.");
+    return true;
+  }
+  
+  /**
+   * Marks the in-memory game board as possibly out of step with the database, so
+   * that it is reloaded before the next request. This does not take the
+   * controller's lock, so that an I/O thread never waits for a request thread.
+   */
+  private void markGameBoardStale() {
+    gameBoardLoaded = false;
+  }
+
   /**
    * Helper function to facilitate the conversion of the game board into JSON.
    * Uses Gson for object->JSON mapping instead of default Jackson and Javalin
@@ -209,7 +463,7 @@ public class TicTacToeController {
    * 
    * @return JSON String representing state of game board
    */
-  public String getGameBoardAsJson() {
+  public synchronized String getGameBoardAsJson() {
     return gson.toJson(gameBoard);
   }
   
@@ -218,7 +472,7 @@ public class TicTacToeController {
    * 
    * @return instance of GameBoard class
    */
-  public GameBoard getGameBoard() {
+  public synchronized GameBoard getGameBoard() {
     return gameBoard;
   }
 
@@ -230,10 +484,28 @@ public class TicTacToeController {
    * 
    * @param gameBoard instance of GameBoard class
    */
-  public void setGameBoard(GameBoard gameBoard) {
+  public synchronized void setGameBoard(GameBoard gameBoard) {
     this.gameBoard = gameBoard;
   }
   
+  /**
+   * Parses one of the optional board size parameters of a new game request.
+   * 
+   * @param value value of the parameter, or null if it was not given
+   * @return the size; 3, as on a standard board, if the parameter was not given
+   * @throws BadRequestResponse if the value is not an integer
+   */
+  private static int parseSize(String value) {
+    if (value == null) {
+      return GameBoard.getRows();
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new BadRequestResponse("Board sizes must be integers; got '" + value + "'.");
+    }
+  }
+  
   /**
    * Extracts the "type'"that the first player selected then creates the player.
    * 
@@ -258,6 +530,26 @@ public class TicTacToeController {
     return new Player(submittedType.charAt(0), 1);
   }
 
+  /**
+   * Extracts the optional "opponent" that the first player selected.
+   * 
+   * @param ctx Context object
+   * @return true if the server should play player 2
+   * @throws BadRequestResponse if form parameter 'opponent' is neither 'ai' nor
+   *                            'human'
+   */
+  private boolean parseComputerOpponentFromRequest(Context ctx) {
+    String opponent = ctx.formParam("opponent");
+    if (opponent == null || opponent.equals("human")) {
+      return false;
+    }
+    if (opponent.equals("ai")) {
+      return true;
+    }
+    throw new BadRequestResponse("Opponent should be either 'ai' or 'human'; cannot accept '"
+        + opponent + "'.");
+  }
+
   /**
    * Extracts submitted information from context and returns a new Move() object
    * representing the requested move from the user. To protect against invalid
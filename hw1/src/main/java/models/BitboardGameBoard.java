@@ -0,0 +1,274 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Tic-tac-toe board that keeps each player's pieces as a bitmask, one bit per
+ * cell (bit row * 3 + column), instead of as a grid of characters. Checking for
+ * a win compares the mover's mask with the precomputed masks of the lines
+ * through the cell played, and checking for a full or empty board compares the
+ * union of both masks with a constant, so none of them walk the board.
+ *
+ * <p>Unlike GameBoard, this board does not save anything: moves are played in
+ * memory only. It is meant for code that plays or replays many games without a
+ * database, such as bots playing each other.
+ */
+public class BitboardGameBoard implements GenericGameBoard {
+
+  static final int ROWS = 3;
+
+  static final int COLUMNS = 3;
+
+  static final int FULL = (1 << ROWS * COLUMNS) - 1;
+
+  // the three rows, three columns and two diagonals of the board
+  static final int[] WIN_MASKS = {
+      0b000000111, 0b000111000, 0b111000000,
+      0b001001001, 0b010010010, 0b100100100,
+      0b100010001, 0b001010100 };
+
+  // for each cell, the masks of WIN_MASKS that go through it
+  private static final int[][] WIN_MASKS_BY_CELL = new int[ROWS * COLUMNS][];
+
+  static {
+    for (int cell = 0; cell < ROWS * COLUMNS; cell++) {
+      int count = 0;
+      int[] through = new int[WIN_MASKS.length];
+      for (int mask : WIN_MASKS) {
+        if ((mask & 1 << cell) != 0) {
+          through[count++] = mask;
+        }
+      }
+      WIN_MASKS_BY_CELL[cell] = Arrays.copyOf(through, count);
+    }
+  }
+
+  private Player p1;
+
+  private Player p2;
+
+  private boolean gameStarted;
+
+  private int turn;
+
+  // cells taken by 'X' and by 'O'
+  private int xmask;
+
+  private int omask;
+
+  private int winner;
+
+  private boolean isDraw;
+
+  /**
+   * Constructor for an empty board on which two players have started a game,
+   * player 1 having the first turn.
+   *
+   * @param p1 instance of Player object, representing player 1
+   * @param p2 instance of Player object, representing player 2
+   * @throws InvalidGameBoardConfigurationException if the players are not
+   *                                                players 1 and 2 of
+   *                                                different types
+   */
+  public BitboardGameBoard(Player p1, Player p2) {
+    if (p1.getId() != 1 || p2.getId() != 2 || p1.getType() == p2.getType()) {
+      throw new InvalidGameBoardConfigurationException("A game needs players 1 and 2 of "
+          + "different types.");
+    }
+    this.p1 = p1;
+    this.p2 = p2;
+    this.gameStarted = true;
+    this.turn = 1;
+  }
+
+  /**
+   * Constructor for a board in the same state as another game board.
+   *
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @throws InvalidGameBoardConfigurationException if the board is not 3x3 or
+   *                                                holds pieces other than 'X'
+   *                                                and 'O'
+   */
+  public BitboardGameBoard(GenericGameBoard gameboard) {
+    char[][] board = gameboard.getBoardState();
+    if (board.length != ROWS || board[0].length != COLUMNS) {
+      throw new InvalidGameBoardConfigurationException("Board must be "
+          + ROWS + "x" + COLUMNS + " in size.");
+    }
+    for (int i = 0; i < ROWS; i++) {
+      for (int j = 0; j < COLUMNS; j++) {
+        if (board[i][j] == 'X') {
+          xmask |= bit(i, j);
+        } else if (board[i][j] == 'O') {
+          omask |= bit(i, j);
+        } else if (board[i][j] != 0) {
+          throw new InvalidGameBoardConfigurationException("Board submitted contained "
+              + "unexpected pieces; only 'X' and 'O' expected.");
+        }
+      }
+    }
+    this.p1 = gameboard.getP1();
+    this.p2 = gameboard.getP2();
+    this.gameStarted = gameboard.isGameStarted();
+    this.turn = gameboard.getTurn();
+    this.winner = gameboard.getWinner();
+    this.isDraw = gameboard.isDraw();
+  }
+
+  /**
+   * Determines whether or not the game board is currently empty.
+   *
+   * @return true if no moves have been made yet, else false
+   */
+  public boolean isEmpty() {
+    return (xmask | omask) == 0;
+  }
+
+  /**
+   * Determines whether or not the game board is currently full.
+   *
+   * @return true if the game board is full, else false
+   */
+  public boolean isFull() {
+    return (xmask | omask) == FULL;
+  }
+
+  /**
+   * Returns the number of pieces on the board.
+   *
+   * @return number of moves played
+   */
+  public int getMoveCount() {
+    return Integer.bitCount(xmask | omask);
+  }
+
+  /**
+   * Handles a move by the same rules as GameBoard.processPlayerMove(), playing
+   * it only if it is valid, but without saving it anywhere.
+   *
+   * @param move instance of player Move
+   * @return Message() object, reflecting outcome of Move
+   */
+  public Message processPlayerMove(Move move) {
+    Message message = checkMove(move);
+    if (message != null) {
+      return message;
+    }
+
+    playMove(move);
+    if (winner != 0) {
+      return new Message(true, MessageStatus.GAME_OVER_WINNER,
+          "Player " + winner + " is the winner!");
+    }
+    if (isFull()) {
+      isDraw = true;
+      return new Message(true, MessageStatus.GAME_OVER_NO_WINNER, "Game Over! Nobody wins.");
+    }
+    return new Message(true, MessageStatus.SUCCESS, "Player " + move.getPlayerId()
+        + " made move at (" + move.getMoveX() + ", " + move.getMoveY() + ").");
+  }
+
+  /**
+   * Is the move provided to a position that exists on the board and is
+   * currently unoccupied?
+   *
+   * @param move Instance of Move object
+   * @return true if the Move is valid, else false
+   */
+  public boolean isValidMove(Move move) {
+    int x = move.getMoveX();
+    int y = move.getMoveY();
+    if (x >= ROWS || y >= COLUMNS || x < 0 || y < 0) {
+      return false;
+    }
+    return ((xmask | omask) & bit(x, y)) == 0;
+  }
+
+  /**
+   * Plays the Move submitted, setting the winner if it completes a line, and
+   * passes the turn to the other player.
+   *
+   * @param move Instance of Move object representing player and position to play
+   */
+  public void playMove(Move move) {
+    int x = move.getMoveX();
+    int y = move.getMoveY();
+    char type = move.getPlayer().getType();
+
+    if (type == 'X') {
+      xmask |= bit(x, y);
+    } else {
+      omask |= bit(x, y);
+    }
+    if (isWinningMove(x, y, type)) {
+      winner = move.getPlayerId();
+    }
+    turn = move.getPlayerId() == 1 ? 2 : 1;
+  }
+
+  /**
+   * Determines whether the pieces of a type complete any line through a cell.
+   *
+   * @param x    row of the cell
+   * @param y    column of the cell
+   * @param type Character, either 'X' or 'O'
+   * @return true if a row, column or diagonal through the cell is all of type
+   */
+  public boolean isWinningMove(int x, int y, char type) {
+    int pieces = type == 'X' ? xmask : omask;
+    for (int mask : WIN_MASKS_BY_CELL[x * COLUMNS + y]) {
+      if ((pieces & mask) == mask) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int getWinner() {
+    return winner;
+  }
+
+  public boolean isDraw() {
+    return isDraw;
+  }
+
+  public boolean isGameStarted() {
+    return gameStarted;
+  }
+
+  public int getTurn() {
+    return turn;
+  }
+
+  public Player getP1() {
+    return p1;
+  }
+
+  public Player getP2() {
+    return p2;
+  }
+
+  /**
+   * Returns the state of the board as a new grid of characters, as GameBoard
+   * keeps it.
+   *
+   * @return A two-dimensional array of characters representing board state
+   */
+  public char[][] getBoardState() {
+    char[][] board = new char[ROWS][COLUMNS];
+    for (int i = 0; i < ROWS; i++) {
+      for (int j = 0; j < COLUMNS; j++) {
+        if ((xmask & bit(i, j)) != 0) {
+          board[i][j] = 'X';
+        } else if ((omask & bit(i, j)) != 0) {
+          board[i][j] = 'O';
+        }
+      }
+    }
+    return board;
+  }
+
+  private static int bit(int x, int y) {
+    return 1 << x * COLUMNS + y;
+  }
+}
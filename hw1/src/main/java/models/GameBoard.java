@@ -1,9 +1,14 @@
 package models;
 
 import com.google.gson.annotations.Expose;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import util.AsyncTicTacToeDbService;
 import util.DbServiceException;
+import util.PendingWrite;
 import util.TicTacToeDbService;
 import util.TicTacToeSqliteDbService;
 
@@ -34,6 +39,18 @@ public class GameBoard implements GenericGameBoard {
   
   /* -- end fields to serialize to JSON from object here -- */
 
+  // number of pieces on countedState, kept as moves are played and the board is
+  // set, so that checking for an empty or full board does not scan it
+  private int moveCount;
+  
+  // the board state moveCount was counted on; a board read from JSON has its
+  // state set without setBoardState(), and is counted on first use instead
+  private char[][] countedState;
+
+  // true while the server plays player 2; saved with the game state so that the
+  // server keeps answering moves in a game restored after a restart
+  private boolean computerOpponent;
+
   // a standard tic-tac-toe board has 3 rows and 3 columns  
   static final int columns = 3;
 
@@ -41,8 +58,16 @@ public class GameBoard implements GenericGameBoard {
   
   private TicTacToeDbService dbService;
   
-  // currently there is only game "1" until game supports more than 1 game at a time
-  // hence, the "current" game will always be the game with gameId = 1.
+  // when set, changes are handed to this service's I/O threads instead of being
+  // saved with dbService on the calling thread
+  private AsyncTicTacToeDbService asyncDbService;
+  
+  // writes of the move played but not yet committed, when saving asynchronously
+  private List<PendingWrite> pendingWrites = new ArrayList<>();
+  
+  // the game this board saves its changes to; each reset starts a new game
+  // under the id following the most recent game, and the earlier games stay in
+  // the database as history
   private int gameId = 1; 
   
   // the accepted player types for this board
@@ -58,11 +83,23 @@ public class GameBoard implements GenericGameBoard {
    *                  using the empty argument constructor.
    */
   public GameBoard(TicTacToeDbService dbService) {
+    this(rows, columns, dbService);
+  }
+  
+  /**
+   * Constructor for an empty game board of any size, for boards other than the
+   * standard 3x3 one.
+   * 
+   * @param rowCount    number of rows of the board
+   * @param columnCount number of columns of the board
+   * @param dbService   instance of TicTacToeDbService to use
+   */
+  protected GameBoard(int rowCount, int columnCount, TicTacToeDbService dbService) {
     this.p1 = null;
     this.p2 = null;
     this.gameStarted = false; // game cannot start until there are two players
     this.turn = 0;            // no ones turn yet
-    this.boardState = new char[columns][rows];  // contents are 0 or '\u0000' by default
+    this.boardState = new char[rowCount][columnCount];  // contents are 0 or '\u0000' by default
     this.winner = 0;          // no one is a winner yet
     this.isDraw = false;
     this.dbService = dbService;
@@ -97,6 +134,30 @@ public class GameBoard implements GenericGameBoard {
    */
   public GameBoard(Player p1, Player p2, boolean gameStarted, int turn, char[][] state, int winner, 
       boolean isDraw, TicTacToeDbService dbService) {
+    this(rows, columns, p1, p2, gameStarted, turn, state, winner, isDraw, dbService);
+  }
+
+  /**
+   * Constructor for a game board of any size in a given configuration, for
+   * boards other than the standard 3x3 one. Like the constructor above, it
+   * does not check for invalid configurations.
+   * 
+   * @param rowCount    number of rows of the board
+   * @param columnCount number of columns of the board
+   * @param p1          instance of Player object, representing player 1
+   * @param p2          instance of Player object, representing player 2
+   * @param gameStarted boolean, for if game has started
+   * @param turn        integer, representing the ID of the player who has the
+   *                    next turn (1 or 2)
+   * @param state       two-dimensional array of characters representing game
+   *                    board state, rowCount x columnCount in size
+   * @param winner      integer representing player ID of winner; 0 if no winner
+   * @param isDraw      boolean, for if the game is already a draw
+   * @param dbService   instance of TicTacToeDbService to use
+   */
+  protected GameBoard(int rowCount, int columnCount, Player p1, Player p2, boolean gameStarted,
+      int turn, char[][] state, int winner, boolean isDraw, TicTacToeDbService dbService) {
+    this.boardState = new char[rowCount][columnCount];
     this.p1 = p1;
     this.p2 = p2;
     this.gameStarted = gameStarted;
@@ -108,33 +169,31 @@ public class GameBoard implements GenericGameBoard {
   }
 
   /**
-   * Reset game board to the original and deletes previous instance in database.
+   * Reset game board to the original and starts a new game in the database,
+   * with the ID following the most recent game. The previous game is left in
+   * the database, so that games already played, or loaded with GameImporter,
+   * are kept as history.
    * 
    * @throws GameBoardInternalError thrown when an issue occurs reseting the game
    *                                in the database
    */
   public void resetGameboard() throws GameBoardInternalError {
+    if (asyncDbService != null) {
+      await(resetGameboardAsync());
+      return;
+    }
     
-    // reset all instance variables
-    this.p1 = null;
-    this.p2 = null;
-    this.gameStarted = false;
-    this.turn = 0;
-    this.boardState = new char[columns][rows];  
-    this.winner = 0;        
-    this.isDraw = false;
+    clearBoard();
     
     try {
-      // delete the old game content from the database
-      // this has to happen in two steps because otherwise the database file has a
-      // lock on the row for gameId = 1 and unfortunately, for this iteration of the
-      // game, the gameId is always 1.
       dbService.connect();
-      dbService.deleteGame(gameId, true);
+      int newGameId = dbService.findMostRecentGameId() + 1;
   
-      // create the new game in db
-      dbService.createNewGame(gameId);
+      // create the new game in db, with this board's size
+      dbService.createNewGame(newGameId);
+      dbService.saveGameState(this, newGameId);
       dbService.commit();
+      gameId = newGameId;
     } catch (DbServiceException e) {
       e.printStackTrace();
     
@@ -147,6 +206,66 @@ public class GameBoard implements GenericGameBoard {
     }
   }
   
+  /**
+   * Resets the game board to the original, like resetGameboard(), but returns
+   * straight away. The ID of the new game is looked up by the asynchronous
+   * database service once the commits already handed over for the previous
+   * game have completed, and the new game is then saved under it. The board is
+   * only cleared and moved to the new game once that has succeeded; if it
+   * fails, the board is left on the previous game.
+   * 
+   * @return future completed once the new game is saved and the board reset,
+   *         or completed exceptionally with a GameBoardInternalError if that
+   *         failed
+   */
+  public CompletableFuture<Void> resetGameboardAsync() {
+    String failure = "Reset gameboard operation failed.";
+    GameBoard state = copyState();
+    state.clearBoard();
+    
+    return asyncDbService.findMostRecentGameId(gameId).handle((mostRecent, e) -> {
+      if (e != null) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        System.err.println(cause.getClass().getName() + ": " + cause.getMessage());
+        throw new CompletionException(new GameBoardInternalError(failure));
+      }
+      return mostRecent + 1;
+    }).thenCompose(id -> {
+      state.setGameId(id);
+      List<PendingWrite> writes = new ArrayList<>();
+      writes.add(db -> db.createNewGame(id));
+      writes.add(db -> db.saveGameState(state, id));
+      return persist(id, writes, failure).thenRun(() -> {
+        clearBoard();
+        gameId = id;
+      });
+    });
+  }
+  
+  /**
+   * Clears the board after its game has been expired from the database for
+   * being idle too long. Unlike resetGameboard(), nothing is written to the
+   * database; a new game has to be started before the board can be played on.
+   */
+  public void expire() {
+    clearBoard();
+  }
+  
+  /**
+   * Resets all instance variables to those of an empty board of the same size.
+   */
+  protected void clearBoard() {
+    this.p1 = null;
+    this.p2 = null;
+    this.gameStarted = false;
+    this.turn = 0;
+    this.boardState = new char[getRowCount()][getColumnCount()];
+    this.winner = 0;        
+    this.isDraw = false;
+    this.computerOpponent = false;
+    this.pendingWrites = new ArrayList<>();
+  }
+  
   /**
    * Loads the most recent version of the game board from the database. If there
    * is no game board yet, then the database returns a new game board.
@@ -155,9 +274,17 @@ public class GameBoard implements GenericGameBoard {
    */
   public GameBoard getMostRecentDbState() throws GameBoardInternalError {
     try {
+      if (asyncDbService != null) {
+        return (GameBoard) asyncDbService.restoreMostRecentGameBoard().join();
+      }
       GameBoard gb = (GameBoard) dbService.restoreMostRecentGameBoard();
       return gb;
 
+    } catch (CompletionException e) {
+      System.err.println(e.getCause().getClass().getName() + ": " + e.getCause().getMessage());
+      throw new GameBoardInternalError("Error encountered getting gameboard's "
+          + "most recent state.");
+      
     } catch (DbServiceException dbse) {
       System.err.println(dbse.getClass().getName() + ": " + dbse.getMessage());
       throw new GameBoardInternalError("Error encountered getting gameboard's "
@@ -172,14 +299,7 @@ public class GameBoard implements GenericGameBoard {
    * @return true if game board is empty (no moves made yet), else false
    */
   public boolean isEmpty() {
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < columns; j++) {
-        if (this.boardState[i][j] != 0) {
-          return false;
-        }
-      }
-    }
-    return true;
+    return getMoveCount() == 0;
   }
   
   /**
@@ -188,14 +308,7 @@ public class GameBoard implements GenericGameBoard {
    * @return true if the game board is full, else false
    */
   public boolean isFull() {
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < columns; j++) {
-        if (this.boardState[i][j] == 0) {
-          return false;
-        }
-      }
-    }
-    return true;
+    return getMoveCount() == getRowCount() * getColumnCount();
   }
   
   /**
@@ -211,35 +324,9 @@ public class GameBoard implements GenericGameBoard {
    *                                the database
    */
   public Message processPlayerMove(Move move) throws GameBoardInternalError {
-    Message message;
+    Message message = checkMove(move);
     
-    /* ---- Need to check several states to make sure move is valid ---- */
-    if (!isGameStarted()) {
-      // 1. If there aren't two players, game has not started and cannot make move
-      message = new Message(false, MessageStatus.MISSING_PLAYER, 
-          "Game cannot start until there are two players on the game board!");
-      
-    } else if (isEmpty() && move.getPlayerId() == 2) {
-      // 2. First player should always be the one to make the first move
-      message = new Message(false, MessageStatus.INVALID_ORDER_OF_PLAY, 
-          "Player 1 makes the first move on an empty board!");
-      
-    } else if (getWinner() != 0) {
-      // 3. If the board was already won, then cannot make another move
-      message = new Message(false, MessageStatus.GAME_ALREADY_OVER, 
-          "Game is already over! Player " + getWinner() + " won!");
-
-    } else if (move.getPlayerId() != getTurn()) {
-      // 4. If it's not the player's turn, cannot make move
-      message = new Message(false, MessageStatus.OTHER_PLAYERS_TURN, 
-          "It is not currently your turn. Player " + getTurn() + " gets to make the next move.");
-      
-    } else if (!isValidMove(move)) {
-      // 5. If the submitted move is not available, cannot make move
-      message = new Message(false, MessageStatus.POSITION_NOT_ALLOWED, 
-          "You cannot make a move at (" + move.getMoveX() + ", " + move.getMoveY() + "). "
-              + "Please choose an unoccupied and valid position on the game board!");
-    } else {
+    if (message == null) {
       // 6. Move is valid and should be played
       playMove(move);
       
@@ -272,6 +359,10 @@ public class GameBoard implements GenericGameBoard {
    * @throws GameBoardInternalError if any issue occurred committing the transaction.
    */
   public void commitMove() throws GameBoardInternalError {
+    if (asyncDbService != null) {
+      await(commitMoveAsync());
+      return;
+    }
 
     try {
       dbService.commit();
@@ -287,6 +378,26 @@ public class GameBoard implements GenericGameBoard {
     }
   }
   
+  /**
+   * Commits the move saved by `processPlayerMove`, like commitMove(), but
+   * returns as soon as the move has been handed to the asynchronous database
+   * service.
+   * 
+   * @return future completed once the move is committed, or completed
+   *         exceptionally with a GameBoardInternalError if that failed
+   */
+  public CompletableFuture<Void> commitMoveAsync() {
+    List<PendingWrite> writes = pendingWrites;
+    pendingWrites = new ArrayList<>();
+    
+    // an invalid move saves nothing
+    if (writes.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return persist(writes, "Player move could not be saved to the "
+        + "database due to a database error.");
+  }
+  
   /**
    * Is the move provided a valid move (i.e., to a position that is currently
    * unoccupied and to a position that exists on the board)?
@@ -298,7 +409,7 @@ public class GameBoard implements GenericGameBoard {
     int x = move.getMoveX();
     int y = move.getMoveY();
     
-    if (x >= rows || y >= columns || x < 0 || y < 0) {
+    if (x >= getRowCount() || y >= getColumnCount() || x < 0 || y < 0) {
       // user trying to play position out of range
       return false;
     }
@@ -322,7 +433,9 @@ public class GameBoard implements GenericGameBoard {
     int y = move.getMoveY();
     char type = move.getPlayer().getType();
     
+    int count = getMoveCount();
     this.boardState[x][y] = type;
+    moveCount = count + 1;
     
     if (isWinningMove(x, y, type)) {
       this.setWinner(move.getPlayer().getId());
@@ -339,6 +452,14 @@ public class GameBoard implements GenericGameBoard {
    *                                database
    */
   private void saveMove(Move move) throws GameBoardInternalError {
+    if (asyncDbService != null) {
+      int id = gameId;
+      GameBoard state = copyState();
+      pendingWrites.add(db -> db.saveValidMove(move, id));
+      pendingWrites.add(db -> db.saveGameState(state, id));
+      return;
+    }
+    
     try {
       dbService.connect();
       dbService.saveValidMove(move, gameId);
@@ -384,7 +505,7 @@ public class GameBoard implements GenericGameBoard {
   private boolean winningRow(int row, char type) {
     int column = 0;
     
-    while (column < columns) {
+    while (column < getColumnCount()) {
       if (this.boardState[row][column] != type) {
         return false;
       }
@@ -408,7 +529,7 @@ public class GameBoard implements GenericGameBoard {
   private boolean winningColumn(int column, char type) {
     int row = 0;
     
-    while (row < rows) {
+    while (row < getRowCount()) {
       if (this.boardState[row][column] != type) {
         return false;
       }
@@ -434,7 +555,7 @@ public class GameBoard implements GenericGameBoard {
     int c = 0;
     
     // check left diagonal i.e., \
-    while (c < columns && r < rows) {
+    while (c < getColumnCount() && r < getRowCount()) {
       if (this.boardState[r][c] != type) {
         r = 0; // marker that test failed
         break;
@@ -448,8 +569,8 @@ public class GameBoard implements GenericGameBoard {
     }
     
     // now check right diagonal, i.e., /
-    c = columns - 1;
-    while (c >= 0 && r < rows) {
+    c = getColumnCount() - 1;
+    while (c >= 0 && r < getRowCount()) {
       if (this.boardState[r][c] != type) {
         r = 0; // marker that test failed
         break;
@@ -481,6 +602,11 @@ public class GameBoard implements GenericGameBoard {
    *                                database
    */
   public void saveP1(Player p1) throws GameBoardInternalError {
+    if (asyncDbService != null) {
+      await(saveP1Async(p1));
+      return;
+    }
+    
     setP1(p1);
     this.setTurn(1);
 
@@ -503,6 +629,27 @@ public class GameBoard implements GenericGameBoard {
     }
   }
   
+  /**
+   * Sets Player 1 on the game board, like saveP1(), but returns as soon as the
+   * player has been handed to the asynchronous database service.
+   * 
+   * @param p1 instance of Player object
+   * @return future completed once player 1 is saved, or completed exceptionally
+   *         with a GameBoardInternalError if that failed
+   */
+  public CompletableFuture<Void> saveP1Async(Player p1) {
+    setP1(p1);
+    this.setTurn(1);
+    
+    int id = gameId;
+    GameBoard state = copyState();
+    List<PendingWrite> writes = new ArrayList<>();
+    writes.add(db -> db.savePlayer(p1, id));
+    writes.add(db -> db.saveGameState(state, id));
+    return persist(writes, "Error was encountered trying to save "
+        + " player 1 to the database.");
+  }
+  
   /**
    * Sets Player 1 on the game board.
    * 
@@ -530,16 +677,12 @@ public class GameBoard implements GenericGameBoard {
    * @throws GameBoardInternalError if there was an error updating the database
    */
   public void autoSetP2() throws GameBoardInternalError {
-    
-    if (getP1() == null) {
-      throw new InvalidGameBoardConfigurationException("Cannot autoset player 2 until "
-          + "player 1 also exists.");
+    if (asyncDbService != null) {
+      await(autoSetP2Async());
+      return;
     }
     
-    char playerType = getP1().getType() == 'X' ? 'O' : 'X';
-    Player p2 = new Player(playerType, 2);
-    setP2(p2);
-    setGameStarted(true);
+    assignP2();
     
     try {
       // save information to database
@@ -561,6 +704,43 @@ public class GameBoard implements GenericGameBoard {
     }
   }
   
+  /**
+   * Auto-sets player 2 like autoSetP2(), but returns as soon as the player has
+   * been handed to the asynchronous database service.
+   * 
+   * @return future completed once player 2 is saved, or completed exceptionally
+   *         with a GameBoardInternalError if that failed
+   */
+  public CompletableFuture<Void> autoSetP2Async() {
+    assignP2();
+    
+    int id = gameId;
+    Player p2 = getP2();
+    GameBoard state = copyState();
+    List<PendingWrite> writes = new ArrayList<>();
+    writes.add(db -> db.savePlayer(p2, id));
+    writes.add(db -> db.saveGameState(state, id));
+    return persist(writes, "Error was encountered trying to save "
+        + " player 2 to the database.");
+  }
+  
+  /**
+   * Sets player 2 to the type player 1 did not take and starts the game.
+   * 
+   * @throws InvalidGameBoardConfigurationException if there is no player 1 yet
+   */
+  private void assignP2() {
+    if (getP1() == null) {
+      throw new InvalidGameBoardConfigurationException("Cannot autoset player 2 until "
+          + "player 1 also exists.");
+    }
+    
+    char playerType = getP1().getType() == 'X' ? 'O' : 'X';
+    Player p2 = new Player(playerType, 2);
+    setP2(p2);
+    setGameStarted(true);
+  }
+  
   /**
    * Set player 2 manually, with the risk of accidentally trying to assign a
    * player whose type has already been taken (i.e., when Player 1 has already
@@ -637,16 +817,27 @@ public class GameBoard implements GenericGameBoard {
     this.turn = turn;
   }
   
+  /**
+   * Returns what is on one cell of the board, without copying the board.
+   * 
+   * @param x row of the cell
+   * @param y column of the cell
+   * @return 'X', 'O', or 0 if the cell is empty
+   */
+  protected char cellAt(int x, int y) {
+    return boardState[x][y];
+  }
+  
   /**
    * Returns the state of the board, as a new copy.
    * 
    * @return A two-dimensional array of characters representing board state
    */
   public char[][] getBoardState() {
-    char[][] boardCopy = new char[rows][columns];
+    char[][] boardCopy = new char[getRowCount()][getColumnCount()];
     
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < columns; j++) {
+    for (int i = 0; i < getRowCount(); i++) {
+      for (int j = 0; j < getColumnCount(); j++) {
         boardCopy[i][j] = this.boardState[i][j];
       }
     }
@@ -662,9 +853,9 @@ public class GameBoard implements GenericGameBoard {
    */
   public void setBoardState(char[][] newBoardState) {
   
-    if (newBoardState.length != rows || newBoardState[0].length != columns) {
+    if (newBoardState.length != getRowCount() || newBoardState[0].length != getColumnCount()) {
       throw new InvalidGameBoardConfigurationException("Board must be " 
-          + rows + "x" + columns + " in size.");
+          + getRowCount() + "x" + getColumnCount() + " in size.");
     }
     
     for (char[] row : newBoardState) {
@@ -677,16 +868,36 @@ public class GameBoard implements GenericGameBoard {
     }
     
     // make a copy of the submitted board state
-    char[][] boardCopy = new char[rows][columns];
+    char[][] boardCopy = new char[getRowCount()][getColumnCount()];
     
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < columns; j++) {
+    for (int i = 0; i < getRowCount(); i++) {
+      for (int j = 0; j < getColumnCount(); j++) {
         boardCopy[i][j] = newBoardState[i][j];
       }
     }
     this.boardState = boardCopy;
   }
   
+  /**
+   * Returns the number of pieces on the board. Player 1 always moves first, so
+   * in a game played by the rules, it is player 1's turn when this is even.
+   * 
+   * @return number of moves played
+   */
+  public int getMoveCount() {
+    if (countedState != boardState) {
+      int count = 0;
+      for (char[] row : boardState) {
+        for (char piece : row) {
+          count += piece == 0 ? 0 : 1;
+        }
+      }
+      moveCount = count;
+      countedState = boardState;
+    }
+    return moveCount;
+  }
+  
   /**
    * Returns the ID of the winner of the game, or 0 if there is no winner yet.
    * 
@@ -749,7 +960,121 @@ public class GameBoard implements GenericGameBoard {
   public List<Character> acceptedTypes() {
     return this.acceptedTypes;
   }
-  
+
+  /**
+   * Sets the database service that changes to this game board are saved with.
+   * This is used when a game board restored by one service should be saved
+   * through another one wrapping it.
+   *
+   * @param dbService instance of TicTacToeDbService to use
+   */
+  public void setDbService(TicTacToeDbService dbService) {
+    this.dbService = dbService;
+  }
+
+  /**
+   * Sets the asynchronous database service that changes to this game board are
+   * handed to. Once set, every change is saved through it rather than through
+   * the database service given to the constructor.
+   *
+   * @param asyncDbService instance of AsyncTicTacToeDbService to use
+   */
+  public void setAsyncDbService(AsyncTicTacToeDbService asyncDbService) {
+    this.asyncDbService = asyncDbService;
+  }
+
+  /**
+   * Returns whether changes to this game board are saved asynchronously, in
+   * which case callers should use the methods ending in "Async".
+   *
+   * @return true if an asynchronous database service is set
+   */
+  public boolean isAsync() {
+    return asyncDbService != null;
+  }
+
+  public int getGameId() {
+    return gameId;
+  }
+
+  /**
+   * Returns whether the server plays player 2 in this game, answering each of
+   * player 1's moves with its own.
+   *
+   * @return true if player 2 is the computer player
+   */
+  public boolean hasComputerOpponent() {
+    return computerOpponent;
+  }
+
+  /**
+   * Sets whether the server plays player 2 in this game. The setting is saved
+   * with the game state the next time it is written, and is cleared when the
+   * board is reset.
+   *
+   * @param computerOpponent true if player 2 is the computer player
+   */
+  public void setComputerOpponent(boolean computerOpponent) {
+    this.computerOpponent = computerOpponent;
+  }
+
+  /**
+   * Sets the id of the game this board saves its changes to. Boards default to
+   * game 1; this is used when a game other than game 1 is restored.
+   *
+   * @param gameId the game ID
+   */
+  public void setGameId(int gameId) {
+    this.gameId = gameId;
+  }
+
+  /**
+   * Hands the writes of one transaction to the asynchronous database service.
+   * A failure is logged and reported as a GameBoardInternalError with the
+   * message given.
+   */
+  private CompletableFuture<Void> persist(List<PendingWrite> writes, String failure) {
+    return persist(gameId, writes, failure);
+  }
+
+  /**
+   * Hands the writes of one transaction for the game given to the asynchronous
+   * database service, like persist(writes, failure).
+   */
+  private CompletableFuture<Void> persist(int gameId, List<PendingWrite> writes,
+      String failure) {
+    return asyncDbService.commit(gameId, writes).handle((done, e) -> {
+      if (e != null) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        System.err.println(cause.getClass().getName() + ": " + cause.getMessage());
+        throw new CompletionException(new GameBoardInternalError(failure));
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Waits for a future returned by one of the asynchronous methods.
+   */
+  private static void await(CompletableFuture<Void> future) throws GameBoardInternalError {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      throw (GameBoardInternalError) e.getCause();
+    }
+  }
+
+  /**
+   * Returns a copy of the game state to save, since this board will keep
+   * changing before an I/O thread gets to it.
+   */
+  protected GameBoard copyState() {
+    GameBoard copy = new GameBoard(p1, p2, gameStarted, turn, boardState, winner, isDraw, null);
+    copy.setGameId(gameId);
+    copy.setComputerOpponent(computerOpponent);
+    return copy;
+  }
+
   public static int getColumns() {
     return columns;
   }
@@ -759,7 +1084,58 @@ public class GameBoard implements GenericGameBoard {
   }
 
   /**
-   * Prints out the game board as a 3 x 3 square, visually similar to the board
+   * Returns the number of rows of this board, which is getRows() for the
+   * standard board.
+   * 
+   * @return number of rows
+   */
+  public int getRowCount() {
+    return boardState.length;
+  }
+
+  /**
+   * Returns the number of columns of this board, which is getColumns() for the
+   * standard board.
+   * 
+   * @return number of columns
+   */
+  public int getColumnCount() {
+    return boardState[0].length;
+  }
+
+  /**
+   * Returns how many pieces in a row win on this board; the standard board
+   * needs a full row, column or diagonal of 3.
+   * 
+   * @return number of pieces in a row needed to win
+   */
+  public int getWinLength() {
+    return rows;
+  }
+
+  /**
+   * Returns a new, empty game board of the size given, saving its changes the
+   * same way as this board: a standard GameBoard for a 3x3 board with 3 in a
+   * row, and an MnkGameBoard otherwise. Nothing is saved until the new board
+   * is reset.
+   * 
+   * @param rowCount    number of rows
+   * @param columnCount number of columns
+   * @param winLength   number of pieces in a row needed to win
+   * @return the new game board
+   * @throws InvalidGameBoardConfigurationException if the size is not one an
+   *                                                MnkGameBoard can have
+   */
+  public GameBoard withSize(int rowCount, int columnCount, int winLength) {
+    GameBoard gb = rowCount == rows && columnCount == columns && winLength == rows
+        ? new GameBoard(dbService) : new MnkGameBoard(rowCount, columnCount, winLength, dbService);
+    gb.setAsyncDbService(asyncDbService);
+    gb.setGameId(gameId);
+    return gb;
+  }
+
+  /**
+   * Prints out the game board as a square, visually similar to the board
    * shown in web UI. Helpful for logging and debugging.
    */
   public void printBoard() {
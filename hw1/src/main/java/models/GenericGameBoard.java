@@ -6,10 +6,61 @@ public interface GenericGameBoard {
 
   public boolean isFull();
 
+  /**
+   * Returns the number of pieces on the board, which is also the number of
+   * moves played so far.
+   * 
+   * @return number of moves played
+   */
+  public int getMoveCount();
+
   public Message processPlayerMove(Move move) throws GameBoardInternalError;
 
   public boolean isValidMove(Move move);
 
+  /**
+   * Checks a move against the rules processPlayerMove() applies, without playing
+   * or saving it: that there are two players, that player 1 moves first, that
+   * the game is not over, that it is the player's turn and that the position is
+   * free and on the board.
+   * 
+   * @param move instance of player Move
+   * @return Message() object explaining why the move may not be played, or null
+   *         if it may be
+   */
+  public default Message checkMove(Move move) {
+    Message message = null;
+    
+    /* ---- Need to check several states to make sure move is valid ---- */
+    if (!isGameStarted()) {
+      // 1. If there aren't two players, game has not started and cannot make move
+      message = new Message(false, MessageStatus.MISSING_PLAYER, 
+          "Game cannot start until there are two players on the game board!");
+      
+    } else if (isEmpty() && move.getPlayerId() == 2) {
+      // 2. First player should always be the one to make the first move
+      message = new Message(false, MessageStatus.INVALID_ORDER_OF_PLAY, 
+          "Player 1 makes the first move on an empty board!");
+      
+    } else if (getWinner() != 0) {
+      // 3. If the board was already won, then cannot make another move
+      message = new Message(false, MessageStatus.GAME_ALREADY_OVER, 
+          "Game is already over! Player " + getWinner() + " won!");
+
+    } else if (move.getPlayerId() != getTurn()) {
+      // 4. If it's not the player's turn, cannot make move
+      message = new Message(false, MessageStatus.OTHER_PLAYERS_TURN, 
+          "It is not currently your turn. Player " + getTurn() + " gets to make the next move.");
+      
+    } else if (!isValidMove(move)) {
+      // 5. If the submitted move is not available, cannot make move
+      message = new Message(false, MessageStatus.POSITION_NOT_ALLOWED, 
+          "You cannot make a move at (" + move.getMoveX() + ", " + move.getMoveY() + "). "
+              + "Please choose an unoccupied and valid position on the game board!");
+    }
+    return message;
+  }
+
   public void playMove(Move move);
 
   public boolean isWinningMove(int x, int y, char type);
@@ -21,5 +72,11 @@ public interface GenericGameBoard {
   public boolean isGameStarted();
   
   public int getTurn();
+  
+  public Player getP1();
+  
+  public Player getP2();
+  
+  public char[][] getBoardState();
 
 }
@@ -0,0 +1,143 @@
+package models;
+
+import util.TicTacToeDbService;
+
+/**
+ * Game board of any size where a player wins with k pieces in a row, column or
+ * diagonal (an m,n,k-game): 3x3 with 3 in a row is tic-tac-toe, 15x15 with 5 in
+ * a row is gomoku. Only the last piece played can complete a line, so the win
+ * check walks outward from it in the four directions a line can run, looking at
+ * no more than 2(k - 1) cells per direction however large the board is.
+ *
+ * <p>Everything else, including how changes are saved, is as for GameBoard.
+ * The board's size and k are saved with the game's state, so the game is
+ * restored on a board of the same size.
+ */
+public class MnkGameBoard extends GameBoard {
+
+  // rows and columns each fit in a byte of the game's saved state
+  public static final int MAX_SIZE = 127;
+
+  // the directions a line can run in: along a row, down a column, and both
+  // diagonals; each is walked both ways from the last piece
+  private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+  private final int winLength;
+
+  /**
+   * Constructor for an empty board.
+   *
+   * @param rowCount    number of rows, m
+   * @param columnCount number of columns, n
+   * @param winLength   number of pieces in a row needed to win, k
+   * @param dbService   instance of TicTacToeDbService to save changes with
+   * @throws InvalidGameBoardConfigurationException if the board is larger than
+   *                                                MAX_SIZE either way, or k
+   *                                                does not fit on it
+   */
+  public MnkGameBoard(int rowCount, int columnCount, int winLength,
+      TicTacToeDbService dbService) {
+    super(checkSize(rowCount, columnCount, winLength), columnCount, dbService);
+    this.winLength = winLength;
+  }
+
+  /**
+   * Constructor for a board in a given configuration, which, like the
+   * corresponding GameBoard constructor, is not checked against the rules.
+   *
+   * @param winLength   number of pieces in a row needed to win, k
+   * @param p1          instance of Player object, representing player 1
+   * @param p2          instance of Player object, representing player 2
+   * @param gameStarted boolean, for if game has started
+   * @param turn        integer, representing the ID of the player who has the
+   *                    next turn (1 or 2)
+   * @param state       two-dimensional array of characters representing game
+   *                    board state, which sets the size of the board
+   * @param winner      integer representing player ID of winner; 0 if no winner
+   * @param isDraw      boolean, for if the game is already a draw
+   * @param dbService   instance of TicTacToeDbService to save changes with
+   * @throws InvalidGameBoardConfigurationException if the board is larger than
+   *                                                MAX_SIZE either way, or k
+   *                                                does not fit on it
+   */
+  public MnkGameBoard(int winLength, Player p1, Player p2, boolean gameStarted, int turn,
+      char[][] state, int winner, boolean isDraw, TicTacToeDbService dbService) {
+    super(checkSize(state.length, state[0].length, winLength), state[0].length, p1, p2,
+        gameStarted, turn, state, winner, isDraw, dbService);
+    this.winLength = winLength;
+  }
+
+  /**
+   * Checks that a board of this size can be played and saved, and returns the
+   * number of rows so that it can be called before the superclass constructor.
+   */
+  private static int checkSize(int rowCount, int columnCount, int winLength) {
+    if (rowCount < 1 || columnCount < 1 || rowCount > MAX_SIZE || columnCount > MAX_SIZE) {
+      throw new InvalidGameBoardConfigurationException("Boards can have 1 to " + MAX_SIZE
+          + " rows and columns; got " + rowCount + "x" + columnCount + ".");
+    }
+    if (winLength < 1 || winLength > Math.max(rowCount, columnCount)) {
+      throw new InvalidGameBoardConfigurationException("A " + rowCount + "x" + columnCount
+          + " board cannot have " + winLength + " pieces in a row.");
+    }
+    return rowCount;
+  }
+
+  /**
+   * Determines whether the pieces of a type make a line of at least k pieces
+   * through a cell, by counting the pieces next to it in each direction.
+   *
+   * @param x    row of the cell
+   * @param y    column of the cell
+   * @param type Character, either 'X' or 'O'
+   * @return true if a row, column or diagonal through the cell has k pieces of
+   *         the type in a row
+   */
+  @Override
+  public boolean isWinningMove(int x, int y, char type) {
+    for (int[] direction : DIRECTIONS) {
+      int inRow = 1 + count(x, y, direction[0], direction[1], type)
+          + count(x, y, -direction[0], -direction[1], type);
+      if (inRow >= winLength) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the pieces of a type next to a cell in one direction, stopping at
+   * k - 1, which is all a win check needs.
+   */
+  private int count(int x, int y, int dx, int dy, char type) {
+    int count = 0;
+    int i = x + dx;
+    int j = y + dy;
+    while (count < winLength - 1 && i >= 0 && j >= 0 && i < getRowCount()
+        && j < getColumnCount() && cellAt(i, j) == type) {
+      count++;
+      i += dx;
+      j += dy;
+    }
+    return count;
+  }
+
+  @Override
+  public int getWinLength() {
+    return winLength;
+  }
+
+  @Override
+  protected GameBoard copyState() {
+    GameBoard copy = new MnkGameBoard(winLength, getP1(), getP2(), isGameStarted(), getTurn(),
+        getBoardState(), getWinner(), isDraw(), null);
+    copy.setGameId(getGameId());
+    copy.setComputerOpponent(hasComputerOpponent());
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return "MnkGameBoard [k=" + winLength + ", " + super.toString() + "]";
+  }
+}
@@ -0,0 +1,472 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chooses moves for a computer player by searching the game tree with negamax
+ * and alpha-beta pruning. Positions already searched are kept in a
+ * transposition table, keyed by a Zobrist hash of the board, that is shared by
+ * every game played on boards of the same size. Once a position has been
+ * searched, any game that reaches it again answers from the table. Only the
+ * engines of the MAX_CACHED_ENGINES board sizes played most recently are kept,
+ * since clients choose the board sizes.
+ *
+ * <p>On the standard 3x3 board, moves are looked up in the PositionTable
+ * rather than searched for, so the engine never loses there and takes any win
+ * it is given. Other boards of up to MAX_EXHAUSTIVE_CELLS cells are searched to
+ * the end of the game, so the engine plays them perfectly too. Larger boards
+ * are searched maxDepth moves ahead, among the cells next to pieces already
+ * played, which is enough to take or block a win within that many moves but
+ * not to plan beyond it.
+ *
+ * <p>An engine may be used by any number of threads at once. The table is an
+ * array of fixed size, so it never grows; an entry overwritten by another
+ * position, or by another thread, only costs a search.
+ */
+public class NegamaxEngine {
+
+  // boards with up to this many cells are searched to the end of the game
+  public static final int MAX_EXHAUSTIVE_CELLS = 12;
+
+  // how many moves ahead larger boards are searched
+  public static final int DEFAULT_DEPTH = 4;
+
+  // number of board sizes whose engines, and their tables, are kept
+  public static final int MAX_CACHED_ENGINES = 4;
+
+  // the largest table holds 2^20 positions, 16 MB
+  private static final int MAX_TABLE_BITS = 20;
+
+  // score of a win with no pieces on the board; a win with more pieces on the
+  // board scores less, so that quicker wins and slower losses are preferred
+  private static final int WIN = 1 << 20;
+
+  private static final int EXACT = 0;
+
+  private static final int LOWER_BOUND = 1;
+
+  private static final int UPPER_BOUND = 2;
+
+  // one engine per board size and k, so that games of the same size share a
+  // table; access-ordered, so iteration starts at the least recently used engine
+  private static final LinkedHashMap<String, NegamaxEngine> ENGINES =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private final int rowCount;
+
+  private final int columnCount;
+
+  private final int winLength;
+
+  private final int maxDepth;
+
+  // Zobrist keys: one for each cell and type of piece, and one for 'O' to move
+  private final long[][] pieceKeys;
+
+  private final long sideKey;
+
+  // cells in the order they are tried, from the center of the board outward
+  private final int[] searchOrder;
+
+  // the transposition table: each entry is stored as the position's hash XOR
+  // its data in keys, and its data in data, so an entry whose two halves were
+  // written by different threads fails the check on reading and is ignored
+  private final AtomicLongArray keys;
+
+  private final AtomicLongArray data;
+
+  private final int tableMask;
+
+  // every position of the standard board, solved; null for other boards
+  private final PositionTable positions;
+
+  /**
+   * Returns the engine shared by all games on boards of the same size and k,
+   * creating it on first use. Boards of up to MAX_EXHAUSTIVE_CELLS cells are
+   * searched to the end of the game, and larger boards DEFAULT_DEPTH moves
+   * ahead. Creating an engine for a new size drops the engine of the size used
+   * least recently once MAX_CACHED_ENGINES are kept.
+   *
+   * @param board any implementation of the GenericGameBoard class
+   * @return the engine for boards of this size
+   */
+  public static NegamaxEngine forBoard(GenericGameBoard board) {
+    char[][] state = board.getBoardState();
+    int rows = state.length;
+    int columns = state[0].length;
+    int winLength = winLength(board);
+    int cells = rows * columns;
+    String size = rows + "x" + columns + "/" + winLength;
+
+    synchronized (ENGINES) {
+      NegamaxEngine engine = ENGINES.get(size);
+      if (engine == null) {
+        engine = new NegamaxEngine(rows, columns, winLength,
+            cells <= MAX_EXHAUSTIVE_CELLS ? cells : DEFAULT_DEPTH, tableBits(cells));
+        ENGINES.put(size, engine);
+        Iterator<String> leastRecentlyUsed = ENGINES.keySet().iterator();
+        while (ENGINES.size() > MAX_CACHED_ENGINES) {
+          leastRecentlyUsed.next();
+          leastRecentlyUsed.remove();
+        }
+      }
+      return engine;
+    }
+  }
+
+  /**
+   * Returns how many board sizes currently have an engine kept for them.
+   *
+   * @return number of cached engines; at most MAX_CACHED_ENGINES
+   */
+  public static int cachedEngines() {
+    synchronized (ENGINES) {
+      return ENGINES.size();
+    }
+  }
+
+  /**
+   * Sizes the transposition table of an engine from the number of cells on its
+   * boards: 2^10 positions per cell, rounded up to a power of two, and at most
+   * 2^MAX_TABLE_BITS positions. A 3x3 board gets 2^14 positions (256 KB) and a
+   * 15x15 board 2^18 (4 MB).
+   *
+   * @param cells number of cells on the board
+   * @return the number of bits of the table's index
+   */
+  static int tableBits(int cells) {
+    int cellBits = 32 - Integer.numberOfLeadingZeros(cells - 1);
+    return Math.min(MAX_TABLE_BITS, 10 + cellBits);
+  }
+
+  /**
+   * Constructor for an engine with its own transposition table.
+   *
+   * @param rowCount    number of rows of the boards it plays on
+   * @param columnCount number of columns of the boards it plays on
+   * @param winLength   number of pieces in a row needed to win
+   * @param maxDepth    how many moves ahead to search; a search as deep as the
+   *                    number of cells always reaches the end of the game
+   * @param tableBits   the transposition table holds 2^tableBits positions
+   */
+  public NegamaxEngine(int rowCount, int columnCount, int winLength, int maxDepth,
+      int tableBits) {
+    this.rowCount = rowCount;
+    this.columnCount = columnCount;
+    this.winLength = winLength;
+    this.maxDepth = maxDepth;
+
+    // a fixed seed gives every engine of a size the same keys
+    SplittableRandom random = new SplittableRandom(rowCount * 31L + columnCount);
+    int cells = rowCount * columnCount;
+    this.pieceKeys = new long[cells][2];
+    for (long[] cellKeys : pieceKeys) {
+      cellKeys[0] = random.nextLong();
+      cellKeys[1] = random.nextLong();
+    }
+    this.sideKey = random.nextLong();
+
+    Integer[] order = new Integer[cells];
+    for (int cell = 0; cell < cells; cell++) {
+      order[cell] = cell;
+    }
+    Arrays.sort(order, (a, b) -> Integer.compare(distanceFromCenter(a), distanceFromCenter(b)));
+    this.searchOrder = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+    this.keys = new AtomicLongArray(1 << tableBits);
+    this.data = new AtomicLongArray(1 << tableBits);
+    this.tableMask = (1 << tableBits) - 1;
+    this.positions = rowCount == 3 && columnCount == 3 && winLength == 3
+        ? PositionTable.standard() : null;
+  }
+
+  /**
+   * Chooses the best move for the player whose turn it is.
+   *
+   * @param board any implementation of the GenericGameBoard class, of the size
+   *              this engine plays on
+   * @return the move to play, or null if the game has not started or is over
+   * @throws InvalidGameBoardConfigurationException if the board is not of the
+   *                                                size this engine plays on
+   */
+  public Move chooseMove(GenericGameBoard board) {
+    char[][] state = board.getBoardState();
+    if (state.length != rowCount || state[0].length != columnCount
+        || winLength(board) != winLength) {
+      throw new InvalidGameBoardConfigurationException("This engine plays on " + rowCount + "x"
+          + columnCount + " boards with " + winLength + " in a row.");
+    }
+    if (!board.isGameStarted() || board.getWinner() != 0 || board.isDraw() || board.isFull()) {
+      return null;
+    }
+    Player player = board.getTurn() == 1 ? board.getP1() : board.getP2();
+    Player other = board.getTurn() == 1 ? board.getP2() : board.getP1();
+
+    if (positions != null) {
+      PositionTable.Position position = positions.lookup(state, player.getType());
+      if (position != null && !position.isGameOver()) {
+        return bestMove(player, position);
+      }
+    }
+
+    Search search = new Search(state, player.getType(), other.getType());
+    int cell = search.root();
+    return new Move(player, cell / columnCount, cell % columnCount);
+  }
+
+  /**
+   * Returns the best move of a position in the table nearest the center of the
+   * board, as the search would try it first.
+   */
+  private Move bestMove(Player player, PositionTable.Position position) {
+    for (int cell : searchOrder) {
+      for (int[] move : position.getBestMoves()) {
+        if (move[0] * columnCount + move[1] == cell) {
+          return new Move(player, move[0], move[1]);
+        }
+      }
+    }
+    throw new IllegalStateException("A position that is not over has no best move.");
+  }
+
+  /**
+   * Returns how many pieces in a row win on a board: the board's own k for a
+   * GameBoard, and 3 for anything else, which plays standard tic-tac-toe.
+   */
+  private static int winLength(GenericGameBoard board) {
+    return board instanceof GameBoard ? ((GameBoard) board).getWinLength() : GameBoard.getRows();
+  }
+
+  /**
+   * Orders cells by their ring around the center of the board, and within a
+   * ring, by how far they are from it along rows and columns. Distances are
+   * doubled so that the center of an even-sized board is a whole number.
+   */
+  private int distanceFromCenter(int cell) {
+    int x = cell / columnCount * 2 - (rowCount - 1);
+    int y = cell % columnCount * 2 - (columnCount - 1);
+    return Math.max(Math.abs(x), Math.abs(y)) * 1024 + Math.abs(x) + Math.abs(y);
+  }
+
+  /**
+   * The state of one search: a copy of the board that moves are played on and
+   * taken back from, and its hash, kept up to date as they are.
+   */
+  private final class Search {
+
+    // 0 for an empty cell, 1 for a piece of the player to move at the root and
+    // 2 for the other player's
+    private final byte[] cells;
+
+    private long hash;
+
+    private int pieces;
+
+    // the keys of the types the player to move at the root and the other player
+    // play with, so that the table is keyed by type rather than by player
+    private final int rootPieceKey;
+
+    private final int otherPieceKey;
+
+    Search(char[][] state, char type, char otherType) {
+      this.cells = new byte[rowCount * columnCount];
+      this.rootPieceKey = type == 'X' ? 0 : 1;
+      this.otherPieceKey = otherType == 'X' ? 0 : 1;
+      this.hash = type == 'O' ? sideKey : 0;
+      for (int i = 0; i < rowCount; i++) {
+        for (int j = 0; j < columnCount; j++) {
+          char piece = state[i][j];
+          if (piece != 0) {
+            int cell = i * columnCount + j;
+            cells[cell] = (byte) (piece == type ? 1 : 2);
+            hash ^= pieceKeys[cell][piece == type ? rootPieceKey : otherPieceKey];
+            pieces++;
+          }
+        }
+      }
+    }
+
+    /**
+     * Searches every move of the player to move at the root, and returns the
+     * cell of the best one.
+     */
+    int root() {
+      int depth = Math.min(maxDepth, cells.length - pieces);
+      int alpha = -WIN - 1;
+      int best = -1;
+      for (int cell : candidates(bestCell(probe((int) hash & tableMask)))) {
+        int score = score(cell, 1, depth, alpha, WIN + 1);
+        if (score > alpha || best < 0) {
+          alpha = score;
+          best = cell;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Returns the score of a position for the player to move: positive if they
+     * can force a win, negative if the other player can, and 0 for a draw or a
+     * position that is not decided within depth moves.
+     *
+     * @param mover 1 if the player to move at the root is to move, else 2
+     */
+    private int negamax(int mover, int depth, int alpha, int beta) {
+      if (pieces == cells.length || depth == 0) {
+        return 0;
+      }
+
+      int index = (int) hash & tableMask;
+      long entry = probe(index);
+      int hint = -1;
+      if (entry != 0) {
+        int entryScore = (int) (entry << 40 >> 40);
+        int entryFlag = (int) (entry >>> 24) & 3;
+        int entryDepth = (int) (entry >>> 26) & 0x3FFF;
+        hint = bestCell(entry);
+        if (entryDepth >= depth) {
+          if (entryFlag == EXACT
+              || entryFlag == LOWER_BOUND && entryScore >= beta
+              || entryFlag == UPPER_BOUND && entryScore <= alpha) {
+            return entryScore;
+          }
+        }
+      }
+
+      int alphaOriginal = alpha;
+      int best = -WIN - 1;
+      int bestCell = -1;
+      for (int cell : candidates(hint)) {
+        int score = score(cell, mover, depth, alpha, beta);
+        if (score > best) {
+          best = score;
+          bestCell = cell;
+        }
+        if (best > alpha) {
+          alpha = best;
+        }
+        if (alpha >= beta) {
+          break;
+        }
+      }
+
+      int flag = best <= alphaOriginal ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+      store(index, best, flag, depth, bestCell);
+      return best;
+    }
+
+    /**
+     * Plays a move, scores it for the player making it, and takes it back.
+     */
+    private int score(int cell, int mover, int depth, int alpha, int beta) {
+      play(cell, mover);
+      int score = isWin(cell, mover) ? WIN - pieces
+          : -negamax(3 - mover, depth - 1, -beta, -alpha);
+      undo(cell, mover);
+      return score;
+    }
+
+    private void play(int cell, int mover) {
+      cells[cell] = (byte) mover;
+      hash ^= pieceKeys[cell][mover == 1 ? rootPieceKey : otherPieceKey] ^ sideKey;
+      pieces++;
+    }
+
+    private void undo(int cell, int mover) {
+      cells[cell] = 0;
+      hash ^= pieceKeys[cell][mover == 1 ? rootPieceKey : otherPieceKey] ^ sideKey;
+      pieces--;
+    }
+
+    /**
+     * Determines whether the piece just played on a cell completes a line of k,
+     * by counting the same pieces next to it in each direction.
+     */
+    private boolean isWin(int cell, int mover) {
+      int x = cell / columnCount;
+      int y = cell % columnCount;
+      return 1 + count(x, y, 0, 1, mover) + count(x, y, 0, -1, mover) >= winLength
+          || 1 + count(x, y, 1, 0, mover) + count(x, y, -1, 0, mover) >= winLength
+          || 1 + count(x, y, 1, 1, mover) + count(x, y, -1, -1, mover) >= winLength
+          || 1 + count(x, y, 1, -1, mover) + count(x, y, -1, 1, mover) >= winLength;
+    }
+
+    private int count(int x, int y, int dx, int dy, int mover) {
+      int count = 0;
+      int i = x + dx;
+      int j = y + dy;
+      while (count < winLength - 1 && i >= 0 && j >= 0 && i < rowCount && j < columnCount
+          && cells[i * columnCount + j] == mover) {
+        count++;
+        i += dx;
+        j += dy;
+      }
+      return count;
+    }
+
+    /**
+     * Lists the empty cells to try, the table's best move for the position
+     * first. A search that does not reach the end of the game only tries cells
+     * next to a piece already played, or the center of an empty board.
+     */
+    private int[] candidates(int hint) {
+      boolean near = maxDepth < cells.length && pieces > 0;
+      int[] candidates = new int[cells.length - pieces];
+      int count = 0;
+      if (hint >= 0 && cells[hint] == 0) {
+        candidates[count++] = hint;
+      }
+      for (int cell : searchOrder) {
+        if (cells[cell] == 0 && cell != hint && (!near || hasNeighbor(cell))) {
+          candidates[count++] = cell;
+        }
+      }
+      return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+    }
+
+    private boolean hasNeighbor(int cell) {
+      int x = cell / columnCount;
+      int y = cell % columnCount;
+      for (int i = Math.max(0, x - 1); i <= Math.min(rowCount - 1, x + 1); i++) {
+        for (int j = Math.max(0, y - 1); j <= Math.min(columnCount - 1, y + 1); j++) {
+          if (cells[i * columnCount + j] != 0) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns the best cell stored in a table entry, or -1 if there is none.
+     */
+    private int bestCell(long entry) {
+      return (int) (entry >>> 40 & 0x7FFF) - 1;
+    }
+
+    /**
+     * Returns the data of the table's entry for this position, or 0 if the
+     * entry holds another position.
+     */
+    private long probe(int index) {
+      long entryData = data.get(index);
+      return (keys.get(index) ^ entryData) == hash ? entryData : 0;
+    }
+
+    /**
+     * Stores a score in the table. The data packs the score (bits 0-23), the
+     * kind of bound (24-25), the depth searched (26-39) and the best cell plus
+     * one (40-54); bit 63 keeps stored data from ever being 0.
+     */
+    private void store(int index, int score, int flag, int depth, int bestCell) {
+      long entryData = (score & 0xFFFFFFL) | (long) flag << 24 | (long) depth << 26
+          | (long) (bestCell + 1) << 40 | 1L << 63;
+      data.lazySet(index, entryData);
+      keys.lazySet(index, hash ^ entryData);
+    }
+  }
+}
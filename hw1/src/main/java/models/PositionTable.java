@@ -0,0 +1,370 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of every position reachable in a standard 3x3 game, with its outcome
+ * under perfect play and the moves that reach it. A position looks the same to
+ * the player to move whichever type each player plays with, and looks the same
+ * after any of the board's eight rotations and reflections, so the table keeps
+ * one entry for each: the 765 positions left out of 5,478. Every entry is found
+ * by computing the position's key from its nine cells and one probe of a small
+ * hash table, so nothing is searched once the table is built.
+ *
+ * <p>A position's key is its cells read as a base-3 number, with 1 for a piece
+ * of the player to move and 2 for a piece of the other player, taking the
+ * smallest such number of the eight rotations and reflections of the board.
+ * The table is built on first use by solving every position, which takes a few
+ * milliseconds.
+ */
+public final class PositionTable {
+
+  // outcomes for the player to move, under perfect play by both players
+  public static final int LOSS = -1;
+
+  public static final int DRAW = 0;
+
+  public static final int WIN = 1;
+
+  private static final int CELLS = 9;
+
+  // the rows, columns and diagonals, as masks of cells (bit row * 3 + column)
+  private static final int[] LINES = {
+      0b000000111, 0b000111000, 0b111000000,
+      0b001001001, 0b010010010, 0b100100100,
+      0b100010001, 0b001010100 };
+
+  // the cell each cell is moved to by each rotation and reflection of the board
+  private static final int[][] SYMMETRIES = new int[8][CELLS];
+
+  // the key weight of each cell under each rotation and reflection: 3 to the
+  // power of the cell it is moved to
+  private static final int[][] WEIGHTS = new int[8][CELLS];
+
+  static {
+    for (int s = 0; s < 8; s++) {
+      for (int cell = 0; cell < CELLS; cell++) {
+        int x = cell / 3;
+        int y = cell % 3;
+        // rotate a quarter turn s % 4 times, then reflect across the middle
+        // column if s >= 4
+        for (int turn = 0; turn < s % 4; turn++) {
+          int rotated = y;
+          y = 2 - x;
+          x = rotated;
+        }
+        if (s >= 4) {
+          y = 2 - y;
+        }
+        SYMMETRIES[s][cell] = x * 3 + y;
+        WEIGHTS[s][cell] = (int) Math.pow(3, x * 3 + y);
+      }
+    }
+  }
+
+  // 2^11 slots for 765 entries keeps probes short
+  private static final int SLOTS = 1 << 11;
+
+  // a slot's key, or -1 if the slot is free
+  private final short[] keys = new short[SLOTS];
+
+  // a slot's entry: the best cells (bits 0-8, in the orientation of the key),
+  // whether the game is over (bit 9), the outcome plus one (bits 10-11) and the
+  // number of moves left with perfect play (bits 12-15)
+  private final int[] entries = new int[SLOTS];
+
+  private int size;
+
+  private PositionTable() {
+    Arrays.fill(keys, (short) -1);
+    solve(new int[CELLS]);
+  }
+
+  /**
+   * Holds the table, so that it is built once, on first use.
+   */
+  private static final class Holder {
+    private static final PositionTable TABLE = new PositionTable();
+  }
+
+  /**
+   * Returns the table for the standard board, building it on first use.
+   *
+   * @return the table
+   */
+  public static PositionTable standard() {
+    return Holder.TABLE;
+  }
+
+  /**
+   * Returns the number of positions in the table, each standing for all of the
+   * positions that are rotations or reflections of it.
+   *
+   * @return number of positions
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Looks up the position on a game board for the player whose turn it is.
+   *
+   * @param board any implementation of the GenericGameBoard class
+   * @return the position, or null if the board is not a 3x3 board with 3 in a
+   *         row, the game has not started, or the position cannot be reached
+   *         in a game played by the rules
+   */
+  public Position lookup(GenericGameBoard board) {
+    char[][] state = board.getBoardState();
+    if (state.length != 3 || state[0].length != 3
+        || board instanceof GameBoard && ((GameBoard) board).getWinLength() != 3
+        || !board.isGameStarted() || board.getP1() == null || board.getP2() == null) {
+      return null;
+    }
+    Player mover = board.getTurn() == 1 ? board.getP1() : board.getP2();
+    return lookup(state, mover.getType());
+  }
+
+  /**
+   * Looks up a position on a 3x3 board.
+   *
+   * @param state     the board's cells, 0 for an empty cell
+   * @param moverType the type of piece the player to move plays with
+   * @return the position, or null if it cannot be reached in a game played by
+   *         the rules
+   */
+  public Position lookup(char[][] state, char moverType) {
+    int[] cells = new int[CELLS];
+    for (int cell = 0; cell < CELLS; cell++) {
+      char piece = state[cell / 3][cell % 3];
+      cells[cell] = piece == 0 ? 0 : piece == moverType ? 1 : 2;
+    }
+    int symmetry = canonicalSymmetry(cells);
+    int slot = find(key(cells, symmetry));
+    if (slot < 0) {
+      return null;
+    }
+    int entry = entries[slot];
+
+    // the best cells are kept in the orientation of the key; turn them back
+    List<int[]> bestCells = new ArrayList<>();
+    for (int cell = 0; cell < CELLS; cell++) {
+      if ((entry & 1 << SYMMETRIES[symmetry][cell]) != 0) {
+        bestCells.add(new int[] { cell / 3, cell % 3 });
+      }
+    }
+    return new Position((entry >>> 10 & 3) - 1, (entry & 1 << 9) != 0, entry >>> 12 & 15,
+        bestCells);
+  }
+
+  /**
+   * Solves a position and every position reachable from it, adding each to the
+   * table once, and returns its entry.
+   *
+   * @param cells the position, 1 for the player to move and 2 for the other
+   */
+  private int solve(int[] cells) {
+    int symmetry = canonicalSymmetry(cells);
+    int key = key(cells, symmetry);
+    int slot = find(key);
+    if (slot >= 0) {
+      return entries[slot];
+    }
+
+    int entry;
+    if (hasLine(cells, 2)) {
+      // the other player has just won
+      entry = 1 << 9 | (LOSS + 1) << 10;
+
+    } else if (isFull(cells)) {
+      entry = 1 << 9 | (DRAW + 1) << 10;
+
+    } else {
+      int bestOutcome = LOSS - 1;
+      int bestMovesLeft = 0;
+      int bestCells = 0;
+      for (int cell = 0; cell < CELLS; cell++) {
+        if (cells[cell] != 0) {
+          continue;
+        }
+        // play the move, then look at the board from the other player's side
+        int[] next = new int[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+          next[i] = cells[i] == 0 ? 0 : 3 - cells[i];
+        }
+        next[cell] = 2;
+        int child = solve(next);
+        int outcome = -((child >>> 10 & 3) - 1);
+        int movesLeft = (child >>> 12 & 15) + 1;
+
+        int better = compare(outcome, movesLeft, bestOutcome, bestMovesLeft);
+        if (better > 0) {
+          bestOutcome = outcome;
+          bestMovesLeft = movesLeft;
+          bestCells = 0;
+        }
+        if (better >= 0) {
+          bestCells |= 1 << SYMMETRIES[symmetry][cell];
+        }
+      }
+      entry = bestCells | (bestOutcome + 1) << 10 | bestMovesLeft << 12;
+    }
+
+    insert(key, entry);
+    return entry;
+  }
+
+  /**
+   * Compares two moves by their outcome, and for the same outcome, prefers a
+   * quicker win or a slower loss.
+   *
+   * @return a positive number if the first move is better, 0 if they are as
+   *         good, and a negative number if the second is better
+   */
+  private static int compare(int outcome, int movesLeft, int otherOutcome,
+      int otherMovesLeft) {
+    if (outcome != otherOutcome) {
+      return outcome - otherOutcome;
+    }
+    if (outcome == WIN) {
+      return otherMovesLeft - movesLeft;
+    }
+    return outcome == LOSS ? movesLeft - otherMovesLeft : 0;
+  }
+
+  /**
+   * Returns the rotation or reflection of the board that gives the position's
+   * smallest key.
+   */
+  private static int canonicalSymmetry(int[] cells) {
+    int best = 0;
+    int bestKey = Integer.MAX_VALUE;
+    for (int s = 0; s < 8; s++) {
+      int key = key(cells, s);
+      if (key < bestKey) {
+        bestKey = key;
+        best = s;
+      }
+    }
+    return best;
+  }
+
+  private static int key(int[] cells, int symmetry) {
+    int key = 0;
+    for (int cell = 0; cell < CELLS; cell++) {
+      key += cells[cell] * WEIGHTS[symmetry][cell];
+    }
+    return key;
+  }
+
+  private static boolean hasLine(int[] cells, int piece) {
+    int mask = 0;
+    for (int cell = 0; cell < CELLS; cell++) {
+      mask |= cells[cell] == piece ? 1 << cell : 0;
+    }
+    for (int line : LINES) {
+      if ((mask & line) == line) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isFull(int[] cells) {
+    for (int piece : cells) {
+      if (piece == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the slot holding a key, or -1 if the key is not in the table.
+   */
+  private int find(int key) {
+    for (int slot = slot(key); keys[slot] != -1; slot = (slot + 1) & (SLOTS - 1)) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void insert(int key, int entry) {
+    int slot = slot(key);
+    while (keys[slot] != -1) {
+      slot = (slot + 1) & (SLOTS - 1);
+    }
+    keys[slot] = (short) key;
+    entries[slot] = entry;
+    size++;
+  }
+
+  private static int slot(int key) {
+    return (key * 0x9E3779B1 >>> 16) & (SLOTS - 1);
+  }
+
+  /**
+   * A position in the table, as seen by the player to move.
+   */
+  public static final class Position {
+
+    private final int outcome;
+
+    private final boolean gameOver;
+
+    private final int movesLeft;
+
+    private final List<int[]> bestMoves;
+
+    private Position(int outcome, boolean gameOver, int movesLeft, List<int[]> bestMoves) {
+      this.outcome = outcome;
+      this.gameOver = gameOver;
+      this.movesLeft = movesLeft;
+      this.bestMoves = bestMoves;
+    }
+
+    /**
+     * Returns the outcome for the player to move if both players play
+     * perfectly from here; for a game that is over, how it ended for them.
+     *
+     * @return WIN, DRAW or LOSS
+     */
+    public int getOutcome() {
+      return outcome;
+    }
+
+    /**
+     * Returns whether the game is over: the other player has completed a line,
+     * or the board is full.
+     *
+     * @return true if no more moves can be played
+     */
+    public boolean isGameOver() {
+      return gameOver;
+    }
+
+    /**
+     * Returns the number of moves left in the game if both players play
+     * perfectly, the quickest way to a win or the slowest way to a loss.
+     *
+     * @return moves left; 0 if the game is over
+     */
+    public int getMovesLeft() {
+      return movesLeft;
+    }
+
+    /**
+     * Returns the moves that keep the best outcome for the player to move, as
+     * {row, column} pairs in row order.
+     *
+     * @return best moves; empty if the game is over
+     */
+    public List<int[]> getBestMoves() {
+      return bestMoves;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+
+/**
+ * A finished game packed into a single archive record: its snapshot, as
+ * GameSnapshot encodes it, followed by one byte per move in the order played.
+ * The layout of a move is:
+ * <pre>
+ * bit 7     set for a move by player 2
+ * bits 0-6  the cell played, row * columns + column
+ * </pre>
+ * A game of tic-tac-toe fits in at most 20 bytes, where its rows in the games,
+ * players and moves tables and their indexes take several hundred. On boards
+ * of more than MAX_CELLS cells, each move takes two bytes instead, big-endian,
+ * with the player in bit 15 and the cell in bits 0-14.
+ */
+public final class ArchivedGame {
+
+  // cells that fit in the 7 bits of a one-byte move
+  static final int MAX_CELLS = 128;
+
+  private final GameBoard board;
+
+  private final List<Move> moves;
+
+  private ArchivedGame(GameBoard board, List<Move> moves) {
+    this.board = board;
+    this.moves = moves;
+  }
+
+  /**
+   * Packs a game into an archive record.
+   *
+   * @param gameboard the game's final board
+   * @param moves     the game's moves, in the order played
+   * @return the archive record
+   */
+  public static byte[] encode(GenericGameBoard gameboard, List<Move> moves) {
+    byte[] snapshot = GameSnapshot.encode(gameboard);
+    int columns = snapshot[2];
+    int moveLength = moveLength(snapshot);
+
+    byte[] record = Arrays.copyOf(snapshot, snapshot.length + moves.size() * moveLength);
+    for (int i = 0; i < moves.size(); i++) {
+      Move move = moves.get(i);
+      int cell = move.getMoveX() * columns + move.getMoveY();
+      int at = snapshot.length + i * moveLength;
+      if (moveLength == 1) {
+        record[at] = (byte) ((move.getPlayerId() == 2 ? 0x80 : 0) | cell);
+      } else {
+        record[at] = (byte) ((move.getPlayerId() == 2 ? 0x80 : 0) | cell >> 8);
+        record[at + 1] = (byte) cell;
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Unpacks an archive record.
+   *
+   * @param record    the archive record, as produced by encode()
+   * @param dbService database service the restored game board should use
+   * @return the archived game
+   * @throws DbServiceException if the record is not one this class can read
+   */
+  public static ArchivedGame decode(byte[] record, TicTacToeDbService dbService)
+      throws DbServiceException {
+    if (record.length < GameSnapshot.HEADER_LENGTH
+        || record.length < GameSnapshot.length(record)) {
+      throw new DbServiceException("Unrecognized archived game.");
+    }
+
+    int snapshotLength = GameSnapshot.length(record);
+    GameBoard board = GameSnapshot.decode(Arrays.copyOf(record, snapshotLength), dbService);
+    int columns = record[2];
+    int moveLength = moveLength(record);
+    if ((record.length - snapshotLength) % moveLength != 0) {
+      throw new DbServiceException("Unrecognized archived game.");
+    }
+
+    List<Move> moves = new ArrayList<>((record.length - snapshotLength) / moveLength);
+    for (int i = snapshotLength; i < record.length; i += moveLength) {
+      Player player = (record[i] & 0x80) == 0 ? board.getP1() : board.getP2();
+      int cell = moveLength == 1 ? record[i] & 0x7f
+          : (record[i] & 0x7f) << 8 | record[i + 1] & 0xff;
+      moves.add(new Move(player, cell / columns, cell % columns));
+    }
+    return new ArchivedGame(board, Collections.unmodifiableList(moves));
+  }
+
+  /**
+   * Returns the number of bytes each move takes, which follows from the size of
+   * the board in the snapshot at the start of a record.
+   */
+  private static int moveLength(byte[] snapshot) {
+    return snapshot[1] * snapshot[2] > MAX_CELLS ? 2 : 1;
+  }
+
+  /**
+   * Returns the game's final board.
+   *
+   * @return GameBoard in the state the game ended in
+   */
+  public GameBoard getBoard() {
+    return board;
+  }
+
+  public List<Move> getMoves() {
+    return moves;
+  }
+}
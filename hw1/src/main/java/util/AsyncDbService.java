@@ -0,0 +1,333 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import models.GameBoard;
+import models.GenericGameBoard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the calls of a blocking TicTacToeDbService on a fixed pool of I/O
+ * threads, so that request threads can hand database work over and move on.
+ * The number of operations waiting or running at once is bounded; once the
+ * bound is reached, further operations fail straight away rather than queue
+ * without limit.
+ *
+ * <p>Each I/O thread gets its own underlying service from the supplier given,
+ * since some services (e.g. TicTacToeSqliteDbService, which holds a single
+ * connection) must not be used by several threads at once. Services that are
+ * safe to share can be supplied as the same instance every time.
+ */
+public class AsyncDbService implements AsyncTicTacToeDbService {
+
+  private static Logger logger = LoggerFactory.getLogger(AsyncDbService.class);
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final ThreadPoolExecutor executor;
+
+  private final ThreadLocal<TicTacToeDbService> delegate;
+
+  private final int maxPending;
+
+  // one permit per operation accepted and not yet completed
+  private final Semaphore pending;
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  private volatile boolean running = true;
+
+  // the most recent commit handed over for each game, until it completes;
+  // later commits and restores of the game wait for it
+  private final Map<Integer, CompletableFuture<?>> lastCommit = new HashMap<>();
+
+  /**
+   * Constructor for an asynchronous service sharing a single underlying
+   * service between its I/O threads, with the thread count and bound set in
+   * PersistenceConfig.
+   *
+   * @param delegate service to run the database work with; must be safe to use
+   *                 from several threads at once
+   */
+  public AsyncDbService(TicTacToeDbService delegate) {
+    this(() -> delegate, PersistenceConfig.getAsyncThreads(),
+        PersistenceConfig.getAsyncMaxPending());
+  }
+
+  /**
+   * Constructor for an asynchronous service.
+   *
+   * @param delegates  supplies the service each I/O thread runs its database
+   *                   work with; called once per thread
+   * @param threads    number of I/O threads
+   * @param maxPending maximum number of operations waiting or running at once
+   */
+  public AsyncDbService(Supplier<? extends TicTacToeDbService> delegates, int threads,
+      int maxPending) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, "tictactoe-db-io-" + threadCount.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.delegate = ThreadLocal.withInitial(delegates);
+    this.maxPending = maxPending;
+    this.pending = new Semaphore(maxPending);
+  }
+
+  public int getThreads() {
+    return executor.getCorePoolSize();
+  }
+
+  /**
+   * Returns the number of operations accepted and not yet completed.
+   *
+   * @return number of pending operations
+   */
+  public int getPending() {
+    return maxPending - pending.availablePermits();
+  }
+
+  /**
+   * Returns the number of operations failed because too many were pending.
+   *
+   * @return number of rejected operations
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  /**
+   * Restores the most recent game board on an I/O thread, once the commits
+   * already handed over for that game have completed, as restoreGameBoard()
+   * does. The board returned saves its changes through this service.
+   *
+   * @return future of the restored game board
+   */
+  public CompletableFuture<GenericGameBoard> restoreMostRecentGameBoard() {
+    CompletableFuture<Integer> mostRecent = new CompletableFuture<>();
+    if (accept(mostRecent)) {
+      run(AsyncDbService::findMostRecentGameId, mostRecent);
+    }
+
+    return mostRecent.thenCompose(gameId -> {
+      if (gameId > 0) {
+        return restoreGameBoard(gameId);
+      }
+      // no games yet: the service decides what an empty board looks like
+      CompletableFuture<GenericGameBoard> result = new CompletableFuture<>();
+      if (accept(result)) {
+        run(db -> rebind(db.restoreMostRecentGameBoard()), result);
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Finds the ID of the most recent game on an I/O thread, once the commits
+   * already handed over for a game have completed.
+   *
+   * @param gameId the game ID whose commits to wait for
+   * @return future of the most recent game's ID, or of 0 if there are no games
+   */
+  public CompletableFuture<Integer> findMostRecentGameId(int gameId) {
+    return afterLastCommit(gameId, false, AsyncDbService::findMostRecentGameId);
+  }
+
+  /**
+   * Restores a game board on an I/O thread, once the commits already handed
+   * over for the game have completed. The board returned saves its changes
+   * through this service.
+   *
+   * @param gameId the game ID to restore
+   * @return future of the restored game board
+   */
+  public CompletableFuture<GenericGameBoard> restoreGameBoard(int gameId) {
+    return afterLastCommit(gameId, false, db -> {
+      db.connect();
+      try {
+        return rebind(db.restoreGameBoard(gameId));
+      } finally {
+        db.close();
+      }
+    });
+  }
+
+  /**
+   * Applies the writes of a transaction and commits them on an I/O thread, once
+   * the commits already handed over for the game have completed. If a write or
+   * the commit fails, the transaction is closed without being committed.
+   *
+   * @param gameId the game ID the writes belong to
+   * @param writes the writes of the transaction, in order
+   * @return future completed once the transaction is committed
+   */
+  public CompletableFuture<Void> commit(int gameId, List<PendingWrite> writes) {
+    List<PendingWrite> transaction = new ArrayList<>(writes);
+
+    return afterLastCommit(gameId, true, db -> {
+      db.connect();
+      try {
+        for (PendingWrite write : transaction) {
+          write.applyTo(db);
+        }
+        db.commit();
+
+      } catch (DbServiceException | RuntimeException e) {
+        db.close();
+        throw e;
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Waits for the operations already accepted to complete, then stops the I/O
+   * threads. Operations handed over afterwards fail.
+   *
+   * @throws DbServiceException if the operations did not complete in time
+   */
+  public void shutdown() throws DbServiceException {
+    running = false;
+    boolean completed = false;
+    try {
+      // commits waiting on an earlier one are only given to the executor once
+      // that one completes, so wait for every permit rather than for the executor
+      completed = pending.tryAcquire(maxPending, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executor.shutdown();
+
+    if (!completed) {
+      throw new DbServiceException("Pending database operations did not complete in time.");
+    }
+    pending.release(maxPending);
+  }
+
+  /**
+   * Runs a call after the last commit handed over for a game, whether that
+   * commit succeeds or not. If the call is itself a commit, it becomes the one
+   * later calls for the game wait for.
+   */
+  private <T> CompletableFuture<T> afterLastCommit(int gameId, boolean isCommit,
+      DbCall<T> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    if (!accept(result)) {
+      return result;
+    }
+
+    synchronized (lastCommit) {
+      CompletableFuture<?> previous = lastCommit.get(gameId);
+      if (previous == null) {
+        run(call, result);
+      } else {
+        previous.whenComplete((done, e) -> run(call, result));
+      }
+
+      if (isCommit) {
+        lastCommit.put(gameId, result);
+        result.whenComplete((done, e) -> {
+          synchronized (lastCommit) {
+            lastCommit.remove(gameId, result);
+          }
+        });
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Takes a pending permit for a new operation, or fails its future if there are
+   * already too many pending operations or the service has been shut down.
+   */
+  private boolean accept(CompletableFuture<?> result) {
+    if (!running) {
+      result.completeExceptionally(new DbServiceException("Database I/O threads have been "
+          + "shut down."));
+      return false;
+    }
+    if (!pending.tryAcquire()) {
+      rejected.incrementAndGet();
+      logger.warn("Rejected a database operation; " + maxPending + " are already pending.");
+      result.completeExceptionally(new DbServiceException("Too many database operations are "
+          + "pending; please try again."));
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Runs a call on an I/O thread and completes its future with the outcome,
+   * releasing the operation's pending permit first.
+   */
+  private <T> void run(DbCall<T> call, CompletableFuture<T> result) {
+    try {
+      executor.execute(() -> {
+        T value = null;
+        Exception failure = null;
+        try {
+          value = call.call(delegate.get());
+        } catch (DbServiceException | RuntimeException e) {
+          failure = e;
+        }
+
+        pending.release();
+        if (failure == null) {
+          result.complete(value);
+        } else {
+          result.completeExceptionally(failure);
+        }
+      });
+
+    } catch (RejectedExecutionException e) {
+      pending.release();
+      result.completeExceptionally(new DbServiceException("Database I/O threads have been "
+          + "shut down."));
+    }
+  }
+
+  /**
+   * Points a restored game board at this service, so that its later changes are
+   * handed over here rather than written by an I/O thread's own service.
+   */
+  private GenericGameBoard rebind(GenericGameBoard gameboard) {
+    if (gameboard instanceof GameBoard) {
+      ((GameBoard) gameboard).setAsyncDbService(this);
+    }
+    return gameboard;
+  }
+
+  /**
+   * Finds the ID of the most recent game in a transaction of its own.
+   */
+  private static int findMostRecentGameId(TicTacToeDbService db) throws DbServiceException {
+    db.connect();
+    try {
+      return db.findMostRecentGameId();
+    } finally {
+      db.close();
+    }
+  }
+
+  /**
+   * A call to run against an I/O thread's service.
+   */
+  @FunctionalInterface
+  private interface DbCall<T> {
+    T call(TicTacToeDbService dbService) throws DbServiceException;
+  }
+}
@@ -0,0 +1,63 @@
+package util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import models.GenericGameBoard;
+
+/**
+ * Non-blocking companion to TicTacToeDbService. Every call returns at once with
+ * a future that completes when the database work is done, so that the calling
+ * (request) thread does not wait for the database. Futures of failed calls
+ * complete exceptionally with a DbServiceException.
+ *
+ * <p>Since a transaction of TicTacToeDbService belongs to the thread that opened
+ * it, the writes of a transaction are handed over together, as PendingWrites,
+ * and saved and committed in one call.
+ */
+public interface AsyncTicTacToeDbService {
+
+  /**
+   * Finds the ID of the most recent game, once the transactions committed for
+   * a game before this call have completed.
+   *
+   * @param gameId the game ID whose transactions to wait for
+   * @return future of the most recent game's ID, or of 0 if there are no games
+   */
+  public CompletableFuture<Integer> findMostRecentGameId(int gameId);
+
+  /**
+   * Restores the most recent game board, or a new game board if there are no
+   * games yet.
+   *
+   * @return future of the restored game board
+   */
+  public CompletableFuture<GenericGameBoard> restoreMostRecentGameBoard();
+
+  /**
+   * Restores a game board, once the transactions committed for the game before
+   * this call have completed.
+   *
+   * @param gameId the game ID to restore
+   * @return future of the restored game board
+   */
+  public CompletableFuture<GenericGameBoard> restoreGameBoard(int gameId);
+
+  /**
+   * Saves the writes of one transaction and commits them. Transactions of the
+   * same game are committed in the order this method was called; those of
+   * different games may be committed in any order, or at the same time.
+   *
+   * @param gameId the game ID the writes belong to
+   * @param writes the writes of the transaction, in order
+   * @return future completed once the transaction is committed
+   */
+  public CompletableFuture<Void> commit(int gameId, List<PendingWrite> writes);
+
+  /**
+   * Waits for the database work already handed over to finish and stops
+   * accepting more.
+   *
+   * @throws DbServiceException if the work did not finish in time
+   */
+  public void shutdown() throws DbServiceException;
+}
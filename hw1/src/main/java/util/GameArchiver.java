@@ -0,0 +1,149 @@
+package util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background task that periodically moves finished games out of the tables
+ * games are played from, with TicTacToeDbService.archiveFinishedGames(), so
+ * that those tables (and their indexes) only grow with the games in progress.
+ * Each run archives gamesPerTransaction games per transaction, until no
+ * finished games are left; a run that fails is logged and tried again at the
+ * next interval.
+ *
+ * <p>The archiver uses the database service it is given from its own thread,
+ * so it needs a service of its own rather than the one requests use.
+ */
+public class GameArchiver {
+
+  static final int DEFAULT_GAMES_PER_TRANSACTION = 1000;
+
+  private final TicTacToeDbService dbService;
+
+  private final long intervalMillis;
+
+  private final int gamesPerTransaction;
+
+  private final AtomicLong gamesArchived = new AtomicLong();
+
+  private ScheduledExecutorService scheduler;
+
+  private static Logger logger = LoggerFactory.getLogger(GameArchiver.class);
+
+  /**
+   * Constructor for an archiver writing DEFAULT_GAMES_PER_TRANSACTION games per
+   * transaction.
+   *
+   * @param dbService      service, used by the archiver alone, to archive the
+   *                       games with
+   * @param intervalMillis time between the end of one run and the start of the
+   *                       next
+   */
+  public GameArchiver(TicTacToeDbService dbService, long intervalMillis) {
+    this(dbService, intervalMillis, DEFAULT_GAMES_PER_TRANSACTION);
+  }
+
+  /**
+   * Constructor for an archiver.
+   *
+   * @param dbService           service, used by the archiver alone, to archive
+   *                            the games with
+   * @param intervalMillis      time between the end of one run and the start of
+   *                            the next
+   * @param gamesPerTransaction number of games archived per transaction, which
+   *                            bounds how long writers wait for the archiver
+   */
+  public GameArchiver(TicTacToeDbService dbService, long intervalMillis,
+      int gamesPerTransaction) {
+    this.dbService = dbService;
+    this.intervalMillis = intervalMillis;
+    this.gamesPerTransaction = gamesPerTransaction;
+  }
+
+  /**
+   * Starts archiving in the background, the first run one interval from now.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "tictactoe-archiver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::archiveQuietly, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Archives every finished game now, other than the most recent game.
+   *
+   * @return number of games archived
+   * @throws DbServiceException if a transaction failed; the games archived
+   *                            before it stay archived
+   */
+  public synchronized int archive() throws DbServiceException {
+    int archived = 0;
+    int count;
+    do {
+      dbService.connect();
+      try {
+        count = dbService.archiveFinishedGames(gamesPerTransaction);
+        dbService.commit();
+      } catch (DbServiceException e) {
+        dbService.close();
+        throw e;
+      }
+      archived += count;
+      gamesArchived.addAndGet(count);
+    } while (count == gamesPerTransaction);
+
+    if (archived > 0) {
+      logger.info("Archived " + archived + " finished games.");
+    }
+    return archived;
+  }
+
+  /**
+   * Returns the number of games archived since the archiver was created.
+   *
+   * @return number of games archived
+   */
+  public long getGamesArchived() {
+    return gamesArchived.get();
+  }
+
+  /**
+   * Stops archiving, waiting for a run in progress to finish.
+   */
+  public void shutdown() {
+    ScheduledExecutorService running;
+    synchronized (this) {
+      running = scheduler;
+      scheduler = null;
+    }
+    if (running == null) {
+      return;
+    }
+
+    running.shutdown();
+    try {
+      running.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void archiveQuietly() {
+    try {
+      archive();
+    } catch (DbServiceException | RuntimeException e) {
+      logger.error("Could not archive finished games: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package util;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import models.Move;
+import models.Player;
+
+/**
+ * Writes the history of games as newline-delimited JSON (NDJSON): one JSON
+ * object per game, on a line of its own, written straight through to the
+ * underlying writer. Only one game is held at a time, so a whole database can
+ * be exported in constant memory. Each line looks like:
+ *
+ * <pre>
+ * {"gameId":1,"winner":1,"isDraw":false,
+ *  "players":[{"id":1,"type":"X"},{"id":2,"type":"O"}],
+ *  "moves":[{"playerId":1,"x":0,"y":0},{"playerId":2,"x":1,"y":1}]}
+ * </pre>
+ *
+ * <p>(without the line breaks), with the moves in the order they were played.
+ */
+public class GameHistoryWriter implements Closeable, Flushable {
+
+  private final Writer out;
+
+  private final JsonWriter json;
+
+  private int gamesWritten;
+
+  /**
+   * Creates a writer of game history lines.
+   *
+   * @param out where to write the lines; closed along with this writer
+   */
+  public GameHistoryWriter(Writer out) {
+    this.out = out;
+    this.json = new JsonWriter(out);
+    // several top-level values, one per line
+    this.json.setLenient(true);
+  }
+
+  public int getGamesWritten() {
+    return gamesWritten;
+  }
+
+  /**
+   * Writes one game as a line of JSON.
+   *
+   * @param gameId  the game's ID
+   * @param players the game's players
+   * @param moves   the game's moves, in the order played
+   * @param winner  ID of the winning player, or 0 if there is none
+   * @param isDraw  whether the game ended in a draw
+   * @throws IOException if the line could not be written
+   */
+  public void writeGame(int gameId, List<Player> players, List<Move> moves, int winner,
+      boolean isDraw) throws IOException {
+    json.beginObject();
+    json.name("gameId").value(gameId);
+    json.name("winner").value(winner);
+    json.name("isDraw").value(isDraw);
+
+    json.name("players").beginArray();
+    for (Player player : players) {
+      json.beginObject();
+      json.name("id").value(player.getId());
+      json.name("type").value(String.valueOf(player.getType()));
+      json.endObject();
+    }
+    json.endArray();
+
+    json.name("moves").beginArray();
+    for (Move move : moves) {
+      json.beginObject();
+      json.name("playerId").value(move.getPlayerId());
+      json.name("x").value(move.getMoveX());
+      json.name("y").value(move.getMoveY());
+      json.endObject();
+    }
+    json.endArray();
+
+    json.endObject();
+    out.write('\n');
+    gamesWritten++;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    json.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (gamesWritten == 0) {
+      // JsonWriter refuses to close a document without any values
+      out.close();
+    } else {
+      json.close();
+    }
+  }
+}
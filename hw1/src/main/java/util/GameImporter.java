@@ -0,0 +1,335 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.GameBoard;
+import models.InvalidGameBoardConfigurationException;
+import models.Message;
+import models.Move;
+import models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads recorded games in bulk from a game history file, one game per line in
+ * the format GameHistoryWriter writes (so an export can be loaded back). Every
+ * game is checked by replaying its moves through a GameBoard, and is left out
+ * if it cannot be read, breaks the rules, or its recorded result does not match
+ * the moves played.
+ *
+ * <p>Lines are read gamesPerTransaction at a time. Each chunk is parsed and
+ * replayed on a pool of threads, one slice of the chunk per thread, while the
+ * chunk before it is written with TicTacToeDbService.saveGames() and committed
+ * as a single transaction. Imported games are given new IDs following the most
+ * recent game in the database, in the order they appear in the file. The last
+ * one imported becomes the most recent game, which a server restores on
+ * startup; since a new game started there takes the next ID rather than
+ * replacing the game on the board, imported games are never overwritten. If a
+ * transaction fails, the import stops, and the games committed before it stay
+ * imported.
+ *
+ * <p>Run with: mvn compile exec:java -Dexec.mainClass=util.GameImporter
+ * -Dexec.args="games.ndjson [database]"
+ */
+public class GameImporter {
+
+  static final int DEFAULT_GAMES_PER_TRANSACTION = 10000;
+
+  // only the first few rejected games are logged, a file can have millions
+  private static final int MAX_LOGGED_REJECTIONS = 10;
+
+  private final TicTacToeDbService dbService;
+
+  private final int threads;
+
+  private final int gamesPerTransaction;
+
+  private static Logger logger = LoggerFactory.getLogger(GameImporter.class);
+
+  /**
+   * Constructor for an importer that replays games on one thread per core.
+   *
+   * @param dbService service to write the games with
+   */
+  public GameImporter(TicTacToeDbService dbService) {
+    this(dbService, Runtime.getRuntime().availableProcessors(), DEFAULT_GAMES_PER_TRANSACTION);
+  }
+
+  /**
+   * Constructor for an importer.
+   *
+   * @param dbService           service to write the games with
+   * @param threads             number of threads to parse and replay games on
+   * @param gamesPerTransaction number of lines of the file written per
+   *                            transaction
+   */
+  public GameImporter(TicTacToeDbService dbService, int threads, int gamesPerTransaction) {
+    this.dbService = dbService;
+    this.threads = threads;
+    this.gamesPerTransaction = gamesPerTransaction;
+  }
+
+  /**
+   * Imports every game in a game history file. Blank lines are skipped.
+   *
+   * @param in the file's lines
+   * @return how many games were imported and rejected, and how fast
+   * @throws DbServiceException if a transaction failed; the games committed
+   *                            before it stay imported
+   * @throws IOException        if the file could not be read
+   */
+  public ImportReport importGames(BufferedReader in) throws DbServiceException, IOException {
+    long start = System.nanoTime();
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService replayers = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "tictactoe-import-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    dbService.connect();
+    int nextGameId = dbService.findMostRecentGameId() + 1;
+    dbService.close();
+
+    long imported = 0;
+    long rejected = 0;
+    long rows = 0;
+    int lineNumber = 0;
+    try {
+      List<String> lines = readLines(in);
+      List<Future<List<ReplayedGame>>> chunk = replay(lines, lineNumber, replayers);
+      while (!lines.isEmpty()) {
+        lineNumber += lines.size();
+        // the next chunk is replayed while this one is written
+        lines = readLines(in);
+        List<Future<List<ReplayedGame>>> nextChunk = replay(lines, lineNumber, replayers);
+
+        Map<Integer, GameBoard> gameboards = new LinkedHashMap<>();
+        Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+        for (ReplayedGame game : await(chunk)) {
+          if (game.error != null) {
+            if (rejected++ < MAX_LOGGED_REJECTIONS) {
+              logger.warn("Skipping the game on line " + game.line + ": " + game.error);
+            }
+          } else if (game.board != null) {
+            gameboards.put(nextGameId, game.board);
+            moves.put(nextGameId, game.moves);
+            rows += 3 + game.moves.size();
+            nextGameId++;
+          }
+        }
+        write(gameboards, moves);
+        imported += gameboards.size();
+        chunk = nextChunk;
+      }
+
+    } finally {
+      replayers.shutdownNow();
+    }
+
+    ImportReport report = new ImportReport(imported, rejected, rows, System.nanoTime() - start);
+    logger.info(report.toString());
+    return report;
+  }
+
+  /**
+   * Replays a recorded game through a GameBoard, checking each move with the
+   * rules a player's move is checked with, and that the game ended as
+   * recorded.
+   *
+   * @param game the recorded game
+   * @return the game board the game ended with
+   * @throws InvalidGameBoardConfigurationException if the game does not have
+   *                                                players 1 and 2 of different
+   *                                                types, a move may not be
+   *                                                played, or the result does
+   *                                                not match
+   */
+  public static GameBoard replay(RecordedGame game) {
+    GameBoard gameboard = new GameBoard(null);
+    if (game.getPlayers().size() != 2) {
+      throw new InvalidGameBoardConfigurationException("A game needs two players; got "
+          + game.getPlayers().size() + ".");
+    }
+    for (Player player : game.getPlayers()) {
+      if (!gameboard.acceptedTypes().contains(player.getType())) {
+        throw new InvalidGameBoardConfigurationException("Player " + player.getId()
+            + " has a type that is not accepted: " + player.getType());
+      }
+      if (player.getId() == 1) {
+        gameboard.setP1(player);
+      }
+    }
+    for (Player player : game.getPlayers()) {
+      if (player.getId() == 2) {
+        gameboard.setP2(player);
+      }
+    }
+    // fails if either player 1 or 2 is missing
+    gameboard.setGameStarted(true);
+    gameboard.setTurn(1);
+
+    int moveNumber = 0;
+    for (Move move : game.getMoves()) {
+      moveNumber++;
+      Message message = gameboard.checkMove(move);
+      if (message != null) {
+        throw new InvalidGameBoardConfigurationException("Move " + moveNumber + ": "
+            + message.getMessage());
+      }
+      GameSnapshot.applyMove(gameboard, move);
+    }
+
+    if (gameboard.getWinner() != game.getWinner() || gameboard.isDraw() != game.isDraw()) {
+      throw new InvalidGameBoardConfigurationException("The recorded result (winner "
+          + game.getWinner() + ", draw " + game.isDraw() + ") does not match the moves played.");
+    }
+    return gameboard;
+  }
+
+  /**
+   * Imports a game history file into a SQLite database, creating the tables if
+   * necessary, and prints the report.
+   *
+   * @param args path of the file, and optionally of the database
+   * @throws DbServiceException if a transaction failed
+   * @throws IOException        if the file could not be read
+   */
+  public static void main(String[] args) throws DbServiceException, IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: GameImporter <games.ndjson> [database]");
+      return;
+    }
+
+    TicTacToeSqliteDbService dbService = args.length > 1
+        ? new TicTacToeSqliteDbService(args[1]) : new TicTacToeSqliteDbService();
+    dbService.createDatabasesTables();
+
+    try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]),
+        StandardCharsets.UTF_8)) {
+      System.out.println(new GameImporter(dbService).importGames(in));
+    }
+  }
+
+  /**
+   * Reads up to gamesPerTransaction lines; an empty list means the file has
+   * been read to the end.
+   */
+  private List<String> readLines(BufferedReader in) throws IOException {
+    List<String> lines = new ArrayList<>(gamesPerTransaction);
+    String line;
+    while (lines.size() < gamesPerTransaction && (line = in.readLine()) != null) {
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  /**
+   * Hands one slice of a chunk of lines to each replaying thread.
+   *
+   * @param lines      the chunk's lines
+   * @param lineNumber number of lines of the file before the chunk
+   * @param replayers  threads to parse and replay the games on
+   * @return the replayed games of each slice, in file order
+   */
+  private List<Future<List<ReplayedGame>>> replay(List<String> lines, int lineNumber,
+      ExecutorService replayers) {
+    List<Future<List<ReplayedGame>>> slices = new ArrayList<>();
+    int sliceSize = (lines.size() + threads - 1) / threads;
+
+    for (int from = 0; from < lines.size(); from += sliceSize) {
+      List<String> slice = lines.subList(from, Math.min(from + sliceSize, lines.size()));
+      int firstLine = lineNumber + from + 1;
+      slices.add(replayers.submit(() -> {
+        List<ReplayedGame> games = new ArrayList<>(slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+          games.add(ReplayedGame.of(slice.get(i), firstLine + i));
+        }
+        return games;
+      }));
+    }
+    return slices;
+  }
+
+  private static List<ReplayedGame> await(List<Future<List<ReplayedGame>>> slices)
+      throws DbServiceException {
+    List<ReplayedGame> games = new ArrayList<>();
+    try {
+      for (Future<List<ReplayedGame>> slice : slices) {
+        games.addAll(slice.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbServiceException("Import was interrupted.");
+    } catch (ExecutionException e) {
+      // every error a game can cause is caught while it is replayed
+      throw new IllegalStateException(e.getCause());
+    }
+    return games;
+  }
+
+  /**
+   * Writes the valid games of a chunk and commits them.
+   */
+  private void write(Map<Integer, GameBoard> gameboards, Map<Integer, List<Move>> moves)
+      throws DbServiceException {
+    if (gameboards.isEmpty()) {
+      return;
+    }
+
+    dbService.connect();
+    try {
+      dbService.saveGames(gameboards, moves);
+      dbService.commit();
+    } catch (DbServiceException e) {
+      dbService.close();
+      throw e;
+    }
+  }
+
+  /**
+   * A line of the file after it was parsed and replayed: the game's final
+   * board and moves, or why it was rejected, or neither for a blank line.
+   */
+  private static final class ReplayedGame {
+
+    private final int line;
+
+    private final GameBoard board;
+
+    private final List<Move> moves;
+
+    private final String error;
+
+    private ReplayedGame(int line, GameBoard board, List<Move> moves, String error) {
+      this.line = line;
+      this.board = board;
+      this.moves = moves;
+      this.error = error;
+    }
+
+    static ReplayedGame of(String text, int line) {
+      if (text.isBlank()) {
+        return new ReplayedGame(line, null, null, null);
+      }
+      try {
+        RecordedGame game = RecordedGame.parse(text);
+        return new ReplayedGame(line, replay(game), game.getMoves(), null);
+      } catch (IOException | RuntimeException e) {
+        return new ReplayedGame(line, null, null, e.getMessage());
+      }
+    }
+  }
+}
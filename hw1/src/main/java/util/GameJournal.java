@@ -0,0 +1,410 @@
+package util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only file of fixed-size game event records. Each transaction is written
+ * as its records followed by a COMMIT record, in a single write at the end of
+ * the file. Every record carries a CRC32 checksum, so that on startup the
+ * journal can be scanned and anything after the last complete transaction (a
+ * torn or partly written tail left by a crash) is cut off. The layout of a
+ * record is:
+ * <pre>
+ * [0] type   [1-4] game id (record count for COMMIT)   [5-12] timestamp (millis)
+ * [13-27] payload   [28-31] CRC32 of bytes 0-27
+ * </pre>
+ */
+public class GameJournal {
+
+  public static final int RECORD_SIZE = 32;
+
+  public static final int PAYLOAD_SIZE = 15;
+
+  static final int PAYLOAD_OFFSET = 13;
+
+  static final int CHECKSUM_OFFSET = 28;
+
+  public static final byte CREATE_GAME = 1;
+
+  public static final byte PLAYER = 2;
+
+  public static final byte MOVE = 3;
+
+  public static final byte STATE = 4;
+
+  public static final byte DELETE_GAME = 5;
+
+  public static final byte COMMIT = 6;
+
+  // the size of a game's board, for boards whose STATE does not fit in a record
+  public static final byte BOARD = 7;
+
+  private static Logger logger = LoggerFactory.getLogger(GameJournal.class);
+
+  private final Path file;
+
+  private final FileChannel channel;
+
+  // end of the last complete transaction; new transactions are written here
+  private long end;
+
+  private final ScheduledExecutorService syncer;
+
+  // number of transactions appended so far; each append takes the next one
+  private volatile long appended;
+
+  // guards synced and syncing, and is waited on while another thread forces
+  private final Object syncLock = new Object();
+
+  // every transaction up to this number is known to be on disk
+  private long synced;
+
+  // true while a thread is forcing the file to disk
+  private boolean syncing;
+
+  /**
+   * Receives the records of each complete transaction found while recovering
+   * the journal.
+   */
+  @FunctionalInterface
+  public interface RecordVisitor {
+    void visit(Record record);
+  }
+
+  /**
+   * Opens (or creates) a journal file. Nothing is read until recover() is called.
+   *
+   * @param file        path of the journal file
+   * @param fsyncMillis how often appended records are forced to disk; 0 forces
+   *                    them before every append returns
+   * @throws IOException if the file could not be opened
+   */
+  public GameJournal(Path file, long fsyncMillis) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+
+    if (fsyncMillis > 0) {
+      syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "tictactoe-journal-fsync");
+        thread.setDaemon(true);
+        return thread;
+      });
+      syncer.scheduleWithFixedDelay(this::syncQuietly, fsyncMillis, fsyncMillis,
+          TimeUnit.MILLISECONDS);
+    } else {
+      syncer = null;
+    }
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the size of the committed part of the journal.
+   *
+   * @return length in bytes
+   */
+  public synchronized long size() {
+    return end;
+  }
+
+  /**
+   * Scans the journal from the start and passes the records of each complete
+   * transaction to the visitor, in order. If the scan finds a record that is
+   * incomplete, fails its checksum, or is not followed by a COMMIT record, the
+   * journal is truncated to the end of the last complete transaction.
+   *
+   * @param visitor receives every committed record except the COMMIT records
+   * @return number of committed transactions found
+   * @throws IOException if the journal could not be read or truncated
+   */
+  public synchronized int recover(RecordVisitor visitor) throws IOException {
+    long length = channel.size();
+    long position = 0;
+    int transactions = 0;
+    List<Record> pending = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    end = 0;
+    while (position + RECORD_SIZE <= length) {
+      buffer.clear();
+      readFully(buffer, position);
+      Record record = Record.decode(buffer.array(), position);
+
+      if (record == null) {
+        break;
+      }
+      position += RECORD_SIZE;
+
+      if (record.getType() == COMMIT) {
+        if (record.getGameId() != pending.size()) {
+          break;
+        }
+        for (Record committed : pending) {
+          visitor.visit(committed);
+        }
+        pending.clear();
+        end = position;
+        transactions++;
+      } else {
+        pending.add(record);
+      }
+    }
+
+    if (end < length) {
+      logger.warn("Discarding " + (length - end) + " bytes of incomplete transactions at "
+          + "the end of " + file + ".");
+      channel.truncate(end);
+      channel.force(false);
+    }
+    return transactions;
+  }
+
+  /**
+   * Appends the records of one transaction, followed by its COMMIT record.
+   *
+   * @param records records to append; their offsets are set once written
+   * @throws IOException if the records could not be written
+   */
+  public void append(List<Record> records) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((records.size() + 1) * RECORD_SIZE);
+    long timestamp = System.currentTimeMillis();
+    for (Record record : records) {
+      buffer.put(record.encode(timestamp));
+    }
+    buffer.put(new Record(COMMIT, records.size(), new byte[0]).encode(timestamp));
+    buffer.flip();
+
+    long transaction;
+    synchronized (this) {
+      long start = end;
+      try {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer, start + buffer.position());
+        }
+      } catch (IOException e) {
+        // leave no partial transaction behind for later appends to follow
+        channel.truncate(start);
+        throw e;
+      }
+      end = start + buffer.limit();
+
+      for (int i = 0; i < records.size(); i++) {
+        records.get(i).offset = start + (long) i * RECORD_SIZE;
+      }
+      transaction = ++appended;
+    }
+
+    if (syncer == null) {
+      syncTo(transaction);
+    }
+  }
+
+  /**
+   * Reads a single record back from the journal.
+   *
+   * @param offset position of the record, as set by append() or recover()
+   * @return the record
+   * @throws IOException if the record could not be read or is corrupt
+   */
+  public Record read(long offset) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    readFully(buffer, offset);
+    Record record = Record.decode(buffer.array(), offset);
+    if (record == null) {
+      throw new IOException("Corrupt journal record at offset " + offset + ".");
+    }
+    return record;
+  }
+
+  /**
+   * Forces everything appended so far to disk.
+   *
+   * @throws IOException if the file could not be synced
+   */
+  public void sync() throws IOException {
+    syncTo(appended);
+  }
+
+  /**
+   * Returns once a force that started after the given transaction was appended
+   * has completed. Only one thread forces at a time; the others wait for it,
+   * and are done if it covered their transaction, so transactions appended
+   * while a force runs share the next one.
+   *
+   * @param transaction number of the transaction that must be on disk
+   * @throws IOException if the file could not be synced, or the thread was
+   *                     interrupted while waiting
+   */
+  private void syncTo(long transaction) throws IOException {
+    synchronized (syncLock) {
+      while (synced < transaction && syncing) {
+        try {
+          syncLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted waiting to sync " + file + ".");
+        }
+      }
+      if (synced >= transaction) {
+        return;
+      }
+      syncing = true;
+    }
+
+    // every transaction up to this one was written before the force starts
+    long covered = appended;
+    boolean forced = false;
+    try {
+      channel.force(false);
+      forced = true;
+    } finally {
+      synchronized (syncLock) {
+        syncing = false;
+        if (forced) {
+          synced = Math.max(synced, covered);
+        }
+        syncLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Syncs and closes the journal file.
+   *
+   * @throws IOException if the file could not be synced or closed
+   */
+  public void close() throws IOException {
+    if (syncer != null) {
+      syncer.shutdown();
+    }
+    if (channel.isOpen()) {
+      sync();
+      channel.close();
+    }
+  }
+
+  private void syncQuietly() {
+    try {
+      sync();
+    } catch (IOException e) {
+      logger.error("Could not sync " + file + ": " + e.getMessage());
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of journal at offset " + position + ".");
+      }
+    }
+  }
+
+  /**
+   * A single journal record.
+   */
+  public static final class Record {
+
+    private final byte type;
+
+    private final int gameId;
+
+    private final byte[] payload;
+
+    private long timestamp;
+
+    private long offset = -1;
+
+    /**
+     * Constructor for a new record, to be appended.
+     *
+     * @param type    record type, e.g. GameJournal.MOVE
+     * @param gameId  game the record belongs to
+     * @param payload up to PAYLOAD_SIZE bytes of type-specific data
+     */
+    public Record(byte type, int gameId, byte[] payload) {
+      if (payload.length > PAYLOAD_SIZE) {
+        throw new IllegalArgumentException("Journal payload is limited to " + PAYLOAD_SIZE
+            + " bytes.");
+      }
+      this.type = type;
+      this.gameId = gameId;
+      this.payload = payload;
+    }
+
+    public byte getType() {
+      return type;
+    }
+
+    public int getGameId() {
+      return gameId;
+    }
+
+    /**
+     * Returns the type-specific data of the record, padded with zeros to
+     * PAYLOAD_SIZE for records read back from the journal.
+     *
+     * @return payload bytes
+     */
+    public byte[] getPayload() {
+      return payload.clone();
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    private byte[] encode(long timestamp) {
+      this.timestamp = timestamp;
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+      buffer.put(type).putInt(gameId).putLong(timestamp).put(payload);
+
+      CRC32 crc = new CRC32();
+      crc.update(buffer.array(), 0, CHECKSUM_OFFSET);
+      buffer.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+      return buffer.array();
+    }
+
+    private static Record decode(byte[] bytes, long offset) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, CHECKSUM_OFFSET);
+      if (buffer.getInt(CHECKSUM_OFFSET) != (int) crc.getValue()) {
+        return null;
+      }
+
+      byte type = buffer.get();
+      if (type < CREATE_GAME || type > BOARD) {
+        return null;
+      }
+      int gameId = buffer.getInt();
+      long timestamp = buffer.getLong();
+      byte[] payload = new byte[PAYLOAD_SIZE];
+      buffer.get(payload);
+
+      Record record = new Record(type, gameId, payload);
+      record.timestamp = timestamp;
+      record.offset = offset;
+      return record;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background task that periodically deletes abandoned games, that is, games
+ * still being played that have not been written to for longer than a time to
+ * live, with TicTacToeDbService.expireIdleGames(). Each run expires
+ * gamesPerTransaction games per transaction, until no idle games are left, and
+ * then hands the IDs of the expired games to a listener, which can let go of
+ * anything else held for them. A run that fails is logged and tried again at
+ * the next interval.
+ *
+ * <p>The reaper runs on a low-priority thread and uses the database service it
+ * is given from that thread, so it needs a service of its own rather than the
+ * one requests use (unless that service can be shared across threads, as the
+ * in-memory service can).
+ */
+public class GameReaper {
+
+  static final int DEFAULT_GAMES_PER_TRANSACTION = 500;
+
+  private final TicTacToeDbService dbService;
+
+  private final long ttlMillis;
+
+  private final long intervalMillis;
+
+  private final int gamesPerTransaction;
+
+  private final Consumer<List<Integer>> onExpired;
+
+  private final AtomicLong gamesExpired = new AtomicLong();
+
+  private ScheduledExecutorService scheduler;
+
+  private static Logger logger = LoggerFactory.getLogger(GameReaper.class);
+
+  /**
+   * Constructor for a reaper expiring DEFAULT_GAMES_PER_TRANSACTION games per
+   * transaction.
+   *
+   * @param dbService      service, used by the reaper alone, to expire the games
+   *                       with
+   * @param ttlMillis      how long a game may go without being written to before
+   *                       it is expired
+   * @param intervalMillis time between the end of one run and the start of the
+   *                       next
+   * @param onExpired      called with the IDs of the games expired by each run
+   *                       that expired any
+   */
+  public GameReaper(TicTacToeDbService dbService, long ttlMillis, long intervalMillis,
+      Consumer<List<Integer>> onExpired) {
+    this(dbService, ttlMillis, intervalMillis, DEFAULT_GAMES_PER_TRANSACTION, onExpired);
+  }
+
+  /**
+   * Constructor for a reaper.
+   *
+   * @param dbService           service, used by the reaper alone, to expire the
+   *                            games with
+   * @param ttlMillis           how long a game may go without being written to
+   *                            before it is expired
+   * @param intervalMillis      time between the end of one run and the start of
+   *                            the next
+   * @param gamesPerTransaction number of games expired per transaction, which
+   *                            bounds how long writers wait for the reaper
+   * @param onExpired           called with the IDs of the games expired by each
+   *                            run that expired any
+   */
+  public GameReaper(TicTacToeDbService dbService, long ttlMillis, long intervalMillis,
+      int gamesPerTransaction, Consumer<List<Integer>> onExpired) {
+    this.dbService = dbService;
+    this.ttlMillis = ttlMillis;
+    this.intervalMillis = intervalMillis;
+    this.gamesPerTransaction = gamesPerTransaction;
+    this.onExpired = onExpired;
+  }
+
+  /**
+   * Starts expiring idle games in the background, the first run one interval
+   * from now.
+   */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "tictactoe-reaper");
+      thread.setDaemon(true);
+      // expiring games is never urgent, so it should not take CPU from requests
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::reapQuietly, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Expires every game that has been idle for longer than the time to live as
+   * of now, then passes their IDs to the listener.
+   *
+   * @return IDs of the games expired
+   * @throws DbServiceException if a transaction failed; the games expired
+   *                            before it stay expired, and are still passed to
+   *                            the listener
+   */
+  public synchronized List<Integer> reap() throws DbServiceException {
+    long idleSince = System.currentTimeMillis() - ttlMillis;
+    List<Integer> expired = new ArrayList<>();
+    try {
+      int count;
+      do {
+        dbService.connect();
+        List<Integer> ids;
+        try {
+          ids = dbService.expireIdleGames(idleSince, gamesPerTransaction);
+          dbService.commit();
+        } catch (DbServiceException e) {
+          dbService.close();
+          throw e;
+        }
+        count = ids.size();
+        expired.addAll(ids);
+        gamesExpired.addAndGet(count);
+      } while (count == gamesPerTransaction);
+
+    } finally {
+      if (!expired.isEmpty()) {
+        logger.info("Expired " + expired.size() + " games idle for more than "
+            + ttlMillis + " ms.");
+        onExpired.accept(expired);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Returns the number of games expired since the reaper was created.
+   *
+   * @return number of games expired
+   */
+  public long getGamesExpired() {
+    return gamesExpired.get();
+  }
+
+  /**
+   * Stops expiring games, waiting for a run in progress to finish.
+   */
+  public void shutdown() {
+    ScheduledExecutorService running;
+    synchronized (this) {
+      running = scheduler;
+      scheduler = null;
+    }
+    if (running == null) {
+      return;
+    }
+
+    running.shutdown();
+    try {
+      running.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void reapQuietly() {
+    try {
+      reap();
+    } catch (DbServiceException | RuntimeException e) {
+      logger.error("Could not expire idle games: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package util;
+
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.InvalidGameBoardConfigurationException;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+
+/**
+ * Packs the full state of a game board into a small byte array so that it can be
+ * stored alongside the game in the database and restored with a single row read,
+ * rather than by replaying every move. The layout is:
+ * <pre>
+ * [0] version   [1] rows   [2] columns
+ * [3] flags (bit 0: started, bit 1: draw, bit 2: the server plays player 2)
+ * [4] turn      [5] winner [6] player 1 type   [7] player 2 type (0 if missing)
+ * [8...] board cells in row order, 2 bits each (0: empty, 1: 'X', 2: 'O')
+ * </pre>
+ * Boards other than the standard 3x3 board with 3 in a row are saved as
+ * version 2, whose header has one more byte, [8], for the number of pieces in
+ * a row needed to win; their cells start at [9] and they are restored as an
+ * MnkGameBoard.
+ */
+public class GameSnapshot {
+
+  static final byte VERSION = 1;
+
+  static final int HEADER_LENGTH = 8;
+
+  static final byte SIZED_VERSION = 2;
+
+  static final int SIZED_HEADER_LENGTH = 9;
+
+  private static final int FLAG_STARTED = 1;
+
+  private static final int FLAG_DRAW = 2;
+
+  private static final int FLAG_COMPUTER_OPPONENT = 4;
+
+  private GameSnapshot() {
+  }
+
+  /**
+   * Encodes the state of a game board as a snapshot.
+   *
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @return packed snapshot of the game board
+   */
+  public static byte[] encode(GenericGameBoard gameboard) {
+    char[][] board = gameboard.getBoardState();
+    int rows = board.length;
+    int columns = board[0].length;
+    int winLength = gameboard instanceof GameBoard ? ((GameBoard) gameboard).getWinLength()
+        : GameBoard.getRows();
+    boolean standard = rows == GameBoard.getRows() && columns == GameBoard.getColumns()
+        && winLength == GameBoard.getRows();
+    int header = standard ? HEADER_LENGTH : SIZED_HEADER_LENGTH;
+
+    byte[] snapshot = new byte[header + (rows * columns + 3) / 4];
+    snapshot[0] = standard ? VERSION : SIZED_VERSION;
+    snapshot[1] = (byte) rows;
+    snapshot[2] = (byte) columns;
+    boolean computerOpponent = gameboard instanceof GameBoard
+        && ((GameBoard) gameboard).hasComputerOpponent();
+    snapshot[3] = (byte) ((gameboard.isGameStarted() ? FLAG_STARTED : 0)
+        | (gameboard.isDraw() ? FLAG_DRAW : 0)
+        | (computerOpponent ? FLAG_COMPUTER_OPPONENT : 0));
+    snapshot[4] = (byte) gameboard.getTurn();
+    snapshot[5] = (byte) gameboard.getWinner();
+    snapshot[6] = (byte) (gameboard.getP1() == null ? 0 : gameboard.getP1().getType());
+    snapshot[7] = (byte) (gameboard.getP2() == null ? 0 : gameboard.getP2().getType());
+    if (!standard) {
+      snapshot[8] = (byte) winLength;
+    }
+
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        int cell = i * columns + j;
+        snapshot[header + cell / 4] |= cellCode(board[i][j]) << (cell % 4 * 2);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Decodes a snapshot back into a game board.
+   *
+   * @param snapshot  packed snapshot, as produced by encode()
+   * @param dbService database service the restored game board should use
+   * @return GameBoard in the state captured by the snapshot; an MnkGameBoard
+   *         for a version 2 snapshot
+   * @throws DbServiceException if the snapshot is not one this class can read
+   */
+  public static GameBoard decode(byte[] snapshot, TicTacToeDbService dbService)
+      throws DbServiceException {
+
+    boolean standard = snapshot.length >= HEADER_LENGTH && snapshot[0] == VERSION;
+    if (!standard && (snapshot.length < SIZED_HEADER_LENGTH || snapshot[0] != SIZED_VERSION)) {
+      throw new DbServiceException("Unrecognized game board snapshot.");
+    }
+
+    int rows = snapshot[1];
+    int columns = snapshot[2];
+    if (standard && (rows != GameBoard.getRows() || columns != GameBoard.getColumns())) {
+      throw new DbServiceException("Snapshot is for a " + rows + "x" + columns
+          + " board; expected " + GameBoard.getRows() + "x" + GameBoard.getColumns() + ".");
+    }
+    if (rows < 1 || columns < 1 || snapshot.length != length(snapshot)) {
+      throw new DbServiceException("Snapshot of a " + rows + "x" + columns
+          + " board has the wrong length.");
+    }
+
+    int header = standard ? HEADER_LENGTH : SIZED_HEADER_LENGTH;
+    char[][] board = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        int cell = i * columns + j;
+        board[i][j] = cellType((snapshot[header + cell / 4] >> (cell % 4 * 2)) & 3);
+      }
+    }
+
+    Player p1 = snapshot[6] == 0 ? null : new Player((char) snapshot[6], 1);
+    Player p2 = snapshot[7] == 0 ? null : new Player((char) snapshot[7], 2);
+    boolean gameStarted = (snapshot[3] & FLAG_STARTED) != 0;
+    boolean isDraw = (snapshot[3] & FLAG_DRAW) != 0;
+
+    GameBoard gb;
+    if (!standard) {
+      try {
+        gb = new MnkGameBoard(snapshot[8], p1, p2, gameStarted, snapshot[4], board,
+            snapshot[5], isDraw, dbService);
+      } catch (InvalidGameBoardConfigurationException e) {
+        throw new DbServiceException("Unrecognized game board snapshot: " + e.getMessage());
+      }
+    } else {
+      gb = new GameBoard(p1, p2, gameStarted, snapshot[4], board, snapshot[5], isDraw,
+          dbService);
+    }
+    gb.setComputerOpponent((snapshot[3] & FLAG_COMPUTER_OPPONENT) != 0);
+    return gb;
+  }
+
+  /**
+   * Returns the length of the snapshot at the start of a byte array, which
+   * follows from the size of its board.
+   *
+   * @param bytes bytes starting with a snapshot's header
+   * @return length of the snapshot in bytes
+   */
+  static int length(byte[] bytes) {
+    int header = bytes[0] == SIZED_VERSION ? SIZED_HEADER_LENGTH : HEADER_LENGTH;
+    return header + (bytes[1] * bytes[2] + 3) / 4;
+  }
+
+  /**
+   * Checks whether the game a snapshot captures has been won or drawn, without
+   * decoding its board.
+   *
+   * @param snapshot packed snapshot, as produced by encode()
+   * @return true if the game has a winner or is a draw
+   */
+  static boolean isFinished(byte[] snapshot) {
+    return snapshot[5] != 0 || (snapshot[3] & FLAG_DRAW) != 0;
+  }
+
+  /**
+   * Adds a restored player to a game board; player 1 always has the first turn
+   * and the game starts once player 2 is added. Any other player is ignored.
+   *
+   * @param gb     game board being restored
+   * @param player player read from storage
+   */
+  static void applyPlayer(GameBoard gb, Player player) {
+    if (player.getId() == 1) {
+      gb.setP1(player);
+      gb.setTurn(1);
+
+    } else if (player.getId() == 2) {
+      gb.setP2(player);
+      gb.setGameStarted(true);
+    }
+  }
+
+  /**
+   * Plays a restored move on a game board, marking a draw if the move filled
+   * the board without a winner.
+   *
+   * @param gb   game board being restored
+   * @param move move read from storage
+   */
+  static void applyMove(GameBoard gb, Move move) {
+    gb.playMove(move);
+    if (gb.isFull() && gb.getWinner() == 0) {
+      gb.setDraw(true);
+    }
+  }
+
+  private static int cellCode(char type) {
+    switch (type) {
+      case 'X':
+        return 1;
+      case 'O':
+        return 2;
+      default:
+        return 0;
+    }
+  }
+
+  private static char cellType(int code) {
+    switch (code) {
+      case 1:
+        return 'X';
+      case 2:
+        return 'O';
+      default:
+        return 0;
+    }
+  }
+}
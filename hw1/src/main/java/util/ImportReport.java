@@ -0,0 +1,70 @@
+package util;
+
+public class ImportReport {
+
+  private final long gamesImported;
+
+  private final long gamesRejected;
+
+  private final long rowsWritten;
+
+  private final long elapsedNanos;
+
+  /**
+   * Constructor for the outcome of a bulk import.
+   *
+   * @param gamesImported number of games written to the database
+   * @param gamesRejected number of games left out because they could not be
+   *                      read or broke the rules of the game
+   * @param rowsWritten   number of game, player and move rows written
+   * @param elapsedNanos  time the whole import took
+   */
+  public ImportReport(long gamesImported, long gamesRejected, long rowsWritten,
+      long elapsedNanos) {
+    this.gamesImported = gamesImported;
+    this.gamesRejected = gamesRejected;
+    this.rowsWritten = rowsWritten;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public long getGamesImported() {
+    return gamesImported;
+  }
+
+  public long getGamesRejected() {
+    return gamesRejected;
+  }
+
+  public long getRowsWritten() {
+    return rowsWritten;
+  }
+
+  public double getElapsedSeconds() {
+    return elapsedNanos / 1e9;
+  }
+
+  /**
+   * Returns the number of rows written per second, over the whole import.
+   *
+   * @return rows written per second
+   */
+  public double getRowsPerSecond() {
+    return elapsedNanos == 0 ? 0 : rowsWritten / getElapsedSeconds();
+  }
+
+  /**
+   * Returns the number of games written per second, over the whole import.
+   *
+   * @return games written per second
+   */
+  public double getGamesPerSecond() {
+    return elapsedNanos == 0 ? 0 : gamesImported / getElapsedSeconds();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Imported %d games (%d rows) in %.1fs: %.0f rows/s, %.0f games/s; "
+        + "%d games rejected", gamesImported, rowsWritten, getElapsedSeconds(),
+        getRowsPerSecond(), getGamesPerSecond(), gamesRejected);
+  }
+}
@@ -0,0 +1,72 @@
+package util;
+
+import com.google.gson.annotations.Expose;
+
+public class LockMetrics {
+
+  /* - @Expose tells GSON to add only the below fields to JSON - */
+
+  @Expose
+  private final long lockWaits;
+
+  @Expose
+  private final long retries;
+
+  @Expose
+  private final long timeouts;
+
+  @Expose
+  private final double averageLockWaitMillis;
+
+  @Expose
+  private final double maxLockWaitMillis;
+
+  /* -- end fields to serialize to JSON from object here -- */
+
+  /**
+   * Constructor for a snapshot of the lock metrics of a database.
+   *
+   * @param lockWaits          number of statements held up by another
+   *                           connection's lock
+   * @param retries            number of times a held up statement was run again
+   * @param timeouts           number of held up statements given up on at the
+   *                           deadline
+   * @param totalLockWaitNanos total time statements spent held up
+   * @param maxLockWaitNanos   longest time a single statement spent held up
+   */
+  public LockMetrics(long lockWaits, long retries, long timeouts, long totalLockWaitNanos,
+      long maxLockWaitNanos) {
+    this.lockWaits = lockWaits;
+    this.retries = retries;
+    this.timeouts = timeouts;
+    this.averageLockWaitMillis = lockWaits == 0 ? 0 : totalLockWaitNanos / 1e6 / lockWaits;
+    this.maxLockWaitMillis = maxLockWaitNanos / 1e6;
+  }
+
+  public long getLockWaits() {
+    return lockWaits;
+  }
+
+  public long getRetries() {
+    return retries;
+  }
+
+  public long getTimeouts() {
+    return timeouts;
+  }
+
+  public double getAverageLockWaitMillis() {
+    return averageLockWaitMillis;
+  }
+
+  public double getMaxLockWaitMillis() {
+    return maxLockWaitMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "LockMetrics [lockWaits=" + lockWaits + ", retries=" + retries + ", timeouts="
+        + timeouts + ", averageLockWaitMillis=" + averageLockWaitMillis
+        + ", maxLockWaitMillis=" + maxLockWaitMillis + "]";
+  }
+}
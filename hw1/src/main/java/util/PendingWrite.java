@@ -0,0 +1,20 @@
+package util;
+
+/**
+ * A single database write that has been accepted but not yet applied, such as
+ * saving a move or the game state. Pending writes are recorded by services that
+ * do not write through to the database immediately and are later replayed, in
+ * order, against the service that actually stores the data.
+ */
+@FunctionalInterface
+public interface PendingWrite {
+
+  /**
+   * Applies this write to the database service provided, inside whatever
+   * transaction that service currently has open.
+   *
+   * @param dbService database service to apply the write to
+   * @throws DbServiceException if the write failed
+   */
+  public void applyTo(TicTacToeDbService dbService) throws DbServiceException;
+}
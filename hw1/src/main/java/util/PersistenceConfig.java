@@ -0,0 +1,235 @@
+package util;
+
+/**
+ * Reads the persistence settings of the application from system properties
+ * (e.g., -Dtictactoe.writeBehind=true), falling back to defaults that match
+ * the original behaviour of writing every change synchronously to SQLite.
+ */
+public class PersistenceConfig {
+
+  /**
+   * Where games are stored.
+   */
+  public enum Storage {
+    /** In a SQLite database file, surviving restarts. */
+    SQLITE,
+
+    /** In memory only; games are lost when the server stops. */
+    MEMORY,
+
+    /** In an append-only journal file of fixed-size event records. */
+    JOURNAL
+  }
+
+  public static final String STORAGE = "tictactoe.storage";
+
+  public static final String SQLITE_PROFILE = "tictactoe.sqlite.profile";
+
+  public static final String SQLITE_SHARDS = "tictactoe.sqlite.shards";
+
+  public static final String JOURNAL_FILE = "tictactoe.journal.file";
+
+  public static final String JOURNAL_FSYNC_MILLIS = "tictactoe.journal.fsyncMillis";
+
+  public static final String WRITE_BEHIND = "tictactoe.writeBehind";
+
+  public static final String WRITE_BEHIND_BATCH_MOVES = "tictactoe.writeBehind.batchMoves";
+
+  public static final String WRITE_BEHIND_BATCH_MILLIS = "tictactoe.writeBehind.batchMillis";
+
+  public static final String WRITE_BEHIND_ACK = "tictactoe.writeBehind.ack";
+
+  public static final String ASYNC = "tictactoe.async";
+
+  public static final String ASYNC_THREADS = "tictactoe.async.threads";
+
+  public static final String ASYNC_MAX_PENDING = "tictactoe.async.maxPending";
+
+  public static final String ARCHIVE_INTERVAL_SECONDS = "tictactoe.archive.intervalSeconds";
+
+  public static final String REAPER_TTL_SECONDS = "tictactoe.reaper.ttlSeconds";
+
+  public static final String REAPER_INTERVAL_SECONDS = "tictactoe.reaper.intervalSeconds";
+
+  static final int DEFAULT_SQLITE_SHARDS = 1;
+
+  static final String DEFAULT_JOURNAL_FILE = "tictactoe.journal";
+
+  static final long DEFAULT_JOURNAL_FSYNC_MILLIS = 100;
+
+  static final int DEFAULT_BATCH_MOVES = 64;
+
+  static final long DEFAULT_BATCH_MILLIS = 5;
+
+  static final int DEFAULT_ASYNC_THREADS = 4;
+
+  static final int DEFAULT_ASYNC_MAX_PENDING = 1024;
+
+  static final long DEFAULT_ARCHIVE_INTERVAL_SECONDS = 0;
+
+  static final long DEFAULT_REAPER_TTL_SECONDS = 0;
+
+  static final long DEFAULT_REAPER_INTERVAL_SECONDS = 60;
+
+  private PersistenceConfig() {
+  }
+
+  /**
+   * Returns where games should be stored.
+   *
+   * @return storage backend; SQLITE unless configured otherwise
+   * @throws IllegalArgumentException if the configured value is not a known backend
+   */
+  public static Storage getStorage() {
+    String storage = System.getProperty(STORAGE, Storage.SQLITE.name());
+    return Storage.valueOf(storage.trim().toUpperCase());
+  }
+
+  /**
+   * Returns the durability and performance settings used for SQLite
+   * connections.
+   *
+   * @return SQLite profile; DURABLE (SQLite's defaults) unless configured otherwise
+   * @throws IllegalArgumentException if the configured value is not a known profile
+   */
+  public static SqliteProfile getSqliteProfile() {
+    String profile = System.getProperty(SQLITE_PROFILE, SqliteProfile.DURABLE.name());
+    return SqliteProfile.valueOf(profile.trim().toUpperCase());
+  }
+
+  /**
+   * Returns the number of SQLite database files games are spread across. With
+   * more than one shard, each file has its own writer thread, so moves of games
+   * on different shards are committed in parallel.
+   *
+   * @return number of shards; 1 (a single tictactoe.db) unless configured otherwise
+   */
+  public static int getSqliteShards() {
+    return Math.max(1, Integer.getInteger(SQLITE_SHARDS, DEFAULT_SQLITE_SHARDS));
+  }
+
+  /**
+   * Returns the path of the journal file used by the JOURNAL storage backend.
+   *
+   * @return journal file path
+   */
+  public static String getJournalFile() {
+    return System.getProperty(JOURNAL_FILE, DEFAULT_JOURNAL_FILE);
+  }
+
+  /**
+   * Returns how often the journal is forced to disk. A crash can lose the moves
+   * committed within this window; 0 forces every commit to disk before it
+   * returns.
+   *
+   * @return fsync interval in milliseconds
+   */
+  public static long getJournalFsyncMillis() {
+    return Math.max(0, Long.getLong(JOURNAL_FSYNC_MILLIS, DEFAULT_JOURNAL_FSYNC_MILLIS));
+  }
+
+  /**
+   * Returns whether writes should be queued to a background writer and committed
+   * in groups, instead of committed on the request thread.
+   *
+   * @return true if write-behind persistence is enabled
+   */
+  public static boolean isWriteBehind() {
+    return Boolean.getBoolean(WRITE_BEHIND);
+  }
+
+  /**
+   * Returns the number of moves after which a group commit is started, even if
+   * the batch delay has not yet passed.
+   *
+   * @return maximum number of moves per group commit
+   */
+  public static int getBatchMoves() {
+    return Math.max(1, Integer.getInteger(WRITE_BEHIND_BATCH_MOVES, DEFAULT_BATCH_MOVES));
+  }
+
+  /**
+   * Returns how long the writer waits for more writes to join a group commit
+   * after the first one arrives.
+   *
+   * @return maximum batch delay in milliseconds
+   */
+  public static long getBatchMillis() {
+    return Math.max(0, Long.getLong(WRITE_BEHIND_BATCH_MILLIS, DEFAULT_BATCH_MILLIS));
+  }
+
+  /**
+   * Returns when a commit should be acknowledged to the caller in write-behind
+   * mode.
+   *
+   * @return acknowledgement mode; COMMITTED unless configured otherwise
+   * @throws IllegalArgumentException if the configured value is not a known mode
+   */
+  public static WriteBehindDbService.AckMode getAckMode() {
+    String mode = System.getProperty(WRITE_BEHIND_ACK,
+        WriteBehindDbService.AckMode.COMMITTED.name());
+    return WriteBehindDbService.AckMode.valueOf(mode.trim().toUpperCase());
+  }
+
+  /**
+   * Returns whether requests should hand their database work to a pool of I/O
+   * threads and be answered once it completes, instead of waiting for the
+   * database on the request thread.
+   *
+   * @return true if asynchronous persistence is enabled
+   */
+  public static boolean isAsync() {
+    return Boolean.getBoolean(ASYNC);
+  }
+
+  /**
+   * Returns the number of I/O threads that run database work in asynchronous
+   * mode.
+   *
+   * @return number of I/O threads
+   */
+  public static int getAsyncThreads() {
+    return Math.max(1, Integer.getInteger(ASYNC_THREADS, DEFAULT_ASYNC_THREADS));
+  }
+
+  /**
+   * Returns how many database operations may be waiting or running at once in
+   * asynchronous mode; further operations fail straight away.
+   *
+   * @return maximum number of pending database operations
+   */
+  public static int getAsyncMaxPending() {
+    return Math.max(1, Integer.getInteger(ASYNC_MAX_PENDING, DEFAULT_ASYNC_MAX_PENDING));
+  }
+
+  /**
+   * Returns how often finished games are moved out of the SQLite tables games
+   * are played from and into the archive.
+   *
+   * @return archiving interval in seconds; 0 (never) unless configured otherwise
+   */
+  public static long getArchiveIntervalSeconds() {
+    return Math.max(0, Long.getLong(ARCHIVE_INTERVAL_SECONDS, DEFAULT_ARCHIVE_INTERVAL_SECONDS));
+  }
+
+  /**
+   * Returns how long a game still being played may go without a move (or any
+   * other change) before it is considered abandoned and deleted.
+   *
+   * @return time to live of idle games in seconds; 0 (never expire) unless
+   *         configured otherwise
+   */
+  public static long getReaperTtlSeconds() {
+    return Math.max(0, Long.getLong(REAPER_TTL_SECONDS, DEFAULT_REAPER_TTL_SECONDS));
+  }
+
+  /**
+   * Returns how often abandoned games are looked for, when a time to live is
+   * configured.
+   *
+   * @return reaper interval in seconds; 60 unless configured otherwise
+   */
+  public static long getReaperIntervalSeconds() {
+    return Math.max(1, Long.getLong(REAPER_INTERVAL_SECONDS, DEFAULT_REAPER_INTERVAL_SECONDS));
+  }
+}
@@ -0,0 +1,130 @@
+package util;
+
+import com.google.gson.annotations.Expose;
+
+public class PoolMetrics {
+
+  /* - @Expose tells GSON to add only the below fields to JSON - */
+
+  @Expose
+  private final String database;
+
+  @Expose
+  private final long acquisitions;
+
+  @Expose
+  private final long connectionsOpened;
+
+  @Expose
+  private final int inUse;
+
+  @Expose
+  private final int peakInUse;
+
+  @Expose
+  private final double averageInUse;
+
+  @Expose
+  private final int idle;
+
+  @Expose
+  private final double averageWaitMillis;
+
+  @Expose
+  private final double maxWaitMillis;
+
+  @Expose
+  private final LockMetrics locks;
+
+  @Expose
+  private final PoolMetrics readers;
+
+  /* -- end fields to serialize to JSON from object here -- */
+
+  /**
+   * Constructor for a snapshot of connection pool metrics.
+   *
+   * @param database          database file the pool connects to
+   * @param acquisitions      number of times a connection was borrowed
+   * @param connectionsOpened number of physical connections opened
+   * @param inUse             number of connections currently borrowed
+   * @param peakInUse         highest number of connections borrowed at once
+   * @param averageInUse      average number of connections borrowed since the
+   *                          pool was created, i.e. how busy the pool is
+   * @param idle              number of open connections waiting to be reused
+   * @param totalWaitNanos    total time spent obtaining connections
+   * @param maxWaitNanos      longest time spent obtaining a single connection
+   * @param locks             how statements on the connections were held up by
+   *                          other connections' locks
+   * @param readers           metrics of the pool of read-only connections to the
+   *                          same database, or null for a pool of readers
+   */
+  public PoolMetrics(String database, long acquisitions, long connectionsOpened, int inUse,
+      int peakInUse, double averageInUse, int idle, long totalWaitNanos, long maxWaitNanos,
+      LockMetrics locks, PoolMetrics readers) {
+    this.database = database;
+    this.acquisitions = acquisitions;
+    this.connectionsOpened = connectionsOpened;
+    this.inUse = inUse;
+    this.peakInUse = peakInUse;
+    this.averageInUse = averageInUse;
+    this.idle = idle;
+    this.averageWaitMillis = acquisitions == 0 ? 0 : totalWaitNanos / 1e6 / acquisitions;
+    this.maxWaitMillis = maxWaitNanos / 1e6;
+    this.locks = locks;
+    this.readers = readers;
+  }
+
+  public String getDatabase() {
+    return database;
+  }
+
+  public long getAcquisitions() {
+    return acquisitions;
+  }
+
+  public long getConnectionsOpened() {
+    return connectionsOpened;
+  }
+
+  public int getInUse() {
+    return inUse;
+  }
+
+  public int getPeakInUse() {
+    return peakInUse;
+  }
+
+  public double getAverageInUse() {
+    return averageInUse;
+  }
+
+  public int getIdle() {
+    return idle;
+  }
+
+  public double getAverageWaitMillis() {
+    return averageWaitMillis;
+  }
+
+  public double getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  public LockMetrics getLocks() {
+    return locks;
+  }
+
+  public PoolMetrics getReaders() {
+    return readers;
+  }
+
+  @Override
+  public String toString() {
+    return "PoolMetrics [database=" + database + ", acquisitions=" + acquisitions
+        + ", connectionsOpened=" + connectionsOpened + ", inUse=" + inUse + ", peakInUse="
+        + peakInUse + ", averageInUse=" + averageInUse + ", idle=" + idle
+        + ", averageWaitMillis=" + averageWaitMillis + ", maxWaitMillis=" + maxWaitMillis
+        + ", locks=" + locks + ", readers=" + readers + "]";
+  }
+}
@@ -0,0 +1,187 @@
+package util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import models.Move;
+import models.Player;
+
+/**
+ * One game of a game history file, in the format GameHistoryWriter writes: its
+ * players, its moves in the order they were played, and its recorded result.
+ * Nothing is checked against the rules of the game when a record is read.
+ */
+public class RecordedGame {
+
+  private final int gameId;
+
+  private final List<Player> players;
+
+  private final List<Move> moves;
+
+  private final int winner;
+
+  private final boolean isDraw;
+
+  /**
+   * Constructor for a recorded game.
+   *
+   * @param gameId  the game's ID in the file it was read from
+   * @param players the game's players
+   * @param moves   the game's moves, in the order played
+   * @param winner  ID of the winning player, or 0 if there is none
+   * @param isDraw  whether the game ended in a draw
+   */
+  public RecordedGame(int gameId, List<Player> players, List<Move> moves, int winner,
+      boolean isDraw) {
+    this.gameId = gameId;
+    this.players = players;
+    this.moves = moves;
+    this.winner = winner;
+    this.isDraw = isDraw;
+  }
+
+  public int getGameId() {
+    return gameId;
+  }
+
+  public List<Player> getPlayers() {
+    return Collections.unmodifiableList(players);
+  }
+
+  public List<Move> getMoves() {
+    return Collections.unmodifiableList(moves);
+  }
+
+  public int getWinner() {
+    return winner;
+  }
+
+  public boolean isDraw() {
+    return isDraw;
+  }
+
+  /**
+   * Reads a game from one line of a game history file. Fields the format does
+   * not have are skipped.
+   *
+   * @param line a single JSON object, as written by GameHistoryWriter
+   * @return the game on the line
+   * @throws IOException if the line is not a game in this format, or a move
+   *                     belongs to a player the game does not have
+   */
+  public static RecordedGame parse(String line) throws IOException {
+    int gameId = 0;
+    int winner = 0;
+    boolean isDraw = false;
+    List<Player> players = new ArrayList<>();
+    // player ID, x and y of each move, matched with the players once all are read
+    List<int[]> moves = new ArrayList<>();
+
+    try (JsonReader json = new JsonReader(new StringReader(line))) {
+      json.beginObject();
+      while (json.hasNext()) {
+        switch (json.nextName()) {
+          case "gameId":
+            gameId = json.nextInt();
+            break;
+          case "winner":
+            winner = json.nextInt();
+            break;
+          case "isDraw":
+            isDraw = json.nextBoolean();
+            break;
+          case "players":
+            json.beginArray();
+            while (json.hasNext()) {
+              players.add(readPlayer(json));
+            }
+            json.endArray();
+            break;
+          case "moves":
+            json.beginArray();
+            while (json.hasNext()) {
+              moves.add(readMove(json));
+            }
+            json.endArray();
+            break;
+          default:
+            json.skipValue();
+        }
+      }
+      json.endObject();
+      if (json.peek() != JsonToken.END_DOCUMENT) {
+        throw new IOException("Expected a single game per line.");
+      }
+
+    } catch (IllegalStateException | NumberFormatException e) {
+      // a value of the wrong type
+      throw new IOException(e.getMessage(), e);
+    }
+
+    List<Move> playedMoves = new ArrayList<>(moves.size());
+    for (int[] move : moves) {
+      playedMoves.add(new Move(findPlayer(players, move[0]), move[1], move[2]));
+    }
+    return new RecordedGame(gameId, players, playedMoves, winner, isDraw);
+  }
+
+  private static Player readPlayer(JsonReader json) throws IOException {
+    int id = 0;
+    String type = "";
+    json.beginObject();
+    while (json.hasNext()) {
+      switch (json.nextName()) {
+        case "id":
+          id = json.nextInt();
+          break;
+        case "type":
+          type = json.nextString();
+          break;
+        default:
+          json.skipValue();
+      }
+    }
+    json.endObject();
+    if (type.length() != 1) {
+      throw new IOException("Player " + id + " has no valid type.");
+    }
+    return new Player(type.charAt(0), id);
+  }
+
+  private static int[] readMove(JsonReader json) throws IOException {
+    int[] move = new int[3];
+    json.beginObject();
+    while (json.hasNext()) {
+      switch (json.nextName()) {
+        case "playerId":
+          move[0] = json.nextInt();
+          break;
+        case "x":
+          move[1] = json.nextInt();
+          break;
+        case "y":
+          move[2] = json.nextInt();
+          break;
+        default:
+          json.skipValue();
+      }
+    }
+    json.endObject();
+    return move;
+  }
+
+  private static Player findPlayer(List<Player> players, int playerId) throws IOException {
+    for (Player player : players) {
+      if (player.getId() == playerId) {
+        return player;
+      }
+    }
+    throw new IOException("A move was made by player " + playerId
+        + ", who is not in the game.");
+  }
+}
@@ -0,0 +1,327 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Database service that spreads games across several SQLite database files
+ * (shards), chosen by game id. SQLite lets only one writer at a time into each
+ * file, so with a single file the moves of all games are committed one after
+ * the other; with one file per shard, each with its own connection and writer
+ * thread, games on different shards are committed in parallel.
+ *
+ * <p>Every call that names a game is routed to that game's shard. A transaction
+ * (connect, save..., commit) is opened lazily on each shard it writes to, and
+ * commit() commits those shards in turn. Since the application keeps each
+ * transaction to a single game, a transaction normally touches one shard; one
+ * that spans shards is not atomic across them.
+ */
+public class ShardedDbService implements TicTacToeDbService {
+
+  private static Logger logger = LoggerFactory.getLogger(ShardedDbService.class);
+
+  private final List<WriteBehindDbService> shards;
+
+  // shards the calling thread has written to since it last called connect()
+  private final ThreadLocal<TreeSet<Integer>> openTransaction = new ThreadLocal<>();
+
+  /**
+   * Constructor for the sharded service, using the shard count set in
+   * PersistenceConfig and database files named after "tictactoe.db".
+   */
+  public ShardedDbService() {
+    this("tictactoe.db", PersistenceConfig.getSqliteShards());
+  }
+
+  /**
+   * Constructor for the sharded service. If write-behind persistence is enabled,
+   * each shard's writer uses the batch settings in PersistenceConfig; otherwise
+   * it commits as soon as it runs out of queued work and acknowledges every
+   * commit once it is durable.
+   *
+   * @param database   name of the unsharded database file; shard files are named
+   *                   after it (see shardFile())
+   * @param shardCount number of database files to spread games across
+   */
+  public ShardedDbService(String database, int shardCount) {
+    List<WriteBehindDbService> shards = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, shardCount); i++) {
+      TicTacToeSqliteDbService shard = new TicTacToeSqliteDbService(shardFile(database, i));
+      String threadName = "tictactoe-shard-" + i;
+
+      if (PersistenceConfig.isWriteBehind()) {
+        shards.add(new WriteBehindDbService(shard, PersistenceConfig.getBatchMoves(),
+            PersistenceConfig.getBatchMillis(), PersistenceConfig.getAckMode(), threadName));
+      } else {
+        shards.add(new WriteBehindDbService(shard, PersistenceConfig.getBatchMoves(), 0,
+            WriteBehindDbService.AckMode.COMMITTED, threadName));
+      }
+    }
+    this.shards = Collections.unmodifiableList(shards);
+  }
+
+  /**
+   * Returns the name of a shard's database file, e.g. "tictactoe-shard1.db" for
+   * shard 1 of "tictactoe.db".
+   *
+   * @param database name of the unsharded database file
+   * @param shard    shard number, starting at 0
+   * @return file name of the shard
+   */
+  public static String shardFile(String database, int shard) {
+    int extension = database.lastIndexOf('.');
+    if (extension < 0) {
+      return database + "-shard" + shard;
+    }
+    return database.substring(0, extension) + "-shard" + shard + database.substring(extension);
+  }
+
+  public int getShardCount() {
+    return shards.size();
+  }
+
+  /**
+   * Returns the shard a game is stored on. Consecutive game ids go to
+   * consecutive shards, so new games are spread evenly.
+   *
+   * @param gameId the game ID
+   * @return shard number, starting at 0
+   */
+  public int shardFor(int gameId) {
+    return Math.floorMod(gameId, shards.size());
+  }
+
+  /**
+   * Starts a new transaction for the calling thread. Calling this again before
+   * commit() or close() keeps the transaction already open.
+   */
+  public void connect() {
+    if (openTransaction.get() == null) {
+      openTransaction.set(new TreeSet<>());
+    }
+  }
+
+  /**
+   * Creates the database tables in every shard.
+   *
+   * @throws DbServiceException if the tables of a shard could not be created
+   */
+  public void createDatabasesTables() throws DbServiceException {
+    for (WriteBehindDbService shard : shards) {
+      shard.createDatabasesTables();
+    }
+  }
+
+  /**
+   * Records the creation of a new game on its shard.
+   *
+   * @param gameId the ID to give the new game
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void createNewGame(int gameId) throws DbServiceException {
+    writeShard(gameId).createNewGame(gameId);
+  }
+
+  /**
+   * Finds all moves of a game on its shard.
+   *
+   * @param gameId the game Id to use in looking for associated moves
+   * @throws DbServiceException if the moves could not be read
+   */
+  public List<Move> findAllMoves(int gameId) throws DbServiceException {
+    return shards.get(shardFor(gameId)).findAllMoves(gameId);
+  }
+
+  /**
+   * Finds all players of a game on its shard.
+   *
+   * @param gameId the game Id to use in looking for associated players
+   * @throws DbServiceException if the players could not be read
+   */
+  public List<Player> findAllPlayers(int gameId) throws DbServiceException {
+    return shards.get(shardFor(gameId)).findAllPlayers(gameId);
+  }
+
+  /**
+   * Returns the highest game id found on any shard.
+   *
+   * @return id of the most recent game, or 0 if there are no games
+   * @throws DbServiceException if a shard could not be read
+   */
+  public int findMostRecentGameId() throws DbServiceException {
+    int mostRecent = 0;
+    for (WriteBehindDbService shard : shards) {
+      mostRecent = Math.max(mostRecent, shard.findMostRecentGameId());
+    }
+    return mostRecent;
+  }
+
+  /**
+   * Restores the game with the highest id on any shard, or returns a new game
+   * board if there are no games yet.
+   *
+   * @throws DbServiceException if the game board could not be restored
+   */
+  public GenericGameBoard restoreMostRecentGameBoard() throws DbServiceException {
+    int mostRecent = findMostRecentGameId();
+    return mostRecent > 0 ? restoreGameBoard(mostRecent) : new GameBoard(this);
+  }
+
+  /**
+   * Restores a game board from its shard. The board returned saves its changes
+   * to the same game through this service, so that they are routed to the same
+   * shard.
+   *
+   * @param gameId the game ID to restore
+   * @throws DbServiceException if the game board could not be restored
+   */
+  public GenericGameBoard restoreGameBoard(int gameId) throws DbServiceException {
+    GenericGameBoard gameboard = shards.get(shardFor(gameId)).restoreGameBoard(gameId);
+    if (gameboard instanceof GameBoard) {
+      ((GameBoard) gameboard).setDbService(this);
+      ((GameBoard) gameboard).setGameId(gameId);
+    }
+    return gameboard;
+  }
+
+  /**
+   * Records a new player on the game's shard.
+   *
+   * @param player the player to save
+   * @param gameId the game ID to associate the player with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void savePlayer(Player player, int gameId) throws DbServiceException {
+    writeShard(gameId).savePlayer(player, gameId);
+  }
+
+  /**
+   * Records the game state on the game's shard.
+   *
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @param gameId    the game ID to associate the game state with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void saveGameState(GenericGameBoard gameboard, int gameId) throws DbServiceException {
+    writeShard(gameId).saveGameState(gameboard, gameId);
+  }
+
+  /**
+   * Records a move on the game's shard.
+   *
+   * @param move   the move to save
+   * @param gameId the game ID to associate the move with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void saveValidMove(Move move, int gameId) throws DbServiceException {
+    writeShard(gameId).saveValidMove(move, gameId);
+  }
+
+  /**
+   * Records the deletion of a game on its shard. If autoCommit is set, the
+   * caller's open transaction (including this delete) is committed right away.
+   *
+   * @param gameId     the game ID to delete
+   * @param autoCommit whether to commit immediately
+   * @throws DbServiceException if connect() has not been called, or if the
+   *                            immediate commit failed
+   */
+  public void deleteGame(int gameId, boolean autoCommit) throws DbServiceException {
+    writeShard(gameId).deleteGame(gameId, false);
+
+    if (autoCommit) {
+      commit();
+      connect();
+    }
+  }
+
+  /**
+   * Commits the caller's open transaction on every shard it wrote to. All shards
+   * are committed even if one fails; the first failure is then reported.
+   *
+   * @throws DbServiceException if the transaction could not be committed on one
+   *                            of its shards
+   */
+  public void commit() throws DbServiceException {
+    TreeSet<Integer> touched = openTransaction.get();
+    openTransaction.remove();
+    if (touched == null) {
+      return;
+    }
+
+    DbServiceException failure = null;
+    for (int shard : touched) {
+      try {
+        shards.get(shard).commit();
+      } catch (DbServiceException e) {
+        logger.error("Commit on shard " + shard + " failed: " + e.getMessage());
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Discards the caller's open transaction on every shard.
+   */
+  public void close() {
+    TreeSet<Integer> touched = openTransaction.get();
+    openTransaction.remove();
+    if (touched == null) {
+      return;
+    }
+
+    for (int shard : touched) {
+      shards.get(shard).close();
+    }
+  }
+
+  /**
+   * Commits everything queued on every shard and stops their writer threads.
+   *
+   * @throws DbServiceException if a writer could not be stopped cleanly
+   */
+  public void shutdown() throws DbServiceException {
+    DbServiceException failure = null;
+    for (WriteBehindDbService shard : shards) {
+      try {
+        shard.shutdown();
+      } catch (DbServiceException e) {
+        failure = failure == null ? e : failure;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Returns the shard to record a write for a game on, opening the caller's
+   * transaction there if this is its first write to that shard.
+   */
+  private WriteBehindDbService writeShard(int gameId) throws DbServiceException {
+    TreeSet<Integer> touched = openTransaction.get();
+    if (touched == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+
+    int shard = shardFor(gameId);
+    if (touched.add(shard)) {
+      shards.get(shard).connect();
+    }
+    return shards.get(shard);
+  }
+}
@@ -0,0 +1,210 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sqlite.BusyHandler;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+/**
+ * Waits out locks that other connections hold on a SQLite database (SQLITE_BUSY
+ * or SQLITE_LOCKED), up to a deadline. Before each new attempt the caller sleeps
+ * for a random time between half and all of the current backoff, which doubles
+ * from INITIAL_BACKOFF_MILLIS up to MAX_BACKOFF_MILLIS; the randomness keeps
+ * writers held up by the same lock from all trying again at the same moment.
+ *
+ * <p>Most lock waits happen inside SQLite, which calls the busy handler
+ * installed by installOn() before each new attempt at a lock, keeping any lock
+ * already on the way (such as the PENDING lock of a commit). SQLite skips the
+ * handler, and fails the statement at once, when waiting could deadlock or the
+ * lock is held by a connection in the same process (SQLITE_LOCKED); run() then
+ * runs the statement again after the same backoff.
+ *
+ * <p>One instance is shared by every connection to a database, and counts how
+ * often and for how long its callers were held up by locks.
+ */
+public class SqliteBusyRetry {
+
+  static final long INITIAL_BACKOFF_MILLIS = 1;
+
+  static final long MAX_BACKOFF_MILLIS = 100;
+
+  // a busy handler call this soon after the previous one returned continues the
+  // same wait
+  private static final long SAME_WAIT_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final long deadlineNanos;
+
+  /* -- lock metrics -- */
+
+  private final AtomicLong lockWaits = new AtomicLong();
+
+  private final AtomicLong retries = new AtomicLong();
+
+  private final AtomicLong timeouts = new AtomicLong();
+
+  private final AtomicLong totalLockWaitNanos = new AtomicLong();
+
+  private final AtomicLong maxLockWaitNanos = new AtomicLong();
+
+  /**
+   * Creates a retry policy giving up on a lock once it has been waited for for
+   * the time given.
+   *
+   * @param deadlineMillis longest time to wait for a lock
+   */
+  public SqliteBusyRetry(long deadlineMillis) {
+    this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+  }
+
+  public long getDeadlineMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(deadlineNanos);
+  }
+
+  /**
+   * Makes SQLite wait for locks on a connection with this policy's backoff and
+   * deadline, in place of its busy timeout.
+   *
+   * @param conn connection to a SQLite database
+   * @throws SQLException if the handler could not be installed
+   */
+  public void installOn(Connection conn) throws SQLException {
+    BusyHandler.setHandler(conn, new BusyHandler() {
+      // when the current wait began, and when the handler last returned; a
+      // connection is used by one thread at a time
+      private long waitStart;
+
+      private long lastReturn;
+
+      @Override
+      protected int callback(int priorCalls) {
+        long now = System.nanoTime();
+        // SQLite does not always count calls from 0 again for a new wait (e.g.
+        // for the locks taken while preparing a statement)
+        if (priorCalls == 0 || now - lastReturn > SAME_WAIT_GAP_NANOS) {
+          waitStart = now;
+          lockWaits.incrementAndGet();
+        }
+        boolean retry = backOff(waitStart, priorCalls);
+        lastReturn = System.nanoTime();
+        if (retry) {
+          return 1;
+        }
+        timeouts.incrementAndGet();
+        return 0;
+      }
+    });
+  }
+
+  /**
+   * Runs a call, running it again after a backoff for as long as it fails with
+   * a busy or locked error that SQLite returned without waiting, and the
+   * deadline has not passed. The call must leave nothing behind when it fails,
+   * as a single SQLite statement does.
+   *
+   * @param <T>  type of the call's result
+   * @param call the statement(s) to run
+   * @return the result of the first attempt that succeeded
+   * @throws SQLException the error of the last attempt, if it was not a busy or
+   *                      locked error, or the deadline passed
+   */
+  public <T> T run(SqlCall<T> call) throws SQLException {
+    long start = System.nanoTime();
+
+    for (int attempt = 0;; attempt++) {
+      long attemptStart = System.nanoTime();
+      try {
+        return call.call();
+
+      } catch (SQLException e) {
+        if (!isBusy(e) || System.nanoTime() - attemptStart >= deadlineNanos) {
+          // the busy handler has already waited for (and counted) the whole deadline
+          throw e;
+        }
+        if (attempt == 0) {
+          lockWaits.incrementAndGet();
+        }
+        if (!backOff(start, attempt)) {
+          timeouts.incrementAndGet();
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether an error was caused by a lock another connection holds, so
+   * that the statement may succeed if run again. A busy error on a stale WAL
+   * snapshot (SQLITE_BUSY_SNAPSHOT) is not one of these, as only restarting the
+   * whole transaction gets past it. Errors from a batch carry the SQLite error
+   * only in their message.
+   *
+   * @param e the error a statement failed with
+   * @return true if the error is SQLITE_BUSY or SQLITE_LOCKED
+   */
+  public static boolean isBusy(SQLException e) {
+    if (e instanceof SQLiteException) {
+      SQLiteErrorCode code = ((SQLiteException) e).getResultCode();
+      return code == SQLiteErrorCode.SQLITE_BUSY || code == SQLiteErrorCode.SQLITE_LOCKED
+          || code == SQLiteErrorCode.SQLITE_BUSY_RECOVERY
+          || code == SQLiteErrorCode.SQLITE_LOCKED_SHAREDCACHE;
+    }
+    String message = e.getMessage();
+    return message != null
+        && (message.contains("[SQLITE_BUSY]") || message.contains("[SQLITE_LOCKED]"));
+  }
+
+  /**
+   * Returns a point-in-time snapshot of the lock metrics.
+   *
+   * @return LockMetrics instance
+   */
+  public LockMetrics getMetrics() {
+    return new LockMetrics(lockWaits.get(), retries.get(), timeouts.get(),
+        totalLockWaitNanos.get(), maxLockWaitNanos.get());
+  }
+
+  /**
+   * Sleeps for the jittered backoff before the next attempt at a lock, unless
+   * that would take the wait past the deadline, and updates the wait time
+   * statistics.
+   *
+   * @param waitStart when the wait for the lock began, from System.nanoTime()
+   * @param attempt   number of attempts already made since then, less one
+   * @return true if the lock should be tried again, false to give up
+   */
+  private boolean backOff(long waitStart, int attempt) {
+    long backoffMillis = Math.min(INITIAL_BACKOFF_MILLIS << Math.min(attempt, 20),
+        MAX_BACKOFF_MILLIS);
+    long sleepMillis = ThreadLocalRandom.current().nextLong(backoffMillis / 2,
+        backoffMillis + 1);
+
+    long sleepStart = System.nanoTime();
+    if (sleepStart - waitStart + TimeUnit.MILLISECONDS.toNanos(sleepMillis) > deadlineNanos) {
+      return false;
+    }
+    try {
+      Thread.sleep(sleepMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+
+    long now = System.nanoTime();
+    retries.incrementAndGet();
+    totalLockWaitNanos.addAndGet(now - sleepStart);
+    maxLockWaitNanos.accumulateAndGet(now - waitStart, Math::max);
+    return true;
+  }
+
+  /**
+   * One or more statements to run against a SQLite connection.
+   */
+  @FunctionalInterface
+  public interface SqlCall<T> {
+    T call() throws SQLException;
+  }
+}
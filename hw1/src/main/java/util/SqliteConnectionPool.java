@@ -0,0 +1,378 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+public class SqliteConnectionPool {
+
+  // default number of open connections kept around between requests
+  static final int DEFAULT_MAX_IDLE = 4;
+
+  // one pool per database file, shared by every TicTacToeSqliteDbService instance
+  private static final ConcurrentHashMap<String, SqliteConnectionPool> POOLS =
+      new ConcurrentHashMap<>();
+
+  // read-only connections to the same database files, for reads that should not
+  // wait behind a writer's transaction
+  private static final ConcurrentHashMap<String, SqliteConnectionPool> READER_POOLS =
+      new ConcurrentHashMap<>();
+
+  private static Logger logger = LoggerFactory.getLogger(SqliteConnectionPool.class);
+
+  private final String dbLocation;
+
+  private final SqliteProfile profile;
+
+  private final Properties connectionProperties;
+
+  private final int maxIdle;
+
+  private final boolean readOnly;
+
+  private final SqliteBusyRetry busyRetry;
+
+  private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+  // prepared statements live as long as the connection they were prepared on
+  private final ConcurrentHashMap<Connection, SqliteStatementCache> statementCaches =
+      new ConcurrentHashMap<>();
+
+  /* -- pool metrics -- */
+
+  private final AtomicLong acquisitions = new AtomicLong();
+
+  private final AtomicLong connectionsOpened = new AtomicLong();
+
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  private final AtomicInteger inUse = new AtomicInteger();
+
+  private final AtomicInteger peakInUse = new AtomicInteger();
+
+  private final long createdAt = System.nanoTime();
+
+  // time connections were returned after, so the pool's utilization can be told
+  private final AtomicLong totalInUseNanos = new AtomicLong();
+
+  private final ConcurrentHashMap<Connection, Long> borrowedAt = new ConcurrentHashMap<>();
+
+  static {
+    try {
+      // the driver only ever needs to be registered once per JVM
+      Class.forName("org.sqlite.JDBC");
+    } catch (ClassNotFoundException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(SqliteConnectionPool::shutdownAll));
+  }
+
+  /**
+   * Creates a pool of connections to a single SQLite database file, using the
+   * SQLite profile set in PersistenceConfig.
+   *
+   * @param dbLocation a path to the database file, for example "tictactoe.db"
+   * @param maxIdle    maximum number of open connections to keep between uses
+   */
+  public SqliteConnectionPool(String dbLocation, int maxIdle) {
+    this(dbLocation, maxIdle, PersistenceConfig.getSqliteProfile());
+  }
+
+  /**
+   * Creates a pool of connections to a single SQLite database file. The SQLite
+   * configuration (foreign key enforcement, plus the journal mode, synchronous
+   * level and caches of the profile) is built once here and applied to every
+   * connection the pool opens. Each connection also waits for locks held by
+   * other connections with a SqliteBusyRetry, up to the profile's busy timeout.
+   *
+   * @param dbLocation a path to the database file, for example "tictactoe.db"
+   * @param maxIdle    maximum number of open connections to keep between uses
+   * @param profile    durability and performance settings for the connections
+   */
+  public SqliteConnectionPool(String dbLocation, int maxIdle, SqliteProfile profile) {
+    this(dbLocation, maxIdle, profile, false);
+  }
+
+  /**
+   * Creates a pool of connections to a single SQLite database file, as above.
+   * The connections of a read-only pool are additionally opened with
+   * query_only set, so SQLite rejects any statement that would write through
+   * them.
+   *
+   * @param dbLocation a path to the database file, for example "tictactoe.db"
+   * @param maxIdle    maximum number of open connections to keep between uses
+   * @param profile    durability and performance settings for the connections
+   * @param readOnly   whether the connections may only be read through
+   */
+  public SqliteConnectionPool(String dbLocation, int maxIdle, SqliteProfile profile,
+      boolean readOnly) {
+    this.dbLocation = dbLocation;
+    this.maxIdle = maxIdle;
+    this.profile = profile;
+    this.readOnly = readOnly;
+    this.busyRetry = new SqliteBusyRetry(profile.getBusyTimeoutMillis());
+
+    // setup database to enforce foreign keys
+    SQLiteConfig config = new SQLiteConfig();
+    config.enforceForeignKeys(true);
+    profile.applyTo(config);
+    this.connectionProperties = config.toProperties();
+  }
+
+  /**
+   * Returns the shared pool for a database file, creating it the first time the
+   * database is requested.
+   *
+   * @param dbLocation a path to the database file
+   * @return pool of connections to that database
+   */
+  public static SqliteConnectionPool forDatabase(String dbLocation) {
+    return POOLS.computeIfAbsent(dbLocation,
+        location -> new SqliteConnectionPool(location, DEFAULT_MAX_IDLE));
+  }
+
+  /**
+   * Returns the shared pool for a database file, creating it with the given
+   * profile the first time the database is requested. A pool that already
+   * exists keeps the profile it was created with.
+   *
+   * @param dbLocation a path to the database file
+   * @param profile    durability and performance settings for a new pool
+   * @return pool of connections to that database
+   */
+  public static SqliteConnectionPool forDatabase(String dbLocation, SqliteProfile profile) {
+    SqliteConnectionPool pool = POOLS.computeIfAbsent(dbLocation,
+        location -> new SqliteConnectionPool(location, DEFAULT_MAX_IDLE, profile));
+    if (pool.profile != profile) {
+      logger.warn("Connections to " + dbLocation + " already use the " + pool.profile
+          + " profile, not " + profile + ".");
+    }
+    return pool;
+  }
+
+  /**
+   * Returns the shared pool of read-only connections to a database file,
+   * creating it the first time it is requested with the profile of the
+   * database's pool of (writing) connections.
+   *
+   * <p>Under a profile using write-ahead logging, reading through these
+   * connections never waits for a transaction open on another connection:
+   * readers see the database as it was at the last commit. Under the other
+   * journal modes a commit still locks readers out while it writes the
+   * database file, so they can wait for the commit, but not for the
+   * transaction before it.
+   *
+   * @param dbLocation a path to the database file
+   * @return pool of read-only connections to that database
+   */
+  public static SqliteConnectionPool readersFor(String dbLocation) {
+    return READER_POOLS.computeIfAbsent(dbLocation, location -> new SqliteConnectionPool(
+        location, DEFAULT_MAX_IDLE, forDatabase(location).getProfile(), true));
+  }
+
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  public SqliteProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * Returns the policy for retrying statements on this database that are held
+   * up by another connection's lock, which also keeps the lock metrics.
+   *
+   * @return SqliteBusyRetry shared by the pool's connections
+   */
+  public SqliteBusyRetry getBusyRetry() {
+    return busyRetry;
+  }
+
+  /**
+   * Closes every pooled connection to every database. Called on JVM shutdown so
+   * that SQLite can cleanly release its file locks.
+   */
+  public static void shutdownAll() {
+    for (SqliteConnectionPool pool : POOLS.values()) {
+      pool.shutdown();
+    }
+    for (SqliteConnectionPool pool : READER_POOLS.values()) {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Borrows a connection from the pool. An idle connection is reused when there
+   * is one; otherwise a new connection is opened. The pool never blocks callers
+   * waiting on another caller's connection, as SQLite already serializes writers
+   * on the database file itself, so the recorded wait time is the cost of
+   * getting a usable connection.
+   *
+   * @return an open connection, in auto-commit mode
+   * @throws SQLException if a new connection could not be opened
+   */
+  public Connection acquire() throws SQLException {
+    long start = System.nanoTime();
+
+    Connection conn = idle.pollFirst();
+    while (conn != null && conn.isClosed()) {
+      statementCaches.remove(conn);
+      conn = idle.pollFirst();
+    }
+    if (conn == null) {
+      conn = DriverManager.getConnection("jdbc:sqlite:" + dbLocation, connectionProperties);
+      busyRetry.installOn(conn);
+      if (readOnly) {
+        try (Statement stmt = conn.createStatement()) {
+          stmt.execute("PRAGMA query_only = 1");
+        }
+      }
+      connectionsOpened.incrementAndGet();
+    }
+
+    recordAcquisition(System.nanoTime() - start);
+    borrowedAt.put(conn, System.nanoTime());
+    return conn;
+  }
+
+  /**
+   * Returns a connection to the pool. Any transaction left open on the
+   * connection is rolled back so the next borrower starts clean. If the pool
+   * already holds the maximum number of idle connections, the connection is
+   * closed instead.
+   *
+   * @param conn connection previously borrowed via acquire()
+   * @throws SQLException if the connection could not be reset or closed
+   */
+  public void release(Connection conn) throws SQLException {
+    inUse.decrementAndGet();
+    Long borrowed = borrowedAt.remove(conn);
+    if (borrowed != null) {
+      totalInUseNanos.addAndGet(System.nanoTime() - borrowed);
+    }
+
+    if (conn.isClosed()) {
+      return;
+    }
+
+    try {
+      if (!conn.getAutoCommit()) {
+        conn.rollback();
+        conn.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      // a connection that cannot be reset should not be handed out again
+      closeConnection(conn);
+      throw e;
+    }
+
+    if (idle.size() < maxIdle) {
+      idle.offerFirst(conn);
+    } else {
+      closeConnection(conn);
+    }
+  }
+
+  /**
+   * Returns the prepared statement cache for a connection borrowed from this
+   * pool. Statements prepared through the cache survive the connection being
+   * returned to the pool, so the next borrower skips re-parsing them.
+   *
+   * @param conn connection previously borrowed via acquire()
+   * @return SqliteStatementCache for the connection
+   */
+  public SqliteStatementCache statementCache(Connection conn) {
+    return statementCaches.computeIfAbsent(conn,
+        c -> new SqliteStatementCache(c, SqliteStatementCache.DEFAULT_CAPACITY));
+  }
+
+  /**
+   * Closes all idle connections held by this pool, and by the pool of
+   * read-only connections to the same database if this pool is not one.
+   */
+  public void shutdown() {
+    if (!readOnly) {
+      SqliteConnectionPool readers = READER_POOLS.get(dbLocation);
+      if (readers != null) {
+        readers.shutdown();
+      }
+    }
+
+    Connection conn = idle.pollFirst();
+    while (conn != null) {
+      try {
+        closeConnection(conn);
+      } catch (SQLException e) {
+        logger.error(e.getClass().getName() + ": " + e.getMessage());
+      }
+      conn = idle.pollFirst();
+    }
+  }
+
+  /**
+   * Returns a point-in-time snapshot of the pool's metrics. Those of a pool of
+   * (writing) connections include the metrics of the read-only connections to
+   * the same database, once any were borrowed.
+   *
+   * @return PoolMetrics instance
+   */
+  public PoolMetrics getMetrics() {
+    SqliteConnectionPool readers = readOnly ? null : READER_POOLS.get(dbLocation);
+    return new PoolMetrics(dbLocation, acquisitions.get(), connectionsOpened.get(),
+        inUse.get(), peakInUse.get(), averageInUse(), idle.size(), totalWaitNanos.get(),
+        maxWaitNanos.get(), busyRetry.getMetrics(),
+        readers == null ? null : readers.getMetrics());
+  }
+
+  /**
+   * Returns the average number of connections borrowed at once since the pool
+   * was created, counting connections that are still borrowed up to now.
+   */
+  private double averageInUse() {
+    long now = System.nanoTime();
+    long inUseNanos = totalInUseNanos.get();
+    for (Long borrowed : borrowedAt.values()) {
+      inUseNanos += now - borrowed;
+    }
+    return now == createdAt ? 0 : (double) inUseNanos / (now - createdAt);
+  }
+
+  /**
+   * Closes a connection along with any statements cached for it.
+   *
+   * @param conn connection to close
+   * @throws SQLException if the connection could not be closed
+   */
+  private void closeConnection(Connection conn) throws SQLException {
+    SqliteStatementCache cache = statementCaches.remove(conn);
+    if (cache != null) {
+      cache.clear();
+    }
+    conn.close();
+  }
+
+  /**
+   * Updates acquisition counters and wait time statistics.
+   *
+   * @param waitNanos time spent obtaining a connection, in nanoseconds
+   */
+  private void recordAcquisition(long waitNanos) {
+    acquisitions.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+    int current = inUse.incrementAndGet();
+    peakInUse.accumulateAndGet(current, Math::max);
+  }
+}
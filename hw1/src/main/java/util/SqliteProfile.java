@@ -0,0 +1,91 @@
+package util;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+import org.sqlite.SQLiteConfig.TempStore;
+
+/**
+ * Named sets of SQLite settings that trade durability for commit latency. A
+ * profile is applied to the SQLiteConfig of every connection a pool opens.
+ */
+public enum SqliteProfile {
+
+  /**
+   * SQLite's own defaults, as the application has always used them: a rollback
+   * journal, and a full fsync on every commit. A commit that has returned
+   * survives a crash or power loss.
+   */
+  DURABLE(JournalMode.DELETE, SynchronousMode.FULL, 2000, 0, false, 3000),
+
+  /**
+   * Write-ahead log with fsyncs only at checkpoints. Commits survive the server
+   * crashing, but the last few can be lost on power loss. Readers no longer wait
+   * for the writer.
+   */
+  BALANCED(JournalMode.WAL, SynchronousMode.NORMAL, 16 * 1024, 64L << 20, true, 5000),
+
+  /**
+   * Write-ahead log without any fsync, leaving it to the operating system when
+   * data reaches the disk. Commits survive the server crashing but not the
+   * machine; for load tests and games that do not matter.
+   */
+  FAST(JournalMode.WAL, SynchronousMode.OFF, 64 * 1024, 256L << 20, true, 5000);
+
+  private final JournalMode journalMode;
+
+  private final SynchronousMode synchronous;
+
+  private final int cacheKib;
+
+  private final long mmapBytes;
+
+  private final boolean tempInMemory;
+
+  private final int busyTimeoutMillis;
+
+  SqliteProfile(JournalMode journalMode, SynchronousMode synchronous, int cacheKib,
+      long mmapBytes, boolean tempInMemory, int busyTimeoutMillis) {
+    this.journalMode = journalMode;
+    this.synchronous = synchronous;
+    this.cacheKib = cacheKib;
+    this.mmapBytes = mmapBytes;
+    this.tempInMemory = tempInMemory;
+    this.busyTimeoutMillis = busyTimeoutMillis;
+  }
+
+  public JournalMode getJournalMode() {
+    return journalMode;
+  }
+
+  public SynchronousMode getSynchronous() {
+    return synchronous;
+  }
+
+  /**
+   * Returns the longest a statement waits for a lock another connection holds
+   * on the database, before failing with SQLITE_BUSY.
+   *
+   * @return busy timeout in milliseconds
+   */
+  public int getBusyTimeoutMillis() {
+    return busyTimeoutMillis;
+  }
+
+  /**
+   * Sets the journal mode, synchronous level, page cache size, memory-mapped
+   * I/O size and temporary storage of this profile on a SQLite configuration.
+   * The busy timeout is not set here: pools wait for locks with a
+   * SqliteBusyRetry, which gives up after the busy timeout instead.
+   *
+   * @param config configuration to change
+   */
+  public void applyTo(SQLiteConfig config) {
+    config.setJournalMode(journalMode);
+    config.setSynchronous(synchronous);
+    // a negative cache size is in KiB rather than pages
+    config.setCacheSize(-cacheKib);
+    config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(mmapBytes));
+    config.setTempStore(tempInMemory ? TempStore.MEMORY : TempStore.DEFAULT);
+  }
+}
@@ -0,0 +1,109 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SqliteStatementCache {
+
+  // default number of distinct statements kept prepared per connection
+  static final int DEFAULT_CAPACITY = 32;
+
+  private static Logger logger = LoggerFactory.getLogger(SqliteStatementCache.class);
+
+  private final Connection conn;
+
+  private final int capacity;
+
+  // access-ordered, so iteration starts at the least recently used statement
+  private final LinkedHashMap<String, PreparedStatement> statements =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private long hits;
+
+  private long misses;
+
+  /**
+   * Constructor for a cache of prepared statements belonging to one connection.
+   * A connection is only ever used by one caller at a time, so the cache does
+   * not need to be thread safe.
+   *
+   * @param conn     connection that statements are prepared on
+   * @param capacity maximum number of statements to keep prepared
+   */
+  public SqliteStatementCache(Connection conn, int capacity) {
+    this.conn = conn;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns a prepared statement for the SQL provided, preparing it only the
+   * first time this SQL text (the statement's "shape", with ? placeholders) is
+   * seen on this connection. Parameters left over from a previous use are
+   * cleared. Callers must not close the statement; they should only close any
+   * ResultSet obtained from it.
+   *
+   * @param sql SQL statement, using ? placeholders for all values
+   * @return PreparedStatement ready for its parameters to be bound
+   * @throws SQLException if the statement could not be prepared
+   */
+  public PreparedStatement prepare(String sql) throws SQLException {
+    PreparedStatement statement = statements.get(sql);
+
+    if (statement != null && !statement.isClosed()) {
+      hits++;
+      statement.clearParameters();
+      return statement;
+    }
+
+    misses++;
+    statement = conn.prepareStatement(sql);
+    statements.put(sql, statement);
+    evictLeastRecentlyUsed();
+    return statement;
+  }
+
+  /**
+   * Closes every cached statement; used when the owning connection is closed.
+   */
+  public void clear() {
+    for (PreparedStatement statement : statements.values()) {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        logger.error(e.getClass().getName() + ": " + e.getMessage());
+      }
+    }
+    statements.clear();
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public int size() {
+    return statements.size();
+  }
+
+  /**
+   * Closes and removes the least recently used statements until the cache is
+   * back within its capacity.
+   */
+  private void evictLeastRecentlyUsed() throws SQLException {
+    Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+    while (statements.size() > capacity && it.hasNext()) {
+      PreparedStatement eldest = it.next().getValue();
+      it.remove();
+      eldest.close();
+    }
+  }
+}
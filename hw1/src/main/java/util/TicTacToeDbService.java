@@ -1,6 +1,11 @@
 package util;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import models.GenericGameBoard;
 import models.Move;
 import models.Player;
@@ -18,6 +23,8 @@ public interface TicTacToeDbService {
   
   public List<Player> findAllPlayers(int gameId) throws DbServiceException;
   
+  public int findMostRecentGameId() throws DbServiceException;
+  
   public GenericGameBoard restoreMostRecentGameBoard() throws DbServiceException;
   
   public GenericGameBoard restoreGameBoard(int gameId) throws DbServiceException;
@@ -34,4 +41,166 @@ public interface TicTacToeDbService {
   
   public void close() throws DbServiceException;
 
+  /**
+   * Saves the players of many games in the current transaction. By default this
+   * saves them one at a time; implementations can do it in a single batch.
+   *
+   * @param playersByGame players to save, by game ID
+   * @throws DbServiceException if a player could not be saved
+   */
+  public default void savePlayers(Map<Integer, ? extends Collection<Player>> playersByGame)
+      throws DbServiceException {
+    for (Map.Entry<Integer, ? extends Collection<Player>> entry : playersByGame.entrySet()) {
+      for (Player player : entry.getValue()) {
+        savePlayer(player, entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Saves the moves of many games in the current transaction, in the order
+   * given for each game. By default this saves them one at a time;
+   * implementations can do it in a single batch.
+   *
+   * @param movesByGame moves to save, by game ID
+   * @throws DbServiceException if a move could not be saved
+   */
+  public default void saveMoves(Map<Integer, ? extends Collection<Move>> movesByGame)
+      throws DbServiceException {
+    for (Map.Entry<Integer, ? extends Collection<Move>> entry : movesByGame.entrySet()) {
+      for (Move move : entry.getValue()) {
+        saveValidMove(move, entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Creates many games that do not exist yet, each with its players, its moves
+   * in the order given, and the state its game board ended in, in the current
+   * transaction. By default this saves them one row at a time; implementations
+   * can write each game's row once, with its final state, in a single batch.
+   *
+   * @param gameboards  final game board of each game, by game ID
+   * @param movesByGame moves of each game, by game ID
+   * @throws DbServiceException if a game could not be saved
+   */
+  public default void saveGames(Map<Integer, ? extends GenericGameBoard> gameboards,
+      Map<Integer, ? extends Collection<Move>> movesByGame) throws DbServiceException {
+    for (Map.Entry<Integer, ? extends GenericGameBoard> entry : gameboards.entrySet()) {
+      int gameId = entry.getKey();
+      GenericGameBoard gameboard = entry.getValue();
+      createNewGame(gameId);
+      for (Player player : new Player[] {gameboard.getP1(), gameboard.getP2()}) {
+        if (player != null) {
+          savePlayer(player, gameId);
+        }
+      }
+      Collection<Move> moves = movesByGame.get(gameId);
+      for (Move move : moves == null ? Collections.<Move>emptyList() : moves) {
+        saveValidMove(move, gameId);
+      }
+      saveGameState(gameboard, gameId);
+    }
+  }
+
+  /**
+   * Restores many game boards. Games that do not exist are returned as empty
+   * game boards, as restoreGameBoard() does. By default this restores them one
+   * at a time; implementations can read them in fewer queries.
+   *
+   * @param gameIds the game IDs to restore
+   * @return game boards by game ID, in the order the IDs were given
+   * @throws DbServiceException if a game board could not be restored
+   */
+  public default Map<Integer, GenericGameBoard> restoreGameBoards(Collection<Integer> gameIds)
+      throws DbServiceException {
+    Map<Integer, GenericGameBoard> gameboards = new LinkedHashMap<>();
+    for (int gameId : gameIds) {
+      gameboards.put(gameId, restoreGameBoard(gameId));
+    }
+    return gameboards;
+  }
+
+  /**
+   * Deletes many games, with their players and moves, in the current
+   * transaction. By default this deletes them one at a time; implementations
+   * can do it in a single batch.
+   *
+   * @param gameIds the game IDs to delete
+   * @throws DbServiceException if a game could not be deleted
+   */
+  public default void deleteGames(Collection<Integer> gameIds) throws DbServiceException {
+    for (int gameId : gameIds) {
+      deleteGame(gameId, false);
+    }
+  }
+
+  /**
+   * Writes the history of the games with IDs from fromGameId to toGameId, both
+   * included, in game ID order. Games without any players are left out. Games
+   * are read and written one at a time, so memory use does not grow with the
+   * number of games. By default each game is read with findAllPlayers(),
+   * findAllMoves() and restoreGameBoard(); implementations can read many games
+   * per query.
+   *
+   * @param fromGameId lowest game ID to export
+   * @param toGameId   highest game ID to export
+   * @param out        where to write the games
+   * @return number of games written
+   * @throws DbServiceException if a game could not be read
+   * @throws IOException        if a game could not be written
+   */
+  public default int exportGames(int fromGameId, int toGameId, GameHistoryWriter out)
+      throws DbServiceException, IOException {
+    int written = 0;
+    int lastGameId = Math.min(toGameId, findMostRecentGameId());
+
+    for (int gameId = Math.max(fromGameId, 1); gameId <= lastGameId; gameId++) {
+      List<Player> players = findAllPlayers(gameId);
+      if (players.isEmpty()) {
+        continue;
+      }
+      GenericGameBoard gameboard = restoreGameBoard(gameId);
+      out.writeGame(gameId, players, findAllMoves(gameId), gameboard.getWinner(),
+          gameboard.isDraw());
+      written++;
+    }
+    return written;
+  }
+
+  /**
+   * Moves up to maxGames finished games (won or drawn), oldest first, out of
+   * the tables games are played from and into compact archive records, in the
+   * current transaction. The most recent game is never archived. Archived games
+   * can still be restored with restoreGameBoard(). By default nothing is
+   * archived; implementations whose tables grow with every game played can
+   * keep them small this way.
+   *
+   * @param maxGames most games to archive
+   * @return number of games archived
+   * @throws DbServiceException if the games could not be archived
+   */
+  public default int archiveFinishedGames(int maxGames) throws DbServiceException {
+    return 0;
+  }
+
+  /**
+   * Deletes up to maxGames games, longest idle first, that are still being
+   * played but have not been written to since idleSinceMillis, along with
+   * their players and moves, in the current transaction. Finished games, and
+   * the most recent game, are never expired. By default nothing is expired;
+   * implementations that record when each game was last written to can free
+   * abandoned games this way.
+   *
+   * @param idleSinceMillis games last written to before this time, in
+   *                        milliseconds since the epoch, are expired
+   * @param maxGames        most games to expire
+   * @return IDs of the games deleted
+   * @throws DbServiceException if the games could not be expired
+   */
+  public default List<Integer> expireIdleGames(long idleSinceMillis, int maxGames)
+      throws DbServiceException {
+    return Collections.emptyList();
+  }
+
 }
@@ -0,0 +1,434 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+
+/**
+ * Database service that keeps every game in memory only, for deployments that
+ * do not need games to survive a restart (e.g., load tests or bot arenas). It
+ * follows the same transaction semantics as TicTacToeSqliteDbService: writes
+ * made after connect() are only visible to others once commit() is called, and
+ * are thrown away by close().
+ *
+ * <p>Games are stored in a concurrent map and committed under striped locks, so
+ * transactions on different games do not wait for each other. Committed game
+ * records are never changed in place; a commit builds new records and swaps
+ * them in, which lets reads go ahead without taking any lock.
+ */
+public class TicTacToeInMemoryDbService implements TicTacToeDbService {
+
+  private static final int LOCK_STRIPES = 64;
+
+  private final Map<Integer, GameRecord> games = new ConcurrentHashMap<>();
+
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  // writes made by the calling thread since it last called connect()
+  private final ThreadLocal<List<StoreWrite>> openTransaction = new ThreadLocal<>();
+
+  /**
+   * Constructor for an empty in-memory database.
+   */
+  public TicTacToeInMemoryDbService() {
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * Starts a new transaction for the calling thread. Calling this again before
+   * commit() or close() keeps the transaction already open.
+   */
+  public void connect() {
+    if (openTransaction.get() == null) {
+      openTransaction.set(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Nothing to create; games are stored in memory as soon as they are saved.
+   */
+  public void createDatabasesTables() {
+  }
+
+  /**
+   * Adds a new, empty game in the caller's open transaction.
+   *
+   * @param gameId the id of the game to create
+   * @throws DbServiceException if connect() has not been called, or, on commit,
+   *                            if a game with this id already exists
+   */
+  public void createNewGame(int gameId) throws DbServiceException {
+    currentTransaction().add(new StoreWrite(gameId) {
+      void apply(Map<Integer, GameRecord> working) throws DbServiceException {
+        if (working.get(gameId) != null) {
+          throw new DbServiceException("Game " + gameId + " already exists.");
+        }
+        working.put(gameId, new GameRecord(new GameBoard(null)));
+      }
+    });
+  }
+
+  /**
+   * Returns all committed moves of a game, in the order they were played.
+   *
+   * @param gameId the game Id to use in looking for associated moves
+   * @return list of moves; empty if the game does not exist
+   */
+  public List<Move> findAllMoves(int gameId) {
+    GameRecord game = games.get(gameId);
+    return game == null ? new ArrayList<>() : new ArrayList<>(game.moves);
+  }
+
+  /**
+   * Returns all committed players of a game.
+   *
+   * @param gameId the game Id to use in looking for associated players
+   * @return list of players; empty if the game does not exist
+   */
+  public List<Player> findAllPlayers(int gameId) {
+    GameRecord game = games.get(gameId);
+    return game == null ? new ArrayList<>() : new ArrayList<>(game.players);
+  }
+
+  /**
+   * Returns the highest id of any committed game.
+   *
+   * @return id of the most recent game, or 0 if there are no games
+   */
+  public int findMostRecentGameId() {
+    int mostRecent = 0;
+    for (int gameId : games.keySet()) {
+      mostRecent = Math.max(mostRecent, gameId);
+    }
+    return mostRecent;
+  }
+
+  /**
+   * Restores the game with the highest id, or returns a new game board if there
+   * are no games yet.
+   *
+   * @return GameBoard instance restored from memory
+   */
+  public GameBoard restoreMostRecentGameBoard() throws DbServiceException {
+    int mostRecent = findMostRecentGameId();
+    return mostRecent > 0 ? restoreGameBoard(mostRecent) : new GameBoard(this);
+  }
+
+  /**
+   * Restores the committed state of a game. The board returned is a copy that
+   * saves its changes through this service.
+   *
+   * @param gameId the game ID to restore
+   * @return GameBoard instance; an empty game board if the game does not exist
+   */
+  public GameBoard restoreGameBoard(int gameId) throws DbServiceException {
+    GameRecord game = games.get(gameId);
+    if (game == null) {
+      return new GameBoard(this);
+    }
+    GameBoard gb = GameSnapshot.decode(game.snapshot, this);
+    gb.setGameId(gameId);
+    return gb;
+  }
+
+  /**
+   * Adds a player to a game in the caller's open transaction.
+   *
+   * @param player the player to save
+   * @param gameId the game ID to associate the player with
+   * @throws DbServiceException if connect() has not been called, or, on commit,
+   *                            if the game does not exist or already has a
+   *                            player with this id
+   */
+  public void savePlayer(Player player, int gameId) throws DbServiceException {
+    currentTransaction().add(new StoreWrite(gameId) {
+      void apply(Map<Integer, GameRecord> working) throws DbServiceException {
+        GameRecord game = existingGame(working, gameId);
+        for (Player existing : game.players) {
+          if (existing.getId() == player.getId()) {
+            throw new DbServiceException("Player " + player.getId() + " already exists "
+                + "in game " + gameId + ".");
+          }
+        }
+        game.players.add(player);
+
+        GameBoard gb = game.board();
+        GameSnapshot.applyPlayer(gb, player);
+        game.snapshot = GameSnapshot.encode(gb);
+      }
+    });
+  }
+
+  /**
+   * Replaces the state of a game in the caller's open transaction. Like an
+   * UPDATE, this does nothing if the game does not exist.
+   *
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @param gameId    the game ID to associate the game state with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void saveGameState(GenericGameBoard gameboard, int gameId) throws DbServiceException {
+    // encoded now, since the game board will keep changing before the commit
+    byte[] snapshot = GameSnapshot.encode(gameboard);
+
+    currentTransaction().add(new StoreWrite(gameId) {
+      void apply(Map<Integer, GameRecord> working) {
+        GameRecord game = working.get(gameId);
+        if (game != null) {
+          game.snapshot = snapshot;
+        }
+      }
+    });
+  }
+
+  /**
+   * Adds a move to a game in the caller's open transaction.
+   *
+   * @param move   the move to save
+   * @param gameId the game ID to associate the move with
+   * @throws DbServiceException if connect() has not been called, or, on commit,
+   *                            if the game does not exist
+   */
+  public void saveValidMove(Move move, int gameId) throws DbServiceException {
+    currentTransaction().add(new StoreWrite(gameId) {
+      void apply(Map<Integer, GameRecord> working) throws DbServiceException {
+        GameRecord game = existingGame(working, gameId);
+        game.moves.add(move);
+
+        GameBoard gb = game.board();
+        GameSnapshot.applyMove(gb, move);
+        game.snapshot = GameSnapshot.encode(gb);
+      }
+    });
+  }
+
+  /**
+   * Deletes a game, with its players and moves. If autoCommit is set, the caller's
+   * open transaction (including this delete) is committed right away, as it
+   * would be for the SQLite service.
+   *
+   * @param gameId     the game ID to delete
+   * @param autoCommit whether to commit immediately
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void deleteGame(int gameId, boolean autoCommit) throws DbServiceException {
+    currentTransaction().add(new StoreWrite(gameId) {
+      void apply(Map<Integer, GameRecord> working) {
+        working.put(gameId, null);
+      }
+    });
+
+    if (autoCommit) {
+      List<StoreWrite> writes = openTransaction.get();
+      openTransaction.set(new ArrayList<>());
+      apply(writes);
+    }
+  }
+
+  /**
+   * Deletes up to maxGames games that are still being played but have not been
+   * committed to since idleSinceMillis, longest idle first, along with their
+   * players and moves. Unlike other writes, the games are removed right away
+   * rather than on commit(), each only if it is still idle and unfinished once
+   * its lock stripe is held, so the IDs returned are exactly the games removed.
+   * The most recent game, which is the one the server is playing, is never
+   * expired, so that the highest game id never drops.
+   *
+   * @param idleSinceMillis games last committed to before this time, in
+   *                        milliseconds since the epoch, are expired
+   * @param maxGames        most games to expire
+   * @return IDs of the games deleted
+   * @throws DbServiceException if connect() has not been called
+   */
+  public List<Integer> expireIdleGames(long idleSinceMillis, int maxGames)
+      throws DbServiceException {
+    currentTransaction();
+    int mostRecent = findMostRecentGameId();
+
+    List<Map.Entry<Integer, GameRecord>> idle = new ArrayList<>();
+    for (Map.Entry<Integer, GameRecord> entry : games.entrySet()) {
+      if (entry.getKey() < mostRecent && entry.getValue().isIdle(idleSinceMillis)) {
+        idle.add(entry);
+      }
+    }
+    idle.sort(Comparator.comparingLong(entry -> entry.getValue().lastActivity));
+
+    List<Integer> expired = new ArrayList<>();
+    for (Map.Entry<Integer, GameRecord> entry : idle) {
+      if (expired.size() == maxGames) {
+        break;
+      }
+      int gameId = entry.getKey();
+      synchronized (locks[stripe(gameId)]) {
+        GameRecord game = games.get(gameId);
+        if (game != null && game.isIdle(idleSinceMillis)) {
+          games.remove(gameId);
+          expired.add(gameId);
+        }
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Commits the caller's open transaction. Either all of its writes become
+   * visible, or, if one of them fails, none of them do.
+   *
+   * @throws DbServiceException if one of the writes in the transaction failed
+   */
+  public void commit() throws DbServiceException {
+    List<StoreWrite> writes = openTransaction.get();
+    openTransaction.remove();
+
+    if (writes != null) {
+      apply(writes);
+    }
+  }
+
+  /**
+   * Discards the caller's open transaction.
+   */
+  public void close() {
+    openTransaction.remove();
+  }
+
+  /**
+   * Applies a transaction's writes to copies of the games they touch and, if
+   * all writes succeed, swaps the copies in. The lock stripes of all those games
+   * are taken in a fixed order, so transactions cannot deadlock.
+   */
+  private void apply(List<StoreWrite> writes) throws DbServiceException {
+    if (writes.isEmpty()) {
+      return;
+    }
+
+    TreeSet<Integer> stripes = new TreeSet<>();
+    for (StoreWrite write : writes) {
+      stripes.add(stripe(write.gameId));
+    }
+    applyLocked(writes, new ArrayList<>(stripes), 0);
+  }
+
+  private void applyLocked(List<StoreWrite> writes, List<Integer> stripes, int next)
+      throws DbServiceException {
+    if (next < stripes.size()) {
+      synchronized (locks[stripes.get(next)]) {
+        applyLocked(writes, stripes, next + 1);
+      }
+      return;
+    }
+
+    Map<Integer, GameRecord> working = new HashMap<>();
+    for (StoreWrite write : writes) {
+      if (!working.containsKey(write.gameId)) {
+        GameRecord game = games.get(write.gameId);
+        working.put(write.gameId, game == null ? null : game.copy());
+      }
+      write.apply(working);
+    }
+
+    long now = System.currentTimeMillis();
+    for (Map.Entry<Integer, GameRecord> entry : working.entrySet()) {
+      if (entry.getValue() == null) {
+        games.remove(entry.getKey());
+      } else {
+        entry.getValue().freeze(now);
+        games.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private int stripe(int gameId) {
+    return Math.floorMod(Integer.hashCode(gameId), LOCK_STRIPES);
+  }
+
+  private List<StoreWrite> currentTransaction() throws DbServiceException {
+    List<StoreWrite> writes = openTransaction.get();
+    if (writes == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+    return writes;
+  }
+
+  private static GameRecord existingGame(Map<Integer, GameRecord> working, int gameId)
+      throws DbServiceException {
+    GameRecord game = working.get(gameId);
+    if (game == null) {
+      throw new DbServiceException("Game " + gameId + " does not exist.");
+    }
+    return game;
+  }
+
+  /**
+   * A write recorded in an open transaction, applied to the working copies of
+   * the games on commit.
+   */
+  private abstract static class StoreWrite {
+
+    final int gameId;
+
+    StoreWrite(int gameId) {
+      this.gameId = gameId;
+    }
+
+    abstract void apply(Map<Integer, GameRecord> working) throws DbServiceException;
+  }
+
+  /**
+   * Everything stored for one game. Once committed, a record is not changed
+   * again.
+   */
+  private static final class GameRecord {
+
+    private List<Player> players;
+
+    private List<Move> moves;
+
+    private byte[] snapshot;
+
+    // when the record was committed, in milliseconds since the epoch
+    private long lastActivity;
+
+    GameRecord(GameBoard board) {
+      this.players = new ArrayList<>();
+      this.moves = new ArrayList<>();
+      this.snapshot = GameSnapshot.encode(board);
+    }
+
+    private GameRecord(GameRecord other) {
+      this.players = new ArrayList<>(other.players);
+      this.moves = new ArrayList<>(other.moves);
+      this.snapshot = other.snapshot;
+    }
+
+    GameRecord copy() {
+      return new GameRecord(this);
+    }
+
+    GameBoard board() throws DbServiceException {
+      return GameSnapshot.decode(snapshot, null);
+    }
+
+    boolean isIdle(long idleSinceMillis) {
+      return lastActivity < idleSinceMillis && !GameSnapshot.isFinished(snapshot);
+    }
+
+    void freeze(long now) {
+      players = Collections.unmodifiableList(players);
+      moves = Collections.unmodifiableList(moves);
+      lastActivity = now;
+    }
+  }
+}
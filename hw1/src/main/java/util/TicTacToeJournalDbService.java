@@ -0,0 +1,552 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Database service that stores every game event (game created, player joined,
+ * move, game state, game deleted) as a fixed-size record in an append-only
+ * GameJournal, instead of going through JDBC. A committed move costs one
+ * write of a few small records at the end of the file, and the journal is
+ * forced to disk periodically rather than on every commit (unless configured
+ * otherwise).
+ *
+ * <p>On startup the journal is scanned once to rebuild an in-memory index that
+ * holds, for each live game, the offsets of its events and of its latest state
+ * record. Restoring a game then reads the latest state record and any events
+ * after it, rather than the whole journal. The journal is never rewritten, so
+ * deleted games still take up space in it until the file is removed.
+ */
+public class TicTacToeJournalDbService implements TicTacToeDbService {
+
+  private static Logger logger = LoggerFactory.getLogger(TicTacToeJournalDbService.class);
+
+  private final GameJournal journal;
+
+  private final Map<Integer, GameIndex> games = new ConcurrentHashMap<>();
+
+  // records written by the calling thread since it last called connect()
+  private final ThreadLocal<List<GameJournal.Record>> openTransaction = new ThreadLocal<>();
+
+  /**
+   * Constructor for a journal service using the journal file and fsync interval
+   * set in PersistenceConfig.
+   *
+   * @throws DbServiceException if the journal could not be opened or recovered
+   */
+  public TicTacToeJournalDbService() throws DbServiceException {
+    this(PersistenceConfig.getJournalFile(), PersistenceConfig.getJournalFsyncMillis());
+  }
+
+  /**
+   * Constructor for a journal service. The journal is recovered (and any
+   * incomplete transaction at its end discarded) before this returns.
+   *
+   * @param file        path of the journal file; created if it does not exist
+   * @param fsyncMillis how often commits are forced to disk; 0 forces each
+   *                    commit to disk before it returns
+   * @throws DbServiceException if the journal could not be opened or recovered
+   */
+  public TicTacToeJournalDbService(String file, long fsyncMillis) throws DbServiceException {
+    try {
+      journal = new GameJournal(Paths.get(file), fsyncMillis);
+      int transactions = journal.recover(this::index);
+      logger.info("Recovered " + transactions + " transactions (" + games.size()
+          + " games) from " + file + ".");
+
+    } catch (IOException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Could not open game journal " + file + ".");
+    }
+  }
+
+  /**
+   * Starts a new transaction for the calling thread. Calling this again before
+   * commit() or close() keeps the transaction already open.
+   */
+  public void connect() {
+    if (openTransaction.get() == null) {
+      openTransaction.set(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Nothing to create; the journal file is created when the service is.
+   */
+  public void createDatabasesTables() {
+  }
+
+  /**
+   * Records the creation of a new game in the caller's open transaction.
+   *
+   * @param gameId the id of the game to create
+   * @throws DbServiceException if connect() has not been called, or, on commit,
+   *                            if a game with this id already exists
+   */
+  public void createNewGame(int gameId) throws DbServiceException {
+    currentTransaction().add(new GameJournal.Record(GameJournal.CREATE_GAME, gameId,
+        new byte[0]));
+  }
+
+  /**
+   * Reads all committed moves of a game from the journal, in the order they were
+   * played.
+   *
+   * @param gameId the game Id to use in looking for associated moves
+   * @throws DbServiceException if the journal could not be read
+   */
+  public List<Move> findAllMoves(int gameId) throws DbServiceException {
+    List<Move> moves = new ArrayList<>();
+    for (GameJournal.Record record : readEvents(gameId, -1)) {
+      if (record.getType() == GameJournal.MOVE) {
+        moves.add(toMove(record));
+      }
+    }
+    return moves;
+  }
+
+  /**
+   * Reads all committed players of a game from the journal.
+   *
+   * @param gameId the game Id to use in looking for associated players
+   * @throws DbServiceException if the journal could not be read
+   */
+  public List<Player> findAllPlayers(int gameId) throws DbServiceException {
+    List<Player> players = new ArrayList<>();
+    for (GameJournal.Record record : readEvents(gameId, -1)) {
+      if (record.getType() == GameJournal.PLAYER) {
+        players.add(toPlayer(record));
+      }
+    }
+    return players;
+  }
+
+  /**
+   * Returns the highest id of any committed game.
+   *
+   * @return id of the most recent game, or 0 if there are no games
+   */
+  public int findMostRecentGameId() {
+    int mostRecent = 0;
+    for (int gameId : games.keySet()) {
+      mostRecent = Math.max(mostRecent, gameId);
+    }
+    return mostRecent;
+  }
+
+  /**
+   * Restores the game with the highest id, or returns a new game board if there
+   * are no games yet.
+   *
+   * @throws DbServiceException if the journal could not be read
+   */
+  public GameBoard restoreMostRecentGameBoard() throws DbServiceException {
+    int mostRecent = findMostRecentGameId();
+    return mostRecent > 0 ? restoreGameBoard(mostRecent) : new GameBoard(this);
+  }
+
+  /**
+   * Restores a game from its latest state record, replaying only the players and
+   * moves recorded after it (or all of them, if there is no state record).
+   *
+   * @param gameId the game ID to restore
+   * @return GameBoard instance; an empty game board if the game does not exist
+   * @throws DbServiceException if the journal could not be read
+   */
+  public GameBoard restoreGameBoard(int gameId) throws DbServiceException {
+    GameIndex game = games.get(gameId);
+    if (game == null) {
+      return new GameBoard(this);
+    }
+
+    GameBoard gb;
+    if (game.state >= 0) {
+      byte[] payload = read(game.state).getPayload();
+      gb = GameSnapshot.decode(Arrays.copyOfRange(payload, 1, 1 + payload[0]), this);
+    } else if (game.board >= 0) {
+      byte[] payload = read(game.board).getPayload();
+      gb = new MnkGameBoard(payload[0], payload[1], payload[2], this);
+      gb.setComputerOpponent(payload.length > 3 && payload[3] != 0);
+    } else {
+      gb = new GameBoard(this);
+    }
+    gb.setGameId(gameId);
+
+    for (GameJournal.Record record : readEvents(game, game.state)) {
+      if (record.getType() == GameJournal.PLAYER) {
+        GameSnapshot.applyPlayer(gb, toPlayer(record));
+      } else {
+        GameSnapshot.applyMove(gb, toMove(record));
+      }
+    }
+    return gb;
+  }
+
+  /**
+   * Records a player joining a game in the caller's open transaction.
+   *
+   * @param player the player to save
+   * @param gameId the game ID to associate the player with
+   * @throws DbServiceException if connect() has not been called, or, on commit,
+   *                            if the game does not exist or already has a
+   *                            player with this id
+   */
+  public void savePlayer(Player player, int gameId) throws DbServiceException {
+    byte[] payload = { (byte) player.getId(), (byte) player.getType() };
+    currentTransaction().add(new GameJournal.Record(GameJournal.PLAYER, gameId, payload));
+  }
+
+  /**
+   * Records the state of a game in the caller's open transaction. Like an
+   * UPDATE, this does nothing if the game does not exist. Boards whose snapshot
+   * does not fit in a record are not recorded; only their size is, along with
+   * whether the server plays player 2, each time that changes, and they are
+   * restored by replaying their players and moves on an empty board of that
+   * size.
+   *
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @param gameId    the game ID to associate the game state with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void saveGameState(GenericGameBoard gameboard, int gameId) throws DbServiceException {
+    List<GameJournal.Record> transaction = currentTransaction();
+    byte[] snapshot = GameSnapshot.encode(gameboard);
+    if (snapshot.length >= GameJournal.PAYLOAD_SIZE) {
+      GameIndex game = games.get(gameId);
+      boolean computerOpponent = gameboard instanceof GameBoard
+          && ((GameBoard) gameboard).hasComputerOpponent();
+      if (game == null || game.board < 0 || game.computerOpponent != computerOpponent) {
+        char[][] board = gameboard.getBoardState();
+        int winLength = gameboard instanceof GameBoard ? ((GameBoard) gameboard).getWinLength()
+            : Math.max(board.length, board[0].length);
+        byte[] size = { (byte) board.length, (byte) board[0].length, (byte) winLength,
+            (byte) (computerOpponent ? 1 : 0) };
+        transaction.add(new GameJournal.Record(GameJournal.BOARD, gameId, size));
+      }
+      return;
+    }
+
+    byte[] payload = new byte[snapshot.length + 1];
+    payload[0] = (byte) snapshot.length;
+    System.arraycopy(snapshot, 0, payload, 1, snapshot.length);
+    transaction.add(new GameJournal.Record(GameJournal.STATE, gameId, payload));
+  }
+
+  /**
+   * Records a move in the caller's open transaction.
+   *
+   * @param move   the move to save
+   * @param gameId the game ID to associate the move with
+   * @throws DbServiceException if connect() has not been called, or, on commit,
+   *                            if the game does not exist
+   */
+  public void saveValidMove(Move move, int gameId) throws DbServiceException {
+    byte[] payload = { (byte) move.getPlayerId(), (byte) move.getPlayer().getType(),
+        (byte) move.getMoveX(), (byte) move.getMoveY() };
+    currentTransaction().add(new GameJournal.Record(GameJournal.MOVE, gameId, payload));
+  }
+
+  /**
+   * Records the deletion of a game in the caller's open transaction. If
+   * autoCommit is set, the transaction (including this delete) is committed
+   * right away, as it would be for the SQLite service.
+   *
+   * @param gameId     the game ID to delete
+   * @param autoCommit whether to commit immediately
+   * @throws DbServiceException if connect() has not been called, or if the
+   *                            immediate commit failed
+   */
+  public void deleteGame(int gameId, boolean autoCommit) throws DbServiceException {
+    currentTransaction().add(new GameJournal.Record(GameJournal.DELETE_GAME, gameId,
+        new byte[0]));
+
+    if (autoCommit) {
+      List<GameJournal.Record> records = openTransaction.get();
+      openTransaction.set(new ArrayList<>());
+      append(records);
+    }
+  }
+
+  /**
+   * Appends the caller's open transaction to the journal. The records become
+   * visible to restores once this returns; they are durable once the journal
+   * is next forced to disk.
+   *
+   * @throws DbServiceException if the transaction is not valid (e.g., a move for
+   *                            a game that does not exist) or could not be
+   *                            written
+   */
+  public void commit() throws DbServiceException {
+    List<GameJournal.Record> records = openTransaction.get();
+    openTransaction.remove();
+
+    if (records != null) {
+      append(records);
+    }
+  }
+
+  /**
+   * Discards the caller's open transaction.
+   */
+  public void close() {
+    openTransaction.remove();
+  }
+
+  /**
+   * Forces the journal to disk and closes it.
+   *
+   * @throws DbServiceException if the journal could not be closed cleanly
+   */
+  public void shutdown() throws DbServiceException {
+    try {
+      journal.close();
+    } catch (IOException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Could not close game journal.");
+    }
+  }
+
+  /**
+   * Checks a transaction against the current games, appends it and updates the
+   * index. Commits are serialized, since they all go to the end of one file.
+   */
+  private void append(List<GameJournal.Record> records) throws DbServiceException {
+    if (records.isEmpty()) {
+      return;
+    }
+
+    synchronized (journal) {
+      List<GameJournal.Record> valid = validate(records);
+      if (valid.isEmpty()) {
+        return;
+      }
+
+      try {
+        journal.append(valid);
+      } catch (IOException e) {
+        logger.error(e.getClass().getName() + ": " + e.getMessage());
+        throw new DbServiceException("Could not write transaction to the game journal.");
+      }
+
+      Map<Integer, GameIndex> changed = new HashMap<>();
+      for (GameJournal.Record record : valid) {
+        index(record, changed);
+      }
+      publish(changed);
+    }
+  }
+
+  /**
+   * Plays a transaction's records against the games they touch, without
+   * changing anything, to apply the same constraints as the SQLite schema.
+   * State records for games that do not exist are dropped, as an UPDATE would
+   * not change anything.
+   */
+  private List<GameJournal.Record> validate(List<GameJournal.Record> records)
+      throws DbServiceException {
+    Map<Integer, GameIndex> working = new HashMap<>();
+    List<GameJournal.Record> valid = new ArrayList<>();
+
+    for (GameJournal.Record record : records) {
+      int gameId = record.getGameId();
+      GameIndex game = working.containsKey(gameId) ? working.get(gameId) : games.get(gameId);
+
+      switch (record.getType()) {
+        case GameJournal.CREATE_GAME:
+          if (game != null) {
+            throw new DbServiceException("Game " + gameId + " already exists.");
+          }
+          working.put(gameId, new GameIndex());
+          break;
+
+        case GameJournal.DELETE_GAME:
+          working.put(gameId, null);
+          break;
+
+        case GameJournal.STATE:
+        case GameJournal.BOARD:
+          if (game == null) {
+            continue;
+          }
+          break;
+
+        case GameJournal.PLAYER:
+          if (game == null) {
+            throw new DbServiceException("Game " + gameId + " does not exist.");
+          }
+          int playerId = record.getPayload()[0];
+          if (game.playerIds.contains(playerId)) {
+            throw new DbServiceException("Player " + playerId + " already exists in game "
+                + gameId + ".");
+          }
+          GameIndex withPlayer = game.copy();
+          withPlayer.playerIds.add(playerId);
+          working.put(gameId, withPlayer);
+          break;
+
+        default:
+          if (game == null) {
+            throw new DbServiceException("Game " + gameId + " does not exist.");
+          }
+          break;
+      }
+      valid.add(record);
+    }
+    return valid;
+  }
+
+  /**
+   * Adds a recovered record to the index.
+   */
+  private void index(GameJournal.Record record) {
+    Map<Integer, GameIndex> changed = new HashMap<>();
+    index(record, changed);
+    publish(changed);
+  }
+
+  /**
+   * Applies a committed record to copies of the index entries it changes.
+   */
+  private void index(GameJournal.Record record, Map<Integer, GameIndex> changed) {
+    int gameId = record.getGameId();
+    GameIndex game = changed.containsKey(gameId) ? changed.get(gameId) : games.get(gameId);
+
+    switch (record.getType()) {
+      case GameJournal.CREATE_GAME:
+        changed.put(gameId, new GameIndex());
+        return;
+
+      case GameJournal.DELETE_GAME:
+        changed.put(gameId, null);
+        return;
+
+      default:
+        if (game == null) {
+          return;
+        }
+        game = changed.containsKey(gameId) ? game : game.copy();
+        changed.put(gameId, game);
+    }
+
+    if (record.getType() == GameJournal.STATE) {
+      game.state = record.getOffset();
+    } else if (record.getType() == GameJournal.BOARD) {
+      game.board = record.getOffset();
+      byte[] payload = record.getPayload();
+      game.computerOpponent = payload.length > 3 && payload[3] != 0;
+    } else {
+      game.events.add(record.getOffset());
+      if (record.getType() == GameJournal.PLAYER) {
+        game.playerIds.add((int) record.getPayload()[0]);
+      }
+    }
+  }
+
+  private void publish(Map<Integer, GameIndex> changed) {
+    for (Map.Entry<Integer, GameIndex> entry : changed.entrySet()) {
+      if (entry.getValue() == null) {
+        games.remove(entry.getKey());
+      } else {
+        games.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private List<GameJournal.Record> readEvents(int gameId, long after)
+      throws DbServiceException {
+    GameIndex game = games.get(gameId);
+    return game == null ? Collections.emptyList() : readEvents(game, after);
+  }
+
+  /**
+   * Reads the player and move records of a game written after the given offset.
+   */
+  private List<GameJournal.Record> readEvents(GameIndex game, long after)
+      throws DbServiceException {
+    List<GameJournal.Record> records = new ArrayList<>();
+    for (long offset : game.events) {
+      if (offset > after) {
+        records.add(read(offset));
+      }
+    }
+    return records;
+  }
+
+  private GameJournal.Record read(long offset) throws DbServiceException {
+    try {
+      return journal.read(offset);
+    } catch (IOException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Could not read from the game journal.");
+    }
+  }
+
+  private static Player toPlayer(GameJournal.Record record) {
+    byte[] payload = record.getPayload();
+    return new Player((char) payload[1], payload[0]);
+  }
+
+  private static Move toMove(GameJournal.Record record) {
+    byte[] payload = record.getPayload();
+    return new Move(new Player((char) payload[1], payload[0]), payload[2], payload[3]);
+  }
+
+  private List<GameJournal.Record> currentTransaction() throws DbServiceException {
+    List<GameJournal.Record> records = openTransaction.get();
+    if (records == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+    return records;
+  }
+
+  /**
+   * Where the events of one game are in the journal. Entries in the games map
+   * are replaced rather than changed, so readers never see half a transaction.
+   */
+  private static final class GameIndex {
+
+    private final List<Long> events;
+
+    private final List<Integer> playerIds;
+
+    private long state = -1;
+
+    // the BOARD record of a game whose state is too large for a STATE record
+    private long board = -1;
+
+    // whether that BOARD record says the server plays player 2
+    private boolean computerOpponent;
+
+    GameIndex() {
+      this.events = new ArrayList<>();
+      this.playerIds = new ArrayList<>();
+    }
+
+    private GameIndex(GameIndex other) {
+      this.events = new ArrayList<>(other.events);
+      this.playerIds = new ArrayList<>(other.playerIds);
+      this.state = other.state;
+      this.board = other.board;
+      this.computerOpponent = other.computerOpponent;
+    }
+
+    GameIndex copy() {
+      return new GameIndex(this);
+    }
+  }
+}
@@ -1,28 +1,178 @@
 package util;
 
 import controllers.TicTacToeController;
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import models.GameBoard;
 import models.GenericGameBoard;
 import models.Move;
 import models.Player;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sqlite.SQLiteConfig;
 
 
 public class TicTacToeSqliteDbService implements TicTacToeDbService {
   
   private Connection sqliteConn;
   
+  // pool of the database connected to, which sqliteConn is borrowed from when
+  // the service first writes
+  private SqliteConnectionPool connPool;
+  
+  // prepared statements for the currently borrowed connection
+  private SqliteStatementCache statementCache;
+  
+  // read-only connection for reads outside of a transaction, borrowed when the
+  // service first reads, so reads never queue behind this or another service's
+  // open transaction
+  private Connection readerConn;
+  
+  private SqliteConnectionPool readerPool;
+  
+  private SqliteStatementCache readerCache;
+  
+  // whether the current transaction has written anything, and so holds the
+  // database's write lock until it ends
+  private boolean holdsWriteLock;
+  
+  // changes made by savePlayer()/saveValidMove() in the current transaction that
+  // still need to be folded into each game's state row, unless saveGameState()
+  // writes the full state first
+  private final Map<Integer, List<Consumer<GameBoard>>> pendingSnapshotChanges = 
+      new LinkedHashMap<>();
+  
   String defaultDatabase = "tictactoe.db";
   
+  // reads a game in one round trip: the game's row, then, only for games saved
+  // before snapshots existed, its players and its moves in the order played
+  private static final String RESTORE_SQL = ""
+      + "WITH game AS (SELECT id, snapshot FROM games WHERE %s) \n"
+      + "SELECT 0 AS kind, game.id AS game_id, game.snapshot AS snapshot, \n"
+      + "  NULL AS player_no, NULL AS player_type, NULL AS x_coord, NULL AS y_coord, \n"
+      + "  0 AS seq \n"
+      + "FROM game \n"
+      + "UNION ALL \n"
+      + "SELECT 1, game.id, NULL, players.player_no, players.player_type, NULL, NULL, 0 \n"
+      + "FROM game JOIN players ON players.game_id = game.id \n"
+      + "WHERE game.snapshot IS NULL \n"
+      + "UNION ALL \n"
+      + "SELECT 2, game.id, NULL, moves.player_no, players.player_type, \n"
+      + "  moves.x_coord, moves.y_coord, moves.id \n"
+      + "FROM game JOIN moves ON moves.game_id = game.id \n"
+      + "LEFT JOIN players \n"
+      + "  ON players.game_id = moves.game_id AND players.player_no = moves.player_no \n"
+      + "WHERE game.snapshot IS NULL \n"
+      + "ORDER BY game_id, kind, seq, player_no;";
+  
+  private static final String RESTORE_GAME_SQL = String.format(RESTORE_SQL, "id = ?");
+
+  // number of game IDs bound to each statement that reads or deletes many games;
+  // shorter lists are padded by repeating their last ID, so that every such
+  // statement is the same cached one
+  private static final int GAMES_PER_STATEMENT = 100;
+
+  // number of rows written by each statement of a multi-row INSERT
+  private static final int ROWS_PER_INSERT = 50;
+
+  private static final String RESTORE_GAMES_SQL = String.format(RESTORE_SQL, "id IN ("
+      + String.join(", ", Collections.nCopies(GAMES_PER_STATEMENT, "?")) + ")");
+  
+  private static final String RESTORE_MOST_RECENT_SQL = 
+      String.format(RESTORE_SQL, "id = (SELECT MAX(id) FROM games)");
+
+  // finished games are moved here, one compact record per game (see
+  // ArchivedGame); the table is only created once the first games are archived
+  private static final String ARCHIVE_TABLE = "archived_games";
+
+  private static final String CREATE_ARCHIVE_SQL = ""
+      + "CREATE TABLE IF NOT EXISTS " + ARCHIVE_TABLE + " (\n"
+      + "  id INTEGER PRIMARY KEY, \n"
+      + "  record BLOB NOT NULL\n"
+      + ");";
+
+  // the highest game id, including archived games
+  private static final String MOST_RECENT_ARCHIVED_SQL = ""
+      + "SELECT MAX(id) AS max FROM (SELECT MAX(id) AS id FROM games \n"
+      + "  UNION ALL SELECT MAX(id) FROM " + ARCHIVE_TABLE + ");";
+
+  // the oldest finished games, other than the most recent game
+  private static final String FINISHED_GAMES_SQL = ""
+      + "SELECT id FROM games \n"
+      + "WHERE (winner_id > 0 OR is_draw = 1) AND id < (SELECT MAX(id) FROM games) \n"
+      + "ORDER BY id LIMIT ?;";
+
+  private static final String ARCHIVE_MOVES_SQL = ""
+      + "SELECT moves.game_id, moves.player_no, moves.x_coord, moves.y_coord, \n"
+      + "  players.player_type \n"
+      + "FROM moves \n"
+      + "LEFT JOIN players \n"
+      + "  ON moves.game_id = players.game_id AND moves.player_no = players.player_no \n"
+      + "WHERE moves.game_id IN (" 
+      + String.join(", ", Collections.nCopies(GAMES_PER_STATEMENT, "?")) + ") \n"
+      + "ORDER BY moves.game_id, moves.id;";
+
+  private static final String READ_ARCHIVED_SQL = ""
+      + "SELECT id, record FROM " + ARCHIVE_TABLE + " \n"
+      + "WHERE id IN (" 
+      + String.join(", ", Collections.nCopies(GAMES_PER_STATEMENT, "?")) + ");";
+
+  // reads the next page of archived games to export, from the lowest ID in a range
+  private static final String EXPORT_ARCHIVED_PAGE_SQL = ""
+      + "SELECT id, record FROM " + ARCHIVE_TABLE + " \n"
+      + "WHERE id >= ? AND id <= ? ORDER BY id LIMIT " + GAMES_PER_STATEMENT + ";";
+
+  // reads the next page of games to export, from the lowest ID in a range: each
+  // game's row, then its players, then its moves in the order played
+  private static final String EXPORT_PAGE_SQL = ""
+      + "WITH game AS (SELECT id, winner_id, is_draw FROM games \n"
+      + "  WHERE id >= ? AND id <= ? ORDER BY id LIMIT " + GAMES_PER_STATEMENT + ") \n"
+      + "SELECT 0 AS kind, game.id AS game_id, game.winner_id AS winner_id, \n"
+      + "  game.is_draw AS is_draw, NULL AS player_no, NULL AS player_type, \n"
+      + "  NULL AS x_coord, NULL AS y_coord, 0 AS seq \n"
+      + "FROM game \n"
+      + "UNION ALL \n"
+      + "SELECT 1, game.id, NULL, NULL, players.player_no, players.player_type, NULL, NULL, 0 \n"
+      + "FROM game JOIN players ON players.game_id = game.id \n"
+      + "UNION ALL \n"
+      + "SELECT 2, game.id, NULL, NULL, moves.player_no, NULL, moves.x_coord, moves.y_coord, \n"
+      + "  moves.id \n"
+      + "FROM game JOIN moves ON moves.game_id = game.id \n"
+      + "ORDER BY game_id, kind, seq, player_no;";
+
+  private static final String WRITE_GAME_STATE_SQL = ""
+      + "UPDATE games\n"
+      + "SET has_started = ?, winner_id = ?, is_draw = ?, turn = ?, snapshot = ?, \n"
+      + "  last_activity = ? \n"
+      + "WHERE id = ?;";
+
+  // a game that is still being played and has not been written to since the
+  // given time, other than the most recent game, deleted only if that is still
+  // true when the DELETE runs
+  private static final String EXPIRE_GAME_SQL = ""
+      + "DELETE FROM games \n"
+      + "WHERE id = ? AND last_activity < ? AND winner_id = 0 AND is_draw = 0 \n"
+      + "  AND id < (SELECT MAX(id) FROM games);";
+
+  private static final String IDLE_GAMES_SQL = ""
+      + "SELECT id FROM games \n"
+      + "WHERE last_activity < ? AND winner_id = 0 AND is_draw = 0 \n"
+      + "  AND id < (SELECT MAX(id) FROM games) \n"
+      + "ORDER BY last_activity LIMIT ?;";
+  
   private static Logger logger = LoggerFactory.getLogger(TicTacToeController.class);
   
   /**
@@ -62,26 +212,82 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    * it will be created. The database exists in the current directory. This
    * connection function can be used to specify the location of the database. This
    * is most helpful for testing, where we want to work with a different database.
+   * Connections are borrowed from a long-lived pool shared by every service
+   * instance pointed at the same database, so repeated connects do not reopen
+   * the database file. Calling connect while already connected to the same
+   * database keeps the current connection (and any open transaction).
+   * 
+   * <p>No connection is borrowed until it is used: writes, and reads made
+   * while a transaction is open, go through a connection from the database's
+   * pool, and other reads through a read-only connection from its pool of
+   * readers (see SqliteConnectionPool.readersFor()). Under a profile using
+   * write-ahead logging, such reads see the last committed state and never
+   * wait for another service's transaction to commit.
    * 
    * @param dbLocation a path to where the database should be created and will be
    *                   found, for example: "C://sqlite/db/test.db"
    * @throws DbServiceException if could not connect to SQLite database
    */
   public void connect(String dbLocation) throws DbServiceException {
+    SqliteConnectionPool pool = SqliteConnectionPool.forDatabase(dbLocation);
+    
+    if (connPool != null) {
+      if (connPool == pool) {
+        return;
+      }
+      close();
+    }
+    
     try {
-      Class.forName("org.sqlite.JDBC");
-      
-      // setup database to enforce foreign keys
-      SQLiteConfig config = new SQLiteConfig();  
-      config.enforceForeignKeys(true);  
-      sqliteConn = DriverManager.getConnection("jdbc:sqlite:" + dbLocation, 
-          config.toProperties());
+      connPool = pool;
+      readerPool = SqliteConnectionPool.readersFor(dbLocation);
 
     } catch (Exception e) {
       logger.error(e.getClass().getName() + ": " + e.getMessage());
       throw new DbServiceException("Could not establish SQLite db connection.\n");
     }
   }
+  
+  /**
+   * Returns the connection to write through, borrowing it from the pool the
+   * first time it is needed after connecting.
+   * 
+   * @return the service's writing connection
+   * @throws SQLException if a connection could not be opened
+   */
+  private Connection writer() throws SQLException {
+    if (sqliteConn == null) {
+      sqliteConn = connPool.acquire();
+      statementCache = connPool.statementCache(sqliteConn);
+    }
+    return sqliteConn;
+  }
+  
+  /**
+   * Returns the prepared statements of the read-only connection, borrowing the
+   * connection from the pool of readers the first time it is needed after
+   * connecting.
+   * 
+   * @return SqliteStatementCache of the service's reading connection
+   * @throws SQLException if a connection could not be opened
+   */
+  private SqliteStatementCache reader() throws SQLException {
+    if (readerConn == null) {
+      readerConn = readerPool.acquire();
+      readerCache = readerPool.statementCache(readerConn);
+    }
+    return readerCache;
+  }
+  
+  /**
+   * Returns the metrics of the connection pool backing this service's database,
+   * including how long callers spent waiting for a connection.
+   * 
+   * @return PoolMetrics snapshot for the default database
+   */
+  public PoolMetrics getPoolMetrics() {
+    return SqliteConnectionPool.forDatabase(defaultDatabase).getMetrics();
+  }
 
   /**
    * Creates database tables for TicTacToe game, if they do not already exit. The
@@ -99,7 +305,8 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
 
     try {
       connect();
-      sqliteConn.setAutoCommit(false);
+      migrateToMultiGameSchema();
+      writer().setAutoCommit(false);
 
       createGamesTable();
       createPlayersTable();
@@ -123,31 +330,26 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
   }
   
   /**
-   * Restores the most recent game from the game board.
+   * Restores the most recent game from the game board. Finding the most recent
+   * game and reading it is done in a single query.
    * 
    * @returns the restored game board from the database query
-   * @throws DbServiceException if there was an error on SELECT statements to
-   *                            obtain either the id of the most recent game or
-   *                            components of the game board for the discovered id
+   * @throws DbServiceException if there was an error on the SELECT statement to
+   *                            obtain the most recent game
    */
   public GameBoard restoreMostRecentGameBoard() throws DbServiceException {
     GameBoard restoredBoard = null;
-    Statement statement = null;
-    ResultSet rs = null;
     
     try {
       connect();
-      sqliteConn.setAutoCommit(true);
+      if (sqliteConn != null) {
+        sqliteConn.setAutoCommit(true);
+      }
       
-      String sql = "SELECT MAX(id) AS max FROM games;";
-      statement = sqliteConn.createStatement();
-      rs = statement.executeQuery(sql);
-
-      if (rs.next()) {
-        int gameId = rs.getInt("max");
-        if (gameId > 0) {
-          restoredBoard = restoreGameBoard(gameId);
-        }
+      flushSnapshotChanges();
+      StoredGame game = readGame(RESTORE_MOST_RECENT_SQL);
+      if (game != null) {
+        restoredBoard = game.board;
       }
       
       if (restoredBoard == null) {
@@ -160,29 +362,50 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
       throw new DbServiceException("Could not determine ID of most recent game.");
 
     } finally {
-      try {
-        if (statement != null) {
-          statement.close();
-        }
-        if (rs != null) {
-          rs.close();
-        }
-      } catch (SQLException e) {
-        e.printStackTrace();
-        throw new DbServiceException("Error occurred while cleaning up SQL statement.");
-      }
       close();
     }
     
     return restoredBoard;
   }
   
+  /**
+   * Queries the SQLite database for the highest game id, in the games table or
+   * the archive. New games take the id following it, so an id is never given to
+   * a second game while the archive still holds a game under it, even once
+   * every game in the games table has been archived or expired. Note that the
+   * connection needs to be opened before calling this method.
+   * 
+   * @return id of the most recent game, or 0 if there are no games
+   * @throws DbServiceException if an issue occurred executing the SELECT
+   *                            statement
+   */
+  public int findMostRecentGameId() throws DbServiceException {
+    ResultSet rs = null;
+    
+    try {
+      rs = query(hasColumn(ARCHIVE_TABLE, "id") ? MOST_RECENT_ARCHIVED_SQL
+          : "SELECT MAX(id) AS max FROM games;");
+      return rs.next() ? rs.getInt("max") : 0;
+      
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Could not determine ID of most recent game.");
+      
+    } finally {
+      closeResultSet(rs);
+    }
+  }
+  
   /**
    * Restores the latest instance of the tic-tac-toe game board from the database
-   * and returns it to calling method. By retrieving all the players and moves
-   * from the database for a given game, you can replay all moves to figure out
-   * the currently status of the game board. Note that the connection needs to be
-   * opened before calling this method; it will not open the connection for you.
+   * and returns it to calling method. The game is read in a single query: its
+   * snapshot (the packed board, players, turn, winner and draw flag, kept up to
+   * date with every write) is a single row, so the cost does not depend on how
+   * many moves have been played. Games saved before snapshots existed come back
+   * from the same query with their players and moves, and are rebuilt by
+   * replaying the moves. A game that is not found is looked for in the archive
+   * of finished games. Note that the connection needs to be opened before
+   * calling this method; it will not open the connection for you.
    * 
    * @return GameBoard instance restored from players, moves and game state in the
    *         database.
@@ -191,84 +414,198 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    */
   public GameBoard restoreGameBoard(int gameId) throws DbServiceException {
     
-    if (sqliteConn == null) {
+    if (connPool == null) {
       throw new DbServiceException("Please establish DB connection before "
           + "requesting DB action.");
     }
 
-    // Start from a fresh game board
-    GameBoard gb = new GameBoard();
-
-    // Find and add players to the game board
-    List<Player> players = findAllPlayers(gameId);
+    flushSnapshotChanges();
     
-    // If there are no players yet, game board state is ready
-    if (players.size() == 0) {
-      return gb;
+    StoredGame game = readGame(RESTORE_GAME_SQL, gameId);
+    if (game != null) {
+      return game.board;
     }
+    GameBoard archived = readArchivedGames(Collections.singletonList(gameId)).get(gameId);
+    return archived == null ? new GameBoard(this) : archived;
+  }
+  
+  /**
+   * Runs one of the restore queries for a single game.
+   * 
+   * @param sql    RESTORE_GAME_SQL or RESTORE_MOST_RECENT_SQL
+   * @param params values to bind to the query's placeholders
+   * @return the stored game, or null if there is no such game
+   * @throws DbServiceException if an issue occurred executing the SELECT
+   *                            statement
+   */
+  private StoredGame readGame(String sql, Object... params) throws DbServiceException {
+    Map<Integer, StoredGame> games = readGames(sql, params);
+    return games.isEmpty() ? null : games.values().iterator().next();
+  }
 
-    for (Player p : players) {
+  /**
+   * Runs one of the restore queries and builds the game boards from its rows:
+   * from the snapshot if a game has one, otherwise by adding the players and
+   * replaying the moves as they are streamed in.
+   *
+   * @param sql    one of the RESTORE_*_SQL queries
+   * @param params values to bind to the query's placeholders
+   * @return the stored games found, by game ID
+   * @throws DbServiceException if an issue occurred executing the SELECT
+   *                            statement
+   */
+  private Map<Integer, StoredGame> readGames(String sql, Object... params)
+      throws DbServiceException {
+    Map<Integer, StoredGame> games = new LinkedHashMap<>();
+    ResultSet rs = null;
+    
+    try {
+      rs = query(sql, params);
       
-      if (p.getId() == 1) {
-        gb.setP1(p);
-        gb.setTurn(1);
+      while (rs.next()) {
+        int kind = rs.getInt("kind");
+        int gameId = rs.getInt("game_id");
         
-      } else if (p.getId() == 2) {
-        gb.setP2(p);
-        gb.setGameStarted(true);
+        if (kind == 0) {
+          byte[] snapshot = rs.getBytes("snapshot");
+          GameBoard gb = snapshot == null ? new GameBoard(this) 
+              : GameSnapshot.decode(snapshot, this);
+          gb.setGameId(gameId);
+          games.put(gameId, new StoredGame(gb, snapshot == null));
+          continue;
+        }
+        
+        GameBoard gb = games.get(gameId).board;
+        Player player = new Player(rs.getString("player_type").charAt(0), rs.getInt("player_no"));
+        if (kind == 1) {
+          GameSnapshot.applyPlayer(gb, player);
+        } else {
+          // playing the moves will 1. flip between turns and 2. set the winner or
+          // draw if there is one
+          GameSnapshot.applyMove(gb, new Move(player, rs.getInt("x_coord"), rs.getInt("y_coord")));
+        }
       }
+      
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred restoring game from database.");
+      
+    } finally {
+      closeResultSet(rs);
     }
+    
+    return games;
+  }
 
-    // Find all moves for the game so far and reconstruct game board by replaying
-    // them; playing the moves will 1. flip between turns and 2. set winner if 
-    // there is one
-    List<Move> moves = findAllMoves(gameId);
-    for (Move move : moves) {
-      gb.playMove(move);   
+  /**
+   * Reads many games, GAMES_PER_STATEMENT per query.
+   *
+   * @param ids the game IDs to read, without duplicates
+   * @return the games found, by game ID
+   * @throws DbServiceException if the games could not be read
+   */
+  private Map<Integer, StoredGame> readGamesInChunks(List<Integer> ids) throws DbServiceException {
+    Map<Integer, StoredGame> found = new LinkedHashMap<>();
+    for (Object[] params : padIds(ids)) {
+      logger.info("Restoring games [" + params[0] + ", ...]");
+      found.putAll(readGames(RESTORE_GAMES_SQL, params));
     }
+    return found;
+  }
 
-    // review winning and loosing state (note that winner is set via playMove()
-    if (gb.isFull() && gb.getWinner() == 0) {
-      gb.setDraw(true);
+  /**
+   * Splits game IDs into parameter lists of GAMES_PER_STATEMENT IDs each,
+   * repeating the last ID to fill up the final list.
+   */
+  private static List<Object[]> padIds(List<Integer> ids) {
+    List<Object[]> chunks = new ArrayList<>();
+    for (int start = 0; start < ids.size(); start += GAMES_PER_STATEMENT) {
+      Object[] params = new Object[GAMES_PER_STATEMENT];
+      for (int i = 0; i < GAMES_PER_STATEMENT; i++) {
+        params[i] = ids.get(Math.min(start + i, ids.size() - 1));
+      }
+      chunks.add(params);
     }
-
-    return gb;
+    return chunks;
   }
 
   /**
-   * Adds a new game to the database. Note that for the time being, only ONE game
-   * is allowed a time in the database and games are dropped from the database on
-   * completion and request for a new game. This means that the id of the game
-   * will always be 1. Note that to use this method, a database connection must
-   * already have been made. Note additionally, that in order for the transaction
-   * to officially complete, the caller of the function must call the commit()
+   * Restores many game boards, reading GAMES_PER_STATEMENT games per query,
+   * and the games not found from the archive of finished games. Note that the
+   * connection needs to be opened before calling this method.
+   *
+   * @param gameIds the game IDs to restore
+   * @return game boards by game ID, in the order the IDs were given; games that
+   *         do not exist are returned as empty game boards
+   * @throws DbServiceException if an error occurred restoring the game boards
+   */
+  public Map<Integer, GenericGameBoard> restoreGameBoards(Collection<Integer> gameIds)
+      throws DbServiceException {
+
+    if (connPool == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+
+    flushSnapshotChanges();
+
+    List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(gameIds));
+    Map<Integer, StoredGame> found = readGamesInChunks(ids);
+
+    List<Integer> missing = new ArrayList<>();
+    for (int gameId : ids) {
+      if (!found.containsKey(gameId)) {
+        missing.add(gameId);
+      }
+    }
+    Map<Integer, GameBoard> archived = readArchivedGames(missing);
+
+    Map<Integer, GenericGameBoard> gameboards = new LinkedHashMap<>();
+    for (int gameId : ids) {
+      StoredGame game = found.get(gameId);
+      GameBoard board = game == null ? archived.get(gameId) : game.board;
+      gameboards.put(gameId, board == null ? new GameBoard(this) : board);
+    }
+    return gameboards;
+  }
+  
+  /**
+   * Adds a new game to the database. Games are kept once they are over, and a
+   * new game is normally created under the id following findMostRecentGameId(),
+   * so that it does not take the id of a game already in the database or the
+   * archive. Note that to use this method, a database connection must already
+   * have been made. Note additionally, that in order for the transaction to
+   * officially complete, the caller of the function must call the commit()
    * method.
    * 
-   * @param gameId the id of the game in the database to create; this is explicit
-   *               for now because we only want to ever have 1 game; this could
-   *               change in the future
+   * @param gameId the id of the game in the database to create
    * @throws DbServiceException if an error occurred creating a new game in the
    *                            database
    */
   public void createNewGame(int gameId) throws DbServiceException {
 
-    if (sqliteConn == null) {
+    if (connPool == null) {
       throw new DbServiceException("Please establish DB connection before "
           + "requesting DB action.");
     }
 
     String sql = ""
-        + "INSERT INTO games (id, has_started, winner_id, is_draw, turn) "
-        + "VALUES (" + gameId + ", 0, 0, 0, 0);";
+        + "INSERT INTO games (id, has_started, winner_id, is_draw, turn, snapshot, "
+        + "last_activity) "
+        + "VALUES (?, 0, 0, 0, 0, ?, ?);";
    
-    logger.info(sql);
-    update(sql, false);
+    logger.info(sql + " [" + gameId + "]");
+    update(sql, false, gameId, GameSnapshot.encode(new GameBoard(this)),
+        System.currentTimeMillis());
   }
   
   /**
    * Updates the components of the game state in the database, including if the
    * game has officially started, who the winner is, if there is a draw, and who
-   * has the next turn.
+   * has the next turn, as well as the game's snapshot. The whole state is
+   * written in a single UPDATE statement. Since the game board provided is the
+   * full, current state, any snapshot changes still pending from savePlayer()
+   * or saveValidMove() for this game in the same transaction are superseded.
    * 
    * @param gameboard any implementation of the GenericGameBoard class (i.e.,
    *                  GameBoard for tic-tac-toe)
@@ -277,34 +614,8 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    */
   public void saveGameState(GenericGameBoard gameboard, int gameId) throws DbServiceException {
     
-    String sqlStarted = ""
-        + "UPDATE games\n"
-        + "SET has_started = " + gameboard.isGameStarted() + " \n"
-        + "WHERE id = " + gameId + ";";
-    
-    update(sqlStarted, false);
-    
-    String sqlWinner = ""
-        + "UPDATE games\n"
-        + "SET winner_id = " + gameboard.getWinner() + " \n"
-        + "WHERE id = " + gameId + ";";
-    
-    update(sqlWinner, false);
-    
-    String sqlDraw = ""
-        + "UPDATE games\n"
-        + "SET is_draw = " + gameboard.isDraw() + " \n"
-        + "WHERE id = " + gameId + ";";
-    
-    update(sqlDraw, false);
-    
-    String sqlTurn = ""
-        + "UPDATE games\n"
-        + "SET turn = " + gameboard.getTurn() + " \n"
-        + "WHERE id = " + gameId + ";";
-
-    update(sqlTurn, false);
-    
+    writeGameState(gameboard, gameId);
+    pendingSnapshotChanges.remove(gameId);
   }
 
   /**
@@ -320,21 +631,27 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    */
   public void savePlayer(Player player, int gameId) throws DbServiceException {
 
-    if (sqliteConn == null) {
+    if (connPool == null) {
       throw new DbServiceException("Please establish DB connection before "
           + "requesting DB action.");
     }
     
     String sql = ""
-        + "INSERT INTO players (id, player_type, game_id) "
-        + "VALUES (" + player.getId() + ", '" + player.getType() + "', " + gameId + ");";
+        + "INSERT INTO players (game_id, player_no, player_type) "
+        + "VALUES (?, ?, ?);";
 
-    logger.info(sql);
-    update(sql, false);
+    logger.info(sql + " [" + gameId + ", " + player.getId() + ", " + player.getType() + "]");
+    update(sql, false, gameId, player.getId(), String.valueOf(player.getType()));
+    
+    // the snapshot is brought in step with the new player before the
+    // transaction commits
+    pendingSnapshotChanges.computeIfAbsent(gameId, id -> new ArrayList<>())
+        .add(gb -> GameSnapshot.applyPlayer(gb, player));
   }
 
   /**
-   * Saves a player's move to the database for a given game. Note that to use this
+   * Saves a player's move to the database for a given game, and updates the
+   * game's snapshot to include the move. Note that to use this
    * method, a database connection must already have been made. Note additionally,
    * that in order for the transaction to officially complete, the caller of the
    * function must call the commit() method.
@@ -346,27 +663,32 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    */
   public void saveValidMove(Move move, int gameId) throws DbServiceException {
 
-    if (sqliteConn == null) {
+    if (connPool == null) {
       throw new DbServiceException("Please establish DB connection before "
           + "requesting DB action.");
     }
 
     String sql = ""
-        + "INSERT INTO moves (game_id, player_id, x_coord, y_coord) "
-        + "VALUES (" + gameId + ", " + move.getPlayerId() + ", " + move.getMoveX() 
-        + ", " + move.getMoveY() + ");";
+        + "INSERT INTO moves (game_id, player_no, x_coord, y_coord) "
+        + "VALUES (?, ?, ?, ?);";
 
-    logger.info(sql);
-    update(sql, false);
+    logger.info(sql + " [" + gameId + ", " + move.getPlayerId() + ", " + move.getMoveX() 
+        + ", " + move.getMoveY() + "]");
+    update(sql, false, gameId, move.getPlayerId(), move.getMoveX(), move.getMoveY());
+    
+    // the snapshot is brought in step with the new move before the transaction
+    // commits; the moves table is kept as the game's history
+    pendingSnapshotChanges.computeIfAbsent(gameId, id -> new ArrayList<>())
+        .add(gb -> GameSnapshot.applyMove(gb, move));
   }
 
   /**
    * Deletes a game from the games table (and because of foreign key constraints
    * with cascade deletion all other rows in the players and moves table
-   * corresponding to that game will be deleted. Note that to use this method, a
-   * database connection must already have been made. Note additionally, that in
-   * order for the transaction to officially complete, the caller of the function
-   * must call the commit() method.
+   * corresponding to that game will be deleted), or from the archive. Note that
+   * to use this method, a database connection must already have been made.
+   * Note additionally, that in order for the transaction to officially
+   * complete, the caller of the function must call the commit() method.
    * 
    * @param gameId the ID of the game in the database to delete
    * @throws DbServiceException if an issue occurred executing the DELETE
@@ -374,197 +696,806 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    */
   public void deleteGame(int gameId, boolean autoCommit) throws DbServiceException {
 
-    if (sqliteConn == null) {
+    if (connPool == null) {
       throw new DbServiceException("Please establish DB connection before "
           + "requesting DB action.");
     }
 
     String sql = ""
         + "DELETE FROM games "
-        + "WHERE id = " + gameId + ";";
+        + "WHERE id = ?;";
     
-    logger.info(sql);
-    update(sql, autoCommit);
+    logger.info(sql + " [" + gameId + "]");
+    update(sql, autoCommit, gameId);
+    if (hasColumn(ARCHIVE_TABLE, "id")) {
+      update("DELETE FROM " + ARCHIVE_TABLE + " WHERE id = ?;", autoCommit, gameId);
+    }
   }
-  
 
   /**
-   * Queries the SQLite database for all moves made so far in a given game.
-   * 
-   * @param gameId the game Id to use in looking for associated moves
-   * @throws DbServiceException if an issue occurred executing the SELECT
-   *                            statement
+   * Saves the players of many games with multi-row INSERTs run as a single JDBC
+   * batch, and brings each
+   * game's snapshot in step with its new players before the transaction
+   * commits. The caller must call commit() to complete the transaction.
+   *
+   * @param playersByGame players to save, by game ID
+   * @throws DbServiceException if an issue occurred executing the INSERT batch
    */
-  public List<Move> findAllMoves(int gameId) throws DbServiceException {
-    
-    ArrayList<Move> moves = new ArrayList<Move>();
-    Statement statement = null;
-    ResultSet rs = null;
+  public void savePlayers(Map<Integer, ? extends Collection<Player>> playersByGame)
+      throws DbServiceException {
 
-    String sql = "" 
-        + "SELECT " 
-        + "  moves.*, " 
-        + "  players.player_type " 
-        + "FROM moves " 
-        + "LEFT JOIN players "
-        + "  ON moves.player_id = players.id "
-        + "WHERE moves.game_id = " + gameId + ";";
+    String sql = ""
+        + "INSERT INTO players (game_id, player_no, player_type) "
+        + "VALUES ";
 
-    logger.info(sql);
-    
-    try {
-      statement = sqliteConn.createStatement();
-      rs = statement.executeQuery(sql);
-      
-      while (rs.next()) {
-        Player player = new Player(rs.getString("player_type").charAt(0), rs.getInt("player_id"));
-        moves.add(new Move(player, rs.getInt("x_coord"), rs.getInt("y_coord")));
+    List<Object[]> rows = new ArrayList<>();
+    for (Map.Entry<Integer, ? extends Collection<Player>> entry : playersByGame.entrySet()) {
+      for (Player player : entry.getValue()) {
+        rows.add(new Object[] {entry.getKey(), player.getId(), String.valueOf(player.getType())});
       }
-      
-    } catch (SQLException e) {
-      logger.error(e.getClass().getName() + ": " + e.getMessage());
-      throw new DbServiceException("Error occurred fetching moves from database.");
-      
-    } finally {
-      try {
-        if (statement != null) {
-          statement.close();
-        }
-        if (rs != null) {
-          rs.close();
-        }
-      } catch (SQLException e) {
-        e.printStackTrace();
-        throw new DbServiceException("Error occurred while cleaning up SQL statement.");
+    }
+
+    logger.info(sql + "... [" + rows.size() + " rows]");
+    insertRows(sql, rows);
+
+    for (Map.Entry<Integer, ? extends Collection<Player>> entry : playersByGame.entrySet()) {
+      for (Player player : entry.getValue()) {
+        pendingSnapshotChanges.computeIfAbsent(entry.getKey(), id -> new ArrayList<>())
+            .add(gb -> GameSnapshot.applyPlayer(gb, player));
       }
     }
-    
-    return moves;
   }
 
   /**
-   * Queries the SQLite database for all the players in a given game.
-   * 
-   * @param gameId the game Id to use in looking for associated players
-   * @throws DbServiceException if an issue occurred executing the SELECT
-   *                            statement
+   * Saves the moves of many games with multi-row INSERTs run as a single JDBC
+   * batch, and brings each game's
+   * snapshot in step with its new moves before the transaction commits. The
+   * caller must call commit() to complete the transaction.
+   *
+   * @param movesByGame moves to save, by game ID, in the order they were played
+   * @throws DbServiceException if an issue occurred executing the INSERT batch
    */
-  public List<Player> findAllPlayers(int gameId) throws DbServiceException {
-    
-    ArrayList<Player> players = new ArrayList<Player>();
-    Statement statement = null;
-    ResultSet rs = null;
-    
-    String sql = "SELECT * FROM players WHERE game_id = " + gameId + ";";
-    logger.info(sql);
-    
-    try {
-      statement = sqliteConn.createStatement();
-      rs = statement.executeQuery(sql);
-      
-      while (rs.next()) {
-        players.add(new Player(rs.getString("player_type").charAt(0), rs.getInt("id")));
+  public void saveMoves(Map<Integer, ? extends Collection<Move>> movesByGame)
+      throws DbServiceException {
+
+    String sql = ""
+        + "INSERT INTO moves (game_id, player_no, x_coord, y_coord) "
+        + "VALUES ";
+
+    List<Object[]> rows = new ArrayList<>();
+    for (Map.Entry<Integer, ? extends Collection<Move>> entry : movesByGame.entrySet()) {
+      for (Move move : entry.getValue()) {
+        rows.add(new Object[] {entry.getKey(), move.getPlayerId(), move.getMoveX(),
+            move.getMoveY()});
       }
+    }
 
-    } catch (SQLException e) {
-      logger.error(e.getClass().getName() + ": " + e.getMessage());
-      throw new DbServiceException("Error occurred fetching players from database.");
-    } finally {
-      try {
-        if (statement != null) {
-          statement.close();
-        }
-        if (rs != null) {
-          rs.close();
-        }
-      } catch (SQLException e) {
-        e.printStackTrace();
-        throw new DbServiceException("Error occurred while cleaning up SQL statement.");
+    logger.info(sql + "... [" + rows.size() + " rows]");
+    insertRows(sql, rows);
+
+    for (Map.Entry<Integer, ? extends Collection<Move>> entry : movesByGame.entrySet()) {
+      for (Move move : entry.getValue()) {
+        pendingSnapshotChanges.computeIfAbsent(entry.getKey(), id -> new ArrayList<>())
+            .add(gb -> GameSnapshot.applyMove(gb, move));
       }
     }
-    
-    return players;
   }
-  
 
   /**
-   * Creates the 'games' table, which holds the id of the game and if there is a
-   * winner or a draw, if it doesn't already exist.
-   * 
-   * @throws DbServiceException if table could not be created
+   * Creates many games with multi-row INSERTs run as JDBC batches: each game's
+   * row, already holding its final state and snapshot, then its players and
+   * its moves. Since the games are written whole, nothing is left to fold into
+   * their snapshots at commit. The caller must call commit() to complete the
+   * transaction.
+   *
+   * @param gameboards  final game board of each game, by game ID
+   * @param movesByGame moves of each game, by game ID, in the order they were
+   *                    played
+   * @throws DbServiceException if an issue occurred executing the INSERT batches,
+   *                            such as a game that already exists
    */
-  private void createGamesTable() throws DbServiceException {
+  @Override
+  public void saveGames(Map<Integer, ? extends GenericGameBoard> gameboards,
+      Map<Integer, ? extends Collection<Move>> movesByGame) throws DbServiceException {
 
-    String sql = ""
-        + "CREATE TABLE IF NOT EXISTS games (\n"
-        + "  id INTEGER PRIMARY KEY AUTOINCREMENT, \n"
-        + "  has_started INTEGER DEFAULT NULL,\n"
-        + "  winner_id INTEGER DEFAULT NULL,\n"
-        + "  is_draw INTEGER DEFAULT NULL,\n"
-        + "  turn INTEGER DEFAULT NULL\n"
-        + ");";
+    String gamesSql = ""
+        + "INSERT INTO games (has_started, winner_id, is_draw, turn, snapshot, last_activity, "
+        + "id) VALUES ";
+    String playersSql = ""
+        + "INSERT INTO players (game_id, player_no, player_type) "
+        + "VALUES ";
+    String movesSql = ""
+        + "INSERT INTO moves (game_id, player_no, x_coord, y_coord) "
+        + "VALUES ";
 
-    update(sql, false);
+    List<Object[]> gameRows = new ArrayList<>();
+    List<Object[]> playerRows = new ArrayList<>();
+    List<Object[]> moveRows = new ArrayList<>();
+    for (Map.Entry<Integer, ? extends GenericGameBoard> entry : gameboards.entrySet()) {
+      int gameId = entry.getKey();
+      GenericGameBoard gameboard = entry.getValue();
+      gameRows.add(gameStateRow(gameboard, gameId));
+      for (Player player : new Player[] {gameboard.getP1(), gameboard.getP2()}) {
+        if (player != null) {
+          playerRows.add(new Object[] {gameId, player.getId(), String.valueOf(player.getType())});
+        }
+      }
+      Collection<Move> moves = movesByGame.get(gameId);
+      for (Move move : moves == null ? Collections.<Move>emptyList() : moves) {
+        moveRows.add(new Object[] {gameId, move.getPlayerId(), move.getMoveX(), move.getMoveY()});
+      }
+    }
+
+    logger.info(gamesSql + "... [" + gameRows.size() + " rows]");
+    insertRows(gamesSql, gameRows);
+    logger.info(playersSql + "... [" + playerRows.size() + " rows]");
+    insertRows(playersSql, playerRows);
+    logger.info(movesSql + "... [" + moveRows.size() + " rows]");
+    insertRows(movesSql, moveRows);
   }
-  
+
   /**
-   * Creates the 'players' table, which holds the 
-   * id and the player type for each player in the game,
-   * if it doesn't already exist.
-   * 
-   * @throws DbServiceException if table could not be created
+   * Deletes many games (and, by cascade, their players and moves),
+   * GAMES_PER_STATEMENT games per DELETE, in a single JDBC batch. The caller must
+   * call commit() to complete the transaction.
+   *
+   * @param gameIds the IDs of the games to delete
+   * @throws DbServiceException if an issue occurred executing the DELETE batch
    */
-  private void createPlayersTable() throws DbServiceException {
+  public void deleteGames(Collection<Integer> gameIds) throws DbServiceException {
 
     String sql = ""
-        + "CREATE TABLE IF NOT EXISTS players (\n"
-        + "  id INTEGER PRIMARY KEY,  \n"
-        + "  player_type TEXT NOT NULL,\n"
-        + "  game_id INTEGER NOT NULL, \n"
-        + "  FOREIGN KEY (game_id) REFERENCES games (id) ON DELETE CASCADE\n"
-        + ");";
+        + "DELETE FROM games "
+        + "WHERE id IN ("
+        + String.join(", ", Collections.nCopies(GAMES_PER_STATEMENT, "?")) + ");";
 
-    update(sql, false);
+    List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(gameIds));
+    logger.info("DELETE FROM games WHERE id IN (...) [" + ids.size() + " games]");
+    batch(sql, padIds(ids));
+    if (hasColumn(ARCHIVE_TABLE, "id")) {
+      batch("DELETE FROM " + ARCHIVE_TABLE + " WHERE id IN ("
+          + String.join(", ", Collections.nCopies(GAMES_PER_STATEMENT, "?")) + ");", padIds(ids));
+    }
   }
-  
+
   /**
-   * Creates the 'moves' table, which holds each 
-   * move that has been submitted by a user over
-   * the course of a game,  if it doesn't already exist.
-   * 
-   * @throws DbServiceException if table could not be created
+   * Moves up to maxGames finished games, oldest first, into the archive table,
+   * creating it the first time: the games are read with their moves, deleted
+   * along with their players and moves, and each written back as a single
+   * ArchivedGame record under the same ID. The most recent game is never
+   * archived, so new games keep getting IDs that were never used. The caller
+   * must call commit() to complete the transaction.
+   *
+   * @param maxGames most games to archive
+   * @return number of games archived
+   * @throws DbServiceException if the games could not be read, deleted or
+   *                            archived
    */
-  private void createMovesTable() throws DbServiceException {
-      
-    String sql = ""
-        + "CREATE TABLE IF NOT EXISTS  moves (\n"
-        + "  id INTEGER PRIMARY KEY AUTOINCREMENT,\n"
-        + "  game_id INTEGER NOT NULL,\n"
-        + "  player_id INTEGER NOT NULL,\n" 
-        + "  x_coord INT NOT NULL,\n"
-        + "  y_coord INT NOT NULL,\n"
-        + "  FOREIGN KEY (game_id)  REFERENCES games (id) ON DELETE CASCADE,\n" 
-        + "  FOREIGN KEY (player_id) REFERENCES players (id) ON DELETE CASCADE\n"
-        + ");";
+  @Override
+  public int archiveFinishedGames(int maxGames) throws DbServiceException {
 
-    update(sql, false);
+    if (connPool == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+
+    flushSnapshotChanges();
+    // also starts the transaction, so that the games are read inside it
+    update(CREATE_ARCHIVE_SQL, false);
+
+    List<Integer> ids = new ArrayList<>();
+    ResultSet rs = null;
+    try {
+      rs = query(FINISHED_GAMES_SQL, maxGames);
+      while (rs.next()) {
+        ids.add(rs.getInt("id"));
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred finding finished games to archive.");
+
+    } finally {
+      closeResultSet(rs);
+    }
+    if (ids.isEmpty()) {
+      return 0;
+    }
+
+    Map<Integer, StoredGame> games = readGamesInChunks(ids);
+    Map<Integer, List<Move>> moves = readMovesInChunks(ids);
+
+    List<Object[]> records = new ArrayList<>(ids.size());
+    for (int gameId : ids) {
+      List<Move> gameMoves = moves.get(gameId);
+      records.add(new Object[] {gameId, ArchivedGame.encode(games.get(gameId).board,
+          gameMoves == null ? Collections.<Move>emptyList() : gameMoves)});
+    }
+    deleteGames(ids);
+    insertRows("INSERT INTO " + ARCHIVE_TABLE + " (id, record) VALUES ", records);
+
+    logger.info("Archived " + ids.size() + " finished games [" + ids.get(0) + ", ...]");
+    return ids.size();
+  }
+
+  /**
+   * Deletes up to maxGames games that are still being played but have not been
+   * written to since idleSinceMillis, longest idle first, along with their
+   * players and moves. Each game is deleted only if it is still idle and
+   * unfinished when its DELETE runs, so a game played in the meantime is kept.
+   * Like the archiver, this never takes the most recent game, which is the one
+   * the server is playing, so that the highest game id never drops. The caller
+   * must call commit() to complete the transaction.
+   *
+   * @param idleSinceMillis games last written to before this time, in
+   *                        milliseconds since the epoch, are expired
+   * @param maxGames        most games to expire
+   * @return IDs of the games deleted
+   * @throws DbServiceException if the games could not be found or deleted
+   */
+  @Override
+  public List<Integer> expireIdleGames(long idleSinceMillis, int maxGames)
+      throws DbServiceException {
+
+    if (connPool == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+
+    // the games table must hold the latest winner and draw flags
+    flushSnapshotChanges();
+
+    List<Integer> ids = new ArrayList<>();
+    ResultSet rs = null;
+    try {
+      rs = query(IDLE_GAMES_SQL, idleSinceMillis, maxGames);
+      while (rs.next()) {
+        ids.add(rs.getInt("id"));
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred finding idle games to expire.");
+
+    } finally {
+      closeResultSet(rs);
+    }
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<Object[]> rows = new ArrayList<>(ids.size());
+    for (int gameId : ids) {
+      rows.add(new Object[] {gameId, idleSinceMillis});
+    }
+    int[] counts = batch(EXPIRE_GAME_SQL, rows);
+
+    List<Integer> expired = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      if (counts[i] > 0) {
+        expired.add(ids.get(i));
+      }
+    }
+    logger.info("Expired " + expired.size() + " idle games");
+    return expired;
+  }
+
+  /**
+   * Reads the moves of many games, GAMES_PER_STATEMENT games per query.
+   *
+   * @param ids the game IDs to read, without duplicates
+   * @return each game's moves in the order played, by game ID; games without
+   *         moves are left out
+   * @throws DbServiceException if the moves could not be read
+   */
+  private Map<Integer, List<Move>> readMovesInChunks(List<Integer> ids)
+      throws DbServiceException {
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    ResultSet rs = null;
+
+    try {
+      for (Object[] params : padIds(ids)) {
+        rs = query(ARCHIVE_MOVES_SQL, params);
+        while (rs.next()) {
+          Player player = new Player(rs.getString("player_type").charAt(0),
+              rs.getInt("player_no"));
+          moves.computeIfAbsent(rs.getInt("game_id"), id -> new ArrayList<>())
+              .add(new Move(player, rs.getInt("x_coord"), rs.getInt("y_coord")));
+        }
+        closeResultSet(rs);
+        rs = null;
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred fetching moves from database.");
+
+    } finally {
+      closeResultSet(rs);
+    }
+    return moves;
+  }
+
+  /**
+   * Restores games from their archive records, GAMES_PER_STATEMENT games per
+   * query.
+   *
+   * @param ids the game IDs to restore, without duplicates
+   * @return the archived games found, by game ID
+   * @throws DbServiceException if the records could not be read
+   */
+  private Map<Integer, GameBoard> readArchivedGames(List<Integer> ids)
+      throws DbServiceException {
+    Map<Integer, GameBoard> games = new LinkedHashMap<>();
+    if (ids.isEmpty() || !hasColumn(ARCHIVE_TABLE, "id")) {
+      return games;
+    }
+    ResultSet rs = null;
+
+    try {
+      for (Object[] params : padIds(ids)) {
+        rs = query(READ_ARCHIVED_SQL, params);
+        while (rs.next()) {
+          GameBoard gb = ArchivedGame.decode(rs.getBytes("record"), this).getBoard();
+          gb.setGameId(rs.getInt("id"));
+          games.put(rs.getInt("id"), gb);
+        }
+        closeResultSet(rs);
+        rs = null;
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred restoring archived games.");
+
+    } finally {
+      closeResultSet(rs);
+    }
+    return games;
+  }
+
+  /**
+   * Writes the history of the games with IDs from fromGameId to toGameId, both
+   * included, in game ID order. Games without any players are left out. Games
+   * moved to the archive by archiveFinishedGames() are written from their
+   * archive records, in the same form and in the same order. The
+   * games are read GAMES_PER_STATEMENT at a time, each page starting after the
+   * last game ID of the one before, so that only one page is held in memory
+   * and, outside of a transaction, each page is a short read of its own that
+   * does not hold writers up for the length of the export. Note that to use
+   * this method, a database connection must already have been made.
+   *
+   * @param fromGameId lowest game ID to export
+   * @param toGameId   highest game ID to export
+   * @param out        where to write the games
+   * @return number of games written
+   * @throws DbServiceException if a page of games could not be read
+   * @throws IOException        if a game could not be written
+   */
+  @Override
+  public int exportGames(int fromGameId, int toGameId, GameHistoryWriter out)
+      throws DbServiceException, IOException {
+    if (connPool == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+    logger.info("Exporting games " + fromGameId + " to " + toGameId + ".");
+
+    int written = out.getGamesWritten();
+    boolean archived = hasColumn(ARCHIVE_TABLE, "id");
+    int nextGameId = fromGameId;
+    while (nextGameId <= toGameId) {
+      int lastGameId = exportPage(nextGameId, toGameId, archived, out);
+      if (lastGameId < 0 || lastGameId == Integer.MAX_VALUE) {
+        break;
+      }
+      nextGameId = lastGameId + 1;
+    }
+    return out.getGamesWritten() - written;
+  }
+  
+
+  /**
+   * Queries the SQLite database for all moves made so far in a given game.
+   * 
+   * @param gameId the game Id to use in looking for associated moves
+   * @throws DbServiceException if an issue occurred executing the SELECT
+   *                            statement
+   */
+  public List<Move> findAllMoves(int gameId) throws DbServiceException {
+    
+    ArrayList<Move> moves = new ArrayList<Move>();
+    ResultSet rs = null;
+
+    String sql = "" 
+        + "SELECT " 
+        + "  moves.player_no, moves.x_coord, moves.y_coord, " 
+        + "  players.player_type " 
+        + "FROM moves " 
+        + "LEFT JOIN players "
+        + "  ON moves.game_id = players.game_id AND moves.player_no = players.player_no "
+        + "WHERE moves.game_id = ? "
+        + "ORDER BY moves.id;";
+
+    logger.info(sql + " [" + gameId + "]");
+    
+    try {
+      rs = query(sql, gameId);
+      
+      while (rs.next()) {
+        Player player = new Player(rs.getString("player_type").charAt(0), rs.getInt("player_no"));
+        moves.add(new Move(player, rs.getInt("x_coord"), rs.getInt("y_coord")));
+      }
+      
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred fetching moves from database.");
+      
+    } finally {
+      closeResultSet(rs);
+    }
+    
+    return moves;
+  }
+
+  /**
+   * Queries the SQLite database for all the players in a given game.
+   * 
+   * @param gameId the game Id to use in looking for associated players
+   * @throws DbServiceException if an issue occurred executing the SELECT
+   *                            statement
+   */
+  public List<Player> findAllPlayers(int gameId) throws DbServiceException {
+    
+    ArrayList<Player> players = new ArrayList<Player>();
+    ResultSet rs = null;
+    
+    String sql = ""
+        + "SELECT player_no, player_type FROM players "
+        + "WHERE game_id = ? "
+        + "ORDER BY player_no;";
+    logger.info(sql + " [" + gameId + "]");
+    
+    try {
+      rs = query(sql, gameId);
+      
+      while (rs.next()) {
+        players.add(new Player(rs.getString("player_type").charAt(0), rs.getInt("player_no")));
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred fetching players from database.");
+    } finally {
+      closeResultSet(rs);
+    }
+    
+    return players;
+  }
+  
+
+  /**
+   * Writes the complete state of a game board (the game's status columns and its
+   * snapshot) to the game's row in one statement.
+   * 
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @param gameId    the game ID to associate the state with
+   * @throws DbServiceException if an issue occurred executing the UPDATE
+   *                            statement
+   */
+  private void writeGameState(GenericGameBoard gameboard, int gameId) 
+      throws DbServiceException {
+    
+    update(WRITE_GAME_STATE_SQL, false, gameStateRow(gameboard, gameId));
+  }
+
+  /**
+   * Returns the values to bind to WRITE_GAME_STATE_SQL for a game board, which
+   * also marks the game as active now.
+   */
+  private static Object[] gameStateRow(GenericGameBoard gameboard, int gameId) {
+    return new Object[] {gameboard.isGameStarted(), gameboard.getWinner(), gameboard.isDraw(),
+        gameboard.getTurn(), GameSnapshot.encode(gameboard), System.currentTimeMillis(), gameId};
+  }
+  
+  /**
+   * Folds the players and moves saved so far in this transaction into each
+   * affected game's state row, reading each game's snapshot once and writing it
+   * back once. The games of a batch are read GAMES_PER_STATEMENT at a time and
+   * written back in one JDBC batch. Games that do not have a snapshot yet are
+   * rebuilt by replay, which already includes the new rows.
+   * 
+   * @throws DbServiceException if a snapshot could not be read or written
+   */
+  private void flushSnapshotChanges() throws DbServiceException {
+    if (pendingSnapshotChanges.isEmpty()) {
+      return;
+    }
+
+    Map<Integer, StoredGame> games;
+    if (pendingSnapshotChanges.size() == 1) {
+      int gameId = pendingSnapshotChanges.keySet().iterator().next();
+      StoredGame game = readGame(RESTORE_GAME_SQL, gameId);
+      games = game == null ? Collections.emptyMap() : Collections.singletonMap(gameId, game);
+    } else {
+      games = readGamesInChunks(new ArrayList<>(pendingSnapshotChanges.keySet()));
+    }
+
+    List<Object[]> rows = new ArrayList<>();
+    for (Map.Entry<Integer, List<Consumer<GameBoard>>> entry 
+        : pendingSnapshotChanges.entrySet()) {
+      StoredGame game = games.get(entry.getKey());
+      if (game == null) {
+        continue;
+      }
+      
+      if (!game.replayed) {
+        for (Consumer<GameBoard> change : entry.getValue()) {
+          change.accept(game.board);
+        }
+      }
+      rows.add(gameStateRow(game.board, entry.getKey()));
+    }
+    batch(WRITE_GAME_STATE_SQL, rows);
+    pendingSnapshotChanges.clear();
+  }
+  
+  /**
+   * Creates the 'games' table, which holds the id of the game and if there is a
+   * winner or a draw, along with a snapshot of the whole game board, if it
+   * doesn't already exist.
+   * 
+   * @throws DbServiceException if table could not be created
+   */
+  private void createGamesTable() throws DbServiceException {
+
+    String sql = ""
+        + "CREATE TABLE IF NOT EXISTS games (\n"
+        + "  id INTEGER PRIMARY KEY AUTOINCREMENT, \n"
+        + "  has_started INTEGER DEFAULT NULL,\n"
+        + "  winner_id INTEGER DEFAULT NULL,\n"
+        + "  is_draw INTEGER DEFAULT NULL,\n"
+        + "  turn INTEGER DEFAULT NULL,\n"
+        + "  snapshot BLOB DEFAULT NULL,\n"
+        + "  last_activity INTEGER DEFAULT NULL\n"
+        + ");";
+
+    update(sql, false);
+    addSnapshotColumn();
+    addLastActivityColumn();
+    
+    // finds the games that have been idle the longest without reading the table
+    update("CREATE INDEX IF NOT EXISTS games_by_last_activity ON games (last_activity);", false);
+  }
+  
+  /**
+   * Adds the 'snapshot' column to a 'games' table created before snapshots
+   * existed. Existing games keep a NULL snapshot and are restored by replaying
+   * their moves until their next write.
+   * 
+   * @throws DbServiceException if the table could not be inspected or altered
+   */
+  private void addSnapshotColumn() throws DbServiceException {
+    if (!hasColumn("games", "snapshot")) {
+      update("ALTER TABLE games ADD COLUMN snapshot BLOB DEFAULT NULL;", false);
+    }
+  }
+  
+  /**
+   * Adds the 'last_activity' column, the time (in milliseconds since the epoch)
+   * a game was last written to, to a 'games' table created before it existed.
+   * Existing games count as active as of the upgrade.
+   * 
+   * @throws DbServiceException if the table could not be inspected or altered
+   */
+  private void addLastActivityColumn() throws DbServiceException {
+    if (!hasColumn("games", "last_activity")) {
+      update("ALTER TABLE games ADD COLUMN last_activity INTEGER DEFAULT NULL;", false);
+      update("UPDATE games SET last_activity = ?;", false, System.currentTimeMillis());
+    }
+  }
+  
+  /**
+   * Checks whether a table has a column with the name provided.
+   * 
+   * @param table  name of the table to inspect
+   * @param column name of the column to look for
+   * @return true if the table exists and has the column
+   * @throws DbServiceException if the table could not be inspected
+   */
+  private boolean hasColumn(String table, String column) throws DbServiceException {
+    ResultSet rs = null;
+    boolean found = false;
+    
+    try {
+      // the table-valued form is looked up each time it runs; a cached PRAGMA
+      // statement keeps answering for the schema it was prepared against
+      rs = query("SELECT COUNT(*) AS found FROM pragma_table_info(?) WHERE name = ?;",
+          table, column);
+      found = rs.next() && rs.getInt("found") > 0;
+      
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred inspecting the " + table + " table.");
+      
+    } finally {
+      closeResultSet(rs);
+    }
+    return found;
+  }
+  
+  /**
+   * Moves the players and moves of a database created before games were keyed
+   * by (game_id, player_no) into the current tables. The old players table used
+   * the player number alone as its primary key, so it could only ever hold the
+   * players of one game. The tables are rebuilt (SQLite cannot change a primary
+   * key in place) in one transaction, with foreign keys switched off for this
+   * connection while the old tables are dropped and the new ones renamed, and
+   * checked before the transaction commits. Does nothing for an up-to-date or
+   * empty database.
+   * 
+   * @throws DbServiceException if the migration failed; the database is left as
+   *                            it was
+   */
+  private void migrateToMultiGameSchema() throws DbServiceException {
+    if (!hasColumn("players", "id")) {
+      return;
+    }
+    logger.info("Migrating players and moves tables to the multi-game schema...");
+    
+    ResultSet rs = null;
+    try {
+      // foreign key enforcement can only be changed outside of a transaction
+      writer().setAutoCommit(true);
+      execute("PRAGMA foreign_keys = OFF;");
+      sqliteConn.setAutoCommit(false);
+      
+      update(playersTableSql("players_v2"), false);
+      update(movesTableSql("moves_v2"), false);
+      update(""
+          + "INSERT INTO players_v2 (game_id, player_no, player_type) "
+          + "SELECT game_id, id, player_type FROM players;", false);
+      update(""
+          + "INSERT INTO moves_v2 (id, game_id, player_no, x_coord, y_coord) "
+          + "SELECT id, game_id, player_id, x_coord, y_coord FROM moves;", false);
+      update("DROP TABLE moves;", false);
+      update("DROP TABLE players;", false);
+      execute("ALTER TABLE players_v2 RENAME TO players;");
+      execute("ALTER TABLE moves_v2 RENAME TO moves;");
+      
+      rs = query("PRAGMA foreign_key_check;");
+      if (rs.next()) {
+        throw new DbServiceException("Migrated tables violate a foreign key constraint "
+            + "on table " + rs.getString("table") + ".");
+      }
+      sqliteConn.commit();
+      
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred migrating the players and moves tables.");
+      
+    } finally {
+      closeResultSet(rs);
+      try {
+        if (!writer().getAutoCommit()) {
+          sqliteConn.rollback();
+        }
+        sqliteConn.setAutoCommit(true);
+      } catch (SQLException e) {
+        logger.error(e.getClass().getName() + ": " + e.getMessage());
+      }
+      execute("PRAGMA foreign_keys = ON;");
+    }
+  }
+  
+  /**
+   * Executes a statement that may return rows, such as a PRAGMA or ALTER TABLE,
+   * which update() would reject. The statement is not cached.
+   * 
+   * @param sql the statement to execute
+   * @throws DbServiceException if the statement failed
+   */
+  private void execute(String sql) throws DbServiceException {
+    try (Statement statement = writer().createStatement()) {
+      retryBusy(() -> statement.execute(sql));
+      holdsWriteLock = holdsWriteLock || !sqliteConn.getAutoCommit();
+      
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred performing database action.");
+    }
+  }
+  
+  /**
+   * Creates the 'players' table, which holds the player number (1 or 2) and
+   * the player type for each player in each game, if it doesn't already exist.
+   * 
+   * @throws DbServiceException if table could not be created
+   */
+  private void createPlayersTable() throws DbServiceException {
+    update(playersTableSql("players"), false);
+  }
+  
+  /**
+   * Creates the 'moves' table, which holds each move that has been submitted by
+   * a user over the course of a game, if it doesn't already exist, along with
+   * the index used to look up a game's moves in the order they were played.
+   * 
+   * @throws DbServiceException if table could not be created
+   */
+  private void createMovesTable() throws DbServiceException {
+    update(movesTableSql("moves"), false);
+    
+    // covers findAllMoves(): the game's moves in order, without reading the table
+    String sql = ""
+        + "CREATE INDEX IF NOT EXISTS moves_by_game \n"
+        + "  ON moves (game_id, id, player_no, x_coord, y_coord);";
+    
+    update(sql, false);
+  }
+  
+  /**
+   * Returns the statement creating a players table. Players are keyed by their
+   * game and their number within that game, so any number of games can be
+   * stored; the key doubles as the index for looking up a game's players.
+   * 
+   * @param table name to give the table
+   * @return CREATE TABLE statement
+   */
+  private static String playersTableSql(String table) {
+    return ""
+        + "CREATE TABLE IF NOT EXISTS " + table + " (\n"
+        + "  game_id INTEGER NOT NULL, \n"
+        + "  player_no INTEGER NOT NULL, \n"
+        + "  player_type TEXT NOT NULL,\n"
+        + "  PRIMARY KEY (game_id, player_no),\n"
+        + "  FOREIGN KEY (game_id) REFERENCES games (id) ON DELETE CASCADE\n"
+        + ") WITHOUT ROWID;";
+  }
+  
+  /**
+   * Returns the statement creating a moves table.
+   * 
+   * @param table name to give the table
+   * @return CREATE TABLE statement
+   */
+  private static String movesTableSql(String table) {
+    return ""
+        + "CREATE TABLE IF NOT EXISTS " + table + " (\n"
+        + "  id INTEGER PRIMARY KEY AUTOINCREMENT,\n"
+        + "  game_id INTEGER NOT NULL,\n"
+        + "  player_no INTEGER NOT NULL,\n" 
+        + "  x_coord INT NOT NULL,\n"
+        + "  y_coord INT NOT NULL,\n"
+        + "  FOREIGN KEY (game_id) REFERENCES games (id) ON DELETE CASCADE,\n" 
+        + "  FOREIGN KEY (game_id, player_no) REFERENCES players (game_id, player_no) "
+        + "ON DELETE CASCADE\n"
+        + ");";
   }
   
   
   /**
    * Call this function to officially commit changes to the database
-   * associated with a specific transaction.
+   * associated with a specific transaction. The connection is returned to
+   * the pool afterwards.
    * 
    * @throws DbServiceException if commit failed
    */
   public void commit() throws DbServiceException {
     
     if (sqliteConn == null) {
+      // nothing was written, but the reading connection goes back to its pool
+      close();
       return;
     }
 
     try {
-      sqliteConn.commit();
+      flushSnapshotChanges();
+      // a COMMIT held up by a lock leaves the transaction open, so it can be retried
+      retryBusy(() -> {
+        sqliteConn.commit();
+        return null;
+      });
       
     } catch (SQLException e) {
       logger.error(e.getClass().getName() + ": " + e.getMessage());
@@ -572,32 +1503,44 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
           + "transaction to the database");
       
     } finally {
-      try {
-        if (sqliteConn != null) {
-          sqliteConn.close();
-          sqliteConn = null;
-        }
-        
-      } catch (SQLException e2) {
-        logger.error(e2.getClass().getName() + ": " + e2.getMessage());
-        throw new DbServiceException("Could not close SQLite db connection.");
-      }
+      close();
     }
   }
   
   /**
    * Call this function to officially roll-back changes to the database
-   * associated with a specific transaction.
+   * associated with a specific transaction. The connections are returned to
+   * their pools rather than closed.
    * 
    * @throws DbServiceException if something happened with DB connection
    */
   public void close() throws DbServiceException {
 
+    pendingSnapshotChanges.clear();
+    
+    Connection conn = sqliteConn;
+    SqliteConnectionPool pool = connPool;
+    Connection reader = readerConn;
+    SqliteConnectionPool readers = readerPool;
+    sqliteConn = null;
+    statementCache = null;
+    connPool = null;
+    readerConn = null;
+    readerCache = null;
+    readerPool = null;
+    holdsWriteLock = false;
+    
     try {
-      if (sqliteConn != null) {
-        sqliteConn.close();
-        sqliteConn = null;
+      try {
+        if (conn != null) {
+          pool.release(conn);
+        }
+      } finally {
+        if (reader != null) {
+          readers.release(reader);
+        }
       }
+      
     } catch (SQLException e) {
       logger.error(e.getClass().getName() + ": " + e.getMessage());
       throw new DbServiceException("An issue was encountered closing connection.");
@@ -609,36 +1552,416 @@ public class TicTacToeSqliteDbService implements TicTacToeDbService {
    * provided. Use this method for create, update, and delete SQL statements.
    * Allows a user to specify whether to not to use 'auto-commit' functionality.
    * Selecting 'false' allows a user to have control over when the changes are
-   * officially committed.
+   * officially committed. The statement is prepared once per connection and
+   * reused, with the values provided bound to its ? placeholders in order. A
+   * statement held up by another connection's lock is retried with backoff.
    * 
    * @param sql        A string representing a SQL create/update/deletion
-   *                   statement
+   *                   statement, with ? placeholders for values
    * @param autoCommit boolean, true to allow SQLite to auto-commit
+   * @param params     values to bind to the statement's placeholders
    * @throws DbServiceException if a SQLException was thrown during the execution
    */
-  private void update(String sql, boolean autoCommit) throws DbServiceException {
-    if (sqliteConn == null) {
+  private void update(String sql, boolean autoCommit, Object... params) 
+      throws DbServiceException {
+    if (connPool == null) {
       throw new DbServiceException("Please establish database connection before "
           + "atempting to execute a SQL create/update/delete statement.");
     }
     
-    Statement statement = null;
     try {
-      sqliteConn.setAutoCommit(autoCommit);
-      statement = sqliteConn.createStatement();
-      statement.executeUpdate(sql);
-      statement.close();
+      writer().setAutoCommit(autoCommit);
+      retryBusy(() -> prepare(sql, params).executeUpdate());
+      holdsWriteLock = holdsWriteLock || !autoCommit;
       
     } catch (SQLException e) {
-      if (statement != null) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred performing database action.");
+    }
+  }
+  
+  /**
+   * Inserts rows with statements that each write ROWS_PER_INSERT rows, run as a
+   * JDBC batch, followed by the rows left over one per statement. Fewer
+   * statements mean fewer calls into the SQLite library, which cost more than
+   * the insert itself for rows as small as these.
+   *
+   * @param insert INSERT statement up to and including VALUES
+   * @param rows   values of each row, in column order
+   * @throws DbServiceException if an issue occurred executing the INSERTs
+   */
+  private void insertRows(String insert, List<Object[]> rows) throws DbServiceException {
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    int columns = rows.get(0).length;
+    String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+    int full = rows.size() - rows.size() % ROWS_PER_INSERT;
+
+    List<Object[]> multiRows = new ArrayList<>();
+    for (int start = 0; start < full; start += ROWS_PER_INSERT) {
+      Object[] params = new Object[ROWS_PER_INSERT * columns];
+      for (int i = 0; i < ROWS_PER_INSERT; i++) {
+        System.arraycopy(rows.get(start + i), 0, params, i * columns, columns);
+      }
+      multiRows.add(params);
+    }
+
+    batch(insert + String.join(", ", Collections.nCopies(ROWS_PER_INSERT, row)) + ";",
+        multiRows);
+    batch(insert + row + ";", rows.subList(full, rows.size()));
+  }
+
+  /**
+   * Executes a create/update/delete statement once for each row of values, as a
+   * single JDBC batch on the statement cached for the current connection. The
+   * changes are not committed. A batch held up by another connection's lock is
+   * rolled back to where it started and retried with backoff.
+   *
+   * @param sql  A string representing a SQL create/update/deletion statement,
+   *             with ? placeholders for values
+   * @param rows values to bind to the statement's placeholders, one array per
+   *             execution
+   * @return the number of rows each execution changed, in the order of rows
+   * @throws DbServiceException if there is no connection, or a SQLException was
+   *                            thrown during the execution
+   */
+  private int[] batch(String sql, List<Object[]> rows) throws DbServiceException {
+    if (connPool == null) {
+      throw new DbServiceException("Please establish database connection before "
+          + "atempting to execute a SQL create/update/delete statement.");
+    }
+    if (rows.isEmpty()) {
+      return new int[0];
+    }
+
+    try {
+      writer().setAutoCommit(false);
+      PreparedStatement statement = statementCache.prepare(sql);
+      int[] counts = retryBusy(() -> {
+        // rows run before a failing one must not be written twice on a retry
+        Savepoint savepoint = rows.size() > 1 ? sqliteConn.setSavepoint() : null;
         try {
-          statement.close();
-        } catch (SQLException e1) {
-          e1.printStackTrace();
+          for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+              statement.setObject(i + 1, row[i]);
+            }
+            statement.addBatch();
+          }
+          int[] changed = statement.executeBatch();
+          if (savepoint != null) {
+            sqliteConn.releaseSavepoint(savepoint);
+          }
+          return changed;
+
+        } catch (SQLException e) {
+          // the statement stays cached, so it must not keep the failed rows
+          statement.clearBatch();
+          if (savepoint != null) {
+            sqliteConn.rollback(savepoint);
+          }
+          throw e;
         }
-      }
+      });
+      holdsWriteLock = true;
+      return counts;
+
+    } catch (SQLException e) {
       logger.error(e.getClass().getName() + ": " + e.getMessage());
       throw new DbServiceException("Error occurred performing database action.");
     }
   }
+
+  /**
+   * Executes a SELECT statement on the SQLite database, using a prepared
+   * statement cached for the connection it runs on. While this service has a
+   * transaction open, the statement runs inside it, so that it sees the
+   * transaction's own changes; otherwise it runs on the read-only connection.
+   * The caller is responsible for closing the returned ResultSet (but not the
+   * statement, which stays cached).
+   * 
+   * @param sql    A string representing a SQL select statement, with ?
+   *               placeholders for values
+   * @param params values to bind to the statement's placeholders
+   * @return ResultSet for the query
+   * @throws SQLException if the query could not be executed
+   */
+  private ResultSet query(String sql, Object... params) throws SQLException {
+    if (sqliteConn != null && !sqliteConn.getAutoCommit()) {
+      return retryBusy(() -> prepare(sql, params).executeQuery());
+    }
+    SqliteStatementCache readers = reader();
+    return readerPool.getBusyRetry().run(() -> bind(readers.prepare(sql), params).executeQuery());
+  }
+
+  /**
+   * Runs statements on the current connection, retrying them with backoff if
+   * SQLite fails them on another connection's lock without waiting for it (its
+   * busy handler does the waiting otherwise), up to the busy timeout of the
+   * database's SQLite profile. A transaction that has not written yet
+   * is rolled back before each retry, so that it does not hold on to its read
+   * lock: a writer waiting for that lock to commit would otherwise keep it from
+   * ever getting the write lock, until the busy timeout.
+   *
+   * @param <T>  type of the result
+   * @param call the statements to run; must leave nothing behind when failing
+   * @return the result of the call
+   * @throws SQLException if the call failed with any other error, or was still
+   *                      held up at the busy timeout
+   */
+  private <T> T retryBusy(SqliteBusyRetry.SqlCall<T> call) throws SQLException {
+    return connPool.getBusyRetry().run(() -> {
+      try {
+        return call.call();
+
+      } catch (SQLException e) {
+        if (!holdsWriteLock && !sqliteConn.getAutoCommit() && SqliteBusyRetry.isBusy(e)) {
+          sqliteConn.rollback();
+        }
+        throw e;
+      }
+    });
+  }
+  
+  /**
+   * Fetches the cached prepared statement for the SQL provided and binds the
+   * values provided to its placeholders.
+   * 
+   * @param sql    A string representing a SQL statement
+   * @param params values to bind to the statement's placeholders
+   * @return PreparedStatement ready for execution
+   * @throws SQLException if the statement could not be prepared or bound
+   */
+  private PreparedStatement prepare(String sql, Object... params) throws SQLException {
+    return bind(statementCache.prepare(sql), params);
+  }
+  
+  /**
+   * Binds the values provided to a statement's placeholders, in order.
+   * 
+   * @param statement the statement to bind
+   * @param params    values to bind to the statement's placeholders
+   * @return the statement
+   * @throws SQLException if a value could not be bound
+   */
+  private static PreparedStatement bind(PreparedStatement statement, Object... params) 
+      throws SQLException {
+    for (int i = 0; i < params.length; i++) {
+      statement.setObject(i + 1, params[i]);
+    }
+    return statement;
+  }
+  
+  /**
+   * Reads one page of games to export, from the games table and from the
+   * archive, and writes those that have players in game ID order. A page ends
+   * at the last game of whichever table filled its page first, so that the
+   * games read past it from the other table are left for the next page.
+   *
+   * @param fromGameId lowest game ID of the page
+   * @param toGameId   highest game ID of the export
+   * @param archived   whether the archive table exists
+   * @param out        where to write the games
+   * @return the highest game ID the page covers, or -1 if there were no games
+   *         left
+   * @throws DbServiceException if the page could not be read
+   * @throws IOException        if a game could not be written
+   */
+  private int exportPage(int fromGameId, int toGameId, boolean archived, GameHistoryWriter out)
+      throws DbServiceException, IOException {
+    List<ExportedGame> games = readExportPage(fromGameId, toGameId);
+    List<ExportedGame> archivedGames = archived ? readArchivedExportPage(fromGameId, toGameId)
+        : Collections.<ExportedGame>emptyList();
+    if (games.isEmpty() && archivedGames.isEmpty()) {
+      return -1;
+    }
+
+    int lastGameId = toGameId;
+    for (List<ExportedGame> page : Arrays.asList(games, archivedGames)) {
+      if (page.size() == GAMES_PER_STATEMENT) {
+        lastGameId = Math.min(lastGameId, page.get(page.size() - 1).gameId);
+      }
+    }
+
+    int next = 0;
+    int nextArchived = 0;
+    while (true) {
+      ExportedGame game = next < games.size() ? games.get(next) : null;
+      ExportedGame archivedGame = nextArchived < archivedGames.size()
+          ? archivedGames.get(nextArchived) : null;
+      if (archivedGame != null && (game == null || archivedGame.gameId < game.gameId)) {
+        game = archivedGame;
+        nextArchived++;
+      } else {
+        next++;
+      }
+      if (game == null || game.gameId > lastGameId) {
+        break;
+      }
+      writeExportedGame(game, out);
+    }
+    return lastGameId;
+  }
+
+  /**
+   * Reads one page of games to export from the games table, with their players
+   * and moves.
+   *
+   * @param fromGameId lowest game ID of the page
+   * @param toGameId   highest game ID of the export
+   * @return the games read, in game ID order
+   * @throws DbServiceException if the page could not be read
+   */
+  private List<ExportedGame> readExportPage(int fromGameId, int toGameId)
+      throws DbServiceException {
+    List<ExportedGame> games = new ArrayList<>();
+    ExportedGame game = null;
+    ResultSet rs = null;
+
+    try {
+      rs = query(EXPORT_PAGE_SQL, fromGameId, toGameId);
+
+      while (rs.next()) {
+        int kind = rs.getInt("kind");
+        if (kind == 0) {
+          game = new ExportedGame(rs.getInt("game_id"), rs.getInt("winner_id"),
+              rs.getBoolean("is_draw"));
+          games.add(game);
+        } else if (kind == 1) {
+          game.players.add(new Player(rs.getString("player_type").charAt(0),
+              rs.getInt("player_no")));
+        } else {
+          game.moves.add(new Move(game.player(rs.getInt("player_no")), rs.getInt("x_coord"),
+              rs.getInt("y_coord")));
+        }
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred exporting games from database.");
+
+    } finally {
+      closeResultSet(rs);
+    }
+    return games;
+  }
+
+  /**
+   * Reads one page of games to export from the archive, unpacking each record
+   * into the same form as a game read from the games table.
+   *
+   * @param fromGameId lowest game ID of the page
+   * @param toGameId   highest game ID of the export
+   * @return the archived games read, in game ID order
+   * @throws DbServiceException if the page could not be read, or a record could
+   *                            not be unpacked
+   */
+  private List<ExportedGame> readArchivedExportPage(int fromGameId, int toGameId)
+      throws DbServiceException {
+    List<ExportedGame> games = new ArrayList<>();
+    ResultSet rs = null;
+
+    try {
+      rs = query(EXPORT_ARCHIVED_PAGE_SQL, fromGameId, toGameId);
+
+      while (rs.next()) {
+        ArchivedGame archived = ArchivedGame.decode(rs.getBytes("record"), this);
+        GameBoard board = archived.getBoard();
+        ExportedGame game = new ExportedGame(rs.getInt("id"), board.getWinner(),
+            board.isDraw());
+        for (Player player : new Player[] { board.getP1(), board.getP2() }) {
+          if (player != null) {
+            game.players.add(player);
+          }
+        }
+        game.moves.addAll(archived.getMoves());
+        games.add(game);
+      }
+
+    } catch (SQLException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+      throw new DbServiceException("Error occurred exporting archived games.");
+
+    } finally {
+      closeResultSet(rs);
+    }
+    return games;
+  }
+
+  private static void writeExportedGame(ExportedGame game, GameHistoryWriter out)
+      throws IOException {
+    if (game != null && !game.players.isEmpty()) {
+      out.writeGame(game.gameId, game.players, game.moves, game.winner, game.isDraw);
+    }
+  }
+
+  /**
+   * Closes a ResultSet, if there is one, so that its cached statement can be
+   * reused.
+   * 
+   * @param rs ResultSet to close; may be null
+   * @throws DbServiceException if the ResultSet could not be closed
+   */
+  private void closeResultSet(ResultSet rs) throws DbServiceException {
+    try {
+      if (rs != null) {
+        rs.close();
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+      throw new DbServiceException("Error occurred while cleaning up SQL statement.");
+    }
+  }
+  
+  /**
+   * A game as read by one of the restore queries.
+   */
+  private static final class StoredGame {
+    
+    private final GameBoard board;
+    
+    // rebuilt from the players and moves tables, rather than from a snapshot
+    private final boolean replayed;
+    
+    StoredGame(GameBoard board, boolean replayed) {
+      this.board = board;
+      this.replayed = replayed;
+    }
+  }
+
+  /**
+   * A game as read by one of the export queries.
+   */
+  private static final class ExportedGame {
+
+    private final int gameId;
+
+    private final int winner;
+
+    private final boolean isDraw;
+
+    private final List<Player> players = new ArrayList<>();
+
+    private final List<Move> moves = new ArrayList<>();
+
+    ExportedGame(int gameId, int winner, boolean isDraw) {
+      this.gameId = gameId;
+      this.winner = winner;
+      this.isDraw = isDraw;
+    }
+
+    /**
+     * Returns the player of this game with the number given.
+     */
+    Player player(int playerNo) {
+      for (Player player : players) {
+        if (player.getId() == playerNo) {
+          return player;
+        }
+      }
+      // moves always belong to a saved player, but the export should not fail if not
+      return new Player(' ', playerNo);
+    }
+  }
 }
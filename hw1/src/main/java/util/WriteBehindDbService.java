@@ -0,0 +1,616 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Database service that takes writes off the request thread. Each transaction
+ * (connect, save..., commit) is recorded in memory on the calling thread and,
+ * on commit, handed to a single background writer thread. The writer applies
+ * the queued transactions to the underlying database service and commits them
+ * together, as soon as either enough moves have been queued or the batch delay
+ * has passed since the first one arrived. One SQLite commit (and fsync) is then
+ * shared by every move in the group.
+ *
+ * <p>How long commit() blocks is set by the acknowledgement mode: ENQUEUED
+ * returns as soon as the transaction is queued (a crash can lose the most
+ * recent moves), while COMMITTED waits for the group commit that includes it
+ * and reports its failure to the caller.
+ *
+ * <p>Reads are also run on the writer thread, after everything queued before
+ * them has been committed, so they always see the moves already acknowledged.
+ */
+public class WriteBehindDbService implements TicTacToeDbService {
+
+  /**
+   * When a commit is acknowledged to the caller.
+   */
+  public enum AckMode {
+    /** As soon as the transaction has been queued for the writer. */
+    ENQUEUED,
+
+    /** Once the group commit including the transaction has finished. */
+    COMMITTED
+  }
+
+  private static Logger logger = LoggerFactory.getLogger(WriteBehindDbService.class);
+
+  // only ever used from the writer thread
+  private final TicTacToeDbService delegate;
+
+  private final int batchMoves;
+
+  private final long batchNanos;
+
+  private final AckMode ackMode;
+
+  private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+
+  // writes recorded by the calling thread since it last called connect()
+  private final ThreadLocal<Transaction> openTransaction = new ThreadLocal<>();
+
+  private final Thread writer;
+
+  private volatile boolean running = true;
+
+  private final AtomicLong groupCommits = new AtomicLong();
+
+  private final AtomicLong committedTransactions = new AtomicLong();
+
+  private final AtomicLong failedTransactions = new AtomicLong();
+
+  /**
+   * Constructor for the write-behind service, using the batch size, batch delay
+   * and acknowledgement mode set in PersistenceConfig.
+   *
+   * @param delegate database service the writer thread applies writes to
+   */
+  public WriteBehindDbService(TicTacToeDbService delegate) {
+    this(delegate, PersistenceConfig.getBatchMoves(), PersistenceConfig.getBatchMillis(),
+        PersistenceConfig.getAckMode());
+  }
+
+  /**
+   * Constructor for the write-behind service.
+   *
+   * @param delegate    database service the writer thread applies writes to;
+   *                    it should not be used by anything else afterwards
+   * @param batchMoves  number of moves after which a group commit is started
+   * @param batchMillis longest time (in milliseconds) a transaction waits for
+   *                    others to join its group commit
+   * @param ackMode     when commit() returns to the caller
+   */
+  public WriteBehindDbService(TicTacToeDbService delegate, int batchMoves, long batchMillis,
+      AckMode ackMode) {
+    this(delegate, batchMoves, batchMillis, ackMode, "tictactoe-write-behind");
+  }
+
+  /**
+   * Constructor for the write-behind service, with a name for its writer thread
+   * (e.g., when there is one writer per database shard).
+   *
+   * @param delegate    database service the writer thread applies writes to;
+   *                    it should not be used by anything else afterwards
+   * @param batchMoves  number of moves after which a group commit is started
+   * @param batchMillis longest time (in milliseconds) a transaction waits for
+   *                    others to join its group commit
+   * @param ackMode     when commit() returns to the caller
+   * @param threadName  name of the writer thread
+   */
+  public WriteBehindDbService(TicTacToeDbService delegate, int batchMoves, long batchMillis,
+      AckMode ackMode, String threadName) {
+    this.delegate = delegate;
+    this.batchMoves = Math.max(1, batchMoves);
+    this.batchNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, batchMillis));
+    this.ackMode = ackMode;
+
+    this.writer = new Thread(this::runWriter, threadName);
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  public AckMode getAckMode() {
+    return ackMode;
+  }
+
+  public long getGroupCommits() {
+    return groupCommits.get();
+  }
+
+  public long getCommittedTransactions() {
+    return committedTransactions.get();
+  }
+
+  public long getFailedTransactions() {
+    return failedTransactions.get();
+  }
+
+  /**
+   * Returns the number of transactions and reads waiting for the writer thread.
+   *
+   * @return current queue length
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Starts recording a new transaction for the calling thread. Calling this
+   * again before commit() or close() keeps the transaction already open.
+   */
+  public void connect() {
+    if (openTransaction.get() == null) {
+      openTransaction.set(new Transaction());
+    }
+  }
+
+  /**
+   * Creates the database tables through the underlying service, after all
+   * queued writes have been committed.
+   *
+   * @throws DbServiceException if the tables could not be created
+   */
+  public void createDatabasesTables() throws DbServiceException {
+    read(db -> {
+      db.createDatabasesTables();
+      return null;
+    });
+  }
+
+  /**
+   * Records the creation of a new game in the caller's open transaction.
+   *
+   * @param gameId the ID to give the new game
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void createNewGame(int gameId) throws DbServiceException {
+    currentTransaction().add(db -> db.createNewGame(gameId), false);
+  }
+
+  /**
+   * Finds all moves of a game, once the writes queued before this call have been
+   * committed.
+   *
+   * @param gameId the game Id to use in looking for associated moves
+   * @throws DbServiceException if the moves could not be read
+   */
+  public List<Move> findAllMoves(int gameId) throws DbServiceException {
+    return read(db -> {
+      db.connect();
+      try {
+        return db.findAllMoves(gameId);
+      } finally {
+        db.close();
+      }
+    });
+  }
+
+  /**
+   * Finds all players of a game, once the writes queued before this call have
+   * been committed.
+   *
+   * @param gameId the game Id to use in looking for associated players
+   * @throws DbServiceException if the players could not be read
+   */
+  public List<Player> findAllPlayers(int gameId) throws DbServiceException {
+    return read(db -> {
+      db.connect();
+      try {
+        return db.findAllPlayers(gameId);
+      } finally {
+        db.close();
+      }
+    });
+  }
+
+  /**
+   * Finds the id of the most recent game, once the writes queued before this
+   * call have been committed.
+   *
+   * @throws DbServiceException if the id could not be read
+   */
+  public int findMostRecentGameId() throws DbServiceException {
+    return read(db -> {
+      db.connect();
+      try {
+        return db.findMostRecentGameId();
+      } finally {
+        db.close();
+      }
+    });
+  }
+
+  /**
+   * Restores the most recent game board, once the writes queued before this call
+   * have been committed. The board returned saves its changes through this
+   * service.
+   *
+   * @throws DbServiceException if the game board could not be restored
+   */
+  public GenericGameBoard restoreMostRecentGameBoard() throws DbServiceException {
+    return rebind(read(db -> db.restoreMostRecentGameBoard()));
+  }
+
+  /**
+   * Restores a game board, once the writes queued before this call have been
+   * committed. The board returned saves its changes through this service.
+   *
+   * @param gameId the game ID to restore
+   * @throws DbServiceException if the game board could not be restored
+   */
+  public GenericGameBoard restoreGameBoard(int gameId) throws DbServiceException {
+    return rebind(read(db -> {
+      db.connect();
+      try {
+        return db.restoreGameBoard(gameId);
+      } finally {
+        db.close();
+      }
+    }));
+  }
+
+  /**
+   * Records a new player in the caller's open transaction.
+   *
+   * @param player the player to save
+   * @param gameId the game ID to associate the player with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void savePlayer(Player player, int gameId) throws DbServiceException {
+    currentTransaction().add(db -> db.savePlayer(player, gameId), false);
+  }
+
+  /**
+   * Records the game state in the caller's open transaction. The game board is
+   * copied, since it will keep changing before the writer gets to it.
+   *
+   * @param gameboard any implementation of the GenericGameBoard class
+   * @param gameId    the game ID to associate the game state with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void saveGameState(GenericGameBoard gameboard, int gameId) throws DbServiceException {
+    Transaction transaction = currentTransaction();
+    GameBoard copy = GameSnapshot.decode(GameSnapshot.encode(gameboard), null);
+    transaction.add(db -> db.saveGameState(copy, gameId), false);
+  }
+
+  /**
+   * Records a move in the caller's open transaction.
+   *
+   * @param move   the move to save
+   * @param gameId the game ID to associate the move with
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void saveValidMove(Move move, int gameId) throws DbServiceException {
+    currentTransaction().add(db -> db.saveValidMove(move, gameId), true);
+  }
+
+  /**
+   * Records the deletion of a game in the caller's open transaction. The delete
+   * is always committed together with the rest of its group, regardless of the
+   * autoCommit flag.
+   *
+   * @param gameId     the game ID to delete
+   * @param autoCommit ignored; see above
+   * @throws DbServiceException if connect() has not been called
+   */
+  public void deleteGame(int gameId, boolean autoCommit) throws DbServiceException {
+    currentTransaction().add(db -> db.deleteGame(gameId, false), false);
+  }
+
+  /**
+   * Hands the caller's open transaction to the writer thread. In COMMITTED mode
+   * this waits until the group commit that includes the transaction is done.
+   *
+   * @throws DbServiceException if the writer has been shut down, or, in
+   *                            COMMITTED mode, if the transaction could not be
+   *                            committed
+   */
+  public void commit() throws DbServiceException {
+    Transaction transaction = openTransaction.get();
+    openTransaction.remove();
+
+    if (transaction == null || transaction.writes.isEmpty()) {
+      return;
+    }
+
+    enqueue(transaction);
+    if (ackMode == AckMode.COMMITTED) {
+      await(transaction.done);
+    }
+  }
+
+  /**
+   * Discards the caller's open transaction; nothing recorded in it is written.
+   */
+  public void close() {
+    openTransaction.remove();
+  }
+
+  /**
+   * Commits everything queued so far and stops the writer thread. Transactions
+   * committed after this are rejected.
+   *
+   * @throws DbServiceException if the writer could not be stopped cleanly
+   */
+  public void shutdown() throws DbServiceException {
+    if (!running) {
+      return;
+    }
+    Read stop = new Read(db -> {
+      running = false;
+      return null;
+    });
+    queue.add(stop);
+    await(stop.done);
+
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbServiceException("Interrupted waiting for the write-behind writer to stop.");
+    }
+  }
+
+  /**
+   * Main loop of the writer thread. Takes the first queued transaction, keeps
+   * collecting transactions until the batch is full or the batch delay has
+   * passed, and commits them as one group. Reads stop the collection early so
+   * that they run right after the writes queued before them are committed.
+   */
+  private void runWriter() {
+    List<Transaction> batch = new ArrayList<>();
+
+    while (running) {
+      Task next;
+      try {
+        next = queue.take();
+
+        if (next instanceof Transaction) {
+          Transaction first = (Transaction) next;
+          batch.add(first);
+          int moves = first.weight();
+          long deadline = System.nanoTime() + batchNanos;
+          next = null;
+
+          while (moves < batchMoves) {
+            long remaining = deadline - System.nanoTime();
+            Task task = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                : queue.poll();
+            if (task == null) {
+              break;
+            }
+            if (task instanceof Read) {
+              next = task;
+              break;
+            }
+            batch.add((Transaction) task);
+            moves += ((Transaction) task).weight();
+          }
+        }
+
+      } catch (InterruptedException e) {
+        logger.error("Write-behind writer interrupted; stopping.");
+        groupCommit(batch);
+        running = false;
+        rejectRemaining();
+        return;
+      }
+
+      groupCommit(batch);
+      batch.clear();
+
+      if (next != null) {
+        ((Read) next).run();
+      }
+    }
+    rejectRemaining();
+  }
+
+  /**
+   * Fails anything that was queued after the writer stopped, so that no caller
+   * is left waiting for it.
+   */
+  private void rejectRemaining() {
+    DbServiceException stopped = new DbServiceException("Write-behind writer has been shut down.");
+    for (Task task = queue.poll(); task != null; task = queue.poll()) {
+      task.done.completeExceptionally(stopped);
+    }
+  }
+
+  /**
+   * Applies a group of transactions to the underlying service and commits them
+   * together. If the group fails, each transaction is retried on its own, so
+   * that one bad transaction does not fail the others in its group.
+   *
+   * @param batch transactions to commit
+   */
+  private void groupCommit(List<Transaction> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    try {
+      delegate.connect();
+      for (Transaction transaction : batch) {
+        transaction.applyTo(delegate);
+      }
+      delegate.commit();
+
+      groupCommits.incrementAndGet();
+      committedTransactions.addAndGet(batch.size());
+      for (Transaction transaction : batch) {
+        transaction.done.complete(null);
+      }
+
+    } catch (DbServiceException e) {
+      retryOneByOne(batch, e);
+
+    } catch (RuntimeException e) {
+      retryOneByOne(batch, new DbServiceException(e.getClass().getName() + ": " + e.getMessage()));
+    }
+  }
+
+  private void retryOneByOne(List<Transaction> batch, DbServiceException e) {
+    closeDelegate();
+
+    if (batch.size() == 1) {
+      fail(batch.get(0), e);
+      return;
+    }
+
+    logger.error("Group commit of " + batch.size() + " transactions failed ("
+        + e.getMessage() + "); retrying them one at a time.");
+    for (Transaction transaction : batch) {
+      groupCommit(List.of(transaction));
+    }
+  }
+
+  private void fail(Transaction transaction, DbServiceException e) {
+    failedTransactions.incrementAndGet();
+    transaction.done.completeExceptionally(e);
+
+    if (ackMode == AckMode.ENQUEUED) {
+      // the caller has already moved on, so this is the only record of the loss
+      logger.error("Queued transaction could not be committed: " + e.getMessage());
+    }
+  }
+
+  private void closeDelegate() {
+    try {
+      delegate.close();
+    } catch (DbServiceException e) {
+      logger.error(e.getClass().getName() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Runs a read on the writer thread and waits for its result.
+   */
+  private <T> T read(DbCall<T> call) throws DbServiceException {
+    Read read = new Read(call);
+    enqueue(read);
+
+    @SuppressWarnings("unchecked")
+    T result = (T) await(read.done);
+    return result;
+  }
+
+  private void enqueue(Task task) throws DbServiceException {
+    if (!running) {
+      throw new DbServiceException("Write-behind writer has been shut down.");
+    }
+    queue.add(task);
+  }
+
+  private Object await(CompletableFuture<Object> done) throws DbServiceException {
+    try {
+      return done.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbServiceException("Interrupted waiting for the write-behind writer.");
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DbServiceException) {
+        throw (DbServiceException) e.getCause();
+      }
+      throw new DbServiceException("Write-behind writer failed: " + e.getCause());
+    }
+  }
+
+  private Transaction currentTransaction() throws DbServiceException {
+    Transaction transaction = openTransaction.get();
+    if (transaction == null) {
+      throw new DbServiceException("Please establish DB connection before "
+          + "requesting DB action.");
+    }
+    return transaction;
+  }
+
+  /**
+   * Points a restored game board back at this service, so that its later
+   * changes are queued rather than written directly by the underlying service.
+   */
+  private GenericGameBoard rebind(GenericGameBoard gameboard) {
+    if (gameboard instanceof GameBoard) {
+      ((GameBoard) gameboard).setDbService(this);
+    }
+    return gameboard;
+  }
+
+  /**
+   * A read (or other call) to run against the underlying service on the writer
+   * thread.
+   */
+  @FunctionalInterface
+  private interface DbCall<T> {
+    T call(TicTacToeDbService dbService) throws DbServiceException;
+  }
+
+  /**
+   * Something queued for the writer thread, completed once it has been handled.
+   */
+  private abstract static class Task {
+    final CompletableFuture<Object> done = new CompletableFuture<>();
+  }
+
+  /**
+   * The writes of one committed transaction.
+   */
+  private static final class Transaction extends Task {
+
+    private final List<PendingWrite> writes = new ArrayList<>();
+
+    private int moves;
+
+    void add(PendingWrite write, boolean isMove) {
+      writes.add(write);
+      if (isMove) {
+        moves++;
+      }
+    }
+
+    void applyTo(TicTacToeDbService dbService) throws DbServiceException {
+      for (PendingWrite write : writes) {
+        write.applyTo(dbService);
+      }
+    }
+
+    // transactions without a move (e.g., a player joining) still count as one
+    int weight() {
+      return Math.max(1, moves);
+    }
+  }
+
+  private final class Read extends Task {
+
+    private final DbCall<?> call;
+
+    Read(DbCall<?> call) {
+      this.call = call;
+    }
+
+    void run() {
+      try {
+        done.complete(call.call(delegate));
+      } catch (DbServiceException e) {
+        done.completeExceptionally(e);
+      } catch (RuntimeException e) {
+        done.completeExceptionally(e);
+      }
+    }
+  }
+}
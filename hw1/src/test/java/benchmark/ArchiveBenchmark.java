@@ -0,0 +1,161 @@
+package benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.GameArchiver;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Fills a SQLite database with finished games and a few games in progress,
+ * then looks up the games in progress (their moves, players and board) before
+ * and after GameArchiver has moved the finished games into the archive.
+ * Reports lookup latency, the rows left in the tables games are played from,
+ * the size of the archive records, and how long restoring a game from the
+ * archive takes. Note that archiving does not shrink the database file itself;
+ * the pages it frees are reused by later games.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.ArchiveBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class ArchiveBenchmark {
+
+  private static final String DB = "bench_archive.db";
+
+  private static final int FINISHED_GAMES = 100000;
+
+  private static final int GAMES_IN_PROGRESS = 100;
+
+  private static final int LOOKUPS = 5000;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    deleteDb();
+
+    TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+    dbService.createDatabasesTables();
+    createGames(dbService);
+
+    lookUp(dbService, "hot tables, before archiving");
+    System.out.println("  " + hotRows() + " rows in games, players and moves");
+
+    long start = System.nanoTime();
+    int archived = new GameArchiver(new TicTacToeSqliteDbService(DB), 1000).archive();
+    System.out.println(String.format("archived %d games in %.1fs", archived,
+        (System.nanoTime() - start) / 1e9));
+
+    lookUp(dbService, "hot tables, after archiving");
+    System.out.println("  " + hotRows() + " rows in games, players and moves; "
+        + count("SELECT SUM(LENGTH(record)) FROM archived_games;") + " bytes of archive records");
+
+    Random random = new Random(1);
+    LatencyRecorder restores = new LatencyRecorder("restoreGameBoard, archived", LOOKUPS);
+    restores.start();
+    for (int i = 0; i < LOOKUPS; i++) {
+      int gameId = 1 + random.nextInt(FINISHED_GAMES);
+      long begin = System.nanoTime();
+      dbService.connect();
+      dbService.restoreGameBoard(gameId);
+      dbService.close();
+      restores.record(System.nanoTime() - begin);
+    }
+    restores.stop();
+    System.out.println(restores);
+    deleteDb();
+  }
+
+  /**
+   * Creates the finished games, with the games in progress spread among them
+   * and the last game in progress as the most recent game.
+   */
+  private static void createGames(TicTacToeSqliteDbService dbService) throws Exception {
+    char[][] won = { { 'X', 'O', 0 }, { 'X', 'O', 0 }, { 'X', 0, 0 } };
+    List<Move> wonMoves = Arrays.asList(new Move(PLAYER1, 0, 0), new Move(PLAYER2, 0, 1),
+        new Move(PLAYER1, 1, 0), new Move(PLAYER2, 1, 1), new Move(PLAYER1, 2, 0));
+    char[][] inProgress = { { 0, 0, 0 }, { 0, 'X', 0 }, { 0, 0, 0 } };
+    List<Move> inProgressMoves = Arrays.asList(new Move(PLAYER1, 1, 1));
+
+    int games = FINISHED_GAMES + GAMES_IN_PROGRESS;
+    Map<Integer, GameBoard> gameboards = new LinkedHashMap<>();
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    for (int gameId = 1; gameId <= games; gameId++) {
+      if (isInProgress(gameId)) {
+        gameboards.put(gameId, new GameBoard(PLAYER1, PLAYER2, true, 2, inProgress, 0, false,
+            null));
+        moves.put(gameId, inProgressMoves);
+      } else {
+        gameboards.put(gameId, new GameBoard(PLAYER1, PLAYER2, true, 2, won, 1, false, null));
+        moves.put(gameId, wonMoves);
+      }
+      if (gameboards.size() == 10000 || gameId == games) {
+        dbService.connect();
+        dbService.saveGames(gameboards, moves);
+        dbService.commit();
+        gameboards.clear();
+        moves.clear();
+      }
+    }
+  }
+
+  private static boolean isInProgress(int gameId) {
+    int games = FINISHED_GAMES + GAMES_IN_PROGRESS;
+    return gameId % (games / GAMES_IN_PROGRESS) == 0;
+  }
+
+  private static void lookUp(TicTacToeSqliteDbService dbService, String name) throws Exception {
+    int spacing = (FINISHED_GAMES + GAMES_IN_PROGRESS) / GAMES_IN_PROGRESS;
+    LatencyRecorder lookups = new LatencyRecorder(name, LOOKUPS);
+    lookups.start();
+    for (int i = 0; i < LOOKUPS; i++) {
+      int gameId = spacing * (1 + i % GAMES_IN_PROGRESS);
+      long start = System.nanoTime();
+      dbService.connect();
+      dbService.findAllPlayers(gameId);
+      dbService.findAllMoves(gameId);
+      dbService.restoreGameBoard(gameId);
+      dbService.close();
+      lookups.record(System.nanoTime() - start);
+    }
+    lookups.stop();
+    System.out.println(lookups);
+  }
+
+  private static long hotRows() throws Exception {
+    return count("SELECT (SELECT COUNT(*) FROM games) + (SELECT COUNT(*) FROM players) "
+        + "+ (SELECT COUNT(*) FROM moves);");
+  }
+
+  private static long count(String sql) throws Exception {
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB);
+        Statement statement = conn.createStatement();
+        ResultSet rs = statement.executeQuery(sql)) {
+      return rs.getLong(1);
+    }
+  }
+
+  private static void deleteDb() {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+}
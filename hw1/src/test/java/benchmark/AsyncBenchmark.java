@@ -0,0 +1,162 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.AsyncDbService;
+import util.PendingWrite;
+import util.SqliteConnectionPool;
+import util.TicTacToeDbService;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Measures what a fixed pool of request threads gets through while many games
+ * are being played at once. Bursts of moves arrive together with cheap requests
+ * that do not touch the database (like GET /gameboardstatus). With blocking
+ * persistence, a request thread is held until its move is committed, so the
+ * cheap requests wait behind the moves; with AsyncDbService the request thread
+ * hands the move to an I/O thread and is free again at once. Move latency is
+ * from arrival until the move is committed in both cases.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.AsyncBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class AsyncBenchmark {
+
+  private static final String DB = "bench_async.db";
+
+  private static final int REQUEST_THREADS = 8;
+
+  private static final int IO_THREADS = 8;
+
+  private static final int GAMES = 64;
+
+  private static final int BURSTS = 40;
+
+  private static final int MOVES_PER_BURST = 128;
+
+  // one cheap request arrives for every this many moves
+  private static final int MOVES_PER_STATUS = 4;
+
+  private static final Player PLAYER = new Player('X', 1);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    deleteDb();
+
+    TicTacToeSqliteDbService setup = new TicTacToeSqliteDbService(DB);
+    setup.createDatabasesTables();
+    setup.connect();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      setup.createNewGame(gameId);
+      setup.savePlayer(PLAYER, gameId);
+      setup.savePlayer(new Player('O', 2), gameId);
+    }
+    setup.commit();
+
+    System.out.println(REQUEST_THREADS + " request threads, " + GAMES + " games, bursts of "
+        + MOVES_PER_BURST + " moves:");
+    for (boolean async : new boolean[] {false, true, false, true}) {
+      run(async);
+    }
+    deleteDb();
+  }
+
+  private static void run(boolean async) throws Exception {
+    String mode = async ? ", async" : ", blocking";
+    LatencyRecorder moves = new LatencyRecorder("move" + mode, BURSTS * MOVES_PER_BURST);
+    LatencyRecorder status = new LatencyRecorder("status request" + mode,
+        BURSTS * MOVES_PER_BURST / MOVES_PER_STATUS);
+
+    ExecutorService requests = Executors.newFixedThreadPool(REQUEST_THREADS);
+    ThreadLocal<TicTacToeDbService> blocking =
+        ThreadLocal.withInitial(() -> new TicTacToeSqliteDbService(DB));
+    AsyncDbService asyncService = new AsyncDbService(() -> new TicTacToeSqliteDbService(DB),
+        IO_THREADS, BURSTS * MOVES_PER_BURST);
+    char[][] emptyBoard = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    GameBoard state = new GameBoard(PLAYER, null, true, 1, emptyBoard, 0, false, null);
+
+    moves.start();
+    status.start();
+    for (int burst = 0; burst < BURSTS; burst++) {
+      List<CompletableFuture<?>> done = new ArrayList<>();
+
+      for (int i = 0; i < MOVES_PER_BURST; i++) {
+        int gameId = i % GAMES + 1;
+        Move move = new Move(PLAYER, i % 3, burst % 3);
+        long arrived = System.nanoTime();
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        done.add(saved);
+
+        requests.execute(() -> {
+          try {
+            if (async) {
+              List<PendingWrite> writes = new ArrayList<>();
+              writes.add(db -> db.saveValidMove(move, gameId));
+              writes.add(db -> db.saveGameState(state, gameId));
+              asyncService.commit(gameId, writes).whenComplete((v, e) -> {
+                record(moves, arrived);
+                complete(saved, e);
+              });
+            } else {
+              TicTacToeDbService db = blocking.get();
+              db.connect();
+              db.saveValidMove(move, gameId);
+              db.saveGameState(state, gameId);
+              db.commit();
+              record(moves, arrived);
+              saved.complete(null);
+            }
+          } catch (Exception e) {
+            saved.completeExceptionally(e);
+          }
+        });
+
+        if (i % MOVES_PER_STATUS == 0) {
+          long statusArrived = System.nanoTime();
+          done.add(CompletableFuture.runAsync(() -> record(status, statusArrived), requests));
+        }
+      }
+      CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).get();
+    }
+    moves.stop();
+    status.stop();
+
+    requests.shutdown();
+    asyncService.shutdown();
+    System.out.println(moves);
+    System.out.println(status);
+  }
+
+  private static void record(LatencyRecorder recorder, long arrived) {
+    long latency = System.nanoTime() - arrived;
+    synchronized (recorder) {
+      recorder.record(latency);
+    }
+  }
+
+  private static void complete(CompletableFuture<Void> future, Throwable failure) {
+    if (failure == null) {
+      future.complete(null);
+    } else {
+      future.completeExceptionally(failure);
+    }
+  }
+
+  private static void deleteDb() {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+}
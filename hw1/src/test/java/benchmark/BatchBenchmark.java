@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Compares saving, restoring and deleting many games one call at a time with
+ * the batch operations of TicTacToeSqliteDbService. Each run handles GAMES
+ * games in a single transaction; the figures are per game.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.BatchBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class BatchBenchmark {
+
+  private static final String DB = "bench_batch.db";
+
+  private static final int GAMES = 2000;
+
+  private static final int ROUNDS = 5;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+    List<Integer> ids = new ArrayList<>();
+    Map<Integer, List<Player>> players = new LinkedHashMap<>();
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      ids.add(gameId);
+      players.put(gameId, Arrays.asList(PLAYER1, PLAYER2));
+      moves.put(gameId, Arrays.asList(new Move(PLAYER1, 0, 0), new Move(PLAYER2, 1, 1),
+          new Move(PLAYER1, 2, 0), new Move(PLAYER2, 1, 0)));
+    }
+
+    System.out.println("Time per game, " + GAMES + " games per transaction:");
+    for (boolean batch : new boolean[] {false, true}) {
+      String mode = batch ? ", batch" : ", one at a time";
+      LatencyRecorder save = new LatencyRecorder("save" + mode, ROUNDS);
+      LatencyRecorder restore = new LatencyRecorder("restore" + mode, ROUNDS);
+      LatencyRecorder delete = new LatencyRecorder("delete" + mode, ROUNDS);
+
+      // the first round warms up and is not recorded
+      for (int round = 0; round <= ROUNDS; round++) {
+        deleteDb();
+        TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+        dbService.createDatabasesTables();
+        dbService.connect();
+        for (int gameId : ids) {
+          dbService.createNewGame(gameId);
+        }
+        dbService.commit();
+
+        long start = System.nanoTime();
+        dbService.connect();
+        if (batch) {
+          dbService.savePlayers(players);
+          dbService.saveMoves(moves);
+        } else {
+          for (int gameId : ids) {
+            for (Player player : players.get(gameId)) {
+              dbService.savePlayer(player, gameId);
+            }
+            for (Move move : moves.get(gameId)) {
+              dbService.saveValidMove(move, gameId);
+            }
+          }
+        }
+        dbService.commit();
+        long saved = System.nanoTime();
+
+        dbService.connect();
+        Map<Integer, GenericGameBoard> gameboards = new LinkedHashMap<>();
+        if (batch) {
+          gameboards = dbService.restoreGameBoards(ids);
+        } else {
+          for (int gameId : ids) {
+            gameboards.put(gameId, dbService.restoreGameBoard(gameId));
+          }
+        }
+        dbService.close();
+        long restored = System.nanoTime();
+        check(gameboards);
+
+        dbService.connect();
+        if (batch) {
+          dbService.deleteGames(ids);
+        } else {
+          for (int gameId : ids) {
+            dbService.deleteGame(gameId, false);
+          }
+        }
+        dbService.commit();
+        long deleted = System.nanoTime();
+
+        if (round > 0) {
+          save.record((saved - start) / GAMES);
+          restore.record((restored - saved) / GAMES);
+          delete.record((deleted - restored) / GAMES);
+        }
+      }
+
+      print(save);
+      print(restore);
+      print(delete);
+    }
+    deleteDb();
+  }
+
+  /**
+   * Prints the median time per game over the rounds, and the games per second
+   * it works out to.
+   */
+  private static void print(LatencyRecorder recorder) {
+    double micros = recorder.percentileMicros(50);
+    System.out.println(String.format("%-32s %8.1fus per game  %10.0f games/s",
+        recorder.getName(), micros, 1e6 / micros));
+  }
+
+  private static void check(Map<Integer, GenericGameBoard> gameboards) {
+    if (gameboards.size() != GAMES
+        || gameboards.get(GAMES).getBoardState()[1][1] != PLAYER2.getType()) {
+      throw new IllegalStateException("Restored the wrong game boards.");
+    }
+  }
+
+  private static void deleteDb() {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+}
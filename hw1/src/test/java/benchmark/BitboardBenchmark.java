@@ -0,0 +1,94 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import models.BitboardGameBoard;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+
+/**
+ * Plays random bots against each other on GameBoard and on BitboardGameBoard
+ * and reports how long a whole game takes on each. Every turn the bot to move
+ * lists the free cells with isValidMove(), picks one, and the move goes
+ * through checkMove() and playMove(); the game ends once isFull() is true or
+ * there is a winner. Nothing is saved, so only the rule checks are measured.
+ * Both boards see the same sequence of random numbers, and each round is run
+ * a few times first so the JIT has compiled both before the measured round.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.BitboardBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class BitboardBenchmark {
+
+  private static final int GAMES = 1000000;
+
+  private static final int WARMUP_ROUNDS = 3;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    Supplier<GenericGameBoard> gameboards = () -> new GameBoard(PLAYER1, PLAYER2, true, 1,
+        new char[3][3], 0, false, null);
+    Supplier<GenericGameBoard> bitboards = () -> new BitboardGameBoard(PLAYER1, PLAYER2);
+
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      selfPlay("GameBoard", gameboards);
+      selfPlay("BitboardGameBoard", bitboards);
+    }
+    LatencyRecorder gameboard = selfPlay("GameBoard, one game", gameboards);
+    LatencyRecorder bitboard = selfPlay("BitboardGameBoard, one game", bitboards);
+
+    System.out.println(gameboard);
+    System.out.println(bitboard);
+    System.out.println(String.format("speed-up (p50): %.1fx",
+        gameboard.percentileMicros(50) / bitboard.percentileMicros(50)));
+  }
+
+  private static LatencyRecorder selfPlay(String name, Supplier<GenericGameBoard> boards) {
+    Random random = new Random(1);
+    Move[] free = new Move[9];
+    int wins = 0;
+
+    LatencyRecorder games = new LatencyRecorder(name, GAMES);
+    games.start();
+    for (int game = 0; game < GAMES; game++) {
+      long start = System.nanoTime();
+      GenericGameBoard board = boards.get();
+      while (board.getWinner() == 0 && !board.isFull()) {
+        Player player = board.getTurn() == 1 ? PLAYER1 : PLAYER2;
+        int count = 0;
+        for (int i = 0; i < 3; i++) {
+          for (int j = 0; j < 3; j++) {
+            Move move = new Move(player, i, j);
+            if (board.isValidMove(move)) {
+              free[count++] = move;
+            }
+          }
+        }
+        Move move = free[random.nextInt(count)];
+        if (board.checkMove(move) != null) {
+          throw new IllegalStateException("The bot chose a move that may not be played.");
+        }
+        board.playMove(move);
+      }
+      games.record(System.nanoTime() - start);
+      wins += board.getWinner() != 0 ? 1 : 0;
+    }
+    games.stop();
+
+    // keeps the games from being optimized away, and shows both played the same
+    if (wins == 0) {
+      System.out.println(name + ": no game was won");
+    }
+    return games;
+  }
+}
@@ -0,0 +1,166 @@
+package benchmark;
+
+import java.io.File;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import util.GameHistoryWriter;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Exports databases of growing size as NDJSON, reading one page of games per
+ * query (TicTacToeSqliteDbService.exportGames()) or each game with its own
+ * queries, the way the TicTacToeDbService default does. Reports the time per
+ * game and the most heap still in use after a garbage collection during the
+ * export, which should stay flat as the number of games grows. Run with a
+ * small heap (e.g. -Xmx32m) so that collections happen during the export.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.ExportBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class ExportBenchmark {
+
+  private static final String DB = "bench_export.db";
+
+  private static final int[] GAME_COUNTS = { 1000, 10000, 100000 };
+
+  private static final int ROUNDS = 3;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+    for (int games : GAME_COUNTS) {
+      deleteDb();
+      TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+      createGames(dbService, games);
+
+      System.out.println(games + " games:");
+      for (boolean paged : new boolean[] {false, true}) {
+        String mode = paged ? "paged" : "per game";
+        LatencyRecorder export = new LatencyRecorder("export, " + mode, ROUNDS);
+        long peakHeap = 0;
+
+        // the first round warms up and is not recorded
+        for (int round = 0; round <= ROUNDS; round++) {
+          HeapSampler heap = new HeapSampler();
+          heap.start();
+          long start = System.nanoTime();
+
+          GameHistoryWriter out = new GameHistoryWriter(Writer.nullWriter());
+          dbService.connect();
+          int written = paged ? dbService.exportGames(1, Integer.MAX_VALUE, out)
+              : exportPerGame(dbService, out);
+          dbService.close();
+          out.close();
+
+          long elapsed = System.nanoTime() - start;
+          heap.interrupt();
+          heap.join();
+          if (written != games) {
+            throw new IllegalStateException("exported " + written + " of " + games + " games");
+          }
+          if (round > 0) {
+            export.record(elapsed / games);
+            peakHeap = Math.max(peakHeap, heap.peak);
+          }
+        }
+        double micros = export.percentileMicros(50);
+        System.out.println(String.format("%-32s %8.1fus per game  %10.0f games/s  "
+            + "live heap %6.1fMB", export.getName(), micros, 1e6 / micros, peakHeap / 1e6));
+      }
+    }
+    deleteDb();
+  }
+
+  /**
+   * Exports every game with the queries the TicTacToeDbService default uses.
+   */
+  private static int exportPerGame(TicTacToeSqliteDbService dbService, GameHistoryWriter out)
+      throws Exception {
+    int lastGameId = dbService.findMostRecentGameId();
+    for (int gameId = 1; gameId <= lastGameId; gameId++) {
+      List<Player> players = dbService.findAllPlayers(gameId);
+      GenericGameBoard gameboard = dbService.restoreGameBoard(gameId);
+      out.writeGame(gameId, players, dbService.findAllMoves(gameId), gameboard.getWinner(),
+          gameboard.isDraw());
+    }
+    return out.getGamesWritten();
+  }
+
+  private static void createGames(TicTacToeSqliteDbService dbService, int games)
+      throws Exception {
+    dbService.createDatabasesTables();
+    // a thousand games per transaction, so that the small heap is enough
+    for (int first = 1; first <= games; first += 1000) {
+      Map<Integer, List<Player>> players = new LinkedHashMap<>();
+      Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+      dbService.connect();
+      for (int gameId = first; gameId < first + 1000 && gameId <= games; gameId++) {
+        dbService.createNewGame(gameId);
+        players.put(gameId, Arrays.asList(PLAYER1, PLAYER2));
+        moves.put(gameId, Arrays.asList(new Move(PLAYER1, 0, 0), new Move(PLAYER2, 1, 1),
+            new Move(PLAYER1, 2, 0), new Move(PLAYER2, 1, 0), new Move(PLAYER1, 1, 2)));
+      }
+      dbService.savePlayers(players);
+      dbService.saveMoves(moves);
+      dbService.commit();
+    }
+  }
+
+  private static void deleteDb() {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+
+  /**
+   * Samples the heap left in use by the most recent garbage collection every
+   * millisecond until interrupted, after collecting garbage once so that
+   * earlier runs are not counted.
+   */
+  private static final class HeapSampler extends Thread {
+
+    private volatile long peak;
+
+    HeapSampler() {
+      System.gc();
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        long live = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+          if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+            live += pool.getCollectionUsage().getUsed();
+          }
+        }
+        peak = Math.max(peak, live);
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import models.Move;
+import models.Player;
+import util.GameHistoryWriter;
+import util.GameImporter;
+import util.ImportReport;
+import util.RecordedGame;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Loads a file of recorded games into an empty SQLite database with
+ * GameImporter, replaying on one thread and on one thread per core, and
+ * compares it with saving the same games one call and one commit at a time,
+ * the way the game itself saves them. Reports rows (games, players and moves)
+ * written per second.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.ImportBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class ImportBenchmark {
+
+  private static final String DB = "bench_import.db";
+
+  private static final int GAMES = 200000;
+
+  // saving one call at a time is far slower, so it gets fewer games
+  private static final int GAMES_ONE_AT_A_TIME = 2000;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    String file = gameFile(GAMES);
+
+    deleteDb();
+    TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+    dbService.createDatabasesTables();
+    long rows = 0;
+    long start = System.nanoTime();
+    try (BufferedReader in = new BufferedReader(new StringReader(file))) {
+      String line;
+      for (int gameId = 1; gameId <= GAMES_ONE_AT_A_TIME; gameId++) {
+        line = in.readLine();
+        RecordedGame game = RecordedGame.parse(line);
+        GameImporter.replay(game);
+        dbService.connect();
+        dbService.createNewGame(gameId);
+        dbService.savePlayer(PLAYER1, gameId);
+        dbService.savePlayer(PLAYER2, gameId);
+        for (Move move : game.getMoves()) {
+          dbService.saveValidMove(move, gameId);
+        }
+        dbService.commit();
+        rows += 3 + game.getMoves().size();
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    print("one call at a time", rows / seconds, GAMES_ONE_AT_A_TIME / seconds);
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads : cores == 1 ? new int[] {1} : new int[] {1, cores}) {
+      deleteDb();
+      dbService = new TicTacToeSqliteDbService(DB);
+      dbService.createDatabasesTables();
+      ImportReport report = new GameImporter(dbService, threads, 10000)
+          .importGames(new BufferedReader(new StringReader(file)));
+      if (report.getGamesImported() != GAMES) {
+        throw new IllegalStateException("Imported " + report.getGamesImported() + " games.");
+      }
+      print("GameImporter, " + threads + " threads", report.getRowsPerSecond(),
+          report.getGamesPerSecond());
+    }
+    deleteDb();
+  }
+
+  private static void print(String name, double rowsPerSecond, double gamesPerSecond) {
+    System.out.println(String.format("%-32s %10.0f rows/s  %10.0f games/s", name,
+        rowsPerSecond, gamesPerSecond));
+  }
+
+  /**
+   * Returns a game history file of wins, draws and games in progress.
+   */
+  private static String gameFile(int games) throws Exception {
+    List<Move> win = Arrays.asList(new Move(PLAYER1, 0, 0), new Move(PLAYER2, 1, 0),
+        new Move(PLAYER1, 0, 1), new Move(PLAYER2, 1, 1), new Move(PLAYER1, 0, 2));
+    List<Move> draw = Arrays.asList(new Move(PLAYER1, 0, 0), new Move(PLAYER2, 1, 1),
+        new Move(PLAYER1, 2, 2), new Move(PLAYER2, 0, 1), new Move(PLAYER1, 2, 1),
+        new Move(PLAYER2, 2, 0), new Move(PLAYER1, 0, 2), new Move(PLAYER2, 1, 2),
+        new Move(PLAYER1, 1, 0));
+    List<Move> inProgress = Arrays.asList(new Move(PLAYER1, 1, 1), new Move(PLAYER2, 0, 0));
+    List<Player> players = Arrays.asList(PLAYER1, PLAYER2);
+
+    StringWriter out = new StringWriter();
+    GameHistoryWriter writer = new GameHistoryWriter(out);
+    for (int gameId = 1; gameId <= games; gameId++) {
+      if (gameId % 3 == 0) {
+        writer.writeGame(gameId, players, win, 1, false);
+      } else if (gameId % 3 == 1) {
+        writer.writeGame(gameId, players, draw, 0, true);
+      } else {
+        writer.writeGame(gameId, players, inProgress, 0, false);
+      }
+    }
+    writer.close();
+    return out.toString();
+  }
+
+  private static void deleteDb() {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Collects per-operation latencies for the benchmarks in this package and
+ * summarizes them as throughput and percentiles. Benchmarks are plain main()
+ * programs so that they are not picked up by surefire during `mvn test`.
+ */
+public class LatencyRecorder {
+
+  private final String name;
+
+  private long[] samples;
+
+  private int count;
+
+  private long startNanos;
+
+  private long elapsedNanos;
+
+  /**
+   * Constructor for a recorder.
+   *
+   * @param name     label printed with the summary
+   * @param expected number of samples expected; the recorder grows if exceeded
+   */
+  public LatencyRecorder(String name, int expected) {
+    this.name = name;
+    this.samples = new long[Math.max(expected, 16)];
+  }
+
+  /**
+   * Marks the start of the measured run, used for the throughput figure.
+   */
+  public void start() {
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Marks the end of the measured run.
+   */
+  public void stop() {
+    elapsedNanos = System.nanoTime() - startNanos;
+  }
+
+  /**
+   * Records the latency of a single operation.
+   *
+   * @param nanos duration of the operation in nanoseconds
+   */
+  public void record(long nanos) {
+    if (count == samples.length) {
+      samples = Arrays.copyOf(samples, count * 2);
+    }
+    samples[count++] = nanos;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the latency at the given percentile, in microseconds.
+   *
+   * @param percentile value between 0 and 100
+   * @return latency in microseconds
+   */
+  public double percentileMicros(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+    return sorted[Math.max(0, Math.min(index, count - 1))] / 1e3;
+  }
+
+  /**
+   * Returns the mean latency, in microseconds.
+   *
+   * @return mean latency in microseconds
+   */
+  public double meanMicros() {
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      total += samples[i];
+    }
+    return count == 0 ? 0 : total / 1e3 / count;
+  }
+
+  /**
+   * Returns operations per second over the measured run.
+   *
+   * @return throughput in operations per second
+   */
+  public double opsPerSecond() {
+    return elapsedNanos == 0 ? 0 : count / (elapsedNanos / 1e9);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%-32s n=%-7d %10.0f ops/s  mean=%9.1fus  p50=%9.1fus  p99=%9.1fus",
+        name, count, opsPerSecond(), meanMicros(), percentileMicros(50), percentileMicros(99));
+  }
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.DbServiceException;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Has several threads commit moves to one SQLite database as fast as they can,
+ * each through its own connection, so that writers keep running into each
+ * other's locks. Reports commit latency, how many commits failed, and the lock
+ * metrics of the pool: how often statements were held up, retried and given up
+ * on.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.LockContentionBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class LockContentionBenchmark {
+
+  private static final String DB = "bench_lock.db";
+
+  private static final int WRITERS = 8;
+
+  private static final int COMMITS_PER_WRITER = 250;
+
+  private static final Player PLAYER = new Player('X', 1);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "off");
+    deleteDb();
+
+    TicTacToeSqliteDbService setup = new TicTacToeSqliteDbService(DB);
+    setup.createDatabasesTables();
+    setup.connect();
+    for (int gameId = 1; gameId <= WRITERS; gameId++) {
+      setup.createNewGame(gameId);
+      setup.savePlayer(PLAYER, gameId);
+      setup.savePlayer(new Player('O', 2), gameId);
+    }
+    setup.commit();
+
+    LatencyRecorder commits = new LatencyRecorder("commit, " + WRITERS + " writers",
+        WRITERS * COMMITS_PER_WRITER);
+    AtomicInteger failed = new AtomicInteger();
+    char[][] emptyBoard = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    GameBoard state = new GameBoard(PLAYER, null, true, 1, emptyBoard, 0, false, null);
+    ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+    List<Future<?>> done = new ArrayList<>();
+
+    commits.start();
+    for (int writer = 1; writer <= WRITERS; writer++) {
+      int gameId = writer;
+      done.add(writers.submit(() -> {
+        TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+        for (int i = 0; i < COMMITS_PER_WRITER; i++) {
+          long start = System.nanoTime();
+          try {
+            dbService.connect();
+            dbService.saveValidMove(new Move(PLAYER, i % 3, i / 3 % 3), gameId);
+            dbService.saveGameState(state, gameId);
+            dbService.commit();
+          } catch (DbServiceException e) {
+            failed.incrementAndGet();
+          }
+          long latency = System.nanoTime() - start;
+          synchronized (commits) {
+            commits.record(latency);
+          }
+        }
+      }));
+    }
+    for (Future<?> writer : done) {
+      writer.get();
+    }
+    commits.stop();
+    writers.shutdown();
+
+    System.out.println(commits);
+    System.out.println("failed commits: " + failed.get());
+    System.out.println(setup.getPoolMetrics().getLocks());
+    deleteDb();
+  }
+
+  private static void deleteDb() {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+}
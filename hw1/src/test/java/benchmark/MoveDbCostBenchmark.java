@@ -0,0 +1,166 @@
+package benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.DbServiceException;
+import util.SqliteConnectionPool;
+import util.TicTacToeDbService;
+import util.TicTacToeJournalDbService;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Measures the database cost of persisting one move (the move row plus the game
+ * state) and committing it. The "concatenated" run replays the statements the
+ * service used to build by string concatenation, each through a new Statement;
+ * the "prepared" run goes through TicTacToeSqliteDbService, which binds
+ * parameters on statements cached per connection and writes the whole game
+ * state in a single UPDATE. The "journal" runs persist the same move through
+ * TicTacToeJournalDbService, forcing the journal to disk either on every commit
+ * or every 100ms.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.MoveDbCostBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class MoveDbCostBenchmark {
+
+  private static final String DB = "bench_moves.db";
+
+  private static final String JOURNAL = "bench_moves.journal";
+
+  private static final int WARMUP = 500;
+
+  private static final int MOVES = 3000;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    // keep statement logging out of the measurements
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    new File(DB).delete();
+
+    TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+    dbService.createDatabasesTables();
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.savePlayer(new Player('X', 1), 1);
+    dbService.savePlayer(new Player('O', 2), 1);
+    dbService.commit();
+
+    runConcatenated(WARMUP, new LatencyRecorder("warmup", WARMUP));
+    runPrepared(dbService, WARMUP, new LatencyRecorder("warmup", WARMUP));
+
+    LatencyRecorder before = new LatencyRecorder("concatenated Statement", MOVES);
+    runConcatenated(MOVES, before);
+
+    LatencyRecorder after = new LatencyRecorder("cached single-UPDATE state", MOVES);
+    runPrepared(dbService, MOVES, after);
+
+    LatencyRecorder journalSynced = new LatencyRecorder("journal, fsync every commit", MOVES);
+    runJournal(0, journalSynced);
+
+    LatencyRecorder journalPeriodic = new LatencyRecorder("journal, fsync every 100ms", MOVES);
+    runJournal(100, journalPeriodic);
+
+    System.out.println("Per-move DB cost (INSERT move + game state + commit):");
+    System.out.println(before);
+    System.out.println(after);
+    System.out.println(journalSynced);
+    System.out.println(journalPeriodic);
+
+    SqliteConnectionPool.shutdownAll();
+    new File(DB).delete();
+  }
+
+  /**
+   * Persists moves the way the service did before statements were cached.
+   */
+  private static void runConcatenated(int moves, LatencyRecorder recorder) throws SQLException {
+    SqliteConnectionPool pool = SqliteConnectionPool.forDatabase(DB);
+    GameBoard gb = boardForState();
+    int gameId = 1;
+
+    recorder.start();
+    for (int i = 0; i < moves; i++) {
+      long start = System.nanoTime();
+      Connection conn = pool.acquire();
+      conn.setAutoCommit(false);
+
+      execute(conn, "INSERT INTO moves (game_id, player_no, x_coord, y_coord) VALUES ("
+          + gameId + ", 1, " + (i % 3) + ", " + (i / 3 % 3) + ");");
+      execute(conn, "UPDATE games\nSET has_started = " + gb.isGameStarted() + " \n"
+          + "WHERE id = " + gameId + ";");
+      execute(conn, "UPDATE games\nSET winner_id = " + gb.getWinner() + " \n"
+          + "WHERE id = " + gameId + ";");
+      execute(conn, "UPDATE games\nSET is_draw = " + gb.isDraw() + " \n"
+          + "WHERE id = " + gameId + ";");
+      execute(conn, "UPDATE games\nSET turn = " + gb.getTurn() + " \n"
+          + "WHERE id = " + gameId + ";");
+
+      conn.commit();
+      pool.release(conn);
+      recorder.record(System.nanoTime() - start);
+    }
+    recorder.stop();
+  }
+
+  /**
+   * Persists moves through the service's cached prepared statements.
+   */
+  private static void runPrepared(TicTacToeDbService dbService, int moves,
+      LatencyRecorder recorder) throws DbServiceException {
+    GameBoard gb = boardForState();
+    Player player = new Player('X', 1);
+
+    recorder.start();
+    for (int i = 0; i < moves; i++) {
+      long start = System.nanoTime();
+      dbService.connect();
+      dbService.saveValidMove(new Move(player, i % 3, i / 3 % 3), 1);
+      dbService.saveGameState(gb, 1);
+      dbService.commit();
+      recorder.record(System.nanoTime() - start);
+    }
+    recorder.stop();
+  }
+
+  /**
+   * Persists moves through a fresh journal.
+   */
+  private static void runJournal(long fsyncMillis, LatencyRecorder recorder)
+      throws DbServiceException {
+    new File(JOURNAL).delete();
+    TicTacToeJournalDbService journal = new TicTacToeJournalDbService(JOURNAL, fsyncMillis);
+    journal.connect();
+    journal.createNewGame(1);
+    journal.savePlayer(new Player('X', 1), 1);
+    journal.savePlayer(new Player('O', 2), 1);
+    journal.commit();
+
+    runPrepared(journal, WARMUP, new LatencyRecorder("warmup", WARMUP));
+    runPrepared(journal, MOVES, recorder);
+
+    journal.shutdown();
+    new File(JOURNAL).delete();
+  }
+
+  private static void execute(Connection conn, String sql) throws SQLException {
+    Statement statement = conn.createStatement();
+    statement.executeUpdate(sql);
+    statement.close();
+  }
+
+  private static GameBoard boardForState() {
+    char[][] emptyBoard = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    return new GameBoard(new Player('X', 1), new Player('O', 2), true, 1, emptyBoard, 0,
+        false, null);
+  }
+}
@@ -0,0 +1,177 @@
+package benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Random;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Measures the cost of looking up the moves of one game as the moves table
+ * grows. The "single-game" runs use the tables as they were before the
+ * multi-game schema: players keyed by a table-wide id and no index on
+ * moves.game_id, so every lookup scans the whole moves table. The "multi-game"
+ * runs go through TicTacToeSqliteDbService.findAllMoves(), which reads the game's
+ * moves from the covering moves_by_game index and should stay flat.
+ *
+ * <p>Moves are inserted round-robin across games, as they would be by games
+ * played side by side, so a game's moves are spread over the whole table.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.MoveLookupBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class MoveLookupBenchmark {
+
+  private static final String DB = "bench_lookup.db";
+
+  private static final int[] GAME_COUNTS = {1000, 10000, 100000};
+
+  private static final int MOVES_PER_GAME = 9;
+
+  private static final int LOOKUPS = 300;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if a database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+    System.out.println("Latency of looking up one game's " + MOVES_PER_GAME + " moves:");
+    for (int games : GAME_COUNTS) {
+      System.out.println(singleGame(games));
+      System.out.println(multiGame(games));
+    }
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+  }
+
+  private static LatencyRecorder singleGame(int games) throws Exception {
+    new File(DB).delete();
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB)) {
+      try (Statement statement = conn.createStatement()) {
+        statement.executeUpdate("CREATE TABLE games (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "has_started INTEGER, winner_id INTEGER, is_draw INTEGER, turn INTEGER);");
+        statement.executeUpdate("CREATE TABLE players (id INTEGER PRIMARY KEY, "
+            + "player_type TEXT NOT NULL, game_id INTEGER NOT NULL);");
+        statement.executeUpdate("CREATE TABLE moves (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "game_id INTEGER NOT NULL, player_id INTEGER NOT NULL, x_coord INT NOT NULL, "
+            + "y_coord INT NOT NULL);");
+        // player ids were unique across the table, so only one game had players
+        statement.executeUpdate("INSERT INTO players VALUES (1, 'X', 1), (2, 'O', 1);");
+      }
+      conn.setAutoCommit(false);
+      insertGames(conn, games);
+      populate(conn, games, "player_id");
+    }
+
+    LatencyRecorder recorder = new LatencyRecorder(
+        String.format("single-game, %,d moves", games * MOVES_PER_GAME), LOOKUPS);
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB)) {
+      PreparedStatement statement = conn.prepareStatement(""
+          + "SELECT moves.*, players.player_type FROM moves "
+          + "LEFT JOIN players ON moves.player_id = players.id "
+          + "WHERE moves.game_id = ?;");
+      Random random = new Random(42);
+      recorder.start();
+      for (int i = 0; i < LOOKUPS; i++) {
+        long start = System.nanoTime();
+        statement.setInt(1, 1 + random.nextInt(games));
+        int rows = 0;
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            rows++;
+          }
+        }
+        recorder.record(System.nanoTime() - start);
+        check(rows);
+      }
+      recorder.stop();
+      statement.close();
+    }
+    return recorder;
+  }
+
+  private static LatencyRecorder multiGame(int games) throws Exception {
+    SqliteConnectionPool.forDatabase(DB).shutdown();
+    new File(DB).delete();
+    TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+    dbService.createDatabasesTables();
+
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DB)) {
+      conn.setAutoCommit(false);
+      try (PreparedStatement players = conn.prepareStatement(
+          "INSERT INTO players (game_id, player_no, player_type) VALUES (?, ?, ?);")) {
+        insertGames(conn, games);
+        for (int gameId = 1; gameId <= games; gameId++) {
+          for (int playerNo = 1; playerNo <= 2; playerNo++) {
+            players.setInt(1, gameId);
+            players.setInt(2, playerNo);
+            players.setString(3, playerNo == 1 ? "X" : "O");
+            players.addBatch();
+          }
+        }
+        players.executeBatch();
+      }
+      conn.commit();
+      populate(conn, games, "player_no");
+    }
+
+    LatencyRecorder recorder = new LatencyRecorder(
+        String.format("multi-game, %,d moves", games * MOVES_PER_GAME), LOOKUPS);
+    Random random = new Random(42);
+    recorder.start();
+    for (int i = 0; i < LOOKUPS; i++) {
+      long start = System.nanoTime();
+      dbService.connect();
+      int rows = dbService.findAllMoves(1 + random.nextInt(games)).size();
+      dbService.close();
+      recorder.record(System.nanoTime() - start);
+      check(rows);
+    }
+    recorder.stop();
+    return recorder;
+  }
+
+  private static void insertGames(Connection conn, int games) throws Exception {
+    try (PreparedStatement statement = conn.prepareStatement(
+        "INSERT INTO games (id, has_started, winner_id, is_draw, turn) VALUES (?, 1, 0, 0, 1);")) {
+      for (int gameId = 1; gameId <= games; gameId++) {
+        statement.setInt(1, gameId);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+
+  private static void populate(Connection conn, int games, String playerColumn)
+      throws Exception {
+    conn.setAutoCommit(false);
+    try (PreparedStatement statement = conn.prepareStatement("INSERT INTO moves "
+        + "(game_id, " + playerColumn + ", x_coord, y_coord) VALUES (?, ?, ?, ?);")) {
+      for (int move = 0; move < MOVES_PER_GAME; move++) {
+        for (int gameId = 1; gameId <= games; gameId++) {
+          statement.setInt(1, gameId);
+          statement.setInt(2, 1 + move % 2);
+          statement.setInt(3, move / 3);
+          statement.setInt(4, move % 3);
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+    }
+    conn.commit();
+  }
+
+  private static void check(int rows) {
+    if (rows != MOVES_PER_GAME) {
+      throw new IllegalStateException("Expected " + MOVES_PER_GAME + " moves, found " + rows);
+    }
+  }
+}
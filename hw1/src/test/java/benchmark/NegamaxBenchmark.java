@@ -0,0 +1,114 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import models.BitboardGameBoard;
+import models.Move;
+import models.NegamaxEngine;
+import models.Player;
+
+/**
+ * Measures how long NegamaxEngine takes to choose a move on a 3x3 board. A bot
+ * playing random moves as player 1 plays against the engine as player 2, and
+ * every call to chooseMove() is timed. The first move of the first engine
+ * builds the PositionTable; after that, every move is one lookup in it. Games
+ * are then played on several threads at once, sharing one engine as
+ * concurrent bot games on a server would.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.NegamaxBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class NegamaxBenchmark {
+
+  private static final int GAMES = 200000;
+
+  private static final int THREADS = 8;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if a thread playing games failed
+   */
+  public static void main(String[] args) throws Exception {
+    NegamaxEngine engine = new NegamaxEngine(3, 3, 3, 9, 16);
+    BitboardGameBoard opening = new BitboardGameBoard(PLAYER1, PLAYER2);
+    opening.playMove(new Move(PLAYER1, 0, 0));
+    long start = System.nanoTime();
+    engine.chooseMove(opening);
+    System.out.println(String.format("first move, building the position table: %.1f us",
+        (System.nanoTime() - start) / 1000.0));
+
+    // warms up the JIT before the measured runs
+    play(engine, "warm-up", GAMES, new Random(0));
+
+    System.out.println(play(engine, "chooseMove, 1 thread", GAMES, new Random(1)));
+
+    ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+    List<Future<LatencyRecorder>> done = new ArrayList<>();
+    long concurrentStart = System.nanoTime();
+    for (int thread = 0; thread < THREADS; thread++) {
+      Random random = new Random(2 + thread);
+      done.add(threads.submit(() -> play(engine, "chooseMove, " + THREADS + " threads",
+          GAMES, random)));
+    }
+    int moves = 0;
+    for (Future<LatencyRecorder> thread : done) {
+      LatencyRecorder recorder = thread.get();
+      moves += recorder.getCount();
+      if (thread == done.get(0)) {
+        System.out.println(recorder);
+      }
+    }
+    threads.shutdown();
+    double seconds = (System.nanoTime() - concurrentStart) / 1e9;
+    System.out.println(String.format("%d threads: %.0f moves/s in total", THREADS,
+        moves / seconds));
+  }
+
+  private static LatencyRecorder play(NegamaxEngine engine, String name, int games,
+      Random random) {
+    LatencyRecorder recorder = new LatencyRecorder(name, games * 4);
+    Move[] free = new Move[9];
+    int engineLosses = 0;
+
+    recorder.start();
+    for (int game = 0; game < games; game++) {
+      BitboardGameBoard board = new BitboardGameBoard(PLAYER1, PLAYER2);
+      while (board.getWinner() == 0 && !board.isFull()) {
+        if (board.getTurn() == 2) {
+          long start = System.nanoTime();
+          Move move = engine.chooseMove(board);
+          recorder.record(System.nanoTime() - start);
+          board.playMove(move);
+          continue;
+        }
+        int count = 0;
+        for (int i = 0; i < 3; i++) {
+          for (int j = 0; j < 3; j++) {
+            Move move = new Move(PLAYER1, i, j);
+            if (board.isValidMove(move)) {
+              free[count++] = move;
+            }
+          }
+        }
+        board.playMove(free[random.nextInt(count)]);
+      }
+      engineLosses += board.getWinner() == 1 ? 1 : 0;
+    }
+    recorder.stop();
+
+    if (engineLosses != 0) {
+      System.out.println(name + ": the engine lost " + engineLosses + " games");
+    }
+    return recorder;
+  }
+}
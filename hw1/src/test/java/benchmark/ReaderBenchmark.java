@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import models.Move;
+import models.Player;
+import util.DbServiceException;
+import util.PoolMetrics;
+import util.SqliteConnectionPool;
+import util.SqliteProfile;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Polls a game's board, the way a client waiting for its turn does, while a
+ * writer keeps a transaction open on the database almost all the time: each of
+ * its transactions saves a move, holds on for a couple of milliseconds (as a
+ * request handler does between its writes) and commits. Reports read latency
+ * under each SQLite profile, and the utilization of the pools of writing and
+ * read-only connections.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.ReaderBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class ReaderBenchmark {
+
+  private static final int READS = 2000;
+
+  private static final long TRANSACTION_MILLIS = 2;
+
+  private static final Player PLAYER1 = new Player('X', 1);
+
+  private static final Player PLAYER2 = new Player('O', 2);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "off");
+
+    for (SqliteProfile profile : new SqliteProfile[] {SqliteProfile.DURABLE,
+        SqliteProfile.BALANCED}) {
+      String db = "bench_reader_" + profile.name().toLowerCase() + ".db";
+      deleteDb(db);
+      SqliteConnectionPool.forDatabase(db, profile);
+
+      TicTacToeSqliteDbService setup = new TicTacToeSqliteDbService(db);
+      setup.createDatabasesTables();
+      setup.connect();
+      setup.createNewGame(1);
+      setup.savePlayer(PLAYER1, 1);
+      setup.savePlayer(PLAYER2, 1);
+      setup.commit();
+
+      AtomicBoolean done = new AtomicBoolean();
+      Thread writer = new Thread(() -> {
+        TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(db);
+        for (int i = 0; !done.get(); i++) {
+          try {
+            dbService.connect();
+            dbService.saveValidMove(new Move(PLAYER1, i % 3, i / 3 % 3), 1);
+            Thread.sleep(TRANSACTION_MILLIS);
+            dbService.commit();
+          } catch (DbServiceException | InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+      writer.start();
+
+      TicTacToeSqliteDbService reader = new TicTacToeSqliteDbService(db);
+      LatencyRecorder reads = new LatencyRecorder("restoreGameBoard, " + profile, READS);
+      reads.start();
+      for (int i = 0; i < READS; i++) {
+        long start = System.nanoTime();
+        reader.connect();
+        reader.restoreGameBoard(1);
+        reader.close();
+        reads.record(System.nanoTime() - start);
+      }
+      reads.stop();
+      done.set(true);
+      writer.join();
+
+      PoolMetrics metrics = setup.getPoolMetrics();
+      System.out.println(reads);
+      System.out.println(String.format("  writers in use %.2f, readers in use %.2f, "
+          + "reader lock waits %d", metrics.getAverageInUse(),
+          metrics.getReaders().getAverageInUse(), metrics.getReaders().getLocks().getLockWaits()));
+      deleteDb(db);
+    }
+  }
+
+  private static void deleteDb(String db) {
+    SqliteConnectionPool.forDatabase(db).shutdown();
+    new File(db).delete();
+    new File(db + "-wal").delete();
+    new File(db + "-shm").delete();
+  }
+}
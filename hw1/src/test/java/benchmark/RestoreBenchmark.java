@@ -0,0 +1,169 @@
+package benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Measures restoring the most recent game, as done on startup. The "separate
+ * queries" runs replay the queries the service used to issue one after the
+ * other (the most recent id, the snapshot, then the players and the moves),
+ * each on its own statement; the "single query" runs go through
+ * TicTacToeSqliteDbService.restoreMostRecentGameBoard(). Both are measured for
+ * a game with a snapshot and for one saved before snapshots existed, which has
+ * to be replayed from its moves.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.RestoreBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class RestoreBenchmark {
+
+  private static final String DB = "bench_restore.db";
+
+  private static final int WARMUP = 500;
+
+  private static final int RESTORES = 5000;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    new File(DB).delete();
+
+    TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(DB);
+    dbService.createDatabasesTables();
+    Player player1 = new Player('X', 1);
+    Player player2 = new Player('O', 2);
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.savePlayer(player1, 1);
+    dbService.savePlayer(player2, 1);
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.saveValidMove(new Move(player1, 2, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 0), 1);
+    dbService.commit();
+
+    System.out.println("Latency of restoring the most recent game:");
+    for (boolean snapshot : new boolean[] {true, false}) {
+      if (!snapshot) {
+        execute("UPDATE games SET snapshot = NULL WHERE id = 1;");
+      }
+      String game = snapshot ? ", snapshot" : ", replayed";
+
+      runSeparate(new LatencyRecorder("warmup", WARMUP), WARMUP);
+      LatencyRecorder separate = new LatencyRecorder("separate queries" + game, RESTORES);
+      runSeparate(separate, RESTORES);
+      System.out.println(separate);
+
+      runSingle(dbService, new LatencyRecorder("warmup", WARMUP), WARMUP);
+      LatencyRecorder single = new LatencyRecorder("single query" + game, RESTORES);
+      runSingle(dbService, single, RESTORES);
+      System.out.println(single);
+    }
+
+    SqliteConnectionPool.shutdownAll();
+    new File(DB).delete();
+  }
+
+  private static void runSingle(TicTacToeSqliteDbService dbService, LatencyRecorder recorder,
+      int restores) throws Exception {
+    recorder.start();
+    for (int i = 0; i < restores; i++) {
+      long start = System.nanoTime();
+      GameBoard gb = dbService.restoreMostRecentGameBoard();
+      recorder.record(System.nanoTime() - start);
+      check(gb.getBoardState()[1][1]);
+    }
+    recorder.stop();
+  }
+
+  /**
+   * Restores the game the way the service did before it used a single query,
+   * with each query on its own statement, prepared once as the statement cache
+   * would have it.
+   */
+  private static void runSeparate(LatencyRecorder recorder, int restores) throws Exception {
+    SqliteConnectionPool pool = SqliteConnectionPool.forDatabase(DB);
+    Connection conn = pool.acquire();
+    PreparedStatement maxId = conn.prepareStatement("SELECT MAX(id) AS max FROM games;");
+    PreparedStatement findSnapshot =
+        conn.prepareStatement("SELECT snapshot FROM games WHERE id = ?;");
+    PreparedStatement findPlayers = conn.prepareStatement(""
+        + "SELECT player_no, player_type FROM players WHERE game_id = ? ORDER BY player_no;");
+    PreparedStatement findMoves = conn.prepareStatement(""
+        + "SELECT moves.player_no, moves.x_coord, moves.y_coord, players.player_type "
+        + "FROM moves LEFT JOIN players ON moves.game_id = players.game_id "
+        + "AND moves.player_no = players.player_no "
+        + "WHERE moves.game_id = ? ORDER BY moves.id;");
+
+    recorder.start();
+    for (int i = 0; i < restores; i++) {
+      long start = System.nanoTime();
+
+      int gameId;
+      try (ResultSet rs = maxId.executeQuery()) {
+        gameId = rs.getInt("max");
+      }
+
+      byte[] snapshot;
+      findSnapshot.setInt(1, gameId);
+      try (ResultSet rs = findSnapshot.executeQuery()) {
+        snapshot = rs.next() ? rs.getBytes("snapshot") : null;
+      }
+
+      char occupant = 'O';
+      if (snapshot == null) {
+        findPlayers.setInt(1, gameId);
+        try (ResultSet rs = findPlayers.executeQuery()) {
+          while (rs.next()) {
+            rs.getString("player_type");
+          }
+        }
+        findMoves.setInt(1, gameId);
+        try (ResultSet rs = findMoves.executeQuery()) {
+          while (rs.next()) {
+            if (rs.getInt("x_coord") == 1 && rs.getInt("y_coord") == 1) {
+              occupant = rs.getString("player_type").charAt(0);
+            }
+          }
+        }
+      }
+
+      recorder.record(System.nanoTime() - start);
+      check(occupant);
+    }
+    recorder.stop();
+
+    maxId.close();
+    findSnapshot.close();
+    findPlayers.close();
+    findMoves.close();
+    pool.release(conn);
+  }
+
+  private static void check(char occupant) {
+    if (occupant != 'O') {
+      throw new IllegalStateException("Restored the wrong game board.");
+    }
+  }
+
+  private static void execute(String sql) throws Exception {
+    Connection conn = SqliteConnectionPool.forDatabase(DB).acquire();
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(sql);
+    }
+    SqliteConnectionPool.forDatabase(DB).release(conn);
+  }
+}
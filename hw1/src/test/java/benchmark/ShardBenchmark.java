@@ -0,0 +1,114 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.ShardedDbService;
+import util.SqliteConnectionPool;
+
+/**
+ * Measures move throughput with many games being played at once, each on its
+ * own request thread, as the games are spread across more SQLite files. Every
+ * move is acknowledged only once it is committed. With one shard all moves
+ * share a single writer thread and database file; with more shards, games on
+ * different shards are committed in parallel.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.ShardBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class ShardBenchmark {
+
+  private static final String DB = "bench_shards.db";
+
+  private static final int[] SHARD_COUNTS = {1, 2, 4, 8};
+
+  private static final int GAMES = 32;
+
+  private static final int MOVES_PER_GAME = 200;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the databases could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+    System.out.println("Per-move latency, " + GAMES + " games played concurrently:");
+    for (int shards : SHARD_COUNTS) {
+      deleteShards(shards);
+      ShardedDbService dbService = new ShardedDbService(DB, shards);
+      dbService.createDatabasesTables();
+
+      dbService.connect();
+      for (int gameId = 1; gameId <= GAMES; gameId++) {
+        dbService.createNewGame(gameId);
+        dbService.savePlayer(new Player('X', 1), gameId);
+        dbService.savePlayer(new Player('O', 2), gameId);
+      }
+      dbService.commit();
+
+      System.out.println(run(shards + (shards == 1 ? " shard" : " shards"), dbService));
+      dbService.shutdown();
+      deleteShards(shards);
+    }
+  }
+
+  /**
+   * Plays MOVES_PER_GAME moves in each game, one thread per game.
+   */
+  private static LatencyRecorder run(String name, ShardedDbService dbService) throws Exception {
+    LatencyRecorder recorder = new LatencyRecorder(name, GAMES * MOVES_PER_GAME);
+    ExecutorService pool = Executors.newFixedThreadPool(GAMES);
+    List<Callable<long[]>> games = new ArrayList<>();
+
+    for (int g = 1; g <= GAMES; g++) {
+      int gameId = g;
+      games.add(() -> {
+        char[][] emptyBoard = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+        GameBoard gb = new GameBoard(new Player('X', 1), new Player('O', 2), true, 1,
+            emptyBoard, 0, false, null);
+        Player player = new Player('X', 1);
+        long[] latencies = new long[MOVES_PER_GAME];
+
+        for (int i = 0; i < MOVES_PER_GAME; i++) {
+          long start = System.nanoTime();
+          dbService.connect();
+          dbService.saveValidMove(new Move(player, i % 3, i / 3 % 3), gameId);
+          dbService.saveGameState(gb, gameId);
+          dbService.commit();
+          latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+      });
+    }
+
+    recorder.start();
+    List<Future<long[]>> results = pool.invokeAll(games);
+    recorder.stop();
+    pool.shutdown();
+
+    for (Future<long[]> result : results) {
+      for (long latency : result.get()) {
+        recorder.record(latency);
+      }
+    }
+    return recorder;
+  }
+
+  private static void deleteShards(int shards) {
+    for (int shard = 0; shard < shards; shard++) {
+      String file = ShardedDbService.shardFile(DB, shard);
+      SqliteConnectionPool.forDatabase(file).shutdown();
+      new File(file).delete();
+    }
+  }
+}
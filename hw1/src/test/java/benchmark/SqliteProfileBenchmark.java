@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.io.File;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.SqliteConnectionPool;
+import util.SqliteProfile;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Measures the cost of persisting and committing one move (the move row plus
+ * the game state) under each SqliteProfile, each on its own database file. The
+ * profiles differ in journal mode and synchronous level, which decide how many
+ * fsyncs a commit waits for.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.SqliteProfileBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class SqliteProfileBenchmark {
+
+  private static final int WARMUP = 300;
+
+  private static final int MOVES = 3000;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if a database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+    System.out.println("Per-move commit latency (INSERT move + game state + commit):");
+    for (SqliteProfile profile : SqliteProfile.values()) {
+      String db = "bench_profile_" + profile.name().toLowerCase() + ".db";
+      delete(db);
+      SqliteConnectionPool.forDatabase(db, profile);
+
+      TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(db);
+      dbService.createDatabasesTables();
+      dbService.connect();
+      dbService.createNewGame(1);
+      dbService.savePlayer(new Player('X', 1), 1);
+      dbService.savePlayer(new Player('O', 2), 1);
+      dbService.commit();
+
+      run(dbService, new LatencyRecorder("warmup", WARMUP), WARMUP);
+      LatencyRecorder recorder = new LatencyRecorder(profile.name(), MOVES);
+      run(dbService, recorder, MOVES);
+      System.out.println(recorder);
+
+      SqliteConnectionPool.forDatabase(db).shutdown();
+      delete(db);
+    }
+  }
+
+  private static void run(TicTacToeSqliteDbService dbService, LatencyRecorder recorder,
+      int moves) throws Exception {
+    char[][] emptyBoard = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    GameBoard gb = new GameBoard(new Player('X', 1), new Player('O', 2), true, 1, emptyBoard, 0,
+        false, null);
+    Player player = new Player('X', 1);
+
+    recorder.start();
+    for (int i = 0; i < moves; i++) {
+      long start = System.nanoTime();
+      dbService.connect();
+      dbService.saveValidMove(new Move(player, i % 3, i / 3 % 3), 1);
+      dbService.saveGameState(gb, 1);
+      dbService.commit();
+      recorder.record(System.nanoTime() - start);
+    }
+    recorder.stop();
+  }
+
+  private static void delete(String db) {
+    new File(db).delete();
+    new File(db + "-wal").delete();
+    new File(db + "-shm").delete();
+  }
+}
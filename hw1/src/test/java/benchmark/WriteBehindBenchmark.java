@@ -0,0 +1,147 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import util.DbServiceException;
+import util.SqliteConnectionPool;
+import util.TicTacToeDbService;
+import util.TicTacToeSqliteDbService;
+import util.WriteBehindDbService;
+import util.WriteBehindDbService.AckMode;
+
+/**
+ * Measures move throughput with many games being played at once, each on its
+ * own request thread. The "synchronous" run commits every move on its request
+ * thread, as GameBoard does by default; its transactions are serialized, as the
+ * synchronized controller does, since concurrent SQLite writers otherwise fail
+ * with SQLITE_BUSY. The write-behind runs hand the moves to
+ * WriteBehindDbService, acknowledging either once the group commit is done or
+ * as soon as the move is queued.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.mainClass=benchmark.WriteBehindBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class WriteBehindBenchmark {
+
+  private static final String DB = "bench_write_behind.db";
+
+  private static final int GAMES = 16;
+
+  private static final int MOVES_PER_GAME = 200;
+
+  private static final Object SYNCHRONOUS_LOCK = new Object();
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args unused
+   * @throws Exception if the database could not be set up
+   */
+  public static void main(String[] args) throws Exception {
+    System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    new File(DB).delete();
+
+    TicTacToeSqliteDbService setup = new TicTacToeSqliteDbService(DB);
+    setup.createDatabasesTables();
+    setup.connect();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      setup.createNewGame(gameId);
+      setup.savePlayer(new Player('X', 1), gameId);
+      setup.savePlayer(new Player('O', 2), gameId);
+    }
+    setup.commit();
+
+    System.out.println("Per-move latency, " + GAMES + " games played concurrently:");
+    System.out.println(run("synchronous", null));
+
+    WriteBehindDbService committed = new WriteBehindDbService(new TicTacToeSqliteDbService(DB),
+        64, 2, AckMode.COMMITTED);
+    System.out.println(run("write-behind, ack COMMITTED", committed));
+    committed.shutdown();
+    System.out.println("  group commits: " + committed.getGroupCommits());
+
+    WriteBehindDbService enqueued = new WriteBehindDbService(new TicTacToeSqliteDbService(DB),
+        64, 2, AckMode.ENQUEUED);
+    LatencyRecorder recorder = run("write-behind, ack ENQUEUED", enqueued);
+    long start = System.nanoTime();
+    enqueued.shutdown();
+    System.out.println(recorder);
+    System.out.printf("  group commits: %d, drained backlog in %.1fms%n",
+        enqueued.getGroupCommits(), (System.nanoTime() - start) / 1e6);
+
+    SqliteConnectionPool.shutdownAll();
+    new File(DB).delete();
+  }
+
+  /**
+   * Plays MOVES_PER_GAME moves in each game, one thread per game.
+   *
+   * @param name      label for the results
+   * @param dbService shared service to use, or null for one synchronous SQLite
+   *                  service per thread
+   */
+  private static LatencyRecorder run(String name, TicTacToeDbService dbService)
+      throws Exception {
+    LatencyRecorder recorder = new LatencyRecorder(name, GAMES * MOVES_PER_GAME);
+    ExecutorService pool = Executors.newFixedThreadPool(GAMES);
+    List<Callable<long[]>> games = new ArrayList<>();
+
+    for (int g = 1; g <= GAMES; g++) {
+      int gameId = g;
+      games.add(() -> {
+        TicTacToeDbService db = dbService != null ? dbService : new TicTacToeSqliteDbService(DB);
+        GameBoard gb = boardForState();
+        Player player = new Player('X', 1);
+        long[] latencies = new long[MOVES_PER_GAME];
+
+        for (int i = 0; i < MOVES_PER_GAME; i++) {
+          long start = System.nanoTime();
+          Move move = new Move(player, i % 3, i / 3 % 3);
+          if (dbService == null) {
+            synchronized (SYNCHRONOUS_LOCK) {
+              saveMove(db, move, gb, gameId);
+            }
+          } else {
+            saveMove(db, move, gb, gameId);
+          }
+          latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+      });
+    }
+
+    recorder.start();
+    List<Future<long[]>> results = pool.invokeAll(games);
+    recorder.stop();
+    pool.shutdown();
+
+    for (Future<long[]> result : results) {
+      for (long latency : result.get()) {
+        recorder.record(latency);
+      }
+    }
+    return recorder;
+  }
+
+  private static void saveMove(TicTacToeDbService db, Move move, GameBoard gb, int gameId)
+      throws DbServiceException {
+    db.connect();
+    db.saveValidMove(move, gameId);
+    db.saveGameState(gb, gameId);
+    db.commit();
+  }
+
+  private static GameBoard boardForState() {
+    char[][] emptyBoard = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    return new GameBoard(new Player('X', 1), new Player('O', 2), true, 1, emptyBoard, 0,
+        false, null);
+  }
+}
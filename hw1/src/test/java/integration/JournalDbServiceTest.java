@@ -0,0 +1,323 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameJournal;
+import util.TicTacToeJournalDbService;
+
+public class JournalDbServiceTest {
+
+  private static final String TEST_JOURNAL = "journal_test.journal";
+
+  private TicTacToeJournalDbService dbService;
+
+  private Player player1 = new Player('X', 1);
+
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Starts each test with a new journal holding one game with two players.
+   *
+   * @throws DbServiceException if the journal could not be created
+   */
+  @BeforeEach
+  public void createGame() throws DbServiceException {
+    new File(TEST_JOURNAL).delete();
+    dbService = new TicTacToeJournalDbService(TEST_JOURNAL, 0);
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.savePlayer(player1, 1);
+    dbService.savePlayer(player2, 1);
+    dbService.commit();
+  }
+
+  /**
+   * Closes and removes the journal after each test.
+   *
+   * @throws DbServiceException if the journal could not be closed
+   */
+  @AfterEach
+  public void deleteJournal() throws DbServiceException {
+    dbService.shutdown();
+    new File(TEST_JOURNAL).delete();
+  }
+
+  @Test
+  @DisplayName("Committed moves should be restored after the journal is reopened.")
+  public void testRestoreAfterReopen() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.commit();
+    GameBoard before = dbService.restoreGameBoard(1);
+
+    reopen();
+    GameBoard after = dbService.restoreMostRecentGameBoard();
+
+    assertEquals(before.toString(), after.toString());
+    assertEquals('O', after.getBoardState()[1][1]);
+    assertEquals(1, after.getTurn());
+    assertEquals(2, dbService.findAllMoves(1).size());
+    assertEquals(2, dbService.findAllPlayers(1).size());
+  }
+
+  @Test
+  @DisplayName("Games committed by many threads at once should all be restored after the "
+      + "journal is reopened.")
+  public void testConcurrentCommits() throws Exception {
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<Future<Void>> commits = new ArrayList<>();
+    for (int gameId = 2; gameId <= 201; gameId++) {
+      int id = gameId;
+      commits.add(threads.submit(() -> {
+        dbService.connect();
+        dbService.createNewGame(id);
+        dbService.savePlayer(player1, id);
+        dbService.commit();
+        return null;
+      }));
+    }
+    for (Future<Void> commit : commits) {
+      commit.get(30, TimeUnit.SECONDS);
+    }
+    threads.shutdown();
+
+    reopen();
+    assertEquals(201, dbService.findMostRecentGameId());
+    for (int gameId = 2; gameId <= 201; gameId++) {
+      assertEquals(player1, dbService.restoreGameBoard(gameId).getP1());
+    }
+  }
+
+  @Test
+  @DisplayName("A game should restore from its latest state record plus later moves.")
+  public void testRestoreFromState() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1);
+    gb.processPlayerMove(new Move(player1, 0, 0));
+    gb.commitMove();
+
+    // a move without a state record, as a partial writer might leave it
+    dbService.connect();
+    dbService.saveValidMove(new Move(player2, 2, 2), 1);
+    dbService.commit();
+
+    reopen();
+    GameBoard result = dbService.restoreGameBoard(1);
+    assertEquals('X', result.getBoardState()[0][0]);
+    assertEquals('O', result.getBoardState()[2][2]);
+    assertEquals(1, result.getTurn());
+  }
+
+  @Test
+  @DisplayName("Moves on a restored board should be saved to the game it was restored from.")
+  public void testPlayRestoredSecondGame() throws DbServiceException, GameBoardInternalError {
+    dbService.connect();
+    dbService.createNewGame(2);
+    dbService.savePlayer(player1, 2);
+    dbService.savePlayer(player2, 2);
+    dbService.commit();
+
+    // restored from its players, then from the state record the first move wrote
+    GameBoard gb = dbService.restoreGameBoard(2);
+    gb.processPlayerMove(new Move(player1, 0, 0));
+    gb.commitMove();
+    reopen();
+    gb = dbService.restoreGameBoard(2);
+    assertEquals(2, gb.getGameId());
+    gb.processPlayerMove(new Move(player2, 1, 1));
+    gb.commitMove();
+
+    assertEquals(2, dbService.findAllMoves(2).size());
+    assertEquals(0, dbService.findAllMoves(1).size());
+    assertEquals('O', dbService.restoreGameBoard(2).getBoardState()[1][1]);
+  }
+
+  @Test
+  @DisplayName("A torn record at the end of the journal should be discarded on recovery.")
+  public void testTornTail() throws DbServiceException, IOException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.commit();
+    dbService.shutdown();
+
+    long committed = new File(TEST_JOURNAL).length();
+    try (RandomAccessFile file = new RandomAccessFile(TEST_JOURNAL, "rw")) {
+      file.seek(committed);
+      file.write(new byte[GameJournal.RECORD_SIZE + 7]);
+    }
+
+    dbService = new TicTacToeJournalDbService(TEST_JOURNAL, 0);
+    assertEquals(committed, new File(TEST_JOURNAL).length());
+    assertEquals(1, dbService.findAllMoves(1).size());
+  }
+
+  @Test
+  @DisplayName("Records of a transaction without its COMMIT record should be discarded.")
+  public void testUncommittedTail() throws DbServiceException, IOException {
+    long committed = new File(TEST_JOURNAL).length();
+
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.commit();
+    dbService.shutdown();
+
+    // cut the transaction off just before its COMMIT record
+    try (RandomAccessFile file = new RandomAccessFile(TEST_JOURNAL, "rw")) {
+      file.setLength(committed + 2 * GameJournal.RECORD_SIZE);
+    }
+
+    dbService = new TicTacToeJournalDbService(TEST_JOURNAL, 0);
+    assertEquals(committed, new File(TEST_JOURNAL).length());
+    assertEquals(0, dbService.findAllMoves(1).size());
+  }
+
+  @Test
+  @DisplayName("A record with a bad checksum should end recovery at the transaction before it.")
+  public void testCorruptRecord() throws DbServiceException, IOException {
+    long committed = new File(TEST_JOURNAL).length();
+
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.commit();
+    dbService.shutdown();
+
+    try (RandomAccessFile file = new RandomAccessFile(TEST_JOURNAL, "rw")) {
+      file.seek(committed + 20);
+      file.write(0x7f);
+    }
+
+    dbService = new TicTacToeJournalDbService(TEST_JOURNAL, 0);
+    assertEquals(0, dbService.findAllMoves(1).size());
+    assertEquals(2, dbService.findAllPlayers(1).size());
+  }
+
+  @Test
+  @DisplayName("Closing without committing should leave nothing in the journal.")
+  public void testCloseDiscards() throws DbServiceException {
+    long committed = new File(TEST_JOURNAL).length();
+
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.close();
+    dbService.commit();
+
+    assertEquals(committed, new File(TEST_JOURNAL).length());
+  }
+
+  @Test
+  @DisplayName("Invalid transactions should be rejected without being written.")
+  public void testInvalidTransaction() throws DbServiceException {
+    long committed = new File(TEST_JOURNAL).length();
+
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 2);
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.commit();
+    });
+
+    dbService.connect();
+    dbService.savePlayer(player1, 1);
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.commit();
+    });
+
+    assertEquals(committed, new File(TEST_JOURNAL).length());
+  }
+
+  @Test
+  @DisplayName("A game board reset should start a new game and keep the previous one.")
+  public void testResetGameBoard() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1);
+    gb.resetGameboard();
+    assertEquals(2, gb.getGameId());
+
+    reopen();
+    assertEquals(2, dbService.findAllPlayers(1).size());
+    assertEquals(2, dbService.findMostRecentGameId());
+    assertEquals(null, dbService.restoreMostRecentGameBoard().getP1());
+  }
+
+  @Test
+  @DisplayName("A game on a board too large for a STATE record should be restored from its "
+      + "size and moves.")
+  public void testRestoreLargeBoard() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1).withSize(15, 15, 5);
+    playOnLargeBoard(gb);
+
+    reopen();
+    GameBoard result = dbService.restoreMostRecentGameBoard();
+
+    assertEquals(true, result instanceof MnkGameBoard);
+    assertEquals(gb.toString(), result.toString());
+    assertEquals(5, result.getWinLength());
+  }
+
+  @Test
+  @DisplayName("A game on a board small enough for a STATE record should keep its size and k.")
+  public void testRestoreSmallSizedBoard() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1).withSize(4, 4, 3);
+    playOnLargeBoard(gb);
+
+    reopen();
+    GameBoard result = dbService.restoreMostRecentGameBoard();
+
+    assertEquals(gb.toString(), result.toString());
+    assertEquals(3, result.getWinLength());
+  }
+
+  @Test
+  @DisplayName("A game against the server on a board too large for a STATE record should "
+      + "still be one after a restart.")
+  public void testRestoreLargeBoardComputerOpponent()
+      throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1).withSize(15, 15, 5);
+    gb.resetGameboard();
+    gb.setComputerOpponent(true);
+    gb.saveP1(player1);
+    gb.autoSetP2();
+
+    reopen();
+    GameBoard result = dbService.restoreMostRecentGameBoard();
+
+    assertEquals(true, result instanceof MnkGameBoard);
+    assertEquals(true, result.hasComputerOpponent());
+    assertEquals(false, dbService.restoreGameBoard(1).hasComputerOpponent());
+  }
+
+  private void playOnLargeBoard(GameBoard gb) throws GameBoardInternalError {
+    gb.resetGameboard();
+    gb.saveP1(player1);
+    gb.autoSetP2();
+    for (Move move : new Move[] { new Move(player1, 3, 3), new Move(player2, 0, 0),
+        new Move(player1, 3, 2) }) {
+      gb.processPlayerMove(move);
+      gb.commitMove();
+    }
+  }
+
+  private void reopen() throws DbServiceException {
+    dbService.shutdown();
+    dbService = new TicTacToeJournalDbService(TEST_JOURNAL, 0);
+  }
+}
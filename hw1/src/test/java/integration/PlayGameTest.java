@@ -1249,6 +1249,43 @@ public class PlayGameTest {
     return response;
   }
 
+  @Test
+  @Order(37)
+  @DisplayName("The export should hold the current game, with its players and moves, on "
+      + "the last line.")
+  public void testExportCurrentGame() {
+    
+    Unirest.get("http://localhost:8080/").asString();
+    Unirest.post("http://localhost:8080/startgame").body("type=X").asString();
+    Unirest.get("http://localhost:8080/joingame").asString();
+    Unirest.post("http://localhost:8080/move/1").body("x=2&y=1").asString();
+    
+    HttpResponse<String> response = Unirest
+        .get("http://localhost:8080/export")
+        .asString();
+    
+    assertEquals(200, response.getStatus());
+    assertEquals(true, response.getHeaders().getFirst("Content-Type")
+        .startsWith("application/x-ndjson"));
+    
+    // one game per line, oldest first
+    String[] lines = response.getBody().split("\n");
+    JSONObject game = new JSONObject(lines[lines.length - 1]);
+    assertEquals(2, game.getJSONArray("players").length());
+    assertEquals(1, game.getJSONArray("moves").length());
+    JSONObject move = game.getJSONArray("moves").getJSONObject(0);
+    assertEquals(1, move.getInt("playerId"));
+    assertEquals(2, move.getInt("x"));
+    assertEquals(1, move.getInt("y"));
+    
+    // a range past the most recent game is empty
+    response = Unirest
+        .get("http://localhost:8080/export?from=" + (game.getInt("gameId") + 1))
+        .asString();
+    assertEquals(200, response.getStatus());
+    assertEquals("", response.getBody());
+  }
+
   /**
    * Stop the server when all the tests are complete.
    */
@@ -0,0 +1,158 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.ShardedDbService;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+public class ShardedDbServiceTest {
+
+  private static final String TEST_DB = "shard_test.db";
+
+  private static final int SHARDS = 4;
+
+  private ShardedDbService dbService;
+
+  private Player player1 = new Player('X', 1);
+
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Starts each test with new shard files holding games 1 to 8, two players each.
+   *
+   * @throws DbServiceException if the games could not be created
+   */
+  @BeforeEach
+  public void createGames() throws DbServiceException {
+    deleteShards();
+    dbService = new ShardedDbService(TEST_DB, SHARDS);
+    dbService.createDatabasesTables();
+
+    dbService.connect();
+    for (int gameId = 1; gameId <= 8; gameId++) {
+      dbService.createNewGame(gameId);
+      dbService.savePlayer(player1, gameId);
+      dbService.savePlayer(player2, gameId);
+    }
+    dbService.commit();
+  }
+
+  /**
+   * Stops the shard writers and removes the shard files.
+   *
+   * @throws DbServiceException if a writer could not be stopped
+   */
+  @AfterEach
+  public void stopShards() throws DbServiceException {
+    dbService.shutdown();
+    deleteShards();
+  }
+
+  @Test
+  @DisplayName("Each game should be stored only in the shard file its id maps to.")
+  public void testGamesRoutedToShards() throws DbServiceException {
+    dbService.shutdown();
+
+    for (int shard = 0; shard < SHARDS; shard++) {
+      TicTacToeSqliteDbService file =
+          new TicTacToeSqliteDbService(ShardedDbService.shardFile(TEST_DB, shard));
+      file.connect();
+      for (int gameId = 1; gameId <= 8; gameId++) {
+        int expected = dbService.shardFor(gameId) == shard ? 2 : 0;
+        assertEquals(expected, file.findAllPlayers(gameId).size());
+      }
+      file.close();
+    }
+  }
+
+  @Test
+  @DisplayName("A restored game board should save its moves to its own shard.")
+  public void testRestoreRoutesToShard() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = (GameBoard) dbService.restoreGameBoard(6);
+    gb.processPlayerMove(new Move(player1, 2, 1));
+    gb.commitMove();
+
+    GameBoard restored = (GameBoard) dbService.restoreGameBoard(6);
+    assertEquals('X', restored.getBoardState()[2][1]);
+    assertEquals(1, dbService.findAllMoves(6).size());
+    assertEquals(0, dbService.findAllMoves(1).size());
+    assertEquals(0, dbService.findAllMoves(2).size());
+  }
+
+  @Test
+  @DisplayName("The most recent game should be found whichever shard it is on.")
+  public void testMostRecentAcrossShards() throws DbServiceException {
+    dbService.connect();
+    dbService.createNewGame(11);
+    dbService.savePlayer(player1, 11);
+    dbService.savePlayer(player2, 11);
+    dbService.saveValidMove(new Move(player1, 1, 1), 11);
+    dbService.commit();
+
+    assertEquals(11, dbService.findMostRecentGameId());
+    GameBoard gb = (GameBoard) dbService.restoreMostRecentGameBoard();
+    assertEquals('X', gb.getBoardState()[1][1]);
+  }
+
+  @Test
+  @DisplayName("Games on different shards should be written concurrently without errors.")
+  public void testConcurrentGames() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> results = new ArrayList<>();
+    for (int gameId = 1; gameId <= 8; gameId++) {
+      final int game = gameId;
+      results.add(pool.submit(() -> {
+        for (int cell = 0; cell < 9; cell++) {
+          dbService.connect();
+          dbService.saveValidMove(new Move(cell % 2 == 0 ? player1 : player2, cell / 3,
+              cell % 3), game);
+          dbService.commit();
+        }
+        return null;
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    pool.shutdown();
+
+    for (int gameId = 1; gameId <= 8; gameId++) {
+      assertEquals(9, dbService.findAllMoves(gameId).size());
+    }
+  }
+
+  @Test
+  @DisplayName("Deleting a game with autoCommit should remove it from its shard right away.")
+  public void testDeleteGame() throws DbServiceException {
+    dbService.connect();
+    dbService.deleteGame(3, true);
+    dbService.close();
+
+    assertEquals(0, dbService.findAllPlayers(3).size());
+    assertEquals(2, dbService.findAllPlayers(7).size());
+  }
+
+  private void deleteShards() {
+    for (int shard = 0; shard < SHARDS; shard++) {
+      String file = ShardedDbService.shardFile(TEST_DB, shard);
+      SqliteConnectionPool.forDatabase(file).shutdown();
+      new File(file).delete();
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.GenericGameBoard;
+import models.Move;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameArchiver;
+import util.GameHistoryWriter;
+import util.TicTacToeSqliteDbService;
+
+public class SqliteArchiveTest extends SqliteDatabaseFixture {
+
+  private static final String TEST_DB = "archive_test.db";
+
+  private char[][] won = { { 'X', 'O', 0 }, { 'X', 'O', 0 }, { 'X', 0, 0 } };
+
+  private List<Move> wonMoves = Arrays.asList(new Move(player1, 0, 0), new Move(player2, 0, 1),
+      new Move(player1, 1, 0), new Move(player2, 1, 1), new Move(player1, 2, 0));
+
+  private char[][] inProgress = { { 0, 0, 0 }, { 0, 'X', 0 }, { 0, 0, 0 } };
+
+  public SqliteArchiveTest() {
+    super(TEST_DB);
+  }
+
+  /**
+   * Starts each test from a new database holding five games: games 1, 2, 4 and
+   * 5 won by player 1, and game 3 still in progress.
+   *
+   * @throws DbServiceException if the games could not be created
+   */
+  @BeforeEach
+  public void createGames() throws DbServiceException {
+    Map<Integer, GameBoard> gameboards = new LinkedHashMap<>();
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    for (int gameId = 1; gameId <= 5; gameId++) {
+      if (gameId == 3) {
+        gameboards.put(gameId, new GameBoard(player1, player2, true, 2, inProgress, 0, false,
+            null));
+        moves.put(gameId, Arrays.asList(new Move(player1, 1, 1)));
+      } else {
+        gameboards.put(gameId, new GameBoard(player1, player2, true, 2, won, 1, false, null));
+        moves.put(gameId, wonMoves);
+      }
+    }
+    dbService.connect();
+    dbService.saveGames(gameboards, moves);
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("Finished games other than the most recent should be archived and still be "
+      + "restored.")
+  public void testArchiveFinishedGames() throws DbServiceException, SQLException {
+    dbService.connect();
+    assertEquals(3, dbService.archiveFinishedGames(10));
+    dbService.commit();
+
+    assertEquals(Arrays.asList(3, 5), ids("SELECT id FROM games ORDER BY id;"));
+    assertEquals(Arrays.asList(3, 3, 5, 5), ids("SELECT game_id FROM players ORDER BY game_id;"));
+    assertEquals(Arrays.asList(1, 2, 4), ids("SELECT id FROM archived_games ORDER BY id;"));
+
+    dbService.connect();
+    assertEquals(5, dbService.findMostRecentGameId());
+    GameBoard restored = dbService.restoreGameBoard(2);
+    dbService.close();
+    assertEquals(2, restored.getGameId());
+    assertEquals(1, restored.getWinner());
+    assertEquals(player2, restored.getP2());
+    assertArrayEquals(won, restored.getBoardState());
+
+    dbService.connect();
+    Map<Integer, GenericGameBoard> gameboards = dbService.restoreGameBoards(
+        Arrays.asList(1, 3, 6));
+    dbService.close();
+    assertArrayEquals(won, gameboards.get(1).getBoardState());
+    assertArrayEquals(inProgress, gameboards.get(3).getBoardState());
+    assertEquals(false, gameboards.get(6).isGameStarted());
+
+    // nothing left to archive
+    dbService.connect();
+    assertEquals(0, dbService.archiveFinishedGames(10));
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("Archived games should be exported as they were before being archived.")
+  public void testExportArchivedGames() throws DbServiceException, IOException {
+    // several export pages, with finished and unfinished games in turn
+    Map<Integer, GameBoard> gameboards = new LinkedHashMap<>();
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    for (int gameId = 6; gameId <= 250; gameId++) {
+      boolean finished = gameId % 7 != 0;
+      gameboards.put(gameId, new GameBoard(player1, player2, true, 2,
+          finished ? won : inProgress, finished ? 1 : 0, false, null));
+      moves.put(gameId, finished ? wonMoves : Arrays.asList(new Move(player1, 1, 1)));
+    }
+    dbService.connect();
+    dbService.saveGames(gameboards, moves);
+    dbService.commit();
+    String before = export(1, Integer.MAX_VALUE);
+
+    dbService.connect();
+    assertEquals(213, dbService.archiveFinishedGames(1000));
+    dbService.commit();
+
+    assertEquals(before, export(1, Integer.MAX_VALUE));
+    assertEquals(250, before.split("\n").length);
+    assertEquals(export(2, 3) + export(4, 4), export(2, 4));
+  }
+
+  @Test
+  @DisplayName("A new game should not take the id of an archived game once the games "
+      + "after it have expired.")
+  public void testNewGameAfterArchiveAndExpiry() throws DbServiceException, IOException,
+      GameBoardInternalError, SQLException {
+    // game 6, the most recent, is abandoned before it finishes
+    dbService.connect();
+    dbService.createNewGame(6);
+    dbService.savePlayer(player1, 6);
+    dbService.commit();
+
+    dbService.connect();
+    assertEquals(4, dbService.archiveFinishedGames(10));
+    dbService.commit();
+    dbService.connect();
+    dbService.expireIdleGames(System.currentTimeMillis() + 1000, 10);
+    dbService.commit();
+
+    GameBoard gb = new GameBoard(dbService);
+    gb.resetGameboard();
+    gb.saveP1(player1);
+
+    List<Integer> archived = ids("SELECT id FROM archived_games ORDER BY id;");
+    assertEquals(Arrays.asList(1, 2, 4, 5), archived);
+    assertEquals(false, archived.contains(gb.getGameId()));
+    assertEquals(true, gb.getGameId() > 5);
+
+    // game 6 is the most recent game, so it is kept rather than expired
+    String[] lines = export(1, Integer.MAX_VALUE).split("\\n");
+    assertEquals(6, lines.length);
+    assertEquals(true, lines[4].startsWith("{\"gameId\":6,"));
+    assertEquals(true, lines[5].startsWith("{\"gameId\":" + gb.getGameId() + ","));
+  }
+
+  @Test
+  @DisplayName("Deleting an archived game should remove its archive record.")
+  public void testDeleteArchivedGame() throws DbServiceException, SQLException {
+    dbService.connect();
+    dbService.archiveFinishedGames(10);
+    dbService.commit();
+
+    dbService.connect();
+    dbService.deleteGame(1, false);
+    dbService.deleteGames(Arrays.asList(2, 3));
+    dbService.commit();
+
+    assertEquals(Arrays.asList(4), ids("SELECT id FROM archived_games ORDER BY id;"));
+    assertEquals(Arrays.asList(5), ids("SELECT id FROM games ORDER BY id;"));
+  }
+
+  @Test
+  @DisplayName("The archiver should archive every finished game, a transaction at a time.")
+  public void testArchiver() throws DbServiceException, SQLException {
+    GameArchiver archiver = new GameArchiver(new TicTacToeSqliteDbService(TEST_DB), 1000, 2);
+
+    assertEquals(3, archiver.archive());
+    assertEquals(0, archiver.archive());
+    assertEquals(3, archiver.getGamesArchived());
+    assertEquals(Arrays.asList(1, 2, 4), ids("SELECT id FROM archived_games ORDER BY id;"));
+  }
+
+  private String export(int fromGameId, int toGameId) throws DbServiceException, IOException {
+    StringWriter out = new StringWriter();
+    GameHistoryWriter writer = new GameHistoryWriter(out);
+    dbService.connect();
+    dbService.exportGames(fromGameId, toGameId, writer);
+    dbService.close();
+    writer.close();
+    return out.toString();
+  }
+
+  private List<Integer> ids(String sql) throws SQLException {
+    List<Integer> ids = new ArrayList<>();
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+        Statement statement = conn.createStatement();
+        ResultSet rs = statement.executeQuery(sql)) {
+      while (rs.next()) {
+        ids.add(rs.getInt(1));
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,159 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+
+public class SqliteBatchTest extends SqliteDatabaseFixture {
+
+  private static final String TEST_DB = "batch_test.db";
+
+  // more than one restore query's worth of games
+  private static final int GAMES = 150;
+
+  public SqliteBatchTest() {
+    super(TEST_DB);
+  }
+
+  /**
+   * Starts each test from a new database holding GAMES games with two players
+   * each, saved in one batch.
+   *
+   * @throws DbServiceException if the games could not be created
+   */
+  @BeforeEach
+  public void createGames() throws DbServiceException {
+    Map<Integer, List<Player>> players = new LinkedHashMap<>();
+    dbService.connect();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      dbService.createNewGame(gameId);
+      players.put(gameId, Arrays.asList(player1, player2));
+    }
+    dbService.savePlayers(players);
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("Moves saved in a batch should be restored with every game in the batch.")
+  public void testSaveMovesAndRestore() throws DbServiceException {
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      moves.put(gameId, Arrays.asList(new Move(player1, gameId % 3, 0),
+          new Move(player2, 1, 1)));
+    }
+    dbService.connect();
+    dbService.saveMoves(moves);
+    dbService.commit();
+
+    List<Integer> ids = new ArrayList<>();
+    for (int gameId = GAMES + 1; gameId >= 1; gameId--) {
+      ids.add(gameId);
+    }
+
+    dbService.connect();
+    Map<Integer, GenericGameBoard> gameboards = dbService.restoreGameBoards(ids);
+    dbService.close();
+
+    assertEquals(ids, new ArrayList<>(gameboards.keySet()));
+    // a game that does not exist comes back as an empty game board
+    assertEquals(null, gameboards.get(GAMES + 1).getP1());
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      GameBoard gb = (GameBoard) gameboards.get(gameId);
+      assertEquals('X', gb.getBoardState()[gameId % 3][0]);
+      assertEquals('O', gb.getBoardState()[1][1]);
+      assertEquals(1, gb.getTurn());
+      assertEquals(gameId, gb.getGameId());
+    }
+  }
+
+  @Test
+  @DisplayName("Games without a snapshot should be replayed when restored in a batch.")
+  public void testRestoreWithoutSnapshots() throws DbServiceException, SQLException {
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    moves.put(2, Arrays.asList(new Move(player1, 0, 0), new Move(player2, 2, 2)));
+    moves.put(3, Arrays.asList(new Move(player1, 1, 0)));
+    dbService.connect();
+    dbService.saveMoves(moves);
+    dbService.commit();
+
+    dbService.connect();
+    Map<Integer, GenericGameBoard> fromSnapshots = dbService.restoreGameBoards(
+        Arrays.asList(1, 2, 3));
+    dbService.close();
+
+    execute("UPDATE games SET snapshot = NULL WHERE id IN (2, 3);");
+
+    dbService.connect();
+    Map<Integer, GenericGameBoard> fromReplay = dbService.restoreGameBoards(
+        Arrays.asList(1, 2, 3));
+    dbService.close();
+
+    for (int gameId = 1; gameId <= 3; gameId++) {
+      assertEquals(fromSnapshots.get(gameId).toString(), fromReplay.get(gameId).toString());
+    }
+  }
+
+  @Test
+  @DisplayName("Games deleted in a batch should lose their players and moves.")
+  public void testDeleteGames() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 5);
+    dbService.deleteGames(Arrays.asList(4, 5, 6));
+    dbService.commit();
+
+    dbService.connect();
+    assertEquals(0, dbService.findAllPlayers(5).size());
+    assertEquals(0, dbService.findAllMoves(5).size());
+    assertEquals(2, dbService.findAllPlayers(7).size());
+    assertEquals(GAMES, dbService.findMostRecentGameId());
+    dbService.close();
+  }
+
+  @Test
+  @DisplayName("A failed batch should leave the statement usable for the next batch.")
+  public void testFailedBatch() throws DbServiceException {
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    moves.put(1, Arrays.asList(new Move(player1, 0, 0)));
+    moves.put(GAMES + 1, Arrays.asList(new Move(player1, 0, 0)));
+
+    dbService.connect();
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.saveMoves(moves);
+    });
+    dbService.close();
+
+    moves.remove(GAMES + 1);
+    dbService.connect();
+    dbService.saveMoves(moves);
+    dbService.commit();
+
+    dbService.connect();
+    assertEquals(1, dbService.findAllMoves(1).size());
+    dbService.close();
+  }
+
+  private void execute(String sql) throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    statement.executeUpdate(sql);
+    statement.close();
+    conn.close();
+  }
+}
@@ -0,0 +1,152 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.PoolMetrics;
+import util.SqliteConnectionPool;
+import util.SqliteProfile;
+
+public class SqliteConnectionPoolTest {
+
+  private static final String TEST_DB = "pool_test.db";
+
+  private static final String PROFILE_DB = "pool_profile_test.db";
+
+  @Test
+  @DisplayName("A released connection should be reused by the next caller.")
+  public void testConnectionReused() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(TEST_DB, 2);
+
+    Connection first = pool.acquire();
+    pool.release(first);
+    Connection second = pool.acquire();
+    pool.release(second);
+
+    assertSame(first, second);
+    assertEquals(1, pool.getMetrics().getConnectionsOpened());
+    assertEquals(2, pool.getMetrics().getAcquisitions());
+    pool.shutdown();
+  }
+
+  @Test
+  @DisplayName("Pooled connections should enforce foreign keys.")
+  public void testForeignKeysEnforced() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(TEST_DB, 2);
+
+    Connection conn = pool.acquire();
+    Statement statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery("PRAGMA foreign_keys;");
+    rs.next();
+    assertEquals(1, rs.getInt(1));
+    rs.close();
+    statement.close();
+
+    pool.release(conn);
+    pool.shutdown();
+  }
+
+  @Test
+  @DisplayName("Uncommitted work should be rolled back when a connection is released.")
+  public void testReleaseRollsBack() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(TEST_DB, 2);
+
+    Connection conn = pool.acquire();
+    Statement statement = conn.createStatement();
+    statement.executeUpdate("CREATE TABLE IF NOT EXISTS pool_rollback (id INTEGER);");
+    statement.close();
+
+    conn.setAutoCommit(false);
+    statement = conn.createStatement();
+    statement.executeUpdate("INSERT INTO pool_rollback (id) VALUES (1);");
+    statement.close();
+    pool.release(conn);
+
+    conn = pool.acquire();
+    assertTrue(conn.getAutoCommit());
+    statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM pool_rollback;");
+    rs.next();
+    assertEquals(0, rs.getInt(1));
+    rs.close();
+    statement.close();
+
+    pool.release(conn);
+    pool.shutdown();
+  }
+
+  @Test
+  @DisplayName("Pool metrics should track connections in use and beyond the idle limit.")
+  public void testMetrics() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(TEST_DB, 1);
+
+    Connection first = pool.acquire();
+    Connection second = pool.acquire();
+
+    PoolMetrics busy = pool.getMetrics();
+    assertEquals(2, busy.getInUse());
+    assertEquals(2, busy.getPeakInUse());
+
+    pool.release(first);
+    pool.release(second);
+
+    // only one connection can be kept idle; the other is closed on release
+    PoolMetrics quiet = pool.getMetrics();
+    assertEquals(0, quiet.getInUse());
+    assertEquals(1, quiet.getIdle());
+    assertTrue(second.isClosed());
+    pool.shutdown();
+  }
+
+  @Test
+  @DisplayName("Pooled connections should use the settings of the pool's profile.")
+  public void testProfileApplied() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(PROFILE_DB, 2, SqliteProfile.BALANCED);
+
+    Connection conn = pool.acquire();
+    assertEquals("wal", pragma(conn, "journal_mode"));
+    // synchronous = NORMAL
+    assertEquals("1", pragma(conn, "synchronous"));
+    // temp_store = MEMORY
+    assertEquals("2", pragma(conn, "temp_store"));
+    assertEquals("-16384", pragma(conn, "cache_size"));
+    // locks are waited for by the pool's busy handler rather than a busy timeout
+    assertEquals(5000, pool.getBusyRetry().getDeadlineMillis());
+    assertEquals("1", pragma(conn, "foreign_keys"));
+    pool.release(conn);
+    pool.shutdown();
+
+    pool = new SqliteConnectionPool(PROFILE_DB, 2, SqliteProfile.DURABLE);
+    conn = pool.acquire();
+    assertEquals("delete", pragma(conn, "journal_mode"));
+    // synchronous = FULL
+    assertEquals("2", pragma(conn, "synchronous"));
+    pool.release(conn);
+    pool.shutdown();
+  }
+
+  private String pragma(Connection conn, String name) throws SQLException {
+    Statement statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery("PRAGMA " + name + ";");
+    rs.next();
+    String value = rs.getString(1);
+    rs.close();
+    statement.close();
+    return value;
+  }
+
+  @AfterAll
+  public static void deleteDb() {
+    new File(TEST_DB).delete();
+    new File(PROFILE_DB).delete();
+  }
+}
@@ -0,0 +1,57 @@
+package integration;
+
+import java.io.File;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import util.DbServiceException;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+/**
+ * Base class for integration tests that each run against a SQLite database
+ * file of their own. Every test starts from a new database with empty tables,
+ * which subclasses fill in their own {@code @BeforeEach} method, and the file
+ * is removed once the test has run.
+ */
+abstract class SqliteDatabaseFixture {
+
+  protected final String testDb;
+
+  protected final TicTacToeSqliteDbService dbService;
+
+  protected final Player player1 = new Player('X', 1);
+
+  protected final Player player2 = new Player('O', 2);
+
+  /**
+   * Creates the fixture for a database file.
+   *
+   * @param testDb the database file the tests use
+   */
+  SqliteDatabaseFixture(String testDb) {
+    this.testDb = testDb;
+    this.dbService = new TicTacToeSqliteDbService(testDb);
+  }
+
+  /**
+   * Creates the tables in a new database, removing any file a failed run left
+   * behind. JUnit runs this before the subclass's own setup.
+   *
+   * @throws DbServiceException if the tables could not be created
+   */
+  @BeforeEach
+  public void createTables() throws DbServiceException {
+    deleteDb();
+    dbService.createDatabasesTables();
+  }
+
+  /**
+   * Closes the database's connections and removes its file.
+   */
+  @AfterEach
+  public void deleteDb() {
+    SqliteConnectionPool.forDatabase(testDb).shutdown();
+    new File(testDb).delete();
+  }
+}
@@ -0,0 +1,155 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameHistoryWriter;
+
+public class SqliteExportTest extends SqliteDatabaseFixture {
+
+  private static final String TEST_DB = "export_test.db";
+
+  // more than one export page's worth of games
+  private static final int GAMES = 250;
+
+  // a game created but never joined, which is not exported
+  private static final int EMPTY_GAME = 7;
+
+  // a game won by player 1
+  private static final int WON_GAME = 3;
+
+  public SqliteExportTest() {
+    super(TEST_DB);
+  }
+
+  /**
+   * Starts each test from a new database holding GAMES games, all but
+   * EMPTY_GAME with two players and two moves.
+   *
+   * @throws DbServiceException if the games could not be created
+   */
+  @BeforeEach
+  public void createGames() throws DbServiceException {
+    Map<Integer, List<Player>> players = new LinkedHashMap<>();
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    dbService.connect();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      dbService.createNewGame(gameId);
+      if (gameId != EMPTY_GAME) {
+        players.put(gameId, Arrays.asList(player1, player2));
+        moves.put(gameId, Arrays.asList(new Move(player1, gameId % 3, 0),
+            new Move(player2, 1, 1)));
+      }
+    }
+    dbService.savePlayers(players);
+    dbService.saveMoves(moves);
+
+    char[][] state = { { 'X', 0, 0 }, { 0, 'O', 0 }, { 0, 0, 0 } };
+    dbService.saveGameState(new GameBoard(player1, player2, true, 1, state, 1, false, null),
+        WON_GAME);
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("Every game with players should be exported, one line each, in game ID order.")
+  public void testExportAll() throws DbServiceException, IOException {
+    List<JsonObject> games = export(1, Integer.MAX_VALUE);
+
+    assertEquals(GAMES - 1, games.size());
+    int expectedGameId = 1;
+    for (JsonObject game : games) {
+      if (expectedGameId == EMPTY_GAME) {
+        expectedGameId++;
+      }
+      assertEquals(expectedGameId, game.get("gameId").getAsInt());
+      assertEquals(2, game.getAsJsonArray("players").size());
+      expectedGameId++;
+    }
+  }
+
+  @Test
+  @DisplayName("An exported game should hold its players, moves in order and result.")
+  public void testExportedGame() throws DbServiceException, IOException {
+    JsonObject game = export(WON_GAME, WON_GAME).get(0);
+
+    assertEquals(WON_GAME, game.get("gameId").getAsInt());
+    assertEquals(1, game.get("winner").getAsInt());
+    assertEquals(false, game.get("isDraw").getAsBoolean());
+
+    JsonArray players = game.getAsJsonArray("players");
+    assertEquals(1, players.get(0).getAsJsonObject().get("id").getAsInt());
+    assertEquals("X", players.get(0).getAsJsonObject().get("type").getAsString());
+    assertEquals(2, players.get(1).getAsJsonObject().get("id").getAsInt());
+    assertEquals("O", players.get(1).getAsJsonObject().get("type").getAsString());
+
+    JsonArray moves = game.getAsJsonArray("moves");
+    assertEquals(2, moves.size());
+    JsonObject first = moves.get(0).getAsJsonObject();
+    assertEquals(1, first.get("playerId").getAsInt());
+    assertEquals(WON_GAME % 3, first.get("x").getAsInt());
+    assertEquals(0, first.get("y").getAsInt());
+    assertEquals(2, moves.get(1).getAsJsonObject().get("playerId").getAsInt());
+  }
+
+  @Test
+  @DisplayName("Only games in the range asked for should be exported.")
+  public void testExportRange() throws DbServiceException, IOException {
+    // crosses a page boundary and leaves out the empty game
+    List<JsonObject> games = export(95, 205);
+
+    assertEquals(205 - 95 + 1, games.size());
+    assertEquals(95, games.get(0).get("gameId").getAsInt());
+    assertEquals(205, games.get(games.size() - 1).get("gameId").getAsInt());
+
+    assertEquals(0, export(GAMES + 1, Integer.MAX_VALUE).size());
+    assertEquals(0, export(EMPTY_GAME, EMPTY_GAME).size());
+  }
+
+  @Test
+  @DisplayName("Exporting without a connection should fail.")
+  public void testExportWithoutConnection() {
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.exportGames(1, GAMES, new GameHistoryWriter(new StringWriter()));
+    });
+  }
+
+  /**
+   * Exports a range of games and parses each line written.
+   */
+  private List<JsonObject> export(int fromGameId, int toGameId)
+      throws DbServiceException, IOException {
+    StringWriter out = new StringWriter();
+    int written;
+    try (GameHistoryWriter writer = new GameHistoryWriter(out)) {
+      dbService.connect();
+      written = dbService.exportGames(fromGameId, toGameId, writer);
+      dbService.close();
+    }
+
+    List<JsonObject> games = new ArrayList<>();
+    for (String line : out.toString().split("\n")) {
+      if (!line.isEmpty()) {
+        games.add(new JsonParser().parse(line).getAsJsonObject());
+      }
+    }
+    assertEquals(written, games.size());
+    return games;
+  }
+}
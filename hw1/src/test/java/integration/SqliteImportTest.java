@@ -0,0 +1,191 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.GenericGameBoard;
+import models.Move;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameHistoryWriter;
+import util.GameImporter;
+import util.ImportReport;
+import util.RecordedGame;
+
+public class SqliteImportTest extends SqliteDatabaseFixture {
+
+  private static final String TEST_DB = "import_test.db";
+
+  // more than two transactions' worth of games
+  private static final int GAMES = 250;
+
+  private static final int GAMES_PER_TRANSACTION = 100;
+
+  public SqliteImportTest() {
+    super(TEST_DB);
+  }
+
+  /**
+   * Starts each test from a new database holding a single game.
+   *
+   * @throws DbServiceException if the game could not be created
+   */
+  @BeforeEach
+  public void createGame() throws DbServiceException {
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.savePlayer(player1, 1);
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("Imported games should be exported again exactly as they were read, with "
+      + "new IDs following the most recent game.")
+  public void testImportThenExport() throws DbServiceException, IOException {
+    List<String> lines = new ArrayList<>();
+    for (int gameId = 1; gameId <= GAMES; gameId++) {
+      lines.add(gameLine(gameId));
+    }
+
+    ImportReport report = new GameImporter(dbService, 4, GAMES_PER_TRANSACTION)
+        .importGames(new BufferedReader(new StringReader(String.join("\n", lines))));
+
+    assertEquals(GAMES, report.getGamesImported());
+    assertEquals(0, report.getGamesRejected());
+
+    StringWriter out = new StringWriter();
+    GameHistoryWriter writer = new GameHistoryWriter(out);
+    dbService.connect();
+    dbService.exportGames(2, Integer.MAX_VALUE, writer);
+    dbService.close();
+    writer.close();
+
+    String[] exported = out.toString().split("\n");
+    assertEquals(GAMES, exported.length);
+    for (int i = 0; i < GAMES; i++) {
+      assertEquals(lines.get(i).replace("{\"gameId\":" + (i + 1) + ",",
+          "{\"gameId\":" + (i + 2) + ","), exported[i]);
+    }
+  }
+
+  @Test
+  @DisplayName("Imported games should be restored from their snapshots.")
+  public void testImportedGamesRestored() throws DbServiceException, IOException {
+    String file = gameLine(1) + "\n" + "{\"gameId\":2}" + "\n" + gameLine(3);
+
+    ImportReport report = new GameImporter(dbService, 2, GAMES_PER_TRANSACTION)
+        .importGames(new BufferedReader(new StringReader(file)));
+
+    assertEquals(2, report.getGamesImported());
+    assertEquals(1, report.getGamesRejected());
+
+    dbService.connect();
+    Map<Integer, GenericGameBoard> gameboards = dbService.restoreGameBoards(Arrays.asList(2, 3));
+    dbService.close();
+    // the games on lines 1 and 3, after game 1
+    for (int gameId : Arrays.asList(2, 3)) {
+      GameBoard expected = GameImporter.replay(RecordedGame.parse(gameLine(2 * gameId - 3)));
+      GenericGameBoard restored = gameboards.get(gameId);
+      assertEquals(expected.getWinner(), restored.getWinner());
+      assertEquals(expected.isDraw(), restored.isDraw());
+      assertEquals(expected.getTurn(), restored.getTurn());
+      assertEquals(true, restored.isGameStarted());
+      assertEquals(Arrays.deepToString(expected.getBoardState()),
+          Arrays.deepToString(restored.getBoardState()));
+    }
+  }
+
+  @Test
+  @DisplayName("A new game started on an imported game restored at startup should keep the "
+      + "imported game.")
+  public void testNewGameAfterImport() throws DbServiceException, IOException,
+      GameBoardInternalError {
+    new GameImporter(dbService, 2, GAMES_PER_TRANSACTION)
+        .importGames(new BufferedReader(new StringReader(gameLine(1) + "\n" + gameLine(2))));
+
+    // as the server does on startup, and then for /newgame
+    GameBoard gb = dbService.restoreMostRecentGameBoard();
+    assertEquals(3, gb.getGameId());
+    gb.resetGameboard();
+    assertEquals(4, gb.getGameId());
+
+    dbService.connect();
+    assertEquals(2, dbService.findAllPlayers(3).size());
+    assertEquals(gameLine(2).replace("{\"gameId\":2,", "{\"gameId\":3,"),
+        exportLine(3));
+    dbService.close();
+  }
+
+  @Test
+  @DisplayName("Saving a game that already exists should write none of the games.")
+  public void testSaveExistingGame() throws DbServiceException {
+    char[][] state = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    Map<Integer, GameBoard> gameboards = new LinkedHashMap<>();
+    gameboards.put(2, new GameBoard(player1, player2, true, 1, state, 0, false, null));
+    gameboards.put(1, new GameBoard(player1, player2, true, 1, state, 0, false, null));
+
+    dbService.connect();
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.saveGames(gameboards, new LinkedHashMap<Integer, List<Move>>());
+      dbService.commit();
+    });
+    dbService.close();
+
+    dbService.connect();
+    assertEquals(1, dbService.findMostRecentGameId());
+    dbService.close();
+  }
+
+  /**
+   * Returns a game as GameHistoryWriter writes it: a win for player 1, a draw
+   * or a game in progress, depending on the game ID.
+   */
+  private String gameLine(int gameId) throws IOException {
+    List<Move> moves;
+    int winner = 0;
+    boolean isDraw = false;
+    if (gameId % 3 == 0) {
+      moves = Arrays.asList(new Move(player1, 0, 0), new Move(player2, 1, 0),
+          new Move(player1, 0, 1), new Move(player2, 1, 1), new Move(player1, 0, 2));
+      winner = 1;
+    } else if (gameId % 3 == 1) {
+      moves = Arrays.asList(new Move(player1, 0, 0), new Move(player2, 1, 1),
+          new Move(player1, 2, 2), new Move(player2, 0, 1), new Move(player1, 2, 1),
+          new Move(player2, 2, 0), new Move(player1, 0, 2), new Move(player2, 1, 2),
+          new Move(player1, 1, 0));
+      isDraw = true;
+    } else {
+      moves = Arrays.asList(new Move(player1, gameId % 9 / 3, gameId % 3));
+    }
+
+    StringWriter out = new StringWriter();
+    GameHistoryWriter writer = new GameHistoryWriter(out);
+    writer.writeGame(gameId, Arrays.asList(player1, player2), moves, winner, isDraw);
+    writer.close();
+    return out.toString().trim();
+  }
+
+  /**
+   * Returns a game as exportGames() writes it, in the caller's transaction.
+   */
+  private String exportLine(int gameId) throws DbServiceException, IOException {
+    StringWriter out = new StringWriter();
+    GameHistoryWriter writer = new GameHistoryWriter(out);
+    dbService.exportGames(gameId, gameId, writer);
+    writer.close();
+    return out.toString().trim();
+  }
+}
@@ -0,0 +1,137 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import models.Move;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.LockMetrics;
+
+public class SqliteLockContentionTest extends SqliteDatabaseFixture {
+
+  private static final String TEST_DB = "lock_test.db";
+
+  // how long another connection keeps the database locked
+  private static final long LOCK_MILLIS = 300;
+
+  public SqliteLockContentionTest() {
+    super(TEST_DB);
+  }
+
+  /**
+   * Starts each test from a new database holding three games with two players
+   * each.
+   *
+   * @throws DbServiceException if the games could not be created
+   */
+  @BeforeEach
+  public void createGames() throws DbServiceException {
+    dbService.connect();
+    for (int gameId = 1; gameId <= 3; gameId++) {
+      dbService.createNewGame(gameId);
+      dbService.savePlayer(player1, gameId);
+      dbService.savePlayer(player2, gameId);
+    }
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("A move saved while another connection locks the database should be "
+      + "committed once the lock is released.")
+  public void testMoveWaitsForLock() throws Exception {
+    LockMetrics before = lockMetrics();
+
+    CompletableFuture<Void> saved;
+    Connection locker = lockDatabase();
+    try {
+      saved = CompletableFuture.runAsync(() -> {
+        try {
+          dbService.connect();
+          dbService.saveValidMove(new Move(player1, 0, 0), 1);
+          dbService.commit();
+        } catch (DbServiceException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      Thread.sleep(LOCK_MILLIS);
+      assertEquals(false, saved.isDone());
+    } finally {
+      // closing the locking connection releases its lock
+      locker.close();
+    }
+    saved.get();
+
+    dbService.connect();
+    assertEquals(1, dbService.findAllMoves(1).size());
+    dbService.close();
+
+    LockMetrics after = lockMetrics();
+    assertTrue(after.getLockWaits() > before.getLockWaits());
+    assertTrue(after.getRetries() > before.getRetries());
+    assertEquals(before.getTimeouts(), after.getTimeouts());
+    assertTrue(after.getMaxLockWaitMillis() > 0);
+  }
+
+  @Test
+  @DisplayName("A batch held up by a lock should be written exactly once.")
+  public void testBatchWaitsForLock() throws Exception {
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    for (int gameId = 1; gameId <= 3; gameId++) {
+      moves.put(gameId, Arrays.asList(new Move(player1, 0, 0), new Move(player2, 1, 1)));
+    }
+
+    CompletableFuture<Void> saved;
+    Connection locker = lockDatabase();
+    try {
+      saved = CompletableFuture.runAsync(() -> {
+        try {
+          dbService.connect();
+          dbService.saveMoves(moves);
+          dbService.commit();
+        } catch (DbServiceException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      Thread.sleep(LOCK_MILLIS);
+      assertEquals(false, saved.isDone());
+    } finally {
+      // closing the locking connection releases its lock
+      locker.close();
+    }
+    saved.get();
+
+    dbService.connect();
+    for (int gameId = 1; gameId <= 3; gameId++) {
+      assertEquals(2, dbService.findAllMoves(gameId).size());
+    }
+    dbService.close();
+  }
+
+  /**
+   * Opens a separate connection holding an exclusive lock on the database,
+   * which keeps other connections from reading or writing until it is closed.
+   */
+  private Connection lockDatabase() throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    try (Statement statement = conn.createStatement()) {
+      statement.execute("BEGIN EXCLUSIVE;");
+    }
+    return conn;
+  }
+
+  private LockMetrics lockMetrics() {
+    return dbService.getPoolMetrics().getLocks();
+  }
+}
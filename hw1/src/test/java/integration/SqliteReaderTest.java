@@ -0,0 +1,149 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.PoolMetrics;
+import util.SqliteConnectionPool;
+import util.SqliteProfile;
+import util.TicTacToeSqliteDbService;
+
+public class SqliteReaderTest {
+
+  private static final String TEST_DB = "reader_test.db";
+
+  private TicTacToeSqliteDbService writer = new TicTacToeSqliteDbService(TEST_DB);
+
+  private TicTacToeSqliteDbService reader = new TicTacToeSqliteDbService(TEST_DB);
+
+  private Player player1 = new Player('X', 1);
+
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Starts each test from a new database, using write-ahead logging, holding a
+   * game with two players.
+   *
+   * @throws DbServiceException if the game could not be created
+   */
+  @BeforeEach
+  public void createGame() throws DbServiceException {
+    deleteDb();
+    SqliteConnectionPool.forDatabase(TEST_DB, SqliteProfile.BALANCED);
+    writer.createDatabasesTables();
+    writer.connect();
+    writer.createNewGame(1);
+    writer.savePlayer(player1, 1);
+    writer.savePlayer(player2, 1);
+    writer.commit();
+  }
+
+  /**
+   * Removes the database files after each test.
+   *
+   * @throws DbServiceException if a connection could not be returned
+   */
+  @AfterEach
+  public void deleteDb() throws DbServiceException {
+    writer.close();
+    reader.close();
+    SqliteConnectionPool.forDatabase(TEST_DB).shutdown();
+    new File(TEST_DB).delete();
+    new File(TEST_DB + "-wal").delete();
+    new File(TEST_DB + "-shm").delete();
+  }
+
+  @Test
+  @DisplayName("Reads should not wait for another service's open transaction, and should "
+      + "see its changes once committed.")
+  public void testReadDuringWrite() throws DbServiceException {
+    writer.connect();
+    writer.saveValidMove(new Move(player1, 0, 0), 1);
+
+    long start = System.nanoTime();
+    reader.connect();
+    assertEquals(0, reader.findAllMoves(1).size());
+    assertEquals(2, reader.findAllPlayers(1).size());
+    assertEquals(0, reader.restoreGameBoard(1).getBoardState()[0][0]);
+    reader.close();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    // well under the profile's busy timeout, which a blocked read would wait out
+    assertTrue(elapsedMillis < SqliteProfile.BALANCED.getBusyTimeoutMillis() / 2,
+        "Reads took " + elapsedMillis + "ms.");
+
+    writer.commit();
+
+    reader.connect();
+    assertEquals(1, reader.findAllMoves(1).size());
+    assertEquals('X', reader.restoreGameBoard(1).getBoardState()[0][0]);
+    reader.close();
+  }
+
+  @Test
+  @DisplayName("Reads inside a transaction should see the transaction's own changes.")
+  public void testReadOwnWrites() throws DbServiceException {
+    writer.connect();
+    writer.createNewGame(2);
+    writer.savePlayer(player1, 2);
+
+    assertEquals(2, writer.findMostRecentGameId());
+    assertEquals(1, writer.findAllPlayers(2).size());
+    writer.close();
+
+    writer.connect();
+    assertEquals(1, writer.findMostRecentGameId());
+    writer.close();
+  }
+
+  @Test
+  @DisplayName("Connections of the pool of readers should refuse to write.")
+  public void testReadersRefuseWrites() throws SQLException {
+    SqliteConnectionPool readers = SqliteConnectionPool.readersFor(TEST_DB);
+    assertTrue(readers.isReadOnly());
+
+    Connection conn = readers.acquire();
+    try (Statement statement = conn.createStatement()) {
+      Assertions.assertThrows(SQLException.class,
+          () -> statement.executeUpdate("DELETE FROM games;"));
+    } finally {
+      readers.release(conn);
+    }
+  }
+
+  @Test
+  @DisplayName("Pool metrics should include the utilization of the pool of readers.")
+  public void testReaderMetrics() throws DbServiceException {
+    long before = readerMetrics().getAcquisitions();
+
+    reader.connect();
+    reader.findAllMoves(1);
+    PoolMetrics busy = readerMetrics();
+    assertEquals(1, busy.getInUse());
+    assertTrue(busy.getAverageInUse() > 0);
+    reader.close();
+
+    PoolMetrics quiet = readerMetrics();
+    assertEquals(0, quiet.getInUse());
+    assertEquals(before + 1, quiet.getAcquisitions());
+  }
+
+  private PoolMetrics readerMetrics() {
+    PoolMetrics readers = reader.getPoolMetrics().getReaders();
+    assertNotNull(readers);
+    return readers;
+  }
+}
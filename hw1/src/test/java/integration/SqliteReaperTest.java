@@ -0,0 +1,131 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import models.Move;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameReaper;
+import util.TicTacToeSqliteDbService;
+
+public class SqliteReaperTest extends SqliteDatabaseFixture {
+
+  private static final String TEST_DB = "reaper_test.db";
+
+  public SqliteReaperTest() {
+    super(TEST_DB);
+  }
+
+  /**
+   * Starts each test from a new database holding four games: games 1, 3 and 4
+   * in progress, and game 2 won by player 1.
+   *
+   * @throws DbServiceException if the games could not be created
+   */
+  @BeforeEach
+  public void createGames() throws DbServiceException {
+    dbService.connect();
+    for (int gameId = 1; gameId <= 4; gameId++) {
+      dbService.createNewGame(gameId);
+      dbService.savePlayer(player1, gameId);
+      dbService.savePlayer(player2, gameId);
+    }
+    for (Move move : Arrays.asList(new Move(player1, 0, 0), new Move(player2, 1, 0),
+        new Move(player1, 0, 1), new Move(player2, 1, 1), new Move(player1, 0, 2))) {
+      dbService.saveValidMove(move, 2);
+    }
+    dbService.saveValidMove(new Move(player1, 1, 1), 3);
+    dbService.commit();
+  }
+
+  @Test
+  @DisplayName("Idle games still being played should be expired with their players and moves.")
+  public void testExpireIdleGames() throws DbServiceException, SQLException,
+      InterruptedException {
+    dbService.connect();
+    assertEquals(0, dbService.expireIdleGames(System.currentTimeMillis() - 60000, 10).size());
+    dbService.commit();
+
+    Thread.sleep(20);
+    long idleSince = System.currentTimeMillis();
+    Thread.sleep(20);
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 2, 2), 4);
+    dbService.commit();
+
+    dbService.connect();
+    List<Integer> expired = dbService.expireIdleGames(idleSince, 10);
+    dbService.commit();
+
+    assertEquals(Arrays.asList(1, 3), sorted(expired));
+    assertEquals(Arrays.asList(2, 4), ids("SELECT id FROM games ORDER BY id;"));
+    assertEquals(Arrays.asList(2, 2, 4, 4), ids("SELECT game_id FROM players ORDER BY game_id;"));
+    assertEquals(6, ids("SELECT game_id FROM moves;").size());
+  }
+
+  @Test
+  @DisplayName("The reaper should expire every idle game but the most recent, a transaction "
+      + "at a time.")
+  public void testReaper() throws DbServiceException, SQLException, InterruptedException {
+    List<Integer> released = new ArrayList<>();
+    GameReaper reaper = new GameReaper(new TicTacToeSqliteDbService(TEST_DB), 20, 1000, 2,
+        released::addAll);
+    Thread.sleep(40);
+
+    // game 4, the most recent, is idle too but is kept
+    assertEquals(Arrays.asList(1, 3), sorted(reaper.reap()));
+    assertEquals(Arrays.asList(1, 3), sorted(released));
+    assertEquals(0, reaper.reap().size());
+    assertEquals(2, reaper.getGamesExpired());
+    assertEquals(Arrays.asList(2, 4), ids("SELECT id FROM games ORDER BY id;"));
+  }
+
+  @Test
+  @DisplayName("Games created before activity was tracked should count as active from the "
+      + "upgrade.")
+  public void testUpgradeMarksGamesActive() throws DbServiceException, SQLException {
+    deleteDb();
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+        Statement statement = conn.createStatement()) {
+      statement.executeUpdate("CREATE TABLE games (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+          + "has_started INTEGER, winner_id INTEGER, is_draw INTEGER, turn INTEGER);");
+      statement.executeUpdate("INSERT INTO games VALUES (1, 0, 0, 0, 0), (2, 0, 0, 0, 0);");
+    }
+    long upgradedAt = System.currentTimeMillis();
+    dbService.createDatabasesTables();
+
+    dbService.connect();
+    assertEquals(0, dbService.expireIdleGames(upgradedAt - 60000, 10).size());
+    assertEquals(Arrays.asList(1), dbService.expireIdleGames(upgradedAt + 60000, 10));
+    dbService.commit();
+  }
+
+  private static List<Integer> sorted(List<Integer> ids) {
+    List<Integer> copy = new ArrayList<>(ids);
+    copy.sort(null);
+    return copy;
+  }
+
+  private List<Integer> ids(String sql) throws SQLException {
+    List<Integer> ids = new ArrayList<>();
+    try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+        Statement statement = conn.createStatement()) {
+      try (ResultSet rs = statement.executeQuery(sql)) {
+        while (rs.next()) {
+          ids.add(rs.getInt(1));
+        }
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,167 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import models.GameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.SqliteConnectionPool;
+import util.TicTacToeSqliteDbService;
+
+public class SqliteSchemaTest {
+
+  private static final String TEST_DB = "schema_test.db";
+
+  private TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(TEST_DB);
+
+  private Player player1 = new Player('X', 1);
+
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Starts each test from a new database file. Pooled connections are closed
+   * first, since they would otherwise keep writing to the deleted file.
+   */
+  @BeforeEach
+  @AfterEach
+  public void deleteDb() {
+    SqliteConnectionPool.forDatabase(TEST_DB).shutdown();
+    new File(TEST_DB).delete();
+  }
+
+  @Test
+  @DisplayName("Players and moves of several games should be stored side by side.")
+  public void testMultipleGames() throws DbServiceException {
+    dbService.createDatabasesTables();
+
+    dbService.connect();
+    for (int gameId = 1; gameId <= 3; gameId++) {
+      dbService.createNewGame(gameId);
+      dbService.savePlayer(player1, gameId);
+      dbService.savePlayer(player2, gameId);
+      dbService.saveValidMove(new Move(player1, gameId - 1, 0), gameId);
+    }
+    dbService.commit();
+
+    dbService.connect();
+    for (int gameId = 1; gameId <= 3; gameId++) {
+      assertEquals(2, dbService.findAllPlayers(gameId).size());
+      assertEquals(1, dbService.findAllMoves(gameId).size());
+      assertEquals('X', dbService.restoreGameBoard(gameId).getBoardState()[gameId - 1][0]);
+    }
+    dbService.close();
+  }
+
+  @Test
+  @DisplayName("A database with the old single-game tables should be migrated on startup.")
+  public void testMigration() throws DbServiceException, SQLException {
+    execute(""
+        + "CREATE TABLE games (id INTEGER PRIMARY KEY AUTOINCREMENT, has_started INTEGER, "
+        + "winner_id INTEGER, is_draw INTEGER, turn INTEGER);",
+        ""
+        + "CREATE TABLE players (id INTEGER PRIMARY KEY, player_type TEXT NOT NULL, "
+        + "game_id INTEGER NOT NULL, FOREIGN KEY (game_id) REFERENCES games (id) "
+        + "ON DELETE CASCADE);",
+        ""
+        + "CREATE TABLE moves (id INTEGER PRIMARY KEY AUTOINCREMENT, game_id INTEGER NOT NULL, "
+        + "player_id INTEGER NOT NULL, x_coord INT NOT NULL, y_coord INT NOT NULL, "
+        + "FOREIGN KEY (game_id) REFERENCES games (id) ON DELETE CASCADE, "
+        + "FOREIGN KEY (player_id) REFERENCES players (id) ON DELETE CASCADE);",
+        "INSERT INTO games VALUES (1, 1, 0, 0, 1);",
+        "INSERT INTO players VALUES (1, 'X', 1);",
+        "INSERT INTO players VALUES (2, 'O', 1);",
+        "INSERT INTO moves (game_id, player_id, x_coord, y_coord) VALUES (1, 1, 0, 0);",
+        "INSERT INTO moves (game_id, player_id, x_coord, y_coord) VALUES (1, 2, 1, 1);");
+
+    dbService.createDatabasesTables();
+
+    assertEquals(Arrays.asList("games", "players", "moves"), tables());
+
+    dbService.connect();
+    GameBoard gb = dbService.restoreGameBoard(1);
+    List<Move> moves = dbService.findAllMoves(1);
+    dbService.close();
+
+    assertEquals('X', gb.getBoardState()[0][0]);
+    assertEquals('O', gb.getBoardState()[1][1]);
+    assertEquals(1, gb.getTurn());
+    assertEquals(2, moves.get(1).getPlayerId());
+
+    // a second game's players no longer clash with the first game's
+    dbService.connect();
+    dbService.createNewGame(2);
+    dbService.savePlayer(player1, 2);
+    dbService.savePlayer(player2, 2);
+    dbService.saveValidMove(new Move(player1, 2, 2), 2);
+    dbService.commit();
+
+    // deleting a game still cascades to its players and moves
+    dbService.connect();
+    dbService.deleteGame(1, true);
+    assertEquals(0, dbService.findAllMoves(1).size());
+    assertEquals(0, dbService.findAllPlayers(1).size());
+    assertEquals(1, dbService.findAllMoves(2).size());
+    dbService.close();
+  }
+
+  @Test
+  @DisplayName("Looking up a game's moves should use the moves_by_game index.")
+  public void testMovesIndexUsed() throws DbServiceException, SQLException {
+    dbService.createDatabasesTables();
+
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery(""
+        + "EXPLAIN QUERY PLAN SELECT player_no, x_coord, y_coord FROM moves "
+        + "WHERE game_id = 1 ORDER BY id;");
+    StringBuilder plan = new StringBuilder();
+    while (rs.next()) {
+      plan.append(rs.getString("detail"));
+    }
+    rs.close();
+    statement.close();
+    conn.close();
+
+    assertTrue(plan.toString().contains("COVERING INDEX moves_by_game"), plan.toString());
+  }
+
+  private List<String> tables() throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery(""
+        + "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%';");
+    List<String> tables = new ArrayList<>();
+    while (rs.next()) {
+      tables.add(rs.getString("name"));
+    }
+    rs.close();
+    statement.close();
+    conn.close();
+    return tables;
+  }
+
+  private void execute(String... sql) throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    for (String s : sql) {
+      statement.executeUpdate(s);
+    }
+    statement.close();
+    conn.close();
+  }
+}
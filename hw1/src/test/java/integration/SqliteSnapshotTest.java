@@ -0,0 +1,240 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.TicTacToeSqliteDbService;
+
+public class SqliteSnapshotTest {
+
+  private static final String TEST_DB = "snapshot_test.db";
+
+  private TicTacToeSqliteDbService dbService = new TicTacToeSqliteDbService(TEST_DB);
+
+  private Player player1 = new Player('X', 1);
+
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Creates a fresh game with two players before each test.
+   * 
+   * @throws DbServiceException DbService Exception on create tables or game
+   */
+  @BeforeEach
+  public void createGame() throws DbServiceException {
+    dbService.createDatabasesTables();
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.savePlayer(player1, 1);
+    dbService.savePlayer(player2, 1);
+    dbService.commit();
+  }
+
+  /**
+   * Removes the game after each test.
+   * 
+   * @throws DbServiceException DbService Exception on delete
+   */
+  @AfterEach
+  public void deleteGame() throws DbServiceException {
+    dbService.connect();
+    dbService.deleteGame(1, true);
+    dbService.close();
+  }
+
+  @Test
+  @DisplayName("Saved moves should be reflected in the game's snapshot.")
+  public void testSnapshotFollowsMoves() throws DbServiceException, SQLException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.commit();
+
+    assertNotNull(readSnapshot());
+
+    dbService.connect();
+    GameBoard result = dbService.restoreGameBoard(1);
+    dbService.close();
+
+    assertEquals('X', result.getBoardState()[0][0]);
+    assertEquals('O', result.getBoardState()[1][1]);
+    assertEquals(1, result.getTurn());
+    assertEquals(true, result.isGameStarted());
+  }
+
+  @Test
+  @DisplayName("A game on an m,n,k board should be restored with its size and k.")
+  public void testRestoreSizedBoard() throws DbServiceException, GameBoardInternalError {
+    dbService.connect();
+    GameBoard gb = dbService.restoreGameBoard(1).withSize(15, 15, 5);
+    dbService.close();
+    gb.resetGameboard();
+    gb.saveP1(player1);
+    gb.autoSetP2();
+    for (Move move : new Move[] { new Move(player1, 14, 14), new Move(player2, 0, 0) }) {
+      gb.processPlayerMove(move);
+      gb.commitMove();
+    }
+
+    dbService.connect();
+    GameBoard result = dbService.restoreGameBoard(gb.getGameId());
+    dbService.close();
+
+    assertEquals(true, result instanceof MnkGameBoard);
+    assertEquals(gb.toString(), result.toString());
+    assertEquals('X', result.getBoardState()[14][14]);
+  }
+
+  @Test
+  @DisplayName("A game saved before snapshots existed should be restored by replaying moves.")
+  public void testRestoreWithoutSnapshot() throws DbServiceException, SQLException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.commit();
+
+    dbService.connect();
+    GameBoard fromSnapshot = dbService.restoreGameBoard(1);
+    dbService.close();
+
+    // drop the snapshot, as if the game had been saved by an older version
+    execute("UPDATE games SET snapshot = NULL WHERE id = 1;");
+
+    dbService.connect();
+    GameBoard fromReplay = dbService.restoreGameBoard(1);
+    dbService.close();
+    assertEquals(fromSnapshot.toString(), fromReplay.toString());
+
+    // the next write should bring the snapshot back
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 2, 2), 1);
+    dbService.commit();
+    assertNotNull(readSnapshot());
+
+    dbService.connect();
+    assertEquals('X', dbService.restoreGameBoard(1).getBoardState()[2][2]);
+    dbService.close();
+  }
+
+  @Test
+  @DisplayName("A move that fills the board without a winner should be saved as a draw.")
+  public void testSnapshotDraw() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 1), 1);
+    dbService.saveValidMove(new Move(player2, 0, 2), 1);
+    dbService.saveValidMove(new Move(player1, 2, 1), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.saveValidMove(new Move(player1, 2, 0), 1);
+    dbService.saveValidMove(new Move(player2, 2, 2), 1);
+    dbService.saveValidMove(new Move(player1, 1, 2), 1);
+    dbService.saveValidMove(new Move(player2, 1, 0), 1);
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.commit();
+
+    dbService.connect();
+    GameBoard result = dbService.restoreGameBoard(1);
+    dbService.close();
+
+    assertEquals(true, result.isDraw());
+    assertEquals(0, result.getWinner());
+  }
+
+  @Test
+  @DisplayName("Saving the game state should write the status columns and snapshot together.")
+  public void testSaveGameStateSingleWrite() throws DbServiceException, SQLException {
+    char[][] board = { { 'X', 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    GameBoard gb = new GameBoard(player1, player2, true, 2, board, 0, false, null);
+
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveGameState(gb, 1);
+    dbService.commit();
+
+    assertEquals("1|0|0|2", readStatus());
+
+    dbService.connect();
+    GameBoard result = dbService.restoreGameBoard(1);
+    dbService.close();
+    assertEquals(gb.toString(), result.toString());
+  }
+
+  @Test
+  @DisplayName("The most recent game should be restored, replaying it if it has no snapshot.")
+  public void testRestoreMostRecent() throws DbServiceException, SQLException {
+    dbService.connect();
+    dbService.createNewGame(2);
+    dbService.savePlayer(player1, 2);
+    dbService.savePlayer(player2, 2);
+    dbService.saveValidMove(new Move(player1, 2, 0), 2);
+    dbService.saveValidMove(new Move(player2, 0, 2), 2);
+    dbService.saveValidMove(new Move(player1, 1, 1), 2);
+    dbService.commit();
+
+    GameBoard fromSnapshot = dbService.restoreMostRecentGameBoard();
+    execute("UPDATE games SET snapshot = NULL WHERE id = 2;");
+    GameBoard fromReplay = dbService.restoreMostRecentGameBoard();
+
+    assertEquals(fromSnapshot.toString(), fromReplay.toString());
+    assertEquals('X', fromReplay.getBoardState()[1][1]);
+    assertEquals(2, fromReplay.getTurn());
+    assertEquals(2, fromReplay.getGameId());
+
+    dbService.connect();
+    dbService.deleteGame(2, true);
+    dbService.close();
+  }
+
+  private String readStatus() throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery(
+        "SELECT has_started, winner_id, is_draw, turn FROM games WHERE id = 1;");
+    rs.next();
+    String status = rs.getInt(1) + "|" + rs.getInt(2) + "|" + rs.getInt(3) + "|" + rs.getInt(4);
+    rs.close();
+    statement.close();
+    conn.close();
+    return status;
+  }
+
+  private byte[] readSnapshot() throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    ResultSet rs = statement.executeQuery("SELECT snapshot FROM games WHERE id = 1;");
+    byte[] snapshot = rs.next() ? rs.getBytes("snapshot") : null;
+    rs.close();
+    statement.close();
+    conn.close();
+    return snapshot;
+  }
+
+  private void execute(String sql) throws SQLException {
+    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + TEST_DB);
+    Statement statement = conn.createStatement();
+    statement.executeUpdate(sql);
+    statement.close();
+    conn.close();
+  }
+
+  @AfterAll
+  public static void deleteDb() {
+    new File(TEST_DB).delete();
+  }
+}
@@ -0,0 +1,71 @@
+package integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.SqliteConnectionPool;
+import util.SqliteStatementCache;
+
+public class SqliteStatementCacheTest {
+
+  private static final String TEST_DB = "cache_test.db";
+
+  @Test
+  @DisplayName("The same statement shape should only be prepared once per connection.")
+  public void testStatementReused() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(TEST_DB, 1);
+    Connection conn = pool.acquire();
+    SqliteStatementCache cache = pool.statementCache(conn);
+
+    PreparedStatement first = cache.prepare("SELECT ? + 1;");
+    PreparedStatement second = cache.prepare("SELECT ? + 1;");
+
+    assertSame(first, second);
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+
+    // the cache belongs to the connection, so it survives a trip through the pool
+    pool.release(conn);
+    Connection again = pool.acquire();
+    assertSame(cache, pool.statementCache(again));
+    pool.release(again);
+    pool.shutdown();
+  }
+
+  @Test
+  @DisplayName("The least recently used statement should be closed once the cache is full.")
+  public void testEviction() throws SQLException {
+    SqliteConnectionPool pool = new SqliteConnectionPool(TEST_DB, 1);
+    Connection conn = pool.acquire();
+    SqliteStatementCache cache = new SqliteStatementCache(conn, 2);
+
+    PreparedStatement one = cache.prepare("SELECT 1;");
+    cache.prepare("SELECT 2;");
+    cache.prepare("SELECT 1;");
+    PreparedStatement two = cache.prepare("SELECT 2;");
+    cache.prepare("SELECT 3;");
+
+    assertEquals(2, cache.size());
+    assertTrue(one.isClosed());
+    assertNotSame(one, cache.prepare("SELECT 1;"));
+    assertTrue(two.isClosed());
+
+    cache.clear();
+    pool.release(conn);
+    pool.shutdown();
+  }
+
+  @AfterAll
+  public static void deleteDb() {
+    new File(TEST_DB).delete();
+  }
+}
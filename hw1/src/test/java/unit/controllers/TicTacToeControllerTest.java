@@ -2,12 +2,14 @@ package unit.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -17,13 +19,20 @@ import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
 import models.GameBoard;
 import models.GameBoardInternalError;
+import models.Message;
+import models.MessageStatus;
+import models.MnkGameBoard;
 import models.Move;
 import models.Player;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import util.AsyncTicTacToeDbService;
+import util.DbServiceException;
+import util.TicTacToeInMemoryDbService;
 import util.TicTacToeSqliteDbService;
 
 class TicTacToeControllerTest {
@@ -120,6 +129,148 @@ class TicTacToeControllerTest {
     assertEquals(gb.isEmpty(), true);
   }
   
+  /**
+   * A new game can be played on a larger board, and the next new game without
+   * a size goes back to the standard board.
+   */
+  @Test()
+  @DisplayName("Controller should serve new game on the board size requested.")
+  void testServeNewGameSized() {
+    when(ctx.queryParam("rows")).thenReturn("15");
+    when(ctx.queryParam("columns")).thenReturn("15");
+    when(ctx.queryParam("k")).thenReturn("5");
+    tttcontroller.serveNewGame(ctx);
+    
+    GameBoard gb = tttcontroller.getGameBoard();
+    assertEquals(true, gb instanceof MnkGameBoard);
+    assertEquals(15, gb.getRowCount());
+    assertEquals(5, gb.getWinLength());
+    
+    ctx = mock(Context.class);
+    tttcontroller.serveNewGame(ctx);
+    assertEquals(GameBoard.class, tttcontroller.getGameBoard().getClass());
+  }
+  
+  /**
+   * A new game cannot be served on a board size that is not a number or
+   * cannot be played.
+   */
+  @Test()
+  @DisplayName("Controller should reject a new game on an invalid board size.")
+  void testServeNewGameInvalidSize() {
+    when(ctx.queryParam("rows")).thenReturn("many");
+    Assertions.assertThrows(BadRequestResponse.class, () -> {
+      tttcontroller.serveNewGame(ctx);
+    });
+    
+    when(ctx.queryParam("rows")).thenReturn("4");
+    when(ctx.queryParam("k")).thenReturn("9");
+    Assertions.assertThrows(BadRequestResponse.class, () -> {
+      tttcontroller.serveNewGame(ctx);
+    });
+  }
+  
+  /**
+   * A game started against the server has player 2 straight away, and each
+   * move of player 1 is answered by a move of player 2.
+   */
+  @Test()
+  @DisplayName("Controller should play player 2 in a game started against the computer.")
+  void testComputerOpponent() {
+    when(ctx.formParam("type")).thenReturn("O");
+    when(ctx.formParam("opponent")).thenReturn("ai");
+    mockTttcontroller.startGame(ctx);
+    
+    GameBoard gb = mockTttcontroller.getGameBoard();
+    assertEquals(new Player('X', 2), gb.getP2());
+    assertEquals(true, gb.isGameStarted());
+    
+    Mockito.doReturn("1").when(mockTttcontroller).parsePlayerIdFromPathParam(ctx);
+    when(ctx.formParam("x")).thenReturn("0");
+    when(ctx.formParam("y")).thenReturn("0");
+    mockTttcontroller.processPlayerMove(ctx);
+    
+    // the computer takes the center against a corner opening
+    assertEquals(2, gb.getMoveCount());
+    assertEquals('X', gb.getBoardState()[1][1]);
+    assertEquals(1, gb.getTurn());
+    
+    // an invalid move is not answered
+    mockTttcontroller.processPlayerMove(ctx);
+    assertEquals(2, gb.getMoveCount());
+  }
+  
+  /**
+   * A game started against the server is still played by the server once the
+   * game board is loaded from the database again, as after a restart.
+   */
+  @Test()
+  @DisplayName("Controller should keep playing player 2 in a game against the computer "
+      + "loaded from the database.")
+  void testComputerOpponentAfterReload() throws GameBoardInternalError {
+    TicTacToeInMemoryDbService dbService = new TicTacToeInMemoryDbService();
+    TicTacToeController controller = new TicTacToeController(dbService);
+    controller.serveNewGame(ctx);
+    when(ctx.formParam("type")).thenReturn("O");
+    when(ctx.formParam("opponent")).thenReturn("ai");
+    controller.startGame(ctx);
+    
+    TicTacToeController restarted = Mockito.spy(new TicTacToeController(dbService));
+    restarted.loadGameBoard();
+    Mockito.doReturn("1").when(restarted).parsePlayerIdFromPathParam(ctx);
+    when(ctx.formParam("x")).thenReturn("0");
+    when(ctx.formParam("y")).thenReturn("0");
+    restarted.processPlayerMove(ctx);
+    
+    GameBoard gb = restarted.getGameBoard();
+    assertEquals(true, gb.hasComputerOpponent());
+    assertEquals(2, gb.getMoveCount());
+    assertEquals('X', gb.getBoardState()[1][1]);
+    
+    // a new game is against a person again, until asked otherwise
+    restarted.serveNewGame(ctx);
+    assertEquals(false, restarted.getGameBoard().hasComputerOpponent());
+  }
+  
+  /**
+   * A game cannot be started against an unknown kind of opponent.
+   */
+  @Test()
+  @DisplayName("Cannot start game against an opponent other than 'ai' or 'human'.")
+  void testStartGameInvalidOpponent() {
+    when(ctx.formParam("type")).thenReturn("X");
+    when(ctx.formParam("opponent")).thenReturn("robot");
+    
+    Assertions.assertThrows(BadRequestResponse.class, () -> {
+      tttcontroller.startGame(ctx);
+    });
+    assertEquals(null, tttcontroller.getGameBoard().getP1());
+  }
+
+  /**
+   * Test that a hint names a move for the player whose turn it is, and the
+   * outcome of the game with perfect play; a game that has not started gets
+   * no hint.
+   */
+  @Test()
+  @DisplayName("A hint should name a move and the outcome with perfect play.")
+  void testServeHint() {
+    ArgumentCaptor<String> result = ArgumentCaptor.forClass(String.class);
+    tttcontroller.serveHint(ctx);
+    verify(ctx).result(result.capture());
+    Message message = gson.fromJson(result.getValue(), Message.class);
+    assertEquals(MessageStatus.MISSING_PLAYER.getValue(), message.getCode());
+
+    ctx = mock(Context.class);
+    tttcontroller.setGameBoard(activeGameBoard);
+    tttcontroller.serveHint(ctx);
+    verify(ctx).result(result.capture());
+    message = gson.fromJson(result.getValue(), Message.class);
+    assertEquals(MessageStatus.SUCCESS.getValue(), message.getCode());
+    assertEquals("Player 1 could play (1, 1). With perfect play, nobody wins.",
+        message.getMessage());
+  }
+
   /**
    * Test that a duplicate request to start a game does not replace
    * the existing player 1 (should throw a BadRequestResponse).
@@ -412,6 +563,45 @@ class TicTacToeControllerTest {
     
   }
   
+  /**
+   * Test that an already loaded game board is served from memory.
+   */
+  @Test()
+  @DisplayName("A loaded gameboard should not be reloaded from the database.")
+  void testEnsureLoadedNoReload() throws GameBoardInternalError {
+    
+    TicTacToeController controller = new TicTacToeController(gameBoardMock);
+    
+    controller.ensureGameBoardLoaded();
+    
+    verify(gameBoardMock, Mockito.never()).getMostRecentDbState();
+    assertEquals(gameBoardMock, controller.getGameBoard());
+  }
+  
+  /**
+   * Test that a failed database write causes the board to be reloaded on the
+   * next request.
+   */
+  @Test()
+  @DisplayName("After a database error, the gameboard should be reloaded from the database.")
+  void testEnsureLoadedAfterError() throws GameBoardInternalError {
+    
+    TicTacToeController controller = new TicTacToeController(gameBoardMock);
+    
+    doThrow(new GameBoardInternalError("Exception thrown"))
+      .when(gameBoardMock).resetGameboard();
+    when(gameBoardMock.getMostRecentDbState()).thenReturn(new GameBoard());
+    
+    controller.serveNewGame(ctx);
+    assertEquals(false, controller.isGameBoardLoaded());
+    
+    controller.ensureGameBoardLoaded();
+    
+    verify(gameBoardMock).getMostRecentDbState();
+    assertEquals(true, controller.isGameBoardLoaded());
+    assertEquals(new GameBoard().toString(), controller.getGameBoard().toString());
+  }
+  
   /**
    * Test what happens when reseting the board game fails.
    */
@@ -488,6 +678,64 @@ class TicTacToeControllerTest {
   }
   
   
+  /**
+   * Test that with an asynchronous database service, the response to a move is
+   * left to a future that completes once the move is committed.
+   */
+  @Test()
+  @DisplayName("With an asynchronous database service, a move is answered once it is saved.")
+  void testProcessPlayerMoveAsync() throws Exception {
+    AsyncTicTacToeDbService asyncDbService = mock(AsyncTicTacToeDbService.class);
+    CompletableFuture<Void> committed = new CompletableFuture<>();
+    when(asyncDbService.commit(anyInt(), any())).thenReturn(committed);
+    
+    activeGameBoard.setAsyncDbService(asyncDbService);
+    mockTttcontroller.setGameBoard(activeGameBoard);
+    Mockito.doReturn("1").when(mockTttcontroller).parsePlayerIdFromPathParam(ctx);
+    when(ctx.formParam("x")).thenReturn("0");
+    when(ctx.formParam("y")).thenReturn("0");
+    
+    mockTttcontroller.processPlayerMove(ctx);
+    
+    @SuppressWarnings("rawtypes")
+    ArgumentCaptor<CompletableFuture> result = ArgumentCaptor.forClass(CompletableFuture.class);
+    verify(ctx).result(result.capture());
+    assertEquals(false, result.getValue().isDone());
+    
+    committed.complete(null);
+    Message message = gson.fromJson((String) result.getValue().get(), Message.class);
+    assertEquals(MessageStatus.SUCCESS.getValue(), message.getCode());
+    verify(ctx).status(200);
+  }
+  
+  /**
+   * Test that a failed asynchronous commit results in a 500 and a reload of the
+   * game board.
+   */
+  @Test()
+  @DisplayName("A failed asynchronous commit results in status of 500 - Move.")
+  void testProcessPlayerMoveAsyncError() throws Exception {
+    AsyncTicTacToeDbService asyncDbService = mock(AsyncTicTacToeDbService.class);
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new DbServiceException("Exception thrown"));
+    when(asyncDbService.commit(anyInt(), any())).thenReturn(failed);
+    
+    activeGameBoard.setAsyncDbService(asyncDbService);
+    mockTttcontroller.setGameBoard(activeGameBoard);
+    Mockito.doReturn("1").when(mockTttcontroller).parsePlayerIdFromPathParam(ctx);
+    when(ctx.formParam("x")).thenReturn("0");
+    when(ctx.formParam("y")).thenReturn("0");
+    
+    mockTttcontroller.processPlayerMove(ctx);
+    
+    @SuppressWarnings("rawtypes")
+    ArgumentCaptor<CompletableFuture> result = ArgumentCaptor.forClass(CompletableFuture.class);
+    verify(ctx).result(result.capture());
+    result.getValue().get();
+    verify(ctx).status(500);
+    assertEquals(false, mockTttcontroller.isGameBoardLoaded());
+  }
+  
   /**
    * Test secondary constructor.
    */
@@ -499,5 +747,20 @@ class TicTacToeControllerTest {
     
     assertEquals(activeGameBoard.toString(), tttcontroller.getGameBoard().toString());
   }
+  
+  /**
+   * Test that the game board is cleared only when its own game is expired.
+   */
+  @Test()
+  @DisplayName("The game board should be cleared when its game is expired.")
+  void testExpireGameBoard() {
+    tttcontroller.setGameBoard(activeGameBoard);
+    
+    assertEquals(false, tttcontroller.expireGameBoard(Arrays.asList(2, 3)));
+    assertEquals(true, tttcontroller.getGameBoard().isGameStarted());
+    
+    assertEquals(true, tttcontroller.expireGameBoard(Arrays.asList(1)));
+    assertEquals(false, tttcontroller.getGameBoard().isGameStarted());
+    assertEquals(null, tttcontroller.getGameBoard().getP1());
+  }
 }
-
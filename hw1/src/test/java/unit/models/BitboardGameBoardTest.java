@@ -0,0 +1,121 @@
+package unit.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import models.BitboardGameBoard;
+import models.GameBoard;
+import models.InvalidGameBoardConfigurationException;
+import models.Message;
+import models.MessageStatus;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class BitboardGameBoardTest {
+
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Test that random games end the same way on both kinds of board.
+   */
+  @Test
+  @DisplayName("Random games should be played the same as on a GameBoard.")
+  void testSameAsGameBoard() {
+    Random random = new Random(7);
+    for (int game = 0; game < 2000; game++) {
+      Player first = game % 2 == 0 ? player1 : new Player('O', 1);
+      Player second = game % 2 == 0 ? player2 : new Player('X', 2);
+      BitboardGameBoard bitboard = new BitboardGameBoard(first, second);
+      GameBoard gameboard = new GameBoard(first, second, true, 1, new char[3][3], 0, false,
+          null);
+
+      while (bitboard.getWinner() == 0 && !bitboard.isDraw()) {
+        List<Move> free = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+          for (int j = 0; j < 3; j++) {
+            Move move = new Move(bitboard.getTurn() == 1 ? first : second, i, j);
+            assertEquals(gameboard.isValidMove(move), bitboard.isValidMove(move));
+            if (bitboard.isValidMove(move)) {
+              free.add(move);
+            }
+          }
+        }
+        Move move = free.get(random.nextInt(free.size()));
+
+        Message message = bitboard.processPlayerMove(move);
+        gameboard.playMove(move);
+        if (gameboard.getWinner() == 0 && gameboard.isFull()) {
+          gameboard.setDraw(true);
+        }
+
+        assertEquals(true, message.isMoveValidity());
+        assertEquals(gameboard.getWinner(), bitboard.getWinner());
+        assertEquals(gameboard.isDraw(), bitboard.isDraw());
+        assertEquals(gameboard.isFull(), bitboard.isFull());
+        assertEquals(gameboard.getMoveCount(), bitboard.getMoveCount());
+        assertEquals(gameboard.getTurn(), bitboard.getTurn());
+        assertArrayEquals(gameboard.getBoardState(), bitboard.getBoardState());
+      }
+    }
+  }
+
+  /**
+   * Test that moves are checked by the same rules as on a GameBoard.
+   */
+  @Test
+  @DisplayName("Invalid moves should be rejected with the same messages as on a GameBoard.")
+  void testInvalidMoves() {
+    BitboardGameBoard bitboard = new BitboardGameBoard(player1, player2);
+    assertEquals(true, bitboard.isEmpty());
+    assertEquals(MessageStatus.INVALID_ORDER_OF_PLAY.getValue(),
+        bitboard.processPlayerMove(new Move(player2, 0, 0)).getCode());
+
+    bitboard.processPlayerMove(new Move(player1, 1, 1));
+    assertEquals(false, bitboard.isEmpty());
+    assertEquals(MessageStatus.OTHER_PLAYERS_TURN.getValue(),
+        bitboard.processPlayerMove(new Move(player1, 0, 0)).getCode());
+    assertEquals(MessageStatus.POSITION_NOT_ALLOWED.getValue(),
+        bitboard.processPlayerMove(new Move(player2, 1, 1)).getCode());
+    assertEquals(MessageStatus.POSITION_NOT_ALLOWED.getValue(),
+        bitboard.processPlayerMove(new Move(player2, 3, 0)).getCode());
+
+    bitboard.processPlayerMove(new Move(player2, 0, 0));
+    bitboard.processPlayerMove(new Move(player1, 0, 2));
+    bitboard.processPlayerMove(new Move(player2, 1, 0));
+    Message message = bitboard.processPlayerMove(new Move(player1, 2, 0));
+    assertEquals(MessageStatus.GAME_OVER_WINNER.getValue(), message.getCode());
+    assertEquals("Player 1 is the winner!", message.getMessage());
+    assertEquals(MessageStatus.GAME_ALREADY_OVER.getValue(),
+        bitboard.processPlayerMove(new Move(player2, 2, 2)).getCode());
+  }
+
+  /**
+   * Test that a board can be copied from a GameBoard.
+   */
+  @Test
+  @DisplayName("A board copied from a GameBoard should have the same state.")
+  void testCopy() {
+    char[][] state = { { 'X', 'O', 0 }, { 0, 'X', 0 }, { 0, 0, 0 } };
+    GameBoard gameboard = new GameBoard(player1, player2, true, 2, state, 0, false, null);
+
+    BitboardGameBoard bitboard = new BitboardGameBoard(gameboard);
+
+    assertArrayEquals(state, bitboard.getBoardState());
+    assertEquals(2, bitboard.getTurn());
+    assertEquals(player2, bitboard.getP2());
+    assertEquals(MessageStatus.SUCCESS.getValue(),
+        bitboard.processPlayerMove(new Move(player2, 2, 1)).getCode());
+    assertEquals(MessageStatus.GAME_OVER_WINNER.getValue(),
+        bitboard.processPlayerMove(new Move(player1, 2, 2)).getCode());
+
+    Assertions.assertThrows(InvalidGameBoardConfigurationException.class,
+        () -> new BitboardGameBoard(player1, new Player('X', 2)));
+  }
+}
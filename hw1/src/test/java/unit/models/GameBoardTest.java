@@ -322,6 +322,37 @@ class GameBoardTest {
     assertEquals(true, testBoard.isFull());
   }
 
+  /**
+   * Test that the number of moves played follows moves played, board states
+   * set, and a reset of the board.
+   */
+  @Test
+  @DisplayName("The move count should follow moves, new board states and resets.")
+  void testMoveCount() throws GameBoardInternalError {
+    assertEquals(0, activeTestBoard.getMoveCount());
+
+    activeTestBoard.processPlayerMove(new Move(player1, 0, 0));
+    activeTestBoard.processPlayerMove(new Move(player2, 1, 1));
+    assertEquals(2, activeTestBoard.getMoveCount());
+    assertEquals(1, activeTestBoard.getTurn());
+
+    // an invalid move does not count
+    activeTestBoard.processPlayerMove(new Move(player1, 1, 1));
+    assertEquals(2, activeTestBoard.getMoveCount());
+
+    char[][] boardState = { { 'X', 'O', 'X' }, { 'O', 'O', 'X' }, { 'X', 'X', 0 } };
+    activeTestBoard.setBoardState(boardState);
+    assertEquals(8, activeTestBoard.getMoveCount());
+    activeTestBoard.setTurn(2);
+    Message message = activeTestBoard.processPlayerMove(new Move(player2, 2, 2));
+    assertEquals(MessageStatus.GAME_OVER_NO_WINNER.getValue(), message.getCode());
+    assertEquals(true, activeTestBoard.isDraw());
+
+    activeTestBoard.resetGameboard();
+    assertEquals(0, activeTestBoard.getMoveCount());
+    assertEquals(true, activeTestBoard.isEmpty());
+  }
+
   /**
    * Test that if the gameboard has no players, and the Move is not assigned to a
    * player, the move cannot be made due to a missing player violation.
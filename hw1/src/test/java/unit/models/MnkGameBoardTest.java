@@ -0,0 +1,152 @@
+package unit.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import models.GameBoard;
+import models.InvalidGameBoardConfigurationException;
+import models.MessageStatus;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MnkGameBoardTest {
+
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Test that k pieces in a row win along each of the four directions, wherever
+   * in the line the last piece is played.
+   */
+  @Test
+  @DisplayName("Five in a row should win on a 15x15 board in every direction.")
+  void testWinInEveryDirection() {
+    int[][] directions = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+    for (int[] direction : directions) {
+      for (int last = 0; last < 5; last++) {
+        MnkGameBoard board = newBoard(15, 15, 5);
+        for (int i = 0; i < 5; i++) {
+          if (i != last) {
+            board.setBoardState(place(board.getBoardState(), 7 + i * direction[0],
+                7 + i * direction[1], 'X'));
+          }
+        }
+
+        board.playMove(new Move(player1, 7 + last * direction[0], 7 + last * direction[1]));
+
+        assertEquals(1, board.getWinner());
+      }
+    }
+  }
+
+  /**
+   * Test that a line one piece short, or one broken by the other player's
+   * piece, does not win.
+   */
+  @Test
+  @DisplayName("Four in a row, or five broken by another piece, should not win when k is 5.")
+  void testNoWinShortOfK() {
+    MnkGameBoard board = newBoard(15, 15, 5);
+    for (int j = 0; j < 3; j++) {
+      board.setBoardState(place(board.getBoardState(), 0, j, 'X'));
+    }
+    board.playMove(new Move(player1, 0, 3));
+    assertEquals(0, board.getWinner());
+
+    board.setBoardState(place(board.getBoardState(), 0, 4, 'O'));
+    board.setBoardState(place(board.getBoardState(), 0, 5, 'X'));
+    board.playMove(new Move(player2, 1, 1));
+    assertEquals(0, board.getWinner());
+    assertEquals(false, board.isWinningMove(0, 5, 'X'));
+  }
+
+  /**
+   * Test that full and empty boards are tracked as pieces are played and when
+   * the board is set.
+   */
+  @Test
+  @DisplayName("A board should know when it is empty or full without scanning it.")
+  void testFullAndEmpty() {
+    MnkGameBoard board = newBoard(2, 3, 3);
+    assertEquals(true, board.isEmpty());
+
+    board.playMove(new Move(player1, 0, 0));
+    assertEquals(false, board.isEmpty());
+    assertEquals(false, board.isFull());
+
+    board.setBoardState(new char[][] { { 'X', 'O', 'X' }, { 'O', 'X', 0 } });
+    assertEquals(false, board.isFull());
+    board.playMove(new Move(player2, 1, 2));
+    assertEquals(true, board.isFull());
+    assertEquals(0, board.getWinner());
+
+    board.setBoardState(new char[2][3]);
+    assertEquals(true, board.isEmpty());
+  }
+
+  /**
+   * Test that moves are checked against the size of the board.
+   */
+  @Test
+  @DisplayName("Moves off a large board should be rejected, and moves on it accepted.")
+  void testMovesOnLargeBoard() {
+    MnkGameBoard board = newBoard(10, 12, 4);
+
+    assertEquals(true, board.isValidMove(new Move(player1, 9, 11)));
+    assertEquals(false, board.isValidMove(new Move(player1, 10, 0)));
+    assertEquals(false, board.isValidMove(new Move(player1, 0, 12)));
+    assertEquals(null, board.checkMove(new Move(player1, 9, 11)));
+    assertEquals(MessageStatus.POSITION_NOT_ALLOWED.getValue(),
+        board.checkMove(new Move(player1, 10, 11)).getCode());
+  }
+
+  /**
+   * Test that boards that cannot be played or saved are rejected.
+   */
+  @Test
+  @DisplayName("Boards too large to save, or too small for k, should be rejected.")
+  void testInvalidSize() {
+    Assertions.assertThrows(InvalidGameBoardConfigurationException.class,
+        () -> new MnkGameBoard(MnkGameBoard.MAX_SIZE + 1, 3, 3, null));
+    Assertions.assertThrows(InvalidGameBoardConfigurationException.class,
+        () -> new MnkGameBoard(0, 3, 3, null));
+    Assertions.assertThrows(InvalidGameBoardConfigurationException.class,
+        () -> new MnkGameBoard(4, 4, 5, null));
+  }
+
+  /**
+   * Test that a board of another size keeps the database and game of the
+   * board it was made from, and that the standard size gives a GameBoard.
+   */
+  @Test
+  @DisplayName("withSize() should give an m,n,k board, or a GameBoard for 3x3 with 3 in a row.")
+  void testWithSize() {
+    GameBoard standard = new GameBoard(null);
+    standard.setGameId(4);
+
+    GameBoard large = standard.withSize(15, 15, 5);
+    assertEquals(true, large instanceof MnkGameBoard);
+    assertEquals(15, large.getRowCount());
+    assertEquals(5, large.getWinLength());
+    assertEquals(4, large.getGameId());
+
+    GameBoard back = large.withSize(3, 3, 3);
+    assertEquals(GameBoard.class, back.getClass());
+    assertEquals(3, back.getWinLength());
+    assertArrayEquals(new char[3][3], back.getBoardState());
+  }
+
+  private MnkGameBoard newBoard(int rows, int columns, int winLength) {
+    return new MnkGameBoard(winLength, player1, player2, true, 1, new char[rows][columns], 0,
+        false, null);
+  }
+
+  private static char[][] place(char[][] state, int x, int y, char type) {
+    state[x][y] = type;
+    return state;
+  }
+}
@@ -0,0 +1,172 @@
+package unit.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import models.BitboardGameBoard;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.InvalidGameBoardConfigurationException;
+import models.MnkGameBoard;
+import models.Move;
+import models.NegamaxEngine;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class NegamaxEngineTest {
+
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Test that the engine never loses on a 3x3 board, whichever moves its
+   * opponent plays, moving either first or second.
+   */
+  @Test
+  @DisplayName("The engine should never lose a 3x3 game, whoever moves first.")
+  void testNeverLoses() {
+    NegamaxEngine engine = NegamaxEngine.forBoard(new BitboardGameBoard(player1, player2));
+
+    assertEquals(0, playEveryGame(engine, new BitboardGameBoard(player1, player2), 1));
+    assertEquals(0, playEveryGame(engine, new BitboardGameBoard(player1, player2), 2));
+
+    // the same holds when player 1 plays 'O'
+    BitboardGameBoard swapped = new BitboardGameBoard(new Player('O', 1), new Player('X', 2));
+    assertEquals(0, playEveryGame(engine, swapped, 2));
+  }
+
+  /**
+   * Test that the engine takes a win when it has one, and otherwise blocks a
+   * win of the other player.
+   */
+  @Test
+  @DisplayName("The engine should take a win, or else block the other player's.")
+  void testWinAndBlock() {
+    char[][] canWin = { { 'X', 'X', 0 }, { 'O', 'O', 0 }, { 0, 0, 0 } };
+    GameBoard gb = new GameBoard(player1, player2, true, 2, canWin, 0, false, null);
+    Move move = NegamaxEngine.forBoard(gb).chooseMove(gb);
+    assertEquals(1, move.getMoveX());
+    assertEquals(2, move.getMoveY());
+    assertEquals(2, move.getPlayerId());
+
+    char[][] mustBlock = { { 'X', 0, 0 }, { 'O', 'X', 0 }, { 0, 0, 0 } };
+    gb.setBoardState(mustBlock);
+    move = NegamaxEngine.forBoard(gb).chooseMove(gb);
+    assertEquals(2, move.getMoveX());
+    assertEquals(2, move.getMoveY());
+  }
+
+  /**
+   * Test that the engine finds wins and blocks on a board it cannot search to
+   * the end of the game.
+   */
+  @Test
+  @DisplayName("The engine should take and block five in a row on a 15x15 board.")
+  void testLargeBoard() {
+    char[][] state = new char[15][15];
+    for (int j = 5; j < 9; j++) {
+      state[7][j] = 'X';
+    }
+    state[7][4] = 'O';
+    state[6][6] = 'O';
+    state[8][8] = 'O';
+    MnkGameBoard gb = new MnkGameBoard(5, player1, player2, true, 2, state, 0, false, null);
+
+    // O has to block X's four at its only open end
+    Move move = NegamaxEngine.forBoard(gb).chooseMove(gb);
+    assertEquals(7, move.getMoveX());
+    assertEquals(9, move.getMoveY());
+
+    // with fours on both sides, X wins rather than blocking O's
+    for (int j = 5; j < 9; j++) {
+      state[10][j] = 'O';
+    }
+    state[6][6] = 0;
+    state[8][8] = 0;
+    state[0][0] = 'X';
+    gb = new MnkGameBoard(5, player1, player2, true, 1, state, 0, false, null);
+    move = NegamaxEngine.forBoard(gb).chooseMove(gb);
+    gb.playMove(move);
+    assertEquals(1, gb.getWinner());
+  }
+
+  /**
+   * Test that there is no move for a game that is over or not started, and that
+   * an engine only plays on boards of its size.
+   */
+  @Test
+  @DisplayName("The engine should not move when the game is over or on a board of another size.")
+  void testNoMove() {
+    char[][] won = { { 'X', 'X', 'X' }, { 'O', 'O', 0 }, { 0, 0, 0 } };
+    GameBoard gb = new GameBoard(player1, player2, true, 2, won, 1, false, null);
+    NegamaxEngine engine = NegamaxEngine.forBoard(gb);
+    assertEquals(null, engine.chooseMove(gb));
+    assertEquals(null, engine.chooseMove(new GameBoard(null)));
+
+    MnkGameBoard large = new MnkGameBoard(4, player1, player2, true, 1, new char[5][5], 0,
+        false, null);
+    assertNotEquals(engine, NegamaxEngine.forBoard(large));
+    Assertions.assertThrows(InvalidGameBoardConfigurationException.class,
+        () -> engine.chooseMove(large));
+  }
+
+  /**
+   * Test that engines are kept for only a few board sizes, however many sizes
+   * are played, and that the engine of a size played again recently is reused.
+   */
+  @Test
+  @DisplayName("Engines should be kept for at most MAX_CACHED_ENGINES board sizes.")
+  void testCacheBounded() {
+    GameBoard standard = new GameBoard(null);
+    NegamaxEngine engine = NegamaxEngine.forBoard(standard);
+    MnkGameBoard first = new MnkGameBoard(4, 4, 3, null);
+    NegamaxEngine firstEngine = NegamaxEngine.forBoard(first);
+
+    for (int rows = 5; rows < 40; rows++) {
+      MnkGameBoard gb = new MnkGameBoard(rows, 4, 3, null);
+      assertEquals(NegamaxEngine.forBoard(gb), NegamaxEngine.forBoard(gb));
+      // keeps the standard board's engine the most recently used after this one
+      assertEquals(engine, NegamaxEngine.forBoard(standard));
+      Assertions.assertTrue(NegamaxEngine.cachedEngines() <= NegamaxEngine.MAX_CACHED_ENGINES);
+    }
+
+    // the first size was dropped long ago; the last one played is still kept
+    Assertions.assertNotSame(firstEngine, NegamaxEngine.forBoard(first));
+    MnkGameBoard latest = new MnkGameBoard(39, 4, 3, null);
+    Assertions.assertSame(NegamaxEngine.forBoard(latest), NegamaxEngine.forBoard(latest));
+  }
+
+  /**
+   * Plays every game in which the engine plays one side and the other side
+   * tries every move, and returns how many of them the engine lost.
+   */
+  private int playEveryGame(NegamaxEngine engine, GenericGameBoard board, int enginePlayer) {
+    if (board.getWinner() != 0) {
+      return board.getWinner() == enginePlayer ? 0 : 1;
+    }
+    if (board.isFull()) {
+      return 0;
+    }
+    if (board.getTurn() == enginePlayer) {
+      BitboardGameBoard next = new BitboardGameBoard(board);
+      next.playMove(engine.chooseMove(board));
+      return playEveryGame(engine, next, enginePlayer);
+    }
+
+    int losses = 0;
+    Player player = board.getTurn() == 1 ? board.getP1() : board.getP2();
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        Move move = new Move(player, i, j);
+        if (board.isValidMove(move)) {
+          BitboardGameBoard next = new BitboardGameBoard(board);
+          next.playMove(move);
+          losses += playEveryGame(engine, next, enginePlayer);
+        }
+      }
+    }
+    return losses;
+  }
+}
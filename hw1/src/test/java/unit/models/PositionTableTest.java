@@ -0,0 +1,153 @@
+package unit.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import models.BitboardGameBoard;
+import models.GameBoard;
+import models.GenericGameBoard;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+import models.PositionTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PositionTableTest {
+
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  private PositionTable table = PositionTable.standard();
+
+  /**
+   * Test that every reachable position is in the table, with the outcome a
+   * full minimax search finds and best moves that keep that outcome.
+   */
+  @Test
+  @DisplayName("Every reachable position should have the outcome minimax finds for it.")
+  void testAgreesWithMinimax() {
+    Set<String> positions = new HashSet<>();
+    checkEveryPosition(new BitboardGameBoard(player1, player2), positions);
+
+    assertEquals(5478, positions.size());
+    assertEquals(765, table.size());
+  }
+
+  /**
+   * Test that the best moves of a position are turned with the board.
+   */
+  @Test
+  @DisplayName("The best moves of a rotated or reflected board should turn with it.")
+  void testSymmetricPositions() {
+    // X in a corner: O must take the center to draw
+    PositionTable.Position corner = table.lookup(board(new char[][] {
+        { 'X', 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } }, 2));
+    assertEquals(PositionTable.DRAW, corner.getOutcome());
+    assertEquals(1, corner.getBestMoves().size());
+    assertEquals(1, corner.getBestMoves().get(0)[0]);
+    assertEquals(1, corner.getBestMoves().get(0)[1]);
+
+    // X wins at once on the diagonal through the center, on this board and on
+    // its mirror image
+    PositionTable.Position diagonal = table.lookup(board(new char[][] {
+        { 'X', 'O', 0 }, { 'O', 'X', 0 }, { 0, 0, 0 } }, 1));
+    PositionTable.Position mirrored = table.lookup(board(new char[][] {
+        { 0, 'O', 'X' }, { 0, 'X', 'O' }, { 0, 0, 0 } }, 1));
+    assertEquals(PositionTable.WIN, diagonal.getOutcome());
+    assertEquals(1, diagonal.getMovesLeft());
+    assertEquals("[2, 2]", moves(diagonal));
+    assertEquals("[2, 0]", moves(mirrored));
+  }
+
+  /**
+   * Test that positions look the same to the player to move whichever type
+   * they play with, and that finished and unreachable positions are told apart.
+   */
+  @Test
+  @DisplayName("Positions should not depend on who plays 'X', and unreachable ones should be "
+      + "missing.")
+  void testTypesAndUnreachable() {
+    char[][] state = { { 'X', 'O', 0 }, { 0, 'X', 0 }, { 0, 0, 0 } };
+    char[][] swapped = { { 'O', 'X', 0 }, { 0, 'O', 0 }, { 0, 0, 0 } };
+    PositionTable.Position xfirst = table.lookup(state, 'O');
+    PositionTable.Position ofirst = table.lookup(swapped, 'X');
+    assertEquals(xfirst.getOutcome(), ofirst.getOutcome());
+    assertEquals(moves(xfirst), moves(ofirst));
+
+    char[][] won = { { 'X', 'X', 'X' }, { 'O', 'O', 0 }, { 0, 0, 0 } };
+    PositionTable.Position over = table.lookup(won, 'O');
+    assertEquals(true, over.isGameOver());
+    assertEquals(PositionTable.LOSS, over.getOutcome());
+    assertEquals(0, over.getBestMoves().size());
+
+    // X cannot have moved twice more than O, nor have moved after winning
+    assertEquals(null, table.lookup(new char[][] { { 'X', 'X', 0 }, { 0, 0, 0 }, { 0, 0, 0 } },
+        'O'));
+    assertEquals(null, table.lookup(won, 'X'));
+    assertEquals(null, table.lookup(new GameBoard(null)));
+    assertEquals(null, table.lookup(new MnkGameBoard(4, 4, 3, null)));
+  }
+
+  /**
+   * Visits every position reachable from a board, checking each against the
+   * table, and returns the outcome for the player to move.
+   */
+  private int checkEveryPosition(GenericGameBoard board, Set<String> positions) {
+    PositionTable.Position position = table.lookup(board);
+    assertNotNull(position);
+    positions.add(Arrays.deepToString(board.getBoardState()) + board.getTurn());
+
+    int outcome = minimax(board, positions);
+    assertEquals(outcome, position.getOutcome());
+    assertEquals(board.getWinner() != 0 || board.isFull(), position.isGameOver());
+    for (int[] best : position.getBestMoves()) {
+      BitboardGameBoard next = new BitboardGameBoard(board);
+      next.playMove(new Move(mover(board), best[0], best[1]));
+      assertEquals(outcome, -table.lookup(next).getOutcome());
+    }
+    return outcome;
+  }
+
+  private int minimax(GenericGameBoard board, Set<String> positions) {
+    if (board.getWinner() != 0) {
+      return PositionTable.LOSS;
+    }
+    if (board.isFull()) {
+      return PositionTable.DRAW;
+    }
+    int best = PositionTable.LOSS;
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        Move move = new Move(mover(board), i, j);
+        if (board.isValidMove(move)) {
+          BitboardGameBoard next = new BitboardGameBoard(board);
+          next.playMove(move);
+          best = Math.max(best, -checkEveryPosition(next, positions));
+        }
+      }
+    }
+    return best;
+  }
+
+  private Player mover(GenericGameBoard board) {
+    return board.getTurn() == 1 ? board.getP1() : board.getP2();
+  }
+
+  private GameBoard board(char[][] state, int turn) {
+    return new GameBoard(player1, player2, true, turn, state, 0, false, null);
+  }
+
+  private static String moves(PositionTable.Position position) {
+    StringBuilder moves = new StringBuilder();
+    List<int[]> best = position.getBestMoves();
+    for (int[] move : best) {
+      moves.append(moves.length() == 0 ? "" : ", ").append(Arrays.toString(move));
+    }
+    return moves.toString();
+  }
+}
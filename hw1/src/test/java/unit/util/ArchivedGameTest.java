@@ -0,0 +1,97 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import models.GameBoard;
+import models.MnkGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.ArchivedGame;
+import util.DbServiceException;
+import util.GameSnapshot;
+
+class ArchivedGameTest {
+
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Test that a finished game survives a round trip with its moves.
+   */
+  @Test
+  @DisplayName("A finished game should be restored from its archive record with its moves.")
+  void testRoundTrip() throws DbServiceException {
+    char[][] won = { { 'X', 'O', 0 }, { 'X', 'O', 0 }, { 'X', 0, 0 } };
+    GameBoard gb = new GameBoard(player1, player2, true, 2, won, 1, false, null);
+    List<Move> moves = Arrays.asList(new Move(player1, 0, 0), new Move(player2, 0, 1),
+        new Move(player1, 1, 0), new Move(player2, 1, 1), new Move(player1, 2, 0));
+
+    byte[] record = ArchivedGame.encode(gb, moves);
+    ArchivedGame archived = ArchivedGame.decode(record, null);
+
+    // the snapshot, then a byte per move
+    assertEquals(11 + 5, record.length);
+    assertEquals(gb.toString(), archived.getBoard().toString());
+    assertArrayEquals(won, archived.getBoard().getBoardState());
+    assertEquals(moves, archived.getMoves());
+  }
+
+  /**
+   * Test that a game without moves survives a round trip.
+   */
+  @Test
+  @DisplayName("A game without moves should be restored from its archive record.")
+  void testNoMoves() throws DbServiceException {
+    GameBoard gb = new GameBoard(player1, player2, true, 1, new char[3][3], 0, false, null);
+
+    ArchivedGame archived = ArchivedGame.decode(
+        ArchivedGame.encode(gb, Collections.<Move>emptyList()), null);
+
+    assertEquals(gb.toString(), archived.getBoard().toString());
+    assertEquals(0, archived.getMoves().size());
+  }
+
+  /**
+   * Test that moves on a board with more cells than fit in a byte survive a
+   * round trip.
+   */
+  @Test
+  @DisplayName("Moves on a 15x15 board should be restored from its archive record.")
+  void testLargeBoard() throws DbServiceException {
+    char[][] board = new char[15][15];
+    board[14][14] = 'X';
+    board[0][14] = 'O';
+    GameBoard gb = new MnkGameBoard(5, player1, player2, true, 1, board, 0, false, null);
+    List<Move> moves = Arrays.asList(new Move(player1, 14, 14), new Move(player2, 0, 14));
+
+    byte[] record = ArchivedGame.encode(gb, moves);
+    ArchivedGame archived = ArchivedGame.decode(record, null);
+
+    // the snapshot, then two bytes per move
+    assertEquals(GameSnapshot.encode(gb).length + 4, record.length);
+    assertEquals(gb.toString(), archived.getBoard().toString());
+    assertEquals(moves, archived.getMoves());
+  }
+
+  /**
+   * Test that records that are too short are rejected.
+   */
+  @Test
+  @DisplayName("Truncated archive records should be rejected.")
+  void testTruncated() {
+    GameBoard gb = new GameBoard(player1, player2, true, 1, new char[3][3], 0, false, null);
+    byte[] record = ArchivedGame.encode(gb, Collections.<Move>emptyList());
+
+    Assertions.assertThrows(DbServiceException.class,
+        () -> ArchivedGame.decode(Arrays.copyOf(record, record.length - 1), null));
+    Assertions.assertThrows(DbServiceException.class,
+        () -> ArchivedGame.decode(new byte[3], null));
+  }
+}
@@ -0,0 +1,262 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.AsyncDbService;
+import util.DbServiceException;
+import util.PendingWrite;
+import util.TicTacToeInMemoryDbService;
+
+class AsyncDbServiceTest {
+
+  private TicTacToeInMemoryDbService delegate;
+  private AsyncDbService service;
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Start each test with an in-memory database holding one game with two
+   * players, shared by four I/O threads.
+   *
+   * @throws DbServiceException if the game could not be created
+   */
+  @BeforeEach
+  void createGame() throws DbServiceException {
+    delegate = new TicTacToeInMemoryDbService();
+    delegate.connect();
+    delegate.createNewGame(1);
+    delegate.savePlayer(player1, 1);
+    delegate.savePlayer(player2, 1);
+    delegate.commit();
+
+    service = new AsyncDbService(() -> delegate, 4, 64);
+  }
+
+  /**
+   * Stop the I/O threads after each test.
+   *
+   * @throws DbServiceException if pending operations did not complete
+   */
+  @AfterEach
+  void stopService() throws DbServiceException {
+    service.shutdown();
+  }
+
+  /**
+   * Test that the commits of a game are applied in the order they were handed
+   * over, and that a restore sees them all.
+   */
+  @Test
+  @DisplayName("Commits of one game should be applied in order, before a later restore.")
+  void testCommitsInOrder() throws Exception {
+    for (int i = 0; i < 9; i++) {
+      Move move = new Move(i % 2 == 0 ? player1 : player2, i / 3, i % 3);
+      service.commit(1, Collections.singletonList(db -> db.saveValidMove(move, 1)));
+    }
+    GameBoard gb = (GameBoard) service.restoreGameBoard(1).get();
+
+    List<Move> moves = delegate.findAllMoves(1);
+    assertEquals(9, moves.size());
+    for (int i = 0; i < 9; i++) {
+      assertEquals(i / 3, moves.get(i).getMoveX());
+      assertEquals(i % 3, moves.get(i).getMoveY());
+    }
+    assertEquals('X', gb.getBoardState()[2][2]);
+    assertEquals(true, gb.isAsync());
+  }
+
+  /**
+   * Test that restoring the most recent game, as the controller does to reload
+   * its board, waits for the commits already handed over for that game.
+   */
+  @Test
+  @DisplayName("Restoring the most recent game should wait for its pending commits.")
+  void testRestoreMostRecentAfterCommits() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Void> blocked = service.commit(1, Collections.singletonList(db -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new DbServiceException("Interrupted");
+      }
+      db.saveValidMove(new Move(player1, 0, 0), 1);
+    }));
+    CompletableFuture<GenericGameBoard> restored = service.restoreMostRecentGameBoard();
+
+    Thread.sleep(100);
+    assertEquals(false, restored.isDone());
+    release.countDown();
+    blocked.get();
+    assertEquals('X', restored.get().getBoardState()[0][0]);
+
+    // with no games at all, an empty board
+    delegate.connect();
+    delegate.deleteGame(1, false);
+    delegate.commit();
+    assertEquals(null, service.restoreMostRecentGameBoard().get().getP1());
+  }
+
+  /**
+   * Test that resetting a game board returns before the new game's id has been
+   * looked up, and that the board only moves to the new game once it is saved.
+   */
+  @Test
+  @DisplayName("Resetting a game board should not wait for the database, nor change the "
+      + "board before the new game is saved.")
+  void testResetGameBoardAsync() throws Exception {
+    GameBoard gb = (GameBoard) service.restoreGameBoard(1).get();
+    CountDownLatch release = new CountDownLatch(1);
+    service.commit(1, Collections.singletonList(db -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new DbServiceException("Interrupted");
+      }
+    }));
+
+    CompletableFuture<Void> reset;
+    try {
+      reset = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5),
+          gb::resetGameboardAsync);
+      Thread.sleep(100);
+      assertEquals(false, reset.isDone());
+      assertEquals(1, gb.getGameId());
+      assertEquals(player1, gb.getP1());
+    } finally {
+      release.countDown();
+    }
+    reset.get();
+    assertEquals(2, gb.getGameId());
+    assertEquals(null, gb.getP1());
+  }
+
+  /**
+   * Test that a game board whose new game could not be saved stays on the
+   * game it was playing.
+   */
+  @Test
+  @DisplayName("A game board whose new game could not be saved should keep its game.")
+  void testResetGameBoardAsyncFailed() throws Exception {
+    // an id lookup that misses game 1, so the new game collides with it
+    TicTacToeInMemoryDbService stale = new TicTacToeInMemoryDbService() {
+      @Override
+      public int findMostRecentGameId() {
+        return 0;
+      }
+    };
+    stale.connect();
+    stale.createNewGame(1);
+    stale.savePlayer(player1, 1);
+    stale.commit();
+    service.shutdown();
+    service = new AsyncDbService(() -> stale, 1, 64);
+    GameBoard gb = (GameBoard) service.restoreGameBoard(1).get();
+
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> {
+      gb.resetGameboardAsync().get();
+    });
+    assertEquals(GameBoardInternalError.class, e.getCause().getClass());
+    assertEquals(1, gb.getGameId());
+    assertEquals(player1, gb.getP1());
+  }
+
+  /**
+   * Test that a failed transaction is rolled back and reported, and does not
+   * stop later transactions of the same game.
+   */
+  @Test
+  @DisplayName("A failed commit should be reported and leave nothing behind.")
+  void testFailedCommit() throws Exception {
+    List<PendingWrite> writes = new ArrayList<>();
+    writes.add(db -> db.saveValidMove(new Move(player1, 0, 0), 1));
+    writes.add(db -> {
+      throw new DbServiceException("Exception thrown");
+    });
+
+    CompletableFuture<Void> failed = service.commit(1, writes);
+    CompletableFuture<Void> next = service.commit(1, Collections.singletonList(
+        db -> db.saveValidMove(new Move(player1, 1, 1), 1)));
+
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class, failed::get);
+    assertEquals(DbServiceException.class, e.getCause().getClass());
+    next.get();
+    assertEquals(1, delegate.findAllMoves(1).size());
+    assertEquals(1, delegate.findAllMoves(1).get(0).getMoveX());
+  }
+
+  /**
+   * Test that operations beyond the bound fail straight away.
+   */
+  @Test
+  @DisplayName("Operations beyond the pending bound should be rejected.")
+  void testBounded() throws Exception {
+    service.shutdown();
+    service = new AsyncDbService(() -> delegate, 1, 2);
+
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Void> blocked = service.commit(1, Collections.singletonList(db -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new DbServiceException("Interrupted");
+      }
+    }));
+    CompletableFuture<Void> queued = service.commit(2, Collections.emptyList());
+    CompletableFuture<Void> rejected = service.commit(3, Collections.emptyList());
+
+    Assertions.assertThrows(ExecutionException.class, rejected::get);
+    assertEquals(1, service.getRejected());
+    assertEquals(2, service.getPending());
+
+    release.countDown();
+    blocked.get();
+    queued.get();
+    assertEquals(0, service.getPending());
+  }
+
+  /**
+   * Test that a game board saving through the service is persisted without
+   * blocking, and that its futures report failures as GameBoardInternalError.
+   */
+  @Test
+  @DisplayName("A game board with an asynchronous service should save through it.")
+  void testGameBoardAsync() throws Exception {
+    GameBoard gb = new GameBoard(null);
+    gb.setAsyncDbService(service);
+
+    gb.resetGameboardAsync().get();
+    gb.saveP1Async(player1).get();
+    gb.autoSetP2Async().get();
+    gb.processPlayerMove(new Move(player1, 0, 0));
+    gb.commitMoveAsync().get();
+
+    // the reset started the game after game 1
+    assertEquals(2, gb.getGameId());
+    assertEquals(gb.toString(), service.restoreGameBoard(2).get().toString());
+    assertEquals(Arrays.asList(player1, player2), delegate.findAllPlayers(2));
+
+    service.shutdown();
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> {
+      gb.saveP1Async(player1).get();
+    });
+    assertEquals(GameBoardInternalError.class, e.getCause().getClass());
+  }
+}
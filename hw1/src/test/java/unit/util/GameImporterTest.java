@@ -0,0 +1,146 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import models.GameBoard;
+import models.InvalidGameBoardConfigurationException;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameImporter;
+import util.ImportReport;
+import util.RecordedGame;
+import util.TicTacToeInMemoryDbService;
+
+class GameImporterTest {
+
+  private static final String PLAYERS = "\"players\":[{\"id\":1,\"type\":\"X\"},"
+      + "{\"id\":2,\"type\":\"O\"}]";
+
+  // player 1 wins down the first column
+  private static final String WON = "{\"gameId\":1,\"winner\":1,\"isDraw\":false," + PLAYERS
+      + ",\"moves\":[" + move(1, 0, 0) + "," + move(2, 1, 1) + "," + move(1, 0, 1) + ","
+      + move(2, 2, 2) + "," + move(1, 0, 2) + "]}";
+
+  private static final String IN_PROGRESS = "{\"gameId\":2,\"winner\":0,\"isDraw\":false,"
+      + PLAYERS + ",\"moves\":[" + move(1, 1, 1) + "]}";
+
+  private TicTacToeInMemoryDbService dbService;
+
+  private Player player1 = new Player('X', 1);
+
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Start each test with an in-memory database holding one game.
+   *
+   * @throws DbServiceException if the game could not be created
+   */
+  @BeforeEach
+  void createGame() throws DbServiceException {
+    dbService = new TicTacToeInMemoryDbService();
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.commit();
+  }
+
+  /**
+   * Test that a recorded game is read with its players, moves and result.
+   */
+  @Test
+  @DisplayName("A line of a game history file should be read as a game.")
+  void testParse() throws IOException {
+    RecordedGame game = RecordedGame.parse(WON);
+
+    assertEquals(1, game.getGameId());
+    assertEquals(Arrays.asList(player1, player2), game.getPlayers());
+    assertEquals(5, game.getMoves().size());
+    assertEquals(new Move(player2, 1, 1), game.getMoves().get(1));
+    assertEquals(1, game.getWinner());
+    assertEquals(false, game.isDraw());
+
+    Assertions.assertThrows(IOException.class, () -> RecordedGame.parse("{\"gameId\":"));
+    Assertions.assertThrows(IOException.class, () -> RecordedGame.parse("{\"gameId\":\"a\"}"));
+    Assertions.assertThrows(IOException.class, () -> RecordedGame.parse(
+        "{\"players\":[{\"id\":1,\"type\":\"X\"}],\"moves\":[" + move(2, 0, 0) + "]}"));
+  }
+
+  /**
+   * Test that replaying a game ends with the board it was played to.
+   */
+  @Test
+  @DisplayName("A valid game should be replayed to its final board.")
+  void testReplay() throws IOException {
+    GameBoard gameboard = GameImporter.replay(RecordedGame.parse(WON));
+
+    assertEquals(1, gameboard.getWinner());
+    assertEquals('X', gameboard.getBoardState()[0][2]);
+    assertEquals('O', gameboard.getBoardState()[2][2]);
+    assertEquals(2, gameboard.getTurn());
+    assertEquals(true, gameboard.isGameStarted());
+  }
+
+  /**
+   * Test that games breaking the rules are rejected.
+   */
+  @Test
+  @DisplayName("Games that break the rules or misreport their result should be rejected.")
+  void testReplayRejects() {
+    // player 2 moves first
+    assertRejected("{" + PLAYERS + ",\"moves\":[" + move(2, 0, 0) + "]}");
+    // the same position twice
+    assertRejected("{" + PLAYERS + ",\"moves\":[" + move(1, 0, 0) + "," + move(2, 0, 0) + "]}");
+    // off the board
+    assertRejected("{" + PLAYERS + ",\"moves\":[" + move(1, 3, 0) + "]}");
+    // a win recorded as a game in progress
+    assertRejected(WON.replace("\"winner\":1", "\"winner\":0"));
+    // two players of the same type
+    assertRejected("{\"players\":[{\"id\":1,\"type\":\"X\"},{\"id\":2,\"type\":\"X\"}]}");
+    // a single player
+    assertRejected("{\"players\":[{\"id\":1,\"type\":\"X\"}]}");
+  }
+
+  /**
+   * Test that the valid games of a file are imported after the most recent
+   * game, and the others counted as rejected.
+   */
+  @Test
+  @DisplayName("Valid games should be imported after the most recent game, in file order.")
+  void testImportGames() throws DbServiceException, IOException {
+    String file = String.join("\n", WON, "not a game", "", IN_PROGRESS,
+        WON.replace("\"winner\":1", "\"winner\":2"), WON);
+
+    // a transaction every two lines, replayed on two threads
+    ImportReport report = new GameImporter(dbService, 2, 2)
+        .importGames(new BufferedReader(new StringReader(file)));
+
+    assertEquals(3, report.getGamesImported());
+    assertEquals(2, report.getGamesRejected());
+    assertEquals(3 * 3 + 5 + 1 + 5, report.getRowsWritten());
+
+    assertEquals(4, dbService.findMostRecentGameId());
+    assertEquals(1, dbService.restoreGameBoard(2).getWinner());
+    assertEquals(Arrays.asList(player1, player2), dbService.findAllPlayers(3));
+    assertEquals(Arrays.asList(new Move(player1, 1, 1)), dbService.findAllMoves(3));
+    assertEquals('X', dbService.restoreGameBoard(3).getBoardState()[1][1]);
+    assertEquals(5, dbService.findAllMoves(4).size());
+  }
+
+  private static void assertRejected(String line) {
+    Assertions.assertThrows(InvalidGameBoardConfigurationException.class, () -> {
+      GameImporter.replay(RecordedGame.parse(line));
+    });
+  }
+
+  private static String move(int playerId, int x, int y) {
+    return "{\"playerId\":" + playerId + ",\"x\":" + x + ",\"y\":" + y + "}";
+  }
+}
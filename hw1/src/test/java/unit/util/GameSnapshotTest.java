@@ -0,0 +1,133 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import models.GameBoard;
+import models.MnkGameBoard;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameSnapshot;
+
+class GameSnapshotTest {
+
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Test that an empty game board survives a round trip.
+   */
+  @Test
+  @DisplayName("An empty game board should be restored from its snapshot.")
+  void testEmptyRoundTrip() throws DbServiceException {
+    GameBoard gb = new GameBoard(null);
+
+    GameBoard restored = GameSnapshot.decode(GameSnapshot.encode(gb), null);
+
+    assertEquals(gb.toString(), restored.toString());
+  }
+
+  /**
+   * Test that a game in progress survives a round trip.
+   */
+  @Test
+  @DisplayName("A game in progress should be restored from its snapshot.")
+  void testActiveRoundTrip() throws DbServiceException {
+    char[][] board = { { 'X', 0, 'O' }, { 0, 'X', 0 }, { 'O', 0, 0 } };
+    GameBoard gb = new GameBoard(player1, player2, true, 1, board, 0, false, null);
+
+    GameBoard restored = GameSnapshot.decode(GameSnapshot.encode(gb), null);
+
+    assertEquals(gb.toString(), restored.toString());
+    assertEquals(player1, restored.getP1());
+    assertEquals(player2, restored.getP2());
+    assertArrayEquals(board, restored.getBoardState());
+  }
+
+  /**
+   * Test that winners and draws survive a round trip.
+   */
+  @Test
+  @DisplayName("Finished games should keep their winner or draw in the snapshot.")
+  void testFinishedRoundTrip() throws DbServiceException {
+    char[][] won = { { 'X', 'X', 'X' }, { 'O', 'O', 0 }, { 0, 0, 0 } };
+    GameBoard winner = new GameBoard(player1, player2, true, 2, won, 1, false, null);
+    char[][] full = { { 'X', 'X', 'O' }, { 'O', 'O', 'X' }, { 'X', 'X', 'O' } };
+    GameBoard draw = new GameBoard(player1, player2, true, 2, full, 0, true, null);
+
+    assertEquals(1, GameSnapshot.decode(GameSnapshot.encode(winner), null).getWinner());
+    assertEquals(true, GameSnapshot.decode(GameSnapshot.encode(draw), null).isDraw());
+  }
+
+  /**
+   * Test that a 3x3 snapshot is only a few bytes.
+   */
+  @Test
+  @DisplayName("A 3x3 snapshot should pack 9 cells into 3 bytes after the header.")
+  void testSnapshotSize() {
+    assertEquals(11, GameSnapshot.encode(new GameBoard(null)).length);
+  }
+
+  /**
+   * Test that a larger board survives a round trip with its size and k.
+   */
+  @Test
+  @DisplayName("An m,n,k board should be restored from its snapshot with the same size and k.")
+  void testSizedRoundTrip() throws DbServiceException {
+    char[][] board = new char[15][13];
+    board[0][0] = 'X';
+    board[7][6] = 'O';
+    board[14][12] = 'X';
+    GameBoard gb = new MnkGameBoard(5, player1, player2, true, 2, board, 0, false, null);
+
+    byte[] snapshot = GameSnapshot.encode(gb);
+    GameBoard restored = GameSnapshot.decode(snapshot, null);
+
+    // the header with k, then 195 cells packed 4 to a byte
+    assertEquals(9 + 49, snapshot.length);
+    assertEquals(true, restored instanceof MnkGameBoard);
+    assertEquals(5, restored.getWinLength());
+    assertEquals(gb.toString(), restored.toString());
+    assertArrayEquals(board, restored.getBoardState());
+    assertEquals(false, restored.isEmpty());
+  }
+
+  /**
+   * Test that a game against the server is still one after a round trip, on
+   * both the standard and a larger board.
+   */
+  @Test
+  @DisplayName("A game against the server should keep its computer player in the snapshot.")
+  void testComputerOpponentRoundTrip() throws DbServiceException {
+    GameBoard gb = new GameBoard(player1, player2, true, 1, new char[3][3], 0, false, null);
+    GameBoard sized = new MnkGameBoard(5, player1, player2, true, 1, new char[15][15], 0,
+        false, null);
+    assertEquals(false, GameSnapshot.decode(GameSnapshot.encode(gb), null)
+        .hasComputerOpponent());
+
+    gb.setComputerOpponent(true);
+    sized.setComputerOpponent(true);
+
+    assertEquals(true, GameSnapshot.decode(GameSnapshot.encode(gb), null)
+        .hasComputerOpponent());
+    assertEquals(true, GameSnapshot.decode(GameSnapshot.encode(sized), null)
+        .hasComputerOpponent());
+  }
+
+  /**
+   * Test that unknown snapshot formats are rejected.
+   */
+  @Test
+  @DisplayName("A snapshot with an unknown version should be rejected.")
+  void testBadVersion() {
+    byte[] snapshot = GameSnapshot.encode(new GameBoard(null));
+    snapshot[0] = 99;
+
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      GameSnapshot.decode(snapshot, null);
+    });
+  }
+}
@@ -0,0 +1,112 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+import util.LockMetrics;
+import util.SqliteBusyRetry;
+
+class SqliteBusyRetryTest {
+
+  private static final SQLiteException BUSY = new SQLiteException(
+      "[SQLITE_BUSY]  The database file is locked (database is locked)",
+      SQLiteErrorCode.SQLITE_BUSY);
+
+  /**
+   * Test that only errors caused by another connection's lock are retried.
+   */
+  @Test
+  @DisplayName("Busy and locked errors should be told apart from other errors.")
+  void testIsBusy() {
+    assertTrue(SqliteBusyRetry.isBusy(BUSY));
+    assertTrue(SqliteBusyRetry.isBusy(new SQLiteException("[SQLITE_LOCKED]",
+        SQLiteErrorCode.SQLITE_LOCKED)));
+    assertTrue(SqliteBusyRetry.isBusy(new BatchUpdateException(
+        "batch entry 0: [SQLITE_BUSY]  The database file is locked (database is locked)",
+        new int[0])));
+
+    assertFalse(SqliteBusyRetry.isBusy(new SQLiteException("[SQLITE_BUSY_SNAPSHOT]",
+        SQLiteErrorCode.SQLITE_BUSY_SNAPSHOT)));
+    assertFalse(SqliteBusyRetry.isBusy(new SQLiteException("[SQLITE_CONSTRAINT]",
+        SQLiteErrorCode.SQLITE_CONSTRAINT)));
+    assertFalse(SqliteBusyRetry.isBusy(new SQLException("[SQLITE_BUSY_SNAPSHOT]")));
+  }
+
+  /**
+   * Test that a call held up by a lock is run again until it succeeds, and that
+   * the wait is counted.
+   */
+  @Test
+  @DisplayName("A busy call should be retried until it succeeds.")
+  void testRetriedUntilSuccess() throws SQLException {
+    SqliteBusyRetry retry = new SqliteBusyRetry(5000);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result = retry.run(() -> {
+      if (attempts.incrementAndGet() < 4) {
+        throw BUSY;
+      }
+      return "done";
+    });
+
+    assertEquals("done", result);
+    assertEquals(4, attempts.get());
+    LockMetrics metrics = retry.getMetrics();
+    assertEquals(1, metrics.getLockWaits());
+    assertEquals(3, metrics.getRetries());
+    assertEquals(0, metrics.getTimeouts());
+    assertTrue(metrics.getMaxLockWaitMillis() > 0);
+  }
+
+  /**
+   * Test that any other error is thrown at once.
+   */
+  @Test
+  @DisplayName("Other errors should not be retried.")
+  void testOtherErrorNotRetried() {
+    SqliteBusyRetry retry = new SqliteBusyRetry(5000);
+    AtomicInteger attempts = new AtomicInteger();
+
+    Assertions.assertThrows(SQLiteException.class, () -> {
+      retry.run(() -> {
+        attempts.incrementAndGet();
+        throw new SQLiteException("[SQLITE_CONSTRAINT]", SQLiteErrorCode.SQLITE_CONSTRAINT);
+      });
+    });
+    assertEquals(1, attempts.get());
+    assertEquals(0, retry.getMetrics().getLockWaits());
+  }
+
+  /**
+   * Test that a call still held up at the deadline fails with the busy error.
+   */
+  @Test
+  @DisplayName("A call still busy at the deadline should fail.")
+  void testGivesUpAtDeadline() {
+    SqliteBusyRetry retry = new SqliteBusyRetry(50);
+    long start = System.nanoTime();
+
+    SQLException e = Assertions.assertThrows(SQLException.class, () -> {
+      retry.run(() -> {
+        throw BUSY;
+      });
+    });
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(BUSY, e);
+    assertTrue(elapsedMillis <= 50 + 100, "waited " + elapsedMillis + "ms");
+    LockMetrics metrics = retry.getMetrics();
+    assertEquals(1, metrics.getLockWaits());
+    assertEquals(1, metrics.getTimeouts());
+    assertTrue(metrics.getRetries() > 0);
+  }
+}
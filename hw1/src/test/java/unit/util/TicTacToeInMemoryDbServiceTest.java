@@ -0,0 +1,323 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import util.DbServiceException;
+import util.GameHistoryWriter;
+import util.GameReaper;
+import util.TicTacToeInMemoryDbService;
+
+class TicTacToeInMemoryDbServiceTest {
+
+  private TicTacToeInMemoryDbService dbService;
+  private Player player1 = new Player('X', 1);
+  private Player player2 = new Player('O', 2);
+
+  /**
+   * Start each test with an empty in-memory database holding one game with two
+   * players.
+   *
+   * @throws DbServiceException if the game could not be created
+   */
+  @BeforeEach
+  void createGame() throws DbServiceException {
+    dbService = new TicTacToeInMemoryDbService();
+    dbService.connect();
+    dbService.createNewGame(1);
+    dbService.savePlayer(player1, 1);
+    dbService.savePlayer(player2, 1);
+    dbService.commit();
+  }
+
+  /**
+   * Test that committed moves and players can be read back.
+   */
+  @Test
+  @DisplayName("Committed moves should be visible when the game is restored.")
+  void testCommitAndRestore() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.saveValidMove(new Move(player2, 1, 1), 1);
+    dbService.commit();
+
+    GameBoard gb = dbService.restoreMostRecentGameBoard();
+
+    assertEquals('X', gb.getBoardState()[0][0]);
+    assertEquals('O', gb.getBoardState()[1][1]);
+    assertEquals(1, gb.getTurn());
+    assertEquals(true, gb.isGameStarted());
+    assertEquals(2, dbService.findAllMoves(1).size());
+    assertEquals(2, dbService.findAllPlayers(1).size());
+  }
+
+  /**
+   * Test that close() rolls back the open transaction.
+   */
+  @Test
+  @DisplayName("Writes should not be visible until committed, and closing should discard them.")
+  void testCloseDiscards() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    assertEquals(0, dbService.findAllMoves(1).size());
+
+    dbService.close();
+    dbService.commit();
+    assertEquals(0, dbService.findAllMoves(1).size());
+  }
+
+  /**
+   * Test that a failed write leaves none of its transaction behind.
+   */
+  @Test
+  @DisplayName("A transaction with a failing write should not change anything.")
+  void testFailedCommitIsAtomic() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    dbService.createNewGame(1);
+
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.commit();
+    });
+    assertEquals(0, dbService.findAllMoves(1).size());
+  }
+
+  /**
+   * Test that writes need a transaction.
+   */
+  @Test
+  @DisplayName("Saving without connecting first should throw a DbServiceException.")
+  void testSaveWithoutConnect() {
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.saveValidMove(new Move(player1, 0, 0), 1);
+    });
+  }
+
+  /**
+   * Test that moves cannot be saved to a game that does not exist.
+   */
+  @Test
+  @DisplayName("Saving a move for a missing game should fail on commit.")
+  void testMoveForMissingGame() throws DbServiceException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 0, 0), 2);
+
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      dbService.commit();
+    });
+  }
+
+  /**
+   * Test that a game board reset starts the game after the most recent one, and
+   * leaves the previous game in place.
+   */
+  @Test
+  @DisplayName("A game board reset should start a new game and keep the previous one.")
+  void testResetGameBoard() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1);
+    gb.resetGameboard();
+
+    GameBoard result = dbService.restoreMostRecentGameBoard();
+    assertEquals(2, gb.getGameId());
+    assertEquals(2, result.getGameId());
+    assertEquals(2, dbService.findAllPlayers(1).size());
+    assertEquals(null, result.getP1());
+    assertEquals(false, result.isGameStarted());
+  }
+
+  /**
+   * Test that games played through GameBoard are stored.
+   */
+  @Test
+  @DisplayName("A game played on a restored board should be saved through the same service.")
+  void testPlayThroughGameBoard() throws DbServiceException, GameBoardInternalError {
+    GameBoard gb = dbService.restoreGameBoard(1);
+    gb.processPlayerMove(new Move(player1, 0, 0));
+    gb.commitMove();
+
+    assertEquals(gb.toString(), dbService.restoreGameBoard(1).toString());
+  }
+
+  /**
+   * Test that a board restored for a game other than the first saves its moves
+   * to that game.
+   */
+  @Test
+  @DisplayName("Moves on a restored board should be saved to the game it was restored from.")
+  void testPlayRestoredSecondGame() throws DbServiceException, GameBoardInternalError {
+    dbService.connect();
+    dbService.createNewGame(2);
+    dbService.savePlayer(player1, 2);
+    dbService.savePlayer(player2, 2);
+    dbService.commit();
+
+    GameBoard gb = dbService.restoreGameBoard(2);
+    assertEquals(2, gb.getGameId());
+    gb.processPlayerMove(new Move(player1, 0, 0));
+    gb.commitMove();
+
+    assertEquals(1, dbService.findAllMoves(2).size());
+    assertEquals(0, dbService.findAllMoves(1).size());
+    assertEquals('X', dbService.restoreGameBoard(2).getBoardState()[0][0]);
+  }
+
+  /**
+   * Test the batch operations the service inherits from TicTacToeDbService.
+   */
+  @Test
+  @DisplayName("Games saved, restored and deleted in batches should match one at a time.")
+  void testBatchOperations() throws DbServiceException {
+    Map<Integer, List<Player>> players = new LinkedHashMap<>();
+    players.put(2, Arrays.asList(player1, player2));
+    players.put(3, Arrays.asList(player1, player2));
+    Map<Integer, List<Move>> moves = new LinkedHashMap<>();
+    moves.put(2, Arrays.asList(new Move(player1, 0, 0), new Move(player2, 1, 1)));
+    moves.put(3, Arrays.asList(new Move(player1, 2, 2)));
+
+    dbService.connect();
+    dbService.createNewGame(2);
+    dbService.createNewGame(3);
+    dbService.savePlayers(players);
+    dbService.saveMoves(moves);
+    dbService.commit();
+
+    Map<Integer, GenericGameBoard> gameboards = dbService.restoreGameBoards(
+        Arrays.asList(3, 2));
+    assertEquals(Arrays.asList(3, 2), new ArrayList<>(gameboards.keySet()));
+    assertEquals(dbService.restoreGameBoard(2).toString(), gameboards.get(2).toString());
+    assertEquals('X', gameboards.get(3).getBoardState()[2][2]);
+
+    dbService.connect();
+    dbService.deleteGames(Arrays.asList(2, 3));
+    dbService.commit();
+    assertEquals(0, dbService.findAllMoves(2).size());
+    assertEquals(0, dbService.findAllPlayers(3).size());
+    assertEquals(2, dbService.findAllPlayers(1).size());
+  }
+
+  /**
+   * Test that games on many threads do not interfere with each other.
+   */
+  @Test
+  @DisplayName("Moves committed concurrently in different games should all be kept.")
+  void testConcurrentGames() throws Exception {
+    int games = 8;
+    ExecutorService pool = Executors.newFixedThreadPool(games);
+    List<Future<Void>> results = new ArrayList<>();
+
+    for (int g = 2; g < games + 2; g++) {
+      int gameId = g;
+      results.add(pool.submit(() -> {
+        dbService.connect();
+        dbService.createNewGame(gameId);
+        dbService.savePlayer(player1, gameId);
+        dbService.savePlayer(player2, gameId);
+        dbService.commit();
+        for (int i = 0; i < 9; i++) {
+          dbService.connect();
+          dbService.saveValidMove(new Move(i % 2 == 0 ? player1 : player2, i / 3, i % 3), gameId);
+          dbService.commit();
+        }
+        return null;
+      }));
+    }
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    pool.shutdown();
+
+    for (int g = 2; g < games + 2; g++) {
+      assertEquals(9, dbService.findAllMoves(g).size());
+      assertEquals(true, dbService.restoreGameBoard(g).isFull());
+    }
+  }
+
+  /**
+   * Test that the default export writes one line per game with players, in
+   * game ID order.
+   */
+  @Test
+  @DisplayName("Games with players should be exported one line each.")
+  void testExportGames() throws DbServiceException, IOException {
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 2, 1), 1);
+    // a game nobody joined
+    dbService.createNewGame(2);
+    dbService.createNewGame(3);
+    dbService.savePlayer(player1, 3);
+    dbService.commit();
+
+    StringWriter out = new StringWriter();
+    GameHistoryWriter writer = new GameHistoryWriter(out);
+    assertEquals(2, dbService.exportGames(1, 10, writer));
+    writer.close();
+
+    String[] lines = out.toString().split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("{\"gameId\":1,\"winner\":0,\"isDraw\":false,"
+        + "\"players\":[{\"id\":1,\"type\":\"X\"},{\"id\":2,\"type\":\"O\"}],"
+        + "\"moves\":[{\"playerId\":1,\"x\":2,\"y\":1}]}", lines[0]);
+    assertEquals(true, lines[1].startsWith("{\"gameId\":3,"));
+  }
+
+  /**
+   * Test that the reaper expires idle games still being played, and only those,
+   * other than the most recent game.
+   */
+  @Test
+  @DisplayName("Games idle past their time to live should be expired unless they are finished "
+      + "or the most recent.")
+  void testReaper() throws DbServiceException, InterruptedException {
+    dbService.connect();
+    dbService.createNewGame(2);
+    dbService.savePlayer(player1, 2);
+    dbService.savePlayer(player2, 2);
+    for (Move move : Arrays.asList(new Move(player1, 0, 0), new Move(player2, 1, 0),
+        new Move(player1, 0, 1), new Move(player2, 1, 1), new Move(player1, 0, 2))) {
+      dbService.saveValidMove(move, 2);
+    }
+    dbService.createNewGame(3);
+    dbService.commit();
+
+    List<Integer> released = new ArrayList<>();
+    GameReaper reaper = new GameReaper(dbService, 50, 1000, 1, released::addAll);
+    // nothing has been idle for long enough yet
+    assertEquals(0, reaper.reap().size());
+
+    Thread.sleep(100);
+    dbService.connect();
+    dbService.saveValidMove(new Move(player1, 2, 2), 1);
+    dbService.createNewGame(4);
+    dbService.commit();
+
+    assertEquals(Arrays.asList(3), reaper.reap());
+    assertEquals(Arrays.asList(3), released);
+    assertEquals(1, reaper.getGamesExpired());
+    assertEquals(4, dbService.findMostRecentGameId());
+    assertEquals(1, dbService.restoreGameBoard(2).getWinner());
+    assertEquals(1, dbService.findAllMoves(1).size());
+
+    // once everything is idle, game 4, the most recent, is still kept
+    Thread.sleep(100);
+    assertEquals(Arrays.asList(1), reaper.reap());
+    assertEquals(4, dbService.findMostRecentGameId());
+  }
+}
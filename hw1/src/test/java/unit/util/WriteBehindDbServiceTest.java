@@ -0,0 +1,163 @@
+package unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import models.GameBoard;
+import models.GameBoardInternalError;
+import models.GenericGameBoard;
+import models.Move;
+import models.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import util.DbServiceException;
+import util.TicTacToeDbService;
+import util.WriteBehindDbService;
+import util.WriteBehindDbService.AckMode;
+
+class WriteBehindDbServiceTest {
+
+  private TicTacToeDbService delegate;
+  private WriteBehindDbService service;
+  private Player player1 = new Player('X', 1);
+
+  /**
+   * Set up a mock for the underlying database service before each test.
+   */
+  @BeforeEach
+  void setDelegate() {
+    delegate = mock(TicTacToeDbService.class);
+  }
+
+  /**
+   * Stop the writer thread after each test.
+   *
+   * @throws DbServiceException if the writer could not be stopped
+   */
+  @AfterEach
+  void stopWriter() throws DbServiceException {
+    if (service != null) {
+      service.shutdown();
+    }
+  }
+
+  /**
+   * Test that transactions queued close together share one commit.
+   */
+  @Test
+  @DisplayName("Moves committed close together should be written in one group commit.")
+  void testGroupCommit() throws DbServiceException {
+    service = new WriteBehindDbService(delegate, 3, 10000, AckMode.ENQUEUED);
+
+    for (int i = 0; i < 3; i++) {
+      service.connect();
+      service.saveValidMove(new Move(player1, i, 0), 1);
+      service.commit();
+    }
+    // reads wait for everything queued before them
+    service.findAllMoves(1);
+
+    verify(delegate, times(3)).saveValidMove(any(Move.class), anyInt());
+    verify(delegate, times(1)).commit();
+    assertEquals(1, service.getGroupCommits());
+    assertEquals(3, service.getCommittedTransactions());
+  }
+
+  /**
+   * Test that a failed commit is reported back in COMMITTED mode.
+   */
+  @Test
+  @DisplayName("In COMMITTED mode a failed group commit should fail the caller's commit.")
+  void testCommittedAckFailure() throws DbServiceException {
+    service = new WriteBehindDbService(delegate, 1, 0, AckMode.COMMITTED);
+    doThrow(DbServiceException.class).when(delegate).commit();
+
+    service.connect();
+    service.saveValidMove(new Move(player1, 0, 0), 1);
+
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      service.commit();
+    });
+    assertEquals(1, service.getFailedTransactions());
+    verify(delegate).close();
+  }
+
+  /**
+   * Test that close() throws away the open transaction.
+   */
+  @Test
+  @DisplayName("Closing without committing should discard the recorded writes.")
+  void testCloseDiscards() throws DbServiceException {
+    service = new WriteBehindDbService(delegate, 1, 0, AckMode.COMMITTED);
+
+    service.connect();
+    service.saveValidMove(new Move(player1, 0, 0), 1);
+    service.close();
+    service.commit();
+    service.shutdown();
+
+    verify(delegate, never()).saveValidMove(any(Move.class), anyInt());
+  }
+
+  /**
+   * Test that writes are rejected outside of a transaction.
+   */
+  @Test
+  @DisplayName("Saving without connecting first should throw a DbServiceException.")
+  void testSaveWithoutConnect() {
+    service = new WriteBehindDbService(delegate, 1, 0, AckMode.COMMITTED);
+
+    Assertions.assertThrows(DbServiceException.class, () -> {
+      service.saveValidMove(new Move(player1, 0, 0), 1);
+    });
+  }
+
+  /**
+   * Test that the game state written is the one at the time of the save.
+   */
+  @Test
+  @DisplayName("The game state should be copied when it is saved, not when it is written.")
+  void testGameStateCopied() throws DbServiceException {
+    service = new WriteBehindDbService(delegate, 1, 0, AckMode.COMMITTED);
+    char[][] board = { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } };
+    GameBoard gb = new GameBoard(player1, new Player('O', 2), true, 1, board, 0, false, null);
+
+    service.connect();
+    service.saveGameState(gb, 1);
+    gb.playMove(new Move(player1, 0, 0));
+    service.commit();
+
+    ArgumentCaptor<GenericGameBoard> saved = ArgumentCaptor.forClass(GenericGameBoard.class);
+    verify(delegate).saveGameState(saved.capture(), anyInt());
+    assertEquals(1, saved.getValue().getTurn());
+    assertEquals(0, saved.getValue().getBoardState()[0][0]);
+  }
+
+  /**
+   * Test that a restored game board saves its changes through the write-behind
+   * service.
+   */
+  @Test
+  @DisplayName("A restored game board should keep saving through the write-behind service.")
+  void testRestoredBoardRebound() throws DbServiceException, GameBoardInternalError {
+    service = new WriteBehindDbService(delegate, 1, 0, AckMode.COMMITTED);
+    when(delegate.restoreMostRecentGameBoard()).thenReturn(new GameBoard(delegate));
+
+    GameBoard gb = (GameBoard) service.restoreMostRecentGameBoard();
+    gb.saveP1(player1);
+
+    assertEquals(1, service.getCommittedTransactions());
+    verify(delegate).savePlayer(player1, 1);
+  }
+}